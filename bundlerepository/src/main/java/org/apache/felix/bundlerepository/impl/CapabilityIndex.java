@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundlerepository.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.Repository;
+import org.apache.felix.bundlerepository.Requirement;
+import org.apache.felix.bundlerepository.Resource;
+
+/**
+ * Immutable index of the capabilities provided by a set of resources.
+ * <p>
+ * Capabilities are grouped by namespace when the index is created. For
+ * each namespace, an additional index on the values of an attribute is
+ * built lazily the first time a requirement filter contains an equality
+ * test on that attribute, such as <tt>(package=org.foo)</tt> or
+ * <tt>(symbolicname=org.foo)</tt>. Lookups only narrow down the set of
+ * candidates: the returned capabilities are still matched against the
+ * requirement, so the results are identical to a linear scan, in the same
+ * order.
+ * <p>
+ * Instances are safe for concurrent use without external locking.
+ */
+class CapabilityIndex
+{
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final Map<String, Entry[]> m_namespaces;
+    private final ConcurrentMap<String, AttributeIndex> m_attributes =
+        new ConcurrentHashMap<String, AttributeIndex>();
+
+    CapabilityIndex(Resource[] resources)
+    {
+        Map<String, List<Entry>> namespaces = new HashMap<String, List<Entry>>();
+        int ordinal = 0;
+        for (int resIdx = 0; (resources != null) && (resIdx < resources.length); resIdx++)
+        {
+            Resource resource = resources[resIdx];
+            Capability[] caps = (resource != null) ? resource.getCapabilities() : null;
+            for (int capIdx = 0; (caps != null) && (capIdx < caps.length); capIdx++)
+            {
+                List<Entry> entries = namespaces.get(caps[capIdx].getName());
+                if (entries == null)
+                {
+                    entries = new ArrayList<Entry>();
+                    namespaces.put(caps[capIdx].getName(), entries);
+                }
+                entries.add(new Entry(ordinal++, resource, caps[capIdx]));
+            }
+        }
+
+        m_namespaces = new HashMap<String, Entry[]>(namespaces.size() * 2);
+        for (Iterator<Map.Entry<String, List<Entry>>> it = namespaces.entrySet().iterator(); it.hasNext();)
+        {
+            Map.Entry<String, List<Entry>> e = it.next();
+            m_namespaces.put(e.getKey(), e.getValue().toArray(new Entry[e.getValue().size()]));
+        }
+    }
+
+    /**
+     * Returns the index of the given repository, reusing the one maintained
+     * by the repository implementations of this bundle when possible.
+     */
+    static CapabilityIndex getIndex(Repository repository)
+    {
+        if (repository instanceof RepositoryImpl)
+        {
+            return ((RepositoryImpl) repository).getCapabilityIndex();
+        }
+        else if (repository instanceof LocalRepositoryImpl)
+        {
+            return ((LocalRepositoryImpl) repository).getCapabilityIndex();
+        }
+        else if (repository instanceof SystemRepositoryImpl)
+        {
+            return ((SystemRepositoryImpl) repository).getCapabilityIndex();
+        }
+        return new CapabilityIndex(repository.getResources());
+    }
+
+    /**
+     * Returns the capabilities that may satisfy the given requirement, in
+     * resource order. The returned list is a superset of the matching
+     * capabilities and callers must still check
+     * {@link Requirement#isSatisfied(Capability)}.
+     */
+    List<ResourceCapability> getCandidates(Requirement requirement)
+    {
+        Entry[] entries = m_namespaces.get(requirement.getName());
+        if (entries == null)
+        {
+            return Collections.emptyList();
+        }
+
+        String[] term = getEqualityTerm(requirement.getFilter());
+        if (term != null)
+        {
+            entries = getAttributeIndex(requirement.getName(), term[0], entries).get(term[1]);
+        }
+
+        List<ResourceCapability> candidates = new ArrayList<ResourceCapability>(entries.length);
+        for (int i = 0; i < entries.length; i++)
+        {
+            candidates.add(entries[i].m_capability);
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the capabilities satisfying the given requirement, in
+     * resource order.
+     */
+    List<ResourceCapability> getMatchingCapabilities(Requirement requirement)
+    {
+        List<ResourceCapability> candidates = getCandidates(requirement);
+        List<ResourceCapability> matches = new ArrayList<ResourceCapability>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            ResourceCapability candidate = candidates.get(i);
+            if (requirement.isSatisfied(candidate.getCapability()))
+            {
+                matches.add(candidate);
+            }
+        }
+        return matches;
+    }
+
+    private AttributeIndex getAttributeIndex(String namespace, String attribute, Entry[] entries)
+    {
+        String key = namespace + '\u0000' + attribute;
+        AttributeIndex index = m_attributes.get(key);
+        if (index == null)
+        {
+            // Building the same index twice is harmless, only one is kept.
+            index = new AttributeIndex(attribute, entries);
+            AttributeIndex existing = m_attributes.putIfAbsent(key, index);
+            if (existing != null)
+            {
+                index = existing;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Extracts an <tt>attribute=value</tt> test that every capability
+     * matching the filter must satisfy, i.e. either the whole filter or a
+     * direct operand of a top-level conjunction. Only plain values are
+     * considered; wildcards, escapes and white spaces are left to the
+     * filter itself. Returns the lower-cased attribute name and the value,
+     * or <code>null</code> if the filter has no such test.
+     */
+    static String[] getEqualityTerm(String filter)
+    {
+        if ((filter == null) || (filter.length() < 2) || (filter.charAt(0) != '('))
+        {
+            return null;
+        }
+        if (filter.charAt(1) != '&')
+        {
+            return parseEqualityTerm(filter, 0, filter.length());
+        }
+
+        int depth = 0;
+        int start = -1;
+        for (int i = 2; i < filter.length() - 1; i++)
+        {
+            char c = filter.charAt(i);
+            if (c == '\\')
+            {
+                i++;
+            }
+            else if (c == '(')
+            {
+                if (depth++ == 0)
+                {
+                    start = i;
+                }
+            }
+            else if ((c == ')') && (--depth == 0))
+            {
+                String[] term = parseEqualityTerm(filter, start, i + 1);
+                if (term != null)
+                {
+                    return term;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String[] parseEqualityTerm(String filter, int start, int end)
+    {
+        if ((end - start < 4) || (filter.charAt(start) != '(') || (filter.charAt(end - 1) != ')'))
+        {
+            return null;
+        }
+        int eq = filter.indexOf('=', start);
+        if ((eq <= start + 1) || (eq >= end - 2))
+        {
+            return null;
+        }
+        for (int i = start + 1; i < eq; i++)
+        {
+            char c = filter.charAt(i);
+            if (!Character.isLetterOrDigit(c) && (c != '.') && (c != '-') && (c != '_') && (c != ':'))
+            {
+                return null;
+            }
+        }
+        for (int i = eq + 1; i < end - 1; i++)
+        {
+            char c = filter.charAt(i);
+            if ((c == '*') || (c == '\\') || (c == '(') || (c == ')') || Character.isWhitespace(c))
+            {
+                return null;
+            }
+        }
+        return new String[] {
+            filter.substring(start + 1, eq).toLowerCase(), filter.substring(eq + 1, end - 1) };
+    }
+
+    private static final class Entry
+    {
+        final int m_ordinal;
+        final ResourceCapability m_capability;
+
+        Entry(int ordinal, Resource resource, Capability capability)
+        {
+            m_ordinal = ordinal;
+            m_capability = new ResourceCapabilityImpl(resource, capability);
+        }
+    }
+
+    /**
+     * Capabilities of one namespace keyed by the string values of one
+     * attribute. Capabilities whose attribute value is not a string, e.g.
+     * a version, can not be keyed reliably and are returned for every
+     * lookup.
+     */
+    private static final class AttributeIndex
+    {
+        private final Map<String, Entry[]> m_values = new HashMap<String, Entry[]>();
+        private final Entry[] m_unkeyed;
+
+        AttributeIndex(String attribute, Entry[] entries)
+        {
+            Map<String, List<Entry>> values = new HashMap<String, List<Entry>>();
+            List<Entry> unkeyed = new ArrayList<Entry>();
+            for (int i = 0; i < entries.length; i++)
+            {
+                Object value = getValue(entries[i].m_capability.getCapability(), attribute);
+                if (value == null)
+                {
+                    continue;
+                }
+                if (value instanceof String)
+                {
+                    add(values, (String) value, entries[i]);
+                }
+                else if ((value instanceof Collection) && isStrings((Collection) value))
+                {
+                    for (Iterator it = ((Collection) value).iterator(); it.hasNext();)
+                    {
+                        add(values, (String) it.next(), entries[i]);
+                    }
+                }
+                else
+                {
+                    unkeyed.add(entries[i]);
+                }
+            }
+
+            m_unkeyed = unkeyed.toArray(new Entry[unkeyed.size()]);
+            for (Iterator<Map.Entry<String, List<Entry>>> it = values.entrySet().iterator(); it.hasNext();)
+            {
+                Map.Entry<String, List<Entry>> e = it.next();
+                m_values.put(e.getKey(), merge(e.getValue(), m_unkeyed));
+            }
+        }
+
+        Entry[] get(String value)
+        {
+            Entry[] entries = m_values.get(value);
+            return (entries != null) ? entries : (m_unkeyed.length > 0) ? m_unkeyed : NO_ENTRIES;
+        }
+
+        private static Object getValue(Capability capability, String attribute)
+        {
+            // Filters are case insensitive on attribute names.
+            Map<String, Object> props = capability.getPropertiesAsMap();
+            Object value = props.get(attribute);
+            if (value == null)
+            {
+                for (Iterator<Map.Entry<String, Object>> it = props.entrySet().iterator(); it.hasNext();)
+                {
+                    Map.Entry<String, Object> e = it.next();
+                    if (attribute.equalsIgnoreCase(e.getKey()))
+                    {
+                        return e.getValue();
+                    }
+                }
+            }
+            return value;
+        }
+
+        private static boolean isStrings(Collection collection)
+        {
+            for (Iterator it = collection.iterator(); it.hasNext();)
+            {
+                if (!(it.next() instanceof String))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static void add(Map<String, List<Entry>> values, String value, Entry entry)
+        {
+            List<Entry> entries = values.get(value);
+            if (entries == null)
+            {
+                entries = new ArrayList<Entry>(1);
+                values.put(value, entries);
+            }
+            // Multi-valued attributes may list the same value twice.
+            if (entries.isEmpty() || (entries.get(entries.size() - 1) != entry))
+            {
+                entries.add(entry);
+            }
+        }
+
+        private static Entry[] merge(List<Entry> keyed, Entry[] unkeyed)
+        {
+            Entry[] merged = new Entry[keyed.size() + unkeyed.length];
+            int k = 0, u = 0, m = 0;
+            while ((k < keyed.size()) || (u < unkeyed.length))
+            {
+                if ((u == unkeyed.length)
+                    || ((k < keyed.size()) && (keyed.get(k).m_ordinal < unkeyed[u].m_ordinal)))
+                {
+                    merged[m++] = keyed.get(k++);
+                }
+                else
+                {
+                    merged[m++] = unkeyed[u++];
+                }
+            }
+            return merged;
+        }
+    }
+}
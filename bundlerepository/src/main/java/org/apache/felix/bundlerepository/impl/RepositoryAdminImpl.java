@@ -18,6 +18,7 @@
  */
 package org.apache.felix.bundlerepository.impl;
 
+import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.AccessController;
@@ -25,11 +26,16 @@ import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.felix.bundlerepository.Capability;
 import org.apache.felix.bundlerepository.DataModelHelper;
@@ -50,20 +56,36 @@ public class RepositoryAdminImpl implements RepositoryAdmin
     private final Logger m_logger;
     private final SystemRepositoryImpl m_system;
     private final LocalRepositoryImpl m_local;
-    private final DataModelHelper m_helper = new DataModelHelperImpl();
+    private final DataModelHelperImpl m_helper = new DataModelHelperImpl();
+    private final RepositoryCache m_cache;
     private Map m_repoMap = new LinkedHashMap();
     private boolean m_initialized = false;
+    private ExecutorService m_loader = null;
 
     // Reusable comparator for sorting resources by name.
     private Comparator m_nameComparator = new ResourceComparator();
 
     public static final String REPOSITORY_URL_PROP = "obr.repository.url";
     public static final String EXTERN_REPOSITORY_TAG = "extern-repositories";
+    public static final String REPOSITORY_CACHE_PROP = "obr.repository.cache";
+
+    // Maximum number of referrals fetched at the same time.
+    private static final int LOADER_THREADS = 4;
 
     public RepositoryAdminImpl(BundleContext context, Logger logger)
+    {
+        this(context, logger, null);
+    }
+
+    /**
+     * @param cacheDir directory where parsed repositories are cached, or
+     *        <code>null</code> to always parse them
+     */
+    public RepositoryAdminImpl(BundleContext context, Logger logger, File cacheDir)
     {
         m_context = context;
         m_logger = logger;
+        m_cache = (cacheDir != null) ? new RepositoryCache(cacheDir, logger) : null;
         m_system = new SystemRepositoryImpl(context, logger);
         m_local = new LocalRepositoryImpl(context, logger);
     }
@@ -86,6 +108,14 @@ public class RepositoryAdminImpl implements RepositoryAdmin
     public void dispose()
     {
         m_local.dispose();
+        synchronized (this)
+        {
+            if (m_loader != null)
+            {
+                m_loader.shutdownNow();
+                m_loader = null;
+            }
+        }
     }
 
     public Repository addRepository(String uri) throws Exception
@@ -98,46 +128,196 @@ public class RepositoryAdminImpl implements RepositoryAdmin
         return addRepository(url, Integer.MAX_VALUE);
     }
 
-    public synchronized RepositoryImpl addRepository(final URL url, int hopCount) throws Exception
+    public RepositoryImpl addRepository(final URL url, int hopCount) throws Exception
     {
-        initialize();
+        synchronized (this)
+        {
+            initialize();
+        }
+
+        // Fetch and parse the repository and its referrals without holding
+        // the lock, one level of referrals at a time and the repositories
+        // of a level in parallel.
+        RepositoryLoad root = new RepositoryLoad(url, hopCount);
+        List level = Collections.singletonList(root);
+        while (!level.isEmpty())
+        {
+            load(level);
+            List next = new ArrayList();
+            for (int i = 0; i < level.size(); i++)
+            {
+                next.addAll(((RepositoryLoad) level.get(i)).getReferrals());
+            }
+            level = next;
+        }
 
         // If the repository URL is a duplicate, then we will just
         // replace the existing repository object with a new one,
         // which is effectively the same as refreshing the repository.
+        // Referrals are registered in the order they are declared, as
+        // if they had been loaded one after the other.
+        synchronized (this)
+        {
+            register(root);
+        }
+        return root.m_repository;
+    }
+
+    private void register(RepositoryLoad load) throws Exception
+    {
+        if (load.m_exception != null)
+        {
+            throw load.m_exception;
+        }
+        m_repoMap.put(load.m_url.toExternalForm(), load.m_repository);
+        List referrals = load.getReferrals();
+        for (int i = 0; i < referrals.size(); i++)
+        {
+            register((RepositoryLoad) referrals.get(i));
+        }
+    }
+
+    private void load(List loads) throws Exception
+    {
+        if (loads.size() == 1)
+        {
+            ((RepositoryLoad) loads.get(0)).run();
+            return;
+        }
+
+        ExecutorService loader;
+        synchronized (this)
+        {
+            if (m_loader == null)
+            {
+                m_loader = Executors.newFixedThreadPool(LOADER_THREADS, new ThreadFactory()
+                {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, "OBR repository loader");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+            loader = m_loader;
+        }
+        List futures = new ArrayList();
+        for (int i = 0; i < loads.size(); i++)
+        {
+            futures.add(loader.submit((RepositoryLoad) loads.get(i)));
+        }
+        try
+        {
+            for (int i = 0; i < futures.size(); i++)
+            {
+                ((Future) futures.get(i)).get();
+            }
+        }
+        finally
+        {
+            for (int i = 0; i < futures.size(); i++)
+            {
+                ((Future) futures.get(i)).cancel(true);
+            }
+        }
+    }
+
+    private RepositoryImpl loadRepository(final URL url) throws Exception
+    {
         try
         {
-            RepositoryImpl repository = (RepositoryImpl) AccessController.doPrivileged(new PrivilegedExceptionAction()
+            return (RepositoryImpl) AccessController.doPrivileged(new PrivilegedExceptionAction()
             {
                 public Object run() throws Exception
                 {
-                    return m_helper.repository(url);
+                    RepositoryImpl repository = (m_cache != null)
+                        ? m_cache.load(url, m_helper)
+                        : (RepositoryImpl) m_helper.repository(url);
+                    // Index the capabilities up front so that discovery
+                    // and resolution do not pay for it on first use.
+                    repository.getCapabilityIndex();
+                    return repository;
                 }
             });
-            m_repoMap.put(url.toExternalForm(), repository);
+        }
+        catch (PrivilegedActionException ex)
+        {
+            throw (Exception) ex.getCause();
+        }
+    }
+
+    /**
+     * A repository to load, with the referrals to follow from it.
+     */
+    private class RepositoryLoad implements Runnable
+    {
+        final URL m_url;
+        final int m_hopCount;
+        RepositoryImpl m_repository;
+        Exception m_exception;
+        private List m_referrals;
 
-            // resolve referrals
-            hopCount--;
-            if (hopCount > 0 && repository.getReferrals() != null)
+        RepositoryLoad(URL url, int hopCount)
+        {
+            m_url = url;
+            m_hopCount = hopCount;
+        }
+
+        RepositoryLoad(Exception exception)
+        {
+            m_url = null;
+            m_hopCount = 0;
+            m_exception = exception;
+        }
+
+        public void run()
+        {
+            if (m_exception != null)
+            {
+                return;
+            }
+            try
+            {
+                m_repository = loadRepository(m_url);
+            }
+            catch (Exception ex)
+            {
+                m_exception = ex;
+            }
+        }
+
+        List getReferrals()
+        {
+            if (m_referrals != null)
             {
-                for (int i = 0; i < repository.getReferrals().length; i++)
+                return m_referrals;
+            }
+            m_referrals = new ArrayList();
+            int hopCount = m_hopCount - 1;
+            if (m_repository != null && hopCount > 0 && m_repository.getReferrals() != null)
+            {
+                for (int i = 0; i < m_repository.getReferrals().length; i++)
                 {
-                    Referral referral = repository.getReferrals()[i];
+                    Referral referral = m_repository.getReferrals()[i];
 
-                    URL referralUrl = new URL(url, referral.getUrl());
+                    URL referralUrl;
+                    try
+                    {
+                        referralUrl = new URL(m_url, referral.getUrl());
+                    }
+                    catch (MalformedURLException ex)
+                    {
+                        m_referrals.add(new RepositoryLoad(ex));
+                        break;
+                    }
                     hopCount = (referral.getDepth() > hopCount) ? hopCount : referral.getDepth();
 
-                    addRepository(referralUrl, hopCount);
+                    m_referrals.add(new RepositoryLoad(referralUrl, hopCount));
                 }
             }
-
-            return repository;
+            return m_referrals;
         }
-        catch (PrivilegedActionException ex)
-        {
-            throw (Exception) ex.getCause();
-        }
-
     }
 
     public synchronized boolean removeRepository(String uri)
@@ -184,10 +364,8 @@ public class RepositoryAdminImpl implements RepositoryAdmin
         return new ResolverImpl(m_context, repositories, m_logger);
     }
 
-    public synchronized Resource[] discoverResources(String filterExpr) throws InvalidSyntaxException
+    public Resource[] discoverResources(String filterExpr) throws InvalidSyntaxException
     {
-        initialize();
-
         Filter filter = filterExpr != null ? m_helper.filter(filterExpr) : null;
         Resource[] resources;
         MapToDictionary dict = new MapToDictionary(null);
@@ -212,41 +390,45 @@ public class RepositoryAdminImpl implements RepositoryAdmin
         return resources;
     }
 
-    public synchronized Resource[] discoverResources(Requirement[] requirements)
+    public Resource[] discoverResources(Requirement[] requirements)
     {
-        initialize();
+        if ((requirements == null) || (requirements.length == 0))
+        {
+            Resource[] resources;
+            Repository[] repos = listRepositories();
+            List matchList = new ArrayList();
+            for (int repoIdx = 0; (repos != null) && (repoIdx < repos.length); repoIdx++)
+            {
+                resources = repos[repoIdx].getResources();
+                for (int resIdx = 0; (resources != null) && (resIdx < resources.length); resIdx++)
+                {
+                    matchList.add(resources[resIdx]);
+                }
+            }
+            resources = (Resource[]) matchList.toArray(new Resource[matchList.size()]);
+            Arrays.sort(resources, m_nameComparator);
+            return resources;
+        }
 
+        // Only the resources providing a capability for the first requirement
+        // are candidates, they are looked up from the repository indexes.
         Resource[] resources = null;
         Repository[] repos = listRepositories();
         List matchList = new ArrayList();
         for (int repoIdx = 0; (repos != null) && (repoIdx < repos.length); repoIdx++)
         {
-            resources = repos[repoIdx].getResources();
-            for (int resIdx = 0; (resources != null) && (resIdx < resources.length); resIdx++)
+            // Capabilities come in resource order, so the ones of a given
+            // resource are next to each other.
+            Resource previous = null;
+            List caps = CapabilityIndex.getIndex(repos[repoIdx]).getMatchingCapabilities(requirements[0]);
+            for (int capIdx = 0; capIdx < caps.size(); capIdx++)
             {
-                boolean match = true;
-                for (int reqIdx = 0; (requirements != null) && (reqIdx < requirements.length); reqIdx++)
-                {
-                    boolean reqMatch = false;
-                    Capability[] caps = resources[resIdx].getCapabilities();
-                    for (int capIdx = 0; (caps != null) && (capIdx < caps.length); capIdx++)
-                    {
-                        if (requirements[reqIdx].isSatisfied(caps[capIdx]))
-                        {
-                            reqMatch = true;
-                            break;
-                        }
-                    }
-                    match &= reqMatch;
-                    if (!match)
-                    {
-                        break;
-                    }
-                }
-                if (match)
+                Resource resource = ((ResourceCapability) caps.get(capIdx)).getResource();
+                if ((resource != previous) && isSatisfied(resource, requirements, 1))
                 {
-                    matchList.add(resources[resIdx]);
+                    matchList.add(resource);
                 }
+                previous = resource;
             }
         }
 
@@ -256,6 +438,28 @@ public class RepositoryAdminImpl implements RepositoryAdmin
         return resources;
     }
 
+    private static boolean isSatisfied(Resource resource, Requirement[] requirements, int fromIdx)
+    {
+        Capability[] caps = resource.getCapabilities();
+        for (int reqIdx = fromIdx; reqIdx < requirements.length; reqIdx++)
+        {
+            boolean reqMatch = false;
+            for (int capIdx = 0; (caps != null) && (capIdx < caps.length); capIdx++)
+            {
+                if (requirements[reqIdx].isSatisfied(caps[capIdx]))
+                {
+                    reqMatch = true;
+                    break;
+                }
+            }
+            if (!reqMatch)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void initialize()
     {
         if (m_initialized)
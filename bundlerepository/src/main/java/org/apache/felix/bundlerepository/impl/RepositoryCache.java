@@ -0,0 +1,724 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundlerepository.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.Property;
+import org.apache.felix.bundlerepository.Requirement;
+import org.apache.felix.bundlerepository.Resource;
+import org.apache.felix.utils.log.Logger;
+import org.osgi.framework.Version;
+
+/**
+ * Local cache of parsed repositories, so that repositories which did not
+ * change since they were last loaded, e.g. across restarts, do not need to
+ * be downloaded and parsed again.
+ * <p>
+ * Each repository is stored in its own file in a compact binary form,
+ * together with the validators of the content it was parsed from: the
+ * <tt>ETag</tt> and <tt>Last-Modified</tt> headers for <tt>http</tt> and
+ * <tt>https</tt> URLs, which are sent back in a conditional request, and
+ * the modification time and length for <tt>file</tt> URLs. Other URLs are
+ * not cached.
+ * <p>
+ * Only repositories using the Felix OBR format are cached; repositories
+ * using the OSGi Repository format contain attributes that the cache does
+ * not know how to store and are always parsed.
+ */
+class RepositoryCache
+{
+    private static final int MAGIC = 0x4f425243; // OBRC
+    private static final int FORMAT = 1;
+
+    private static final int EXTEND = 1;
+    private static final int MULTIPLE = 2;
+    private static final int OPTIONAL = 4;
+
+    private final File m_dir;
+    private final Logger m_logger;
+
+    RepositoryCache(File dir, Logger logger)
+    {
+        m_dir = dir;
+        m_logger = logger;
+    }
+
+    /**
+     * Loads the repository at the given URL from the cache if its content
+     * did not change, or parses it and updates the cache otherwise.
+     */
+    RepositoryImpl load(URL url, DataModelHelperImpl helper) throws Exception
+    {
+        String protocol = url.getProtocol();
+        if ("file".equals(protocol))
+        {
+            return loadFile(url, helper);
+        }
+        else if ("http".equals(protocol) || "https".equals(protocol))
+        {
+            return loadHttp(url, helper);
+        }
+        return helper.repository(url, FileUtil.openURL(url));
+    }
+
+    private RepositoryImpl loadFile(URL url, DataModelHelperImpl helper) throws Exception
+    {
+        File file;
+        try
+        {
+            file = new File(url.toURI());
+        }
+        catch (Exception ex)
+        {
+            return helper.repository(url, FileUtil.openURL(url));
+        }
+
+        Validators validators = new Validators(null, null, file.lastModified(), file.length());
+        File cacheFile = getCacheFile(url);
+        Entry entry = readHeader(cacheFile, url);
+        if ((entry != null) && (validators.m_mtime != 0) && validators.equals(entry.m_validators))
+        {
+            RepositoryImpl repository = read(entry);
+            if (repository != null)
+            {
+                return repository;
+            }
+        }
+
+        RepositoryImpl repository = helper.repository(url, FileUtil.openURL(url));
+        write(cacheFile, url, validators, repository);
+        return repository;
+    }
+
+    private RepositoryImpl loadHttp(URL url, DataModelHelperImpl helper) throws Exception
+    {
+        File cacheFile = getCacheFile(url);
+        Entry entry = readHeader(cacheFile, url);
+
+        URLConnection conn = url.openConnection();
+        if (entry != null)
+        {
+            if (entry.m_validators.m_etag != null)
+            {
+                conn.setRequestProperty("If-None-Match", entry.m_validators.m_etag);
+            }
+            if (entry.m_validators.m_lastModified != null)
+            {
+                conn.setRequestProperty("If-Modified-Since", entry.m_validators.m_lastModified);
+            }
+        }
+        FileUtil.setProxyAuth(conn);
+
+        InputStream content;
+        if ((entry != null) && (conn instanceof HttpURLConnection))
+        {
+            if (((HttpURLConnection) conn).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
+            {
+                ((HttpURLConnection) conn).disconnect();
+                RepositoryImpl repository = read(entry);
+                if (repository != null)
+                {
+                    return repository;
+                }
+                // The cache could not be read, fetch the content again.
+                conn = url.openConnection();
+                content = FileUtil.openURL(conn);
+            }
+            else
+            {
+                // Already connected, the request can not be changed anymore.
+                try
+                {
+                    content = conn.getInputStream();
+                }
+                catch (IOException e)
+                {
+                    IOException newException = new IOException("Error accessing " + url);
+                    newException.initCause(e);
+                    throw newException;
+                }
+            }
+        }
+        else
+        {
+            content = FileUtil.openURL(conn);
+        }
+
+        RepositoryImpl repository = helper.repository(url, content);
+        String etag = conn.getHeaderField("ETag");
+        String lastModified = conn.getHeaderField("Last-Modified");
+        if ((etag != null) || (lastModified != null))
+        {
+            write(cacheFile, url, new Validators(etag, lastModified, 0, 0), repository);
+        }
+        else
+        {
+            cacheFile.delete();
+        }
+        return repository;
+    }
+
+    File getCacheFile(URL url)
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest(url.toExternalForm().getBytes("UTF-8"));
+            StringBuffer sb = new StringBuffer(digest.length * 2 + 4);
+            for (int i = 0; i < digest.length; i++)
+            {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return new File(m_dir, sb.append(".bin").toString());
+        }
+        catch (Exception ex)
+        {
+            // SHA-1 and UTF-8 are always available.
+            throw new IllegalStateException(ex.toString());
+        }
+    }
+
+    private Entry readHeader(File cacheFile, URL url)
+    {
+        if (!cacheFile.isFile())
+        {
+            return null;
+        }
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if ((in.readInt() != MAGIC) || (in.readInt() != FORMAT) || !url.toExternalForm().equals(in.readUTF()))
+            {
+                return null;
+            }
+            StringTable strings = new StringTable();
+            Validators validators = new Validators(
+                strings.read(in), strings.read(in), in.readLong(), in.readLong());
+            return new Entry(cacheFile, validators);
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_DEBUG, "Ignoring unreadable repository cache " + cacheFile, ex);
+            return null;
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    private RepositoryImpl read(Entry entry)
+    {
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry.m_file), 65536));
+            in.readInt();
+            in.readInt();
+            in.readUTF();
+            StringTable strings = new StringTable();
+            strings.read(in);
+            strings.read(in);
+            in.readLong();
+            in.readLong();
+            return readRepository(in, strings);
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(Logger.LOG_WARNING, "Ignoring corrupted repository cache " + entry.m_file, ex);
+            entry.m_file.delete();
+            return null;
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    private void write(File cacheFile, URL url, Validators validators, RepositoryImpl repository)
+    {
+        if (!isCacheable(repository))
+        {
+            cacheFile.delete();
+            return;
+        }
+
+        File tmp = null;
+        DataOutputStream out = null;
+        try
+        {
+            if (!m_dir.isDirectory() && !m_dir.mkdirs())
+            {
+                throw new IOException("Unable to create directory " + m_dir);
+            }
+            tmp = File.createTempFile("repository", ".tmp", m_dir);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(url.toExternalForm());
+            StringTable strings = new StringTable();
+            strings.write(out, validators.m_etag);
+            strings.write(out, validators.m_lastModified);
+            out.writeLong(validators.m_mtime);
+            out.writeLong(validators.m_length);
+            writeRepository(out, strings, repository);
+            out.close();
+            out = null;
+
+            cacheFile.delete();
+            if (!tmp.renameTo(cacheFile))
+            {
+                throw new IOException("Unable to rename " + tmp + " to " + cacheFile);
+            }
+            tmp = null;
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_WARNING, "Unable to cache repository " + url, ex);
+        }
+        finally
+        {
+            close(out);
+            if (tmp != null)
+            {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Checks that the repository only contains objects created by the
+     * Felix OBR format parsers, whose content can be fully restored.
+     */
+    static boolean isCacheable(RepositoryImpl repository)
+    {
+        Resource[] resources = repository.getResources();
+        for (int resIdx = 0; resIdx < resources.length; resIdx++)
+        {
+            if (resources[resIdx].getClass() != ResourceImpl.class)
+            {
+                return false;
+            }
+            Map props = resources[resIdx].getProperties();
+            for (Iterator it = props.entrySet().iterator(); it.hasNext();)
+            {
+                Map.Entry e = (Map.Entry) it.next();
+                if (getType(e.getKey(), e.getValue()) == null)
+                {
+                    return false;
+                }
+            }
+            Capability[] caps = resources[resIdx].getCapabilities();
+            for (int capIdx = 0; capIdx < caps.length; capIdx++)
+            {
+                if ((caps[capIdx].getClass() != CapabilityImpl.class) || !caps[capIdx].getDirectives().isEmpty())
+                {
+                    return false;
+                }
+                Property[] properties = caps[capIdx].getProperties();
+                for (int propIdx = 0; propIdx < properties.length; propIdx++)
+                {
+                    if (properties[propIdx].getClass() != PropertyImpl.class)
+                    {
+                        return false;
+                    }
+                }
+            }
+            Requirement[] reqs = resources[resIdx].getRequirements();
+            for (int reqIdx = 0; reqIdx < reqs.length; reqIdx++)
+            {
+                if ((reqs[reqIdx].getClass() != RequirementImpl.class)
+                    || !reqs[reqIdx].getAttributes().isEmpty() || !reqs[reqIdx].getDirectives().isEmpty())
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the type to pass to {@link ResourceImpl#put(String, String, String)}
+     * to restore the given property value, the empty string for plain strings
+     * and categories, or <code>null</code> if the value can not be restored.
+     */
+    private static String getType(Object key, Object value)
+    {
+        if (value instanceof String)
+        {
+            return "";
+        }
+        else if (value instanceof Version)
+        {
+            return Property.VERSION;
+        }
+        else if (value instanceof Long)
+        {
+            return Property.LONG;
+        }
+        else if ((value instanceof List) && Resource.CATEGORY.equals(key))
+        {
+            return "";
+        }
+        else if (value instanceof Collection)
+        {
+            for (Iterator it = ((Collection) value).iterator(); it.hasNext();)
+            {
+                Object o = it.next();
+                if (!(o instanceof String) || (((String) o).indexOf(',') >= 0))
+                {
+                    return null;
+                }
+            }
+            return Property.SET;
+        }
+        return null;
+    }
+
+    private static void writeRepository(DataOutputStream out, StringTable strings, RepositoryImpl repository)
+        throws IOException
+    {
+        strings.write(out, repository.getURI());
+        strings.write(out, repository.getName());
+        out.writeLong(repository.getLastModified());
+
+        Referral[] referrals = repository.getReferrals();
+        out.writeInt(referrals != null ? referrals.length : 0);
+        for (int i = 0; (referrals != null) && (i < referrals.length); i++)
+        {
+            out.writeInt(referrals[i].getDepth());
+            strings.write(out, referrals[i].getUrl());
+        }
+
+        Resource[] resources = repository.getResources();
+        out.writeInt(resources.length);
+        for (int resIdx = 0; resIdx < resources.length; resIdx++)
+        {
+            writeResource(out, strings, resources[resIdx]);
+        }
+    }
+
+    private static void writeResource(DataOutputStream out, StringTable strings, Resource resource)
+        throws IOException
+    {
+        Map props = resource.getProperties();
+        out.writeInt(props.size());
+        for (Iterator it = props.entrySet().iterator(); it.hasNext();)
+        {
+            Map.Entry e = (Map.Entry) it.next();
+            String key = (String) e.getKey();
+            Object value = e.getValue();
+            if ((value instanceof List) && Resource.CATEGORY.equals(key))
+            {
+                // Categories are added one by one, keep them as a list.
+                List categories = (List) value;
+                strings.write(out, key);
+                out.writeByte('c');
+                out.writeInt(categories.size());
+                for (int i = 0; i < categories.size(); i++)
+                {
+                    strings.write(out, (String) categories.get(i));
+                }
+                continue;
+            }
+            String type = getType(key, value);
+            String str;
+            if (value instanceof Collection)
+            {
+                StringBuffer sb = new StringBuffer();
+                for (Iterator vit = ((Collection) value).iterator(); vit.hasNext();)
+                {
+                    sb.append(vit.next());
+                    if (vit.hasNext())
+                    {
+                        sb.append(',');
+                    }
+                }
+                str = sb.toString();
+            }
+            else
+            {
+                str = value.toString();
+            }
+            strings.write(out, key);
+            out.writeByte('p');
+            strings.write(out, type.length() > 0 ? type : null);
+            strings.write(out, str);
+        }
+
+        Capability[] caps = resource.getCapabilities();
+        out.writeInt(caps.length);
+        for (int capIdx = 0; capIdx < caps.length; capIdx++)
+        {
+            strings.write(out, caps[capIdx].getName());
+            Property[] properties = caps[capIdx].getProperties();
+            out.writeInt(properties.length);
+            for (int propIdx = 0; propIdx < properties.length; propIdx++)
+            {
+                strings.write(out, properties[propIdx].getName());
+                strings.write(out, properties[propIdx].getType());
+                strings.write(out, properties[propIdx].getValue());
+            }
+        }
+
+        Requirement[] reqs = resource.getRequirements();
+        out.writeInt(reqs.length);
+        for (int reqIdx = 0; reqIdx < reqs.length; reqIdx++)
+        {
+            strings.write(out, reqs[reqIdx].getName());
+            strings.write(out, reqs[reqIdx].getFilter());
+            out.writeByte((reqs[reqIdx].isExtend() ? EXTEND : 0)
+                | (reqs[reqIdx].isMultiple() ? MULTIPLE : 0)
+                | (reqs[reqIdx].isOptional() ? OPTIONAL : 0));
+            strings.write(out, reqs[reqIdx].getComment());
+        }
+    }
+
+    private static RepositoryImpl readRepository(DataInputStream in, StringTable strings) throws Exception
+    {
+        RepositoryImpl repository = new RepositoryImpl();
+        repository.setURI(strings.read(in));
+        repository.setName(strings.read(in));
+        repository.setLastModified(in.readLong());
+
+        for (int i = in.readInt(); i > 0; i--)
+        {
+            Referral referral = new Referral();
+            referral.setDepth(Integer.toString(in.readInt()));
+            referral.setUrl(strings.read(in));
+            repository.addReferral(referral);
+        }
+
+        for (int resIdx = in.readInt(); resIdx > 0; resIdx--)
+        {
+            repository.addResource(readResource(in, strings));
+        }
+        return repository;
+    }
+
+    private static ResourceImpl readResource(DataInputStream in, StringTable strings) throws IOException
+    {
+        ResourceImpl resource = new ResourceImpl();
+        for (int propIdx = in.readInt(); propIdx > 0; propIdx--)
+        {
+            String key = strings.read(in);
+            int kind = in.readByte();
+            if (kind == 'c')
+            {
+                for (int i = in.readInt(); i > 0; i--)
+                {
+                    resource.addCategory(strings.read(in));
+                }
+            }
+            else
+            {
+                String type = strings.read(in);
+                resource.put(key, strings.read(in), type);
+            }
+        }
+
+        for (int capIdx = in.readInt(); capIdx > 0; capIdx--)
+        {
+            CapabilityImpl capability = new CapabilityImpl(strings.read(in));
+            for (int propIdx = in.readInt(); propIdx > 0; propIdx--)
+            {
+                capability.addProperty(new PropertyImpl(strings.read(in), strings.read(in), strings.read(in)));
+            }
+            resource.addCapability(capability);
+        }
+
+        for (int reqIdx = in.readInt(); reqIdx > 0; reqIdx--)
+        {
+            RequirementImpl requirement = new RequirementImpl(strings.read(in));
+            requirement.setFilter(strings.read(in));
+            int flags = in.readByte();
+            requirement.setExtend((flags & EXTEND) != 0);
+            requirement.setMultiple((flags & MULTIPLE) != 0);
+            requirement.setOptional((flags & OPTIONAL) != 0);
+            String comment = strings.read(in);
+            if (comment != null)
+            {
+                requirement.addText(comment);
+            }
+            resource.addRequire(requirement);
+        }
+        return resource;
+    }
+
+    private static void close(java.io.Closeable c)
+    {
+        try
+        {
+            if (c != null)
+            {
+                c.close();
+            }
+        }
+        catch (IOException ex)
+        {
+            // Not much we can do.
+        }
+    }
+
+    private static final class Validators
+    {
+        final String m_etag;
+        final String m_lastModified;
+        final long m_mtime;
+        final long m_length;
+
+        Validators(String etag, String lastModified, long mtime, long length)
+        {
+            m_etag = etag;
+            m_lastModified = lastModified;
+            m_mtime = mtime;
+            m_length = length;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Validators))
+            {
+                return false;
+            }
+            Validators v = (Validators) o;
+            return ((m_etag == null) ? v.m_etag == null : m_etag.equals(v.m_etag))
+                && ((m_lastModified == null) ? v.m_lastModified == null : m_lastModified.equals(v.m_lastModified))
+                && (m_mtime == v.m_mtime) && (m_length == v.m_length);
+        }
+
+        public int hashCode()
+        {
+            return (int) (m_mtime ^ m_length);
+        }
+    }
+
+    private static final class Entry
+    {
+        final File m_file;
+        final Validators m_validators;
+
+        Entry(File file, Validators validators)
+        {
+            m_file = file;
+            m_validators = validators;
+        }
+    }
+
+    /**
+     * Writes each distinct string once, later occurrences refer to it by
+     * index. Namespaces, property names and most values repeat a lot.
+     * Indexes and lengths are written as variable length integers.
+     */
+    private static final class StringTable
+    {
+        private final Map<String, Integer> m_indexes = new HashMap<String, Integer>();
+        private final List<String> m_strings = new ArrayList<String>();
+
+        void write(DataOutputStream out, String s) throws IOException
+        {
+            if (s == null)
+            {
+                writeVarInt(out, 0);
+                return;
+            }
+            Integer index = m_indexes.get(s);
+            if (index != null)
+            {
+                writeVarInt(out, index.intValue() + 1);
+                return;
+            }
+            m_indexes.put(s, new Integer(m_strings.size()));
+            m_strings.add(s);
+            byte[] bytes = s.getBytes("UTF-8");
+            writeVarInt(out, m_strings.size());
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        String read(DataInputStream in) throws IOException
+        {
+            int index = readVarInt(in) - 1;
+            if (index < 0)
+            {
+                return null;
+            }
+            if (index < m_strings.size())
+            {
+                return m_strings.get(index);
+            }
+            if (index != m_strings.size())
+            {
+                throw new IOException("Invalid string index " + index);
+            }
+            byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            String s = new String(bytes, "UTF-8");
+            m_strings.add(s);
+            return s;
+        }
+
+        private static void writeVarInt(DataOutputStream out, int value) throws IOException
+        {
+            while ((value & ~0x7f) != 0)
+            {
+                out.writeByte((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private static int readVarInt(DataInputStream in) throws IOException
+        {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7)
+            {
+                int b = in.readUnsignedByte();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid variable length integer");
+        }
+    }
+}
@@ -91,9 +91,21 @@ public class RequirementImpl implements Requirement
     {
         try
         {
-            String nf = REMOVE_LT.matcher(filter).replaceAll("(!($1>=$2))");
-            nf = REMOVE_GT.matcher(nf).replaceAll("(!($1<=$2))");
-            nf = REMOVE_NV.matcher(nf).replaceAll("");
+            // Only run the rewriting patterns on filters they can match,
+            // most filters do not need any.
+            String nf = filter;
+            if (hasStrictComparison(nf, '<'))
+            {
+                nf = REMOVE_LT.matcher(nf).replaceAll("(!($1>=$2))");
+            }
+            if (hasStrictComparison(nf, '>'))
+            {
+                nf = REMOVE_GT.matcher(nf).replaceAll("(!($1<=$2))");
+            }
+            if (nf.indexOf("(version>=0.0.0)") >= 0)
+            {
+                nf = REMOVE_NV.matcher(nf).replaceAll("");
+            }
             m_filter = FilterImpl.newInstance(nf, true);
         }
         catch (InvalidSyntaxException e)
@@ -104,6 +116,18 @@ public class RequirementImpl implements Requirement
         }
     }
 
+    private static boolean hasStrictComparison(String filter, char op)
+    {
+        for (int i = filter.indexOf(op); i >= 0; i = filter.indexOf(op, i + 1))
+        {
+            if ((i + 1 < filter.length()) && (filter.charAt(i + 1) != '=') && (filter.charAt(i + 1) != '*'))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public boolean isSatisfied(Capability capability)
     {
         Dictionary propertyDict = new MapToDictionary(capability.getPropertiesAsMap());
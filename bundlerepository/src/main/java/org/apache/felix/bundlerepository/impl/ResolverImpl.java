@@ -136,35 +136,43 @@ public class ResolverImpl implements Resolver
         return resources.toArray(new LocalResource[resources.size()]);
     }
 
-    private Resource[] getRemoteResources()
+    private Resource[] getResources()
     {
         List<Resource> resources = new ArrayList<Resource>();
-        for (Resource resource : getResources())
+        for (int repoIdx = 0; (m_repositories != null) && (repoIdx < m_repositories.length); repoIdx++)
         {
-            if (resource != null && !resource.isLocal())
+            if (isEnabled(m_repositories[repoIdx]))
             {
-                resources.add(resource);
+                Collections.addAll(resources, m_repositories[repoIdx].getResources());
             }
         }
         return resources.toArray(new Resource[resources.size()]);
     }
 
-    private Resource[] getResources()
+    private CapabilityIndex[] getCapabilityIndexes()
     {
-        List<Resource> resources = new ArrayList<Resource>();
+        List<CapabilityIndex> indexes = new ArrayList<CapabilityIndex>();
         for (int repoIdx = 0; (m_repositories != null) && (repoIdx < m_repositories.length); repoIdx++)
         {
-            boolean isLocal = m_repositories[repoIdx].getURI().equals(Repository.LOCAL);
-            boolean isSystem = m_repositories[repoIdx].getURI().equals(Repository.SYSTEM);
-            if (isLocal && (m_resolutionFlags & NO_LOCAL_RESOURCES) != 0) {
-                continue;
-            }
-            if (isSystem && (m_resolutionFlags & NO_SYSTEM_BUNDLE) != 0) {
-                continue;
+            if (isEnabled(m_repositories[repoIdx]))
+            {
+                indexes.add(CapabilityIndex.getIndex(m_repositories[repoIdx]));
             }
-            Collections.addAll(resources, m_repositories[repoIdx].getResources());
         }
-        return resources.toArray(new Resource[resources.size()]);
+        return indexes.toArray(new CapabilityIndex[indexes.size()]);
+    }
+
+    private boolean isEnabled(Repository repository)
+    {
+        boolean isLocal = repository.getURI().equals(Repository.LOCAL);
+        boolean isSystem = repository.getURI().equals(Repository.SYSTEM);
+        if (isLocal && (m_resolutionFlags & NO_LOCAL_RESOURCES) != 0) {
+            return false;
+        }
+        if (isSystem && (m_resolutionFlags & NO_SYSTEM_BUNDLE) != 0) {
+            return false;
+        }
+        return true;
     }
 
     public synchronized boolean resolve()
@@ -176,7 +184,7 @@ public class ResolverImpl implements Resolver
     {
         // Find resources
         Resource[] locals = getLocalResources();
-        Resource[] remotes = getRemoteResources();
+        CapabilityIndex[] indexes = getCapabilityIndexes();
 
         // time of the resolution process start
         m_resolveTimeStamp = 0;
@@ -207,7 +215,7 @@ public class ResolverImpl implements Resolver
             for (Requirement req : m_addedRequirementSet) {
                 fake.addRequire(req);
             }
-            if (!resolve(fake, locals, remotes, false))
+            if (!resolve(fake, indexes, false))
             {
                 result = false;
             }
@@ -215,7 +223,7 @@ public class ResolverImpl implements Resolver
 
         // Loop through each resource in added list and resolve.
         for (Resource aM_addedSet : m_addedSet) {
-            if (!resolve(aM_addedSet, locals, remotes, false)) {
+            if (!resolve(aM_addedSet, indexes, false)) {
                 // If any resource does not resolve, then the
                 // entire result will be false.
                 result = false;
@@ -239,7 +247,7 @@ public class ResolverImpl implements Resolver
         return result;
     }
 
-    private boolean resolve(Resource resource, Resource[] locals, Resource[] remotes, boolean optional)
+    private boolean resolve(Resource resource, CapabilityIndex[] indexes, boolean optional)
     {
         boolean result = true;
 
@@ -279,8 +287,8 @@ public class ResolverImpl implements Resolver
                     candidate = searchResources(req, m_resolveSet);
                 }
                 if (candidate == null) {
-                    List<ResourceCapability> candidateCapabilities = searchResources(req, locals);
-                    candidateCapabilities.addAll(searchResources(req, remotes));
+                    List<ResourceCapability> candidateCapabilities = searchResources(req, indexes, true);
+                    candidateCapabilities.addAll(searchResources(req, indexes, false));
 
                     // Determine the best candidate available that
                     // can resolve.
@@ -288,7 +296,7 @@ public class ResolverImpl implements Resolver
                         ResourceCapability bestCapability = getBestCandidate(candidateCapabilities);
 
                         // Try to resolve the best resource.
-                        if (resolve(bestCapability.getResource(), locals, remotes, optional || req.isOptional())) {
+                        if (resolve(bestCapability.getResource(), indexes, optional || req.isOptional())) {
                             candidate = bestCapability.getResource();
                         } else {
                             candidateCapabilities.remove(bestCapability);
@@ -305,7 +313,7 @@ public class ResolverImpl implements Resolver
                 } else if (candidate != null) {
 
                     // Try to resolve the candidate.
-                    if (resolve(candidate, locals, remotes, optional || req.isOptional())) {
+                    if (resolve(candidate, indexes, optional || req.isOptional())) {
                         // The resolved succeeded; record the candidate
                         // as either optional or required.
                         if (optional || req.isOptional()) {
@@ -364,25 +372,23 @@ public class ResolverImpl implements Resolver
     /**
      * Searches for resources that do meet the given requirement
      * @param req the the requirement that must be satisfied by resources
-     * @param resources list of resources to look at
+     * @param indexes capability indexes of the repositories to look at
+     * @param local whether to look at local or remote resources
      * @return all resources meeting the given requirement
      */
-    private List<ResourceCapability> searchResources(Requirement req, Resource[] resources)
+    private List<ResourceCapability> searchResources(Requirement req, CapabilityIndex[] indexes, boolean local)
     {
         List<ResourceCapability> matchingCapabilities = new ArrayList<ResourceCapability>();
 
-        if (resources != null) {
-            for (Resource resource : resources) {
+        for (CapabilityIndex index : indexes) {
+            checkInterrupt();
+            for (ResourceCapability candidate : index.getCandidates(req)) {
                 checkInterrupt();
+                Resource resource = candidate.getResource();
                 // We don't need to look at resources we've already looked at.
-                if (!m_failedSet.contains(resource)) {
-                    Capability[] caps = resource.getCapabilities();
-                    if (caps != null) {
-                        for (Capability cap : caps) {
-                            if (req.isSatisfied(cap))
-                                matchingCapabilities.add(new ResourceCapabilityImpl(resource, cap));
-                        }
-                    }
+                if (resource.isLocal() == local && !m_failedSet.contains(resource)) {
+                    if (req.isSatisfied(candidate.getCapability()))
+                        matchingCapabilities.add(candidate);
                 }
             }
         }
@@ -30,6 +30,7 @@ public class SystemRepositoryImpl implements Repository
     private final Logger m_logger;
     private final long lastModified;
     private final LocalResourceImpl systemBundleResource;
+    private volatile CapabilityIndex index;
 
     public SystemRepositoryImpl(BundleContext context, Logger logger)
     {
@@ -58,6 +59,15 @@ public class SystemRepositoryImpl implements Repository
         return new Resource[] { systemBundleResource };
     }
 
+    CapabilityIndex getCapabilityIndex()
+    {
+        if (index == null)
+        {
+            index = new CapabilityIndex(getResources());
+        }
+        return index;
+    }
+
     public String getName()
     {
         return "System Repository";
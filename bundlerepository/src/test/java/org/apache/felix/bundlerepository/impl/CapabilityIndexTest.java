@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundlerepository.impl;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.Requirement;
+import org.apache.felix.bundlerepository.Resource;
+
+public class CapabilityIndexTest extends TestCase
+{
+    public void testEqualityTerm()
+    {
+        assertTerm("package", "org.foo", "(package=org.foo)");
+        assertTerm("package", "org.foo", "(&(package=org.foo)(version>=1.0.0))");
+        assertTerm("symbolicname", "org.foo", "(&(version>=1.0.0)(SymbolicName=org.foo))");
+        assertTerm("package", "org.foo", "(&(|(a=b)(c=d))(!(version>=2.0.0))(package=org.foo))");
+        assertNull(CapabilityIndex.getEqualityTerm("(package=org.*)"));
+        assertNull(CapabilityIndex.getEqualityTerm("(package~=org.foo)"));
+        assertNull(CapabilityIndex.getEqualityTerm("(version>=1.0.0)"));
+        assertNull(CapabilityIndex.getEqualityTerm("(|(package=org.foo)(package=org.bar))"));
+        assertNull(CapabilityIndex.getEqualityTerm("(!(package=org.foo))"));
+        assertNull(CapabilityIndex.getEqualityTerm("(&(package=org\\(foo\\))(version>=1.0.0))"));
+        assertNull(CapabilityIndex.getEqualityTerm("(package=org foo)"));
+    }
+
+    public void testMatchesLinearScan() throws Exception
+    {
+        assertMatchesLinearScan(getClass().getResource("/repo_for_resolvertest.xml"), new String[][] {
+            { "package", "(package=org.apache.felix.test.osgi)" },
+            { "package", "(&(package=org.springframework.beans)(version>=2.5.0))" },
+            { "package", "(&(package=org.apache.commons.pool)(!(version>=1.0.0)))" },
+            { "package", "(&(package=org.springframework.*)(version>=1.0.0))" },
+            { "package", "(package=does.not.exist)" },
+            { "bundle", "(symbolicname=org.apache.felix.test.osgi.repo-test)" },
+            { "bundle", "(&(symbolicname=org.apache.felix.test.osgi.repo-test)(version>=1.0.0))" },
+            { "service", "(package=org.apache.felix.test.osgi)" },
+        });
+        assertMatchesLinearScan(getClass().getResource("/repo_for_mandatory.xml"), new String[][] {
+            { "package", "(package=org.apache.felix.test.osgi)" },
+            { "package", "(&(package=org.apache.felix.test.osgi)(mandatory:<*foo))" },
+            { "bundle", "(symbolicname=res2)" },
+        });
+    }
+
+    public void testNonStringValues() throws Exception
+    {
+        ResourceImpl resource = new ResourceImpl();
+        CapabilityImpl cap = new CapabilityImpl("package");
+        cap.addProperty("package", "version", "1.0.0");
+        resource.addCapability(cap);
+        CapabilityImpl cap2 = new CapabilityImpl("package");
+        cap2.addProperty("package", null, "1.0.0");
+        resource.addCapability(cap2);
+
+        CapabilityIndex index = new CapabilityIndex(new Resource[] { resource });
+        RequirementImpl req = new RequirementImpl("package");
+        req.setFilter("(package=1.0.0)");
+        List<ResourceCapability> caps = index.getMatchingCapabilities(req);
+        assertEquals(2, caps.size());
+        assertSame(cap, caps.get(0).getCapability());
+        assertSame(cap2, caps.get(1).getCapability());
+    }
+
+    private void assertTerm(String attribute, String value, String filter)
+    {
+        String[] term = CapabilityIndex.getEqualityTerm(filter);
+        assertNotNull(filter, term);
+        assertEquals(attribute, term[0]);
+        assertEquals(value, term[1]);
+    }
+
+    private void assertMatchesLinearScan(URL url, String[][] requirements) throws Exception
+    {
+        Resource[] resources = new DataModelHelperImpl().repository(url).getResources();
+        CapabilityIndex index = new CapabilityIndex(resources);
+        for (int i = 0; i < requirements.length; i++)
+        {
+            RequirementImpl req = new RequirementImpl(requirements[i][0]);
+            req.setFilter(requirements[i][1]);
+
+            List<Capability> expected = new ArrayList<Capability>();
+            for (int resIdx = 0; resIdx < resources.length; resIdx++)
+            {
+                Capability[] caps = resources[resIdx].getCapabilities();
+                for (int capIdx = 0; caps != null && capIdx < caps.length; capIdx++)
+                {
+                    if (req.isSatisfied(caps[capIdx]))
+                    {
+                        expected.add(caps[capIdx]);
+                    }
+                }
+            }
+
+            List<Capability> actual = new ArrayList<Capability>();
+            for (ResourceCapability rc : index.getMatchingCapabilities(req))
+            {
+                actual.add(rc.getCapability());
+            }
+            assertEquals(req.toString(), expected, actual);
+        }
+    }
+}
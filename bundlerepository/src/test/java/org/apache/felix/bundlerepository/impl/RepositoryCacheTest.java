@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundlerepository.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.Requirement;
+import org.apache.felix.bundlerepository.Resource;
+import org.apache.felix.utils.log.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class RepositoryCacheTest extends TestCase
+{
+    private File m_dir;
+    private RepositoryCache m_cache;
+    private DataModelHelperImpl m_helper = new DataModelHelperImpl();
+
+    protected void setUp() throws Exception
+    {
+        m_dir = File.createTempFile("obrcache", "");
+        m_dir.delete();
+        m_dir.mkdirs();
+        m_cache = new RepositoryCache(new File(m_dir, "cache"), new Logger(null)
+        {
+            public void log(int level, String msg, Throwable throwable)
+            {
+                // Corrupted caches are logged and ignored.
+            }
+        });
+    }
+
+    protected void tearDown() throws Exception
+    {
+        delete(m_dir);
+    }
+
+    public void testFile() throws Exception
+    {
+        File file = new File(m_dir, "repository.xml");
+        copy(getClass().getResource("/repo_for_resolvertest.xml"), file);
+        URL url = file.toURI().toURL();
+
+        RepositoryImpl parsed = m_cache.load(url, m_helper);
+        assertTrue(m_cache.getCacheFile(url).isFile());
+
+        // Same modification time and length: the content is not read again.
+        long lastModified = file.lastModified();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(0);
+        raf.write("garbage".getBytes());
+        raf.close();
+        file.setLastModified(lastModified);
+
+        RepositoryImpl cached = m_cache.load(url, m_helper);
+        assertNotSame(parsed, cached);
+        assertSameContent(parsed, cached);
+
+        // Changed modification time: the content is parsed again.
+        file.setLastModified(lastModified - 10000);
+        try
+        {
+            m_cache.load(url, m_helper);
+            fail("The modified repository should have been parsed");
+        }
+        catch (Exception e)
+        {
+            // Expected
+        }
+    }
+
+    public void testCorruptedCache() throws Exception
+    {
+        URL url = getClass().getResource("/repo_for_resolvertest.xml");
+        RepositoryImpl parsed = m_cache.load(url, m_helper);
+        File cacheFile = m_cache.getCacheFile(url);
+        RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw");
+        raf.setLength(raf.length() / 2);
+        raf.close();
+
+        assertSameContent(parsed, m_cache.load(url, m_helper));
+        assertTrue(cacheFile.isFile());
+    }
+
+    public void testSpecRepositoryIsNotCached() throws Exception
+    {
+        URL url = getClass().getResource("/spec_repository.xml");
+        m_cache.load(url, m_helper);
+        assertFalse(m_cache.getCacheFile(url).exists());
+    }
+
+    public void testHttp() throws Exception
+    {
+        final byte[] content = read(getClass().getResource("/repo_for_resolvertest.xml"));
+        final AtomicInteger fullResponses = new AtomicInteger();
+        final AtomicInteger notModified = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+                {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                }
+                else
+                {
+                    fullResponses.incrementAndGet();
+                    exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                    exchange.sendResponseHeaders(200, content.length);
+                    exchange.getResponseBody().write(content);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        try
+        {
+            URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/repository.xml");
+            RepositoryImpl parsed = m_cache.load(url, m_helper);
+            RepositoryImpl cached = m_cache.load(url, m_helper);
+            assertEquals(1, fullResponses.get());
+            assertEquals(1, notModified.get());
+            assertSameContent(parsed, cached);
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+
+    private void assertSameContent(RepositoryImpl expected, RepositoryImpl actual)
+    {
+        assertEquals(expected.getURI(), actual.getURI());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getLastModified(), actual.getLastModified());
+        assertEquals(m_helper.writeRepository(expected), m_helper.writeRepository(actual));
+
+        Resource[] expectedResources = expected.getResources();
+        Resource[] actualResources = actual.getResources();
+        assertEquals(expectedResources.length, actualResources.length);
+        for (int i = 0; i < expectedResources.length; i++)
+        {
+            assertEquals(expectedResources[i].getProperties(), actualResources[i].getProperties());
+            Capability[] expectedCaps = expectedResources[i].getCapabilities();
+            Capability[] actualCaps = actualResources[i].getCapabilities();
+            assertEquals(expectedCaps.length, actualCaps.length);
+            for (int j = 0; j < expectedCaps.length; j++)
+            {
+                assertEquals(expectedCaps[j].getName(), actualCaps[j].getName());
+                assertEquals(expectedCaps[j].getPropertiesAsMap(), actualCaps[j].getPropertiesAsMap());
+            }
+            Requirement[] expectedReqs = expectedResources[i].getRequirements();
+            Requirement[] actualReqs = actualResources[i].getRequirements();
+            assertEquals(expectedReqs.length, actualReqs.length);
+            for (int j = 0; j < expectedReqs.length; j++)
+            {
+                assertEquals(expectedReqs[j], actualReqs[j]);
+            }
+        }
+    }
+
+    private static byte[] read(URL url) throws IOException
+    {
+        InputStream in = url.openStream();
+        try
+        {
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (int n = in.read(buf); n > 0; n = in.read(buf))
+            {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void copy(URL url, File file) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(read(url));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        for (int i = 0; children != null && i < children.length; i++)
+        {
+            delete(children[i]);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,736 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osgi.util.converter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cached conversion plans. The converter needs the reflective structure of
+ * the classes it converts from and to: DTO fields, bean and interface
+ * accessors, enum constants, constructors and factory methods. Discovering
+ * this structure is much more expensive than the conversion itself, so it is
+ * computed once per class, on first use, and kept in a {@link ClassValue}
+ * which does not prevent the class from being unloaded.
+ * <p>
+ * Accessors are invoked through method handles. Where the converter has no
+ * access to a member, reflection is used instead so that the same exceptions
+ * are reported as without the cache.
+ *
+ * @author $Id$
+ */
+class ConversionPlans {
+	private static final ClassValue<ClassPlan>	PLANS			= new ClassValue<ClassPlan>() {
+		@Override
+		protected ClassPlan computeValue(Class< ? > type) {
+			return new ClassPlan(type);
+		}
+	};
+
+	// Marks a cached lookup that found nothing
+	private static final Object					NONE			= new Object();
+
+	// Keys of maps converted to DTOs are cached per DTO class, up to this
+	// number, so that arbitrary map keys can not fill up memory
+	private static final int					MAX_KEYS		= 1024;
+
+	private static final MethodHandles.Lookup	LOOKUP			= MethodHandles
+			.lookup();
+	private static final MethodType				INVOKER_TYPE	= MethodType
+			.methodType(Object.class, Object.class, Object.class);
+
+	private ConversionPlans() {} // prevent instantiation
+
+	static ClassPlan forClass(Class< ? > cls) {
+		return PLANS.get(cls);
+	}
+
+	/**
+	 * The cached structure of one class. All information is computed lazily;
+	 * concurrent callers may compute the same information more than once,
+	 * which is harmless as the results are equivalent.
+	 */
+	static final class ClassPlan {
+		private final Class< ? >						cls;
+		private volatile Boolean						dto;
+		private volatile String							prefix;
+		private volatile Set<Class< ? >>				interfaces;
+		private volatile List<String>					fieldNames;
+		private volatile Accessor[]						dtoAccessors;
+		private volatile Map<String,Accessor>			dtoKeys;
+		private volatile Accessor[]						beanAccessors;
+		private volatile Map<String,Accessor>			beanKeys;
+		private volatile Accessor[]						setters;
+		private volatile Boolean						writeableJavaBean;
+		private volatile Object[]						enumConstants;
+		private volatile Map<String,Object>				enumsByName;
+		private volatile Object							valueOfMethod;
+		private volatile Object							stringConstructor;
+		private volatile Object							intConstructor;
+		private volatile Object							publicConstructor;
+		private volatile Object							constructor;
+		private volatile Object							constructableType;
+		private volatile Object							propertiesMethod;
+		private volatile Object							proxyConstructor;
+		private volatile Object							singleElementAnnotationKey;
+		private final ConcurrentMap<String,Object>		fields					= new ConcurrentHashMap<>();
+		private final ConcurrentMap<String,Object>		fieldsIgnoreCase		= new ConcurrentHashMap<>();
+		private final ConcurrentMap<Method,Object>		proxyPropertyNames		= new ConcurrentHashMap<>();
+		private final ConcurrentMap<Class< ? >,Accessor[]>	interfaceAccessors	= new ConcurrentHashMap<>();
+		private final ConcurrentMap<Class< ? >,Map<String,Set<Method>>>	interfaceKeys	= new ConcurrentHashMap<>();
+
+		ClassPlan(Class< ? > cls) {
+			this.cls = cls;
+		}
+
+		boolean isDTO() {
+			Boolean res = dto;
+			if (res == null)
+				dto = res = Boolean.valueOf(DTOUtil.computeIsDTOType(cls));
+			return res.booleanValue();
+		}
+
+		String getPrefix() {
+			String res = prefix;
+			if (res == null)
+				prefix = res = Util.computePrefix(cls);
+			return res;
+		}
+
+		Set<Class< ? >> getInterfaces() {
+			Set<Class< ? >> res = interfaces;
+			if (res == null)
+				interfaces = res = Collections.unmodifiableSet(
+						ConvertingImpl.computeInterfaces(cls));
+			return res;
+		}
+
+		/**
+		 * The names of the public instance fields declared by the class.
+		 */
+		List<String> getFieldNames() {
+			List<String> res = fieldNames;
+			if (res == null) {
+				res = new ArrayList<>();
+				for (Field field : cls.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers))
+						continue;
+					if (!Modifier.isPublic(modifiers))
+						continue;
+
+					String name = field.getName();
+					if (!res.contains(name))
+						res.add(name);
+				}
+				fieldNames = res = Collections.unmodifiableList(res);
+			}
+			return res;
+		}
+
+		/**
+		 * Getters for the DTO fields of the class, declared fields first. The
+		 * same key may be present more than once.
+		 */
+		Accessor[] getDTOAccessors() {
+			Accessor[] res = dtoAccessors;
+			if (res == null) {
+				List<Accessor> list = new ArrayList<>();
+				addDTOAccessors(cls.getDeclaredFields(), list);
+				addDTOAccessors(cls.getFields(), list);
+				dtoAccessors = res = list.toArray(new Accessor[list.size()]);
+			}
+			return res;
+		}
+
+		private static void addDTOAccessors(Field[] fields,
+				List<Accessor> list) {
+			for (Field f : fields) {
+				String key = Util.getDTOKey(f);
+				if (key != null)
+					list.add(Accessor.getter(key, f));
+			}
+		}
+
+		/**
+		 * Getters for the DTO fields of the class by key, as returned by
+		 * {@link Util#getDTOKeys(Class)}.
+		 */
+		Map<String,Accessor> getDTOKeys() {
+			Map<String,Accessor> res = dtoKeys;
+			if (res == null) {
+				res = new LinkedHashMap<>();
+				for (Map.Entry<String,Field> entry : Util.getDTOKeys(cls)
+						.entrySet()) {
+					res.put(entry.getKey(),
+							Accessor.getter(entry.getKey(), entry.getValue()));
+				}
+				dtoKeys = res = Collections.unmodifiableMap(res);
+			}
+			return res;
+		}
+
+		/**
+		 * Resolves the DTO field a map key is converted to.
+		 *
+		 * @return a setter for the field, or {@code null} if there is no such
+		 *         field.
+		 */
+		Accessor getDTOField(String key, boolean ignoreCase) {
+			ConcurrentMap<String,Object> cache = ignoreCase ? fieldsIgnoreCase
+					: fields;
+			Object res = cache.get(key);
+			if (res == null) {
+				res = findDTOField(key, ignoreCase);
+				if (res == null)
+					res = NONE;
+				if (cache.size() < MAX_KEYS)
+					cache.put(key, res);
+			}
+			return res == NONE ? null : (Accessor) res;
+		}
+
+		private Accessor findDTOField(String key, boolean ignoreCase) {
+			String fieldName = Util.mangleName(getPrefix(), key,
+					getFieldNames());
+			if (fieldName == null)
+				return null;
+
+			Field f = null;
+			try {
+				f = cls.getDeclaredField(fieldName);
+			} catch (NoSuchFieldException e) {
+				try {
+					f = cls.getField(fieldName);
+				} catch (NoSuchFieldException e1) {
+					// There is no field with this name
+					if (ignoreCase) {
+						// If enabled, try again but now ignore case
+						for (Field fs : cls.getDeclaredFields()) {
+							if (fs.getName().equalsIgnoreCase(fieldName)) {
+								f = fs;
+								break;
+							}
+						}
+
+						if (f == null) {
+							for (Field fs : cls.getFields()) {
+								if (fs.getName().equalsIgnoreCase(fieldName)) {
+									f = fs;
+									break;
+								}
+							}
+						}
+					}
+				}
+			}
+			return f != null ? Accessor.setter(f.getName(), f) : null;
+		}
+
+		/**
+		 * Getters for the bean properties of the class, in declaration order.
+		 * The same key may be present more than once.
+		 */
+		Accessor[] getBeanAccessors() {
+			Accessor[] res = beanAccessors;
+			if (res == null) {
+				List<Accessor> list = new ArrayList<>();
+				for (Method md : cls.getDeclaredMethods()) {
+					String key = Util.getBeanKey(md);
+					if (key != null)
+						list.add(Accessor.getter(key, md));
+				}
+				beanAccessors = res = list.toArray(new Accessor[list.size()]);
+			}
+			return res;
+		}
+
+		/**
+		 * Getters for the bean properties of the class by key, as returned
+		 * by {@link Util#getBeanKeys(Class)}.
+		 */
+		Map<String,Accessor> getBeanKeys() {
+			Map<String,Accessor> res = beanKeys;
+			if (res == null) {
+				res = new LinkedHashMap<>();
+				for (Map.Entry<String,Method> entry : Util.getBeanKeys(cls)
+						.entrySet()) {
+					res.put(entry.getKey(),
+							Accessor.getter(entry.getKey(), entry.getValue()));
+				}
+				beanKeys = res = Collections.unmodifiableMap(res);
+			}
+			return res;
+		}
+
+		/**
+		 * The JavaBean setters of the class and its superclasses. The key of
+		 * each setter is the map key of its property.
+		 */
+		Accessor[] getSetters() {
+			Accessor[] res = setters;
+			if (res == null) {
+				List<Accessor> list = new ArrayList<>();
+				for (Method setter : ConvertingImpl.getSetters(cls)) {
+					String setterName = setter.getName();
+					StringBuilder propName = new StringBuilder();
+					propName.append(Character.toLowerCase(setterName.charAt(3)));
+					if (setterName.length() > 4)
+						propName.append(setterName.substring(4));
+
+					list.add(Accessor.setter(Util.unMangleName(getPrefix(),
+							propName.toString()), setter));
+				}
+				setters = res = list.toArray(new Accessor[list.size()]);
+			}
+			return res;
+		}
+
+		boolean isWriteableJavaBean() {
+			Boolean res = writeableJavaBean;
+			if (res == null) {
+				boolean hasNoArgCtor = false;
+				for (Constructor< ? > ctor : cls.getConstructors()) {
+					if (ctor.getParameterTypes().length == 0)
+						hasNoArgCtor = true;
+				}
+				// A JavaBean must have a public no-arg constructor
+				writeableJavaBean = res = Boolean
+						.valueOf(hasNoArgCtor && getSetters().length > 0);
+			}
+			return res.booleanValue();
+		}
+
+		/**
+		 * @return the constants of the enum, or {@code null} if the class is
+		 *         not an enum. The array must not be modified.
+		 */
+		Object[] getEnumConstants() {
+			Object[] res = enumConstants;
+			if (res == null) {
+				Class< ? > enumCls = cls;
+				while (enumCls != null && !enumCls.isEnum())
+					enumCls = enumCls.getSuperclass();
+				if (enumCls == null)
+					return null;
+
+				res = enumCls.getEnumConstants();
+				Map<String,Object> byName = new HashMap<>();
+				for (Object constant : res) {
+					byName.put(((Enum< ? >) constant).name(), constant);
+				}
+				enumsByName = byName;
+				enumConstants = res;
+			}
+			return res;
+		}
+
+		/**
+		 * Looks up an enum constant by name, falling back to a case
+		 * insensitive comparison with the string representation of the
+		 * constants.
+		 *
+		 * @return the constant, or {@code null} if there is none.
+		 */
+		Object getEnumConstant(String name) {
+			Object[] constants = getEnumConstants();
+			if (constants == null)
+				return null;
+
+			Object res = enumsByName.get(name);
+			if (res != null)
+				return res;
+
+			// Case insensitive fallback
+			for (Object v : constants) {
+				if (v.toString().equalsIgnoreCase(name))
+					return v;
+			}
+			return null;
+		}
+
+		/**
+		 * @return the static {@code valueOf(String)} method declared by the
+		 *         class, or {@code null}.
+		 */
+		Accessor getValueOfMethod() {
+			Object res = valueOfMethod;
+			if (res == null) {
+				res = NONE;
+				try {
+					Method m = cls.getDeclaredMethod("valueOf", String.class);
+					if (Modifier.isStatic(m.getModifiers()))
+						res = Accessor.factory(m);
+				} catch (NoSuchMethodException e) {
+					// Not there
+				}
+				valueOfMethod = res;
+			}
+			return res == NONE ? null : (Accessor) res;
+		}
+
+		/**
+		 * @return the public constructor taking a {@link String}, or
+		 *         {@code null}.
+		 */
+		Accessor getStringConstructor() {
+			Object res = stringConstructor;
+			if (res == null)
+				stringConstructor = res = getPublicConstructor(String.class);
+			return res == NONE ? null : (Accessor) res;
+		}
+
+		/**
+		 * Creates a map or collection of the class, passing the initial size
+		 * to its constructor if it has one taking an {@code int}.
+		 *
+		 * @return the new instance, or {@code null} if it can not be created.
+		 */
+		Object newMapOrCollection(int initialSize) {
+			Object ctor = intConstructor;
+			if (ctor == null)
+				intConstructor = ctor = getPublicConstructor(int.class);
+			if (ctor != NONE) {
+				try {
+					return ((Accessor) ctor).invoke(null,
+							Integer.valueOf(initialSize));
+				} catch (Exception e) {
+					// try the no-arg constructor
+				}
+			}
+
+			ctor = publicConstructor;
+			if (ctor == null)
+				publicConstructor = ctor = getPublicConstructor();
+			if (ctor != NONE) {
+				try {
+					return ((Accessor) ctor).invoke(null, null);
+				} catch (Exception e) {
+					// ignore
+				}
+			}
+			return null;
+		}
+
+		private Object getPublicConstructor(Class< ? >... parameterTypes) {
+			try {
+				return Accessor.factory(cls.getConstructor(parameterTypes));
+			} catch (NoSuchMethodException | SecurityException e) {
+				return NONE;
+			}
+		}
+
+		/**
+		 * Creates an instance with the no-arg constructor, like
+		 * {@link Class#newInstance()}.
+		 */
+		Object newInstance() throws Exception {
+			Object ctor = constructor;
+			if (ctor == null) {
+				try {
+					ctor = Accessor.factory(cls.getDeclaredConstructor());
+				} catch (NoSuchMethodException | SecurityException e) {
+					ctor = NONE;
+				}
+				constructor = ctor;
+			}
+			if (ctor == NONE)
+				return cls.newInstance(); // reports the error
+			return ((Accessor) ctor).invoke(null, null);
+		}
+
+		Class< ? > getConstructableType() {
+			Object res = constructableType;
+			if (res == null) {
+				res = ConvertingImpl.computeConstructableType(cls);
+				if (res == null)
+					res = NONE;
+				constructableType = res;
+			}
+			return res == NONE ? null : (Class< ? >) res;
+		}
+
+		/**
+		 * @return the {@code getProperties()} method declared by the class, or
+		 *         {@code null}.
+		 */
+		Accessor getPropertiesMethod() {
+			Object res = propertiesMethod;
+			if (res == null) {
+				try {
+					res = Accessor.getter(null,
+							cls.getDeclaredMethod("getProperties"));
+				} catch (NoSuchMethodException | SecurityException e) {
+					res = NONE;
+				}
+				propertiesMethod = res;
+			}
+			return res == NONE ? null : (Accessor) res;
+		}
+
+		/**
+		 * Getters for the properties of the given interface, implemented by
+		 * this class. The key of each getter is its property name.
+		 */
+		Accessor[] getInterfaceAccessors(Class< ? > intf, Object obj) {
+			Accessor[] res = interfaceAccessors.get(intf);
+			if (res == null) {
+				String seank = Util.getSingleElementAnnotationKey(intf, obj);
+				List<Accessor> list = new ArrayList<>();
+				for (Method md : intf.getMethods()) {
+					String propName = Util.getInterfacePropertyName(md, seank,
+							obj);
+					if (propName == null)
+						continue;
+					if (Modifier.isStatic(md.getModifiers())
+							|| md.getParameterTypes().length > 0)
+						continue;
+					list.add(Accessor.getter(propName, md));
+				}
+				res = list.toArray(new Accessor[list.size()]);
+				interfaceAccessors.putIfAbsent(intf, res);
+			}
+			return res;
+		}
+
+		/**
+		 * The result of {@link Util#getInterfaceKeys(Class, Object)} for an
+		 * instance of this class. The map must not be modified.
+		 */
+		Map<String,Set<Method>> getInterfaceKeys(Class< ? > intf,
+				Object obj) {
+			Map<String,Set<Method>> res = interfaceKeys.get(intf);
+			if (res == null) {
+				res = Util.getInterfaceKeys(intf, obj);
+				interfaceKeys.putIfAbsent(intf, res);
+			}
+			return res;
+		}
+
+		/**
+		 * Creates a proxy implementing this interface.
+		 */
+		Object newProxy(InvocationHandler handler) {
+			Object ctor = proxyConstructor;
+			if (ctor == null) {
+				try {
+					ctor = Accessor.factory(Proxy
+							.getProxyClass(cls.getClassLoader(), cls)
+							.getConstructor(InvocationHandler.class));
+				} catch (Exception e) {
+					ctor = NONE;
+				}
+				proxyConstructor = ctor;
+			}
+			if (ctor != NONE && ((Accessor) ctor).handle != null) {
+				try {
+					return ((Accessor) ctor).invoke(null, handler);
+				} catch (Exception e) {
+					// Let the Proxy class report the problem
+				}
+			}
+			return Proxy.newProxyInstance(cls.getClassLoader(), new Class[] {
+					cls
+			}, handler);
+		}
+
+		/**
+		 * The property name of a method of a proxy created with
+		 * {@link #newProxy(InvocationHandler)}.
+		 */
+		String getProxyPropertyName(Method method, Object proxy) {
+			Object res = proxyPropertyNames.get(method);
+			if (res == null) {
+				Object seank = singleElementAnnotationKey;
+				if (seank == null) {
+					seank = Util.getSingleElementAnnotationKey(cls, proxy);
+					if (seank == null)
+						seank = NONE;
+					singleElementAnnotationKey = seank;
+				}
+				res = Util.getInterfacePropertyName(method,
+						seank == NONE ? null : (String) seank, proxy);
+				if (res == null)
+					res = NONE;
+				proxyPropertyNames.putIfAbsent(method, res);
+			}
+			return res == NONE ? null : (String) res;
+		}
+	}
+
+	/**
+	 * Invokes a field, method or constructor. Getters take the target
+	 * object, setters the target object and the value, and factories the
+	 * single argument of the static method or constructor, if any.
+	 */
+	static final class Accessor {
+		private static final int	GETTER	= 0;
+		private static final int	SETTER	= 1;
+		private static final int	FACTORY	= 2;
+
+		final String				key;
+		final Class< ? >			type;
+		private final Member		member;
+		private final int			kind;
+		// (Object, Object)Object, or null if the member is not accessible
+		final MethodHandle			handle;
+
+		private Accessor(String key, Class< ? > type, Member member, int kind,
+				MethodHandle handle) {
+			this.key = key;
+			this.type = type;
+			this.member = member;
+			this.kind = kind;
+			this.handle = handle;
+		}
+
+		static Accessor getter(String key, Field f) {
+			MethodHandle mh;
+			try {
+				mh = MethodHandles.dropArguments(
+						LOOKUP.unreflectGetter(f).asType(
+								MethodType.methodType(Object.class,
+										Object.class)),
+						1, Object.class);
+			} catch (IllegalAccessException e) {
+				mh = null;
+			}
+			return new Accessor(key, f.getType(), f, GETTER, mh);
+		}
+
+		static Accessor getter(String key, Method md) {
+			MethodHandle mh;
+			try {
+				mh = MethodHandles.dropArguments(
+						LOOKUP.unreflect(md).asType(MethodType
+								.methodType(Object.class, Object.class)),
+						1, Object.class);
+			} catch (IllegalAccessException e) {
+				mh = null;
+			}
+			return new Accessor(key, md.getReturnType(), md, GETTER, mh);
+		}
+
+		static Accessor setter(String key, Field f) {
+			MethodHandle mh;
+			try {
+				mh = LOOKUP.unreflectSetter(f).asType(INVOKER_TYPE);
+			} catch (IllegalAccessException e) {
+				mh = null;
+			}
+			return new Accessor(key, f.getType(), f, SETTER, mh);
+		}
+
+		static Accessor setter(String key, Method md) {
+			MethodHandle mh;
+			try {
+				mh = LOOKUP.unreflect(md).asType(INVOKER_TYPE);
+			} catch (IllegalAccessException e) {
+				mh = null;
+			}
+			return new Accessor(key, md.getParameterTypes()[0], md, SETTER,
+					mh);
+		}
+
+		static Accessor factory(Method md) {
+			MethodHandle mh;
+			try {
+				mh = adaptFactory(LOOKUP.unreflect(md));
+			} catch (IllegalAccessException e) {
+				mh = null;
+			}
+			return new Accessor(null, md.getReturnType(), md, FACTORY, mh);
+		}
+
+		static Accessor factory(Constructor< ? > ctor) {
+			MethodHandle mh;
+			try {
+				mh = adaptFactory(LOOKUP.unreflectConstructor(ctor));
+			} catch (IllegalAccessException e) {
+				mh = null;
+			}
+			return new Accessor(null, ctor.getDeclaringClass(), ctor, FACTORY,
+					mh);
+		}
+
+		private static MethodHandle adaptFactory(MethodHandle mh) {
+			// Ignore the target, and the argument of no-arg factories
+			mh = MethodHandles.dropArguments(mh, 0, Object.class);
+			if (mh.type().parameterCount() == 1)
+				mh = MethodHandles.dropArguments(mh, 1, Object.class);
+			return mh.asType(INVOKER_TYPE);
+		}
+
+		/**
+		 * Invokes the member. Exceptions thrown by the member are wrapped in
+		 * an {@link InvocationTargetException}, like reflection does.
+		 */
+		Object invoke(Object target, Object arg) throws Exception {
+			if (handle != null) {
+				try {
+					return handle.invokeExact(target, arg);
+				} catch (Throwable t) {
+					throw new InvocationTargetException(t);
+				}
+			}
+
+			// No access with method handles, use reflection which reports
+			// the problem
+			switch (kind) {
+				case GETTER :
+					if (member instanceof Field)
+						return ((Field) member).get(target);
+					return ((Method) member).invoke(target);
+				case SETTER :
+					if (member instanceof Field)
+						((Field) member).set(target, arg);
+					else
+						((Method) member).invoke(target, arg);
+					return null;
+				default :
+					Class< ? >[] params = member instanceof Method
+							? ((Method) member).getParameterTypes()
+							: ((Constructor< ? >) member).getParameterTypes();
+					Object[] args = params.length == 0 ? new Object[0]
+							: new Object[] {
+									arg
+							};
+					if (member instanceof Method)
+						return ((Method) member).invoke(null, args);
+					return ((Constructor< ? >) member).newInstance(args);
+			}
+		}
+	}
+}
@@ -18,13 +18,9 @@ package org.osgi.util.converter;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -349,58 +345,25 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 		Map m = mapView(object, sourceCls, converter);
 
 		try {
-			String prefix = Util.getPrefix(targetAsCls);
+			ConversionPlans.ClassPlan plan = ConversionPlans
+					.forClass(targetAsCls);
 
-			T dto = (T) targetClass.newInstance();
+			T dto = (T) ConversionPlans.forClass(targetClass).newInstance();
 
-			List<String> names = getNames(targetAsClass);
 			for (Map.Entry entry : (Set<Map.Entry>) m.entrySet()) {
 				Object key = entry.getKey();
 				if (key == null)
 					continue;
 
-				String fieldName = Util.mangleName(prefix, key.toString(), names);
-				if (fieldName == null)
-					continue;
-
-				Field f = null;
-				try {
-					f = targetAsCls.getDeclaredField(fieldName);
-				} catch (NoSuchFieldException e) {
-					try {
-						f = targetAsCls.getField(fieldName);
-					} catch (NoSuchFieldException | NullPointerException e1) {
-						// There is no field with this name
-						if (keysIgnoreCase) {
-							// If enabled, try again but now ignore case
-							for (Field fs : targetAsCls.getDeclaredFields()) {
-								if (fs.getName().equalsIgnoreCase(fieldName)) {
-									f = fs;
-									break;
-								}
-							}
-
-							if (f == null) {
-								for (Field fs : targetAsCls.getFields()) {
-									if (fs.getName()
-											.equalsIgnoreCase(fieldName)) {
-										f = fs;
-										break;
-									}
-								}
-							}
-						}
-					}
-				}
-
+				ConversionPlans.Accessor f = plan.getDTOField(key.toString(),
+						keysIgnoreCase);
 				if (f != null) {
 					Object val = entry.getValue();
-					if (sourceAsDTO && DTOUtil.isDTOType(f.getType()))
-						val = converter.convert(val).sourceAsDTO().to(
-								f.getType());
+					if (sourceAsDTO && DTOUtil.isDTOType(f.type))
+						val = converter.convert(val).sourceAsDTO().to(f.type);
 					else
-						val = converter.convert(val).to(f.getType());
-					f.set(dto, val);
+						val = converter.convert(val).to(f.type);
+					f.invoke(dto, val);
 				}
 			}
 
@@ -411,23 +374,6 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 		}
 	}
 
-	private List<String> getNames(Class< ? > cls) {
-		List<String> names = new ArrayList<>();
-		for (Field field : cls.getDeclaredFields()) {
-			int modifiers = field.getModifiers();
-			if (Modifier.isStatic(modifiers))
-				continue;
-			if (!Modifier.isPublic(modifiers))
-				continue;
-
-			String name = field.getName();
-			if (!names.contains(name))
-				names.add(name);
-
-		}
-		return names;
-	}
-
 	@SuppressWarnings({
 			"rawtypes", "unchecked"
 	})
@@ -589,24 +535,15 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 
 	private Object convertToJavaBean(Class< ? > sourceCls,
 			Class< ? > targetCls) {
-		String prefix = Util.getPrefix(targetCls);
-
 		@SuppressWarnings("rawtypes")
 		Map m = mapView(object, sourceCls, converter);
 		try {
-			Object res = targetClass.newInstance();
-			for (Method setter : getSetters(targetCls)) {
-				String setterName = setter.getName();
-				StringBuilder propName = new StringBuilder(Character
-						.valueOf(Character.toLowerCase(setterName.charAt(3)))
-						.toString());
-				if (setterName.length() > 4)
-					propName.append(setterName.substring(4));
-
-				Class< ? > setterType = setter.getParameterTypes()[0];
-				String key = propName.toString();
-				Object val = m.get(Util.unMangleName(prefix, key));
-				setter.invoke(res, converter.convert(val).to(setterType));
+			Object res = ConversionPlans.forClass(targetClass).newInstance();
+			for (ConversionPlans.Accessor setter : ConversionPlans
+					.forClass(targetCls)
+					.getSetters()) {
+				Object val = m.get(setter.key);
+				setter.invoke(res, converter.convert(val).to(setter.type));
 			}
 			return res;
 		} catch (Exception e) {
@@ -628,9 +565,9 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 			ic.sourceAsBean();
 		final Map m = ic.to(Map.class);
 
-		return Proxy.newProxyInstance(targetCls.getClassLoader(), new Class[] {
-				targetCls
-		}, new InvocationHandler() {
+		final ConversionPlans.ClassPlan plan = ConversionPlans
+				.forClass(targetCls);
+		return plan.newProxy(new InvocationHandler() {
 			@SuppressWarnings("boxing")
 			@Override
 			public Object invoke(Object proxy, Method method, Object[] args)
@@ -656,9 +593,7 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 					}
 				}
 
-				String propName = Util.getInterfacePropertyName(method,
-						Util.getSingleElementAnnotationKey(targetCls, proxy),
-						proxy);
+				String propName = plan.getProxyPropertyName(method, proxy);
 				if (propName == null)
 					return null;
 
@@ -760,32 +695,21 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 				}
 			}
 		} else if (Enum.class.isAssignableFrom(targetAsClass)) {
+			ConversionPlans.ClassPlan plan = ConversionPlans
+					.forClass(targetAsClass);
+			Object[] values = plan.getEnumConstants();
+			if (values == null)
+				throw new RuntimeException("Not an enum: " + targetAsClass);
 			if (object instanceof Number) {
 				try {
-					Method m = targetAsClass.getMethod("values");
-					Object[] values = (Object[]) m.invoke(null);
 					return values[((Number) object).intValue()];
 				} catch (Exception e) {
 					throw new RuntimeException(e);
 				}
 			} else {
-				try {
-					Method m = targetAsClass.getMethod("valueOf", String.class);
-					return m.invoke(null, object.toString());
-				} catch (Exception e) {
-					try {
-						// Case insensitive fallback
-						Method m = targetAsClass.getMethod("values");
-						for (Object v : (Object[]) m.invoke(null)) {
-							if (v.toString()
-									.equalsIgnoreCase(object.toString())) {
-								return v;
-							}
-						}
-					} catch (Exception e1) {
-						throw new RuntimeException(e1);
-					}
-				}
+				Object res = plan.getEnumConstant(object.toString());
+				if (res != null)
+					return res;
 			}
 		}
 		return null;
@@ -793,16 +717,20 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 
 	@SuppressWarnings("unchecked")
 	private <T> T tryStandardMethods() {
-		try {
-			Method m = targetAsClass.getDeclaredMethod("valueOf", String.class);
-			if (m != null) {
+		ConversionPlans.ClassPlan plan = ConversionPlans
+				.forClass(targetAsClass);
+		ConversionPlans.Accessor m = plan.getValueOfMethod();
+		if (m != null) {
+			try {
 				return (T) m.invoke(null, object.toString());
+			} catch (Exception e) {
+				// Try the constructor
 			}
-		} catch (Exception e) {
+		}
+		ConversionPlans.Accessor ctr = plan.getStringConstructor();
+		if (ctr != null) {
 			try {
-				Constructor< ? > ctr = targetAsClass
-						.getConstructor(String.class);
-				return (T) ctr.newInstance(object.toString());
+				return (T) ctr.invoke(null, object.toString());
 			} catch (Exception e2) {
 				// Ignore
 			}
@@ -847,43 +775,66 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 		return arr;
 	}
 
-	@SuppressWarnings("rawtypes")
+	@SuppressWarnings({
+			"rawtypes", "unchecked"
+	})
 	private static Map createMapFromBeanAccessors(Object obj,
 			Class< ? > sourceCls) {
-		Set<String> invokedMethods = new HashSet<>();
-
 		Map result = new HashMap();
-		for (Method md : sourceCls.getDeclaredMethods()) {
-			handleBeanMethod(obj, md, invokedMethods, result);
+		for (ConversionPlans.Accessor accessor : ConversionPlans
+				.forClass(sourceCls)
+				.getBeanAccessors()) {
+			if (result.containsKey(accessor.key))
+				continue; // method with this name already invoked
+
+			try {
+				result.put(accessor.key, accessor.invoke(obj, null));
+			} catch (Exception e) {
+				// Ignore
+			}
 		}
 
 		return result;
 	}
 
-	@SuppressWarnings("rawtypes")
-	private Map createMapFromDTO(Object obj, InternalConverter ic) {
-		Set<String> handledFields = new HashSet<>();
-
+	@SuppressWarnings({
+			"rawtypes", "unchecked"
+	})
+	private static Map createMapFromDTO(Object obj) {
 		Map result = new HashMap();
-		// Do we need 'declaredfields'? We only need to look at the public
-		// ones...
-		for (Field f : obj.getClass().getDeclaredFields()) {
-			handleDTOField(obj, f, handledFields, result, ic);
-		}
-		for (Field f : obj.getClass().getFields()) {
-			handleDTOField(obj, f, handledFields, result, ic);
+		for (ConversionPlans.Accessor accessor : ConversionPlans
+				.forClass(obj.getClass())
+				.getDTOAccessors()) {
+			if (result.containsKey(accessor.key))
+				continue; // Field with this name was already handled
+
+			try {
+				result.put(accessor.key, accessor.invoke(obj, null));
+			} catch (Exception e) {
+				// Ignore
+			}
 		}
 		return result;
 	}
 
-	@SuppressWarnings("rawtypes")
+	@SuppressWarnings({
+			"rawtypes", "unchecked"
+	})
 	private static Map createMapFromInterface(Object obj, Class< ? > srcCls) {
 		Map result = new HashMap();
 
+		ConversionPlans.ClassPlan plan = ConversionPlans
+				.forClass(obj.getClass());
 		for (Class i : getInterfaces(srcCls)) {
-			for (Method md : i.getMethods()) {
-				handleInterfaceMethod(obj, i, md, new HashSet<String>(),
-						result);
+			for (ConversionPlans.Accessor accessor : plan
+					.getInterfaceAccessors(i, obj)) {
+				try {
+					Object r = accessor.invoke(obj, null);
+					if (r != null)
+						result.put(accessor.key, r);
+				} catch (Exception e) {
+					// Ignore
+				}
 			}
 			if (result.size() > 0)
 				return result;
@@ -891,24 +842,16 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 		throw new ConversionException("Cannot be converted to map: " + obj);
 	}
 
-	@SuppressWarnings("boxing")
 	private static Object createMapOrCollection(Class< ? > cls,
 			int initialSize) {
-		try {
-			Constructor< ? > ctor = cls.getConstructor(int.class);
-			return ctor.newInstance(initialSize);
-		} catch (Exception e1) {
-			try {
-				Constructor< ? > ctor2 = cls.getConstructor();
-				return ctor2.newInstance();
-			} catch (Exception e2) {
-				// ignore
-			}
-		}
-		return null;
+		return ConversionPlans.forClass(cls).newMapOrCollection(initialSize);
 	}
 
 	private static Class< ? > getConstructableType(Class< ? > targetCls) {
+		return ConversionPlans.forClass(targetCls).getConstructableType();
+	}
+
+	static Class< ? > computeConstructableType(Class< ? > targetCls) {
 		if (targetCls.isArray())
 			return targetCls;
 
@@ -937,8 +880,16 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 		return null;
 	}
 
-	// Returns an ordered set
+	// Returns an ordered set, which must not be modified
 	private static Set<Class< ? >> getInterfaces(Class< ? > cls) {
+		if (cls == null)
+			return Collections.emptySet();
+
+		return ConversionPlans.forClass(cls).getInterfaces();
+	}
+
+	// Returns an ordered set
+	static Set<Class< ? >> computeInterfaces(Class< ? > cls) {
 		if (NO_MAP_VIEW_TYPES.contains(cls))
 			return Collections.emptySet();
 
@@ -971,73 +922,6 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 		return classes;
 	}
 
-	@SuppressWarnings({
-			"rawtypes", "unchecked"
-	})
-	private void handleDTOField(Object obj, Field field,
-			Set<String> handledFields, Map result, InternalConverter ic) {
-		String fn = Util.getDTOKey(field);
-		if (fn == null)
-			return;
-
-		if (handledFields.contains(fn))
-			return; // Field with this name was already handled
-
-		try {
-			Object fVal = field.get(obj);
-			result.put(fn, fVal);
-			handledFields.add(fn);
-		} catch (Exception e) {
-			// Ignore
-		}
-	}
-
-	@SuppressWarnings({
-			"rawtypes", "unchecked"
-	})
-	private static void handleBeanMethod(Object obj, Method md,
-			Set<String> invokedMethods, Map res) {
-		String bp = Util.getBeanKey(md);
-		if (bp == null)
-			return;
-
-		if (invokedMethods.contains(bp))
-			return; // method with this name already invoked
-
-		try {
-			res.put(bp, md.invoke(obj));
-			invokedMethods.add(bp);
-		} catch (Exception e) {
-			// Ignore
-		}
-	}
-
-	@SuppressWarnings({
-			"rawtypes", "unchecked"
-	})
-	private static void handleInterfaceMethod(Object obj, Class< ? > intf,
-			Method md, Set<String> invokedMethods, Map res) {
-		String mn = md.getName();
-		if (invokedMethods.contains(mn))
-			return; // method with this name already invoked
-
-		String propName = Util.getInterfacePropertyName(md,
-				Util.getSingleElementAnnotationKey(intf, obj), obj);
-		if (propName == null)
-			return;
-
-		try {
-			Object r = Util.getInterfaceProperty(obj, md);
-			if (r == null)
-				return;
-
-			res.put(propName, r);
-			invokedMethods.add(mn);
-		} catch (Exception e) {
-			// Ignore
-		}
-	}
-
 	private Map< ? , ? > mapView(Object obj, Class< ? > sourceCls,
 			InternalConverter ic) {
 		if (Map.class.isAssignableFrom(sourceCls)
@@ -1047,7 +931,7 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 			return MapDelegate.forDictionary((Dictionary< ? , ? >) object,
 					this);
 		else if (DTOUtil.isDTOType(sourceCls) || sourceAsDTO)
-			return createMapFromDTO(obj, ic);
+			return createMapFromDTO(obj);
 		else if (sourceAsJavaBean) {
 			Map< ? , ? > m = createMapFromBeanAccessors(obj, sourceCls);
 			if (m.size() > 0)
@@ -1058,24 +942,15 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 		return createMapFromInterface(obj, sourceClass);
 	}
 
-	private boolean hasGetProperties(Class< ? > cls) {
-		try {
-			Method m = cls.getDeclaredMethod("getProperties");
-			if (m == null)
-				m = cls.getMethod("getProperties");
-			return m != null;
-		} catch (Exception e) {
-			return false;
-		}
+	private static boolean hasGetProperties(Class< ? > cls) {
+		return ConversionPlans.forClass(cls).getPropertiesMethod() != null;
 	}
 
 	private Map< ? , ? > getPropertiesDelegate(Object obj, Class< ? > cls) {
 		try {
-			Method m = cls.getDeclaredMethod("getProperties");
-			if (m == null)
-				m = cls.getMethod("getProperties");
-
-			return converter.convert(m.invoke(obj)).to(Map.class);
+			return converter.convert(ConversionPlans.forClass(cls)
+					.getPropertiesMethod()
+					.invoke(obj, null)).to(Map.class);
 		} catch (Exception e) {
 			return Collections.emptyMap();
 		}
@@ -1090,18 +965,10 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 	}
 
 	private static boolean isWriteableJavaBean(Class< ? > cls) {
-		boolean hasNoArgCtor = false;
-		for (Constructor< ? > ctor : cls.getConstructors()) {
-			if (ctor.getParameterTypes().length == 0)
-				hasNoArgCtor = true;
-		}
-		if (!hasNoArgCtor)
-			return false; // A JavaBean must have a public no-arg constructor
-
-		return getSetters(cls).size() > 0;
+		return ConversionPlans.forClass(cls).isWriteableJavaBean();
 	}
 
-	private static Set<Method> getSetters(Class< ? > cls) {
+	static Set<Method> getSetters(Class< ? > cls) {
 		Set<Method> setters = new HashSet<>();
 		while (!Object.class.equals(cls)) {
 			Set<Method> methods = new HashSet<>();
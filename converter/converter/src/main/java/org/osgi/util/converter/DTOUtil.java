@@ -29,6 +29,10 @@ class DTOUtil {
 	}
 
 	static boolean isDTOType(Class< ? > cls) {
+		return ConversionPlans.forClass(cls).isDTO();
+	}
+
+	static boolean computeIsDTOType(Class< ? > cls) {
 		try {
 			cls.getDeclaredConstructor();
 		} catch (NoSuchMethodException | SecurityException e) {
@@ -16,7 +16,6 @@
  */
 package org.osgi.util.converter;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -142,7 +141,6 @@ abstract class DynamicMapLikeFacade<K, V> implements Map<K,V> {
 }
 
 class DynamicBeanFacade extends DynamicMapLikeFacade<String,Object> {
-	private Map<String,Method>	keys	= null;
 	private final Object		backingObject;
 	private final Class< ? >	beanClass;
 
@@ -155,9 +153,8 @@ class DynamicBeanFacade extends DynamicMapLikeFacade<String,Object> {
 
 	@Override
 	public Object get(Object key) {
-		Method m = getKeys().get(key);
 		try {
-			return m.invoke(backingObject);
+			return getKeys().get(key).invoke(backingObject, null);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -168,11 +165,8 @@ class DynamicBeanFacade extends DynamicMapLikeFacade<String,Object> {
 		return getKeys().keySet();
 	}
 
-	private Map<String,Method> getKeys() {
-		if (keys == null)
-			keys = Util.getBeanKeys(beanClass);
-
-		return keys;
+	private Map<String,ConversionPlans.Accessor> getKeys() {
+		return ConversionPlans.forClass(beanClass).getBeanKeys();
 	}
 }
 
@@ -217,7 +211,6 @@ class DynamicMapFacade<K, V> extends DynamicMapLikeFacade<K,V> {
 }
 
 class DynamicDTOFacade extends DynamicMapLikeFacade<String,Object> {
-	private Map<String,Field>	keys	= null;
 	private final Object		backingObject;
 	private final Class< ? >	dtoClass;
 
@@ -230,12 +223,12 @@ class DynamicDTOFacade extends DynamicMapLikeFacade<String,Object> {
 
 	@Override
 	public Object get(Object key) {
-		Field f = getKeys().get(key);
+		ConversionPlans.Accessor f = getKeys().get(key);
 		if (f == null)
 			return null;
 
 		try {
-			return f.get(backingObject);
+			return f.invoke(backingObject, null);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -246,11 +239,8 @@ class DynamicDTOFacade extends DynamicMapLikeFacade<String,Object> {
 		return getKeys().keySet();
 	}
 
-	private Map<String,Field> getKeys() {
-		if (keys == null)
-			keys = Util.getDTOKeys(dtoClass);
-
-		return keys;
+	private Map<String,ConversionPlans.Accessor> getKeys() {
+		return ConversionPlans.forClass(dtoClass).getDTOKeys();
 	}
 }
 
@@ -294,7 +284,8 @@ class DynamicInterfaceFacade extends DynamicMapLikeFacade<String,Object> {
 
 	private Map<String,Set<Method>> getKeys() {
 		if (keys == null)
-			keys = Util.getInterfaceKeys(theInterface, backingObject);
+			keys = ConversionPlans.forClass(backingObject.getClass())
+					.getInterfaceKeys(theInterface, backingObject);
 
 		return keys;
 	}
@@ -18,7 +18,6 @@ package org.osgi.util.converter;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
@@ -298,19 +297,11 @@ class Util {
 		return false;
 	}
 
-	static Object getInterfaceProperty(Object obj, Method md)
-			throws IllegalAccessException, IllegalArgumentException,
-			InvocationTargetException {
-		if (Modifier.isStatic(md.getModifiers()))
-			return null;
-
-		if (md.getParameterTypes().length > 0)
-			return null;
-
-		return md.invoke(obj);
+	static String getPrefix(Class< ? > cls) {
+		return ConversionPlans.forClass(cls).getPrefix();
 	}
 
-	static String getPrefix(Class< ? > cls) {
+	static String computePrefix(Class< ? > cls) {
 		try {
 			Field prefixField = cls.getDeclaredField("PREFIX_");
 			if (prefixField.getType().equals(String.class)) {
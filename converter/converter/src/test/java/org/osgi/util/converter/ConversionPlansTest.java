@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osgi.util.converter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ConversionPlansTest {
+    @Test
+    public void testPlansAreCached() {
+        assertSame(ConversionPlans.forClass(MyDTO.class),
+                ConversionPlans.forClass(MyDTO.class));
+        assertSame(ConversionPlans.forClass(MyDTO.class).getDTOAccessors(),
+                ConversionPlans.forClass(MyDTO.class).getDTOAccessors());
+    }
+
+    @Test
+    public void testDTOFieldResolution() {
+        ConversionPlans.ClassPlan plan = ConversionPlans.forClass(MyDTO.class);
+        ConversionPlans.Accessor f = plan.getDTOField("ping", false);
+        assertEquals("ping", f.key);
+        assertEquals(String.class, f.type);
+        assertSame(f, plan.getDTOField("ping", false));
+
+        assertNull(plan.getDTOField("PING", false));
+        assertEquals("ping", plan.getDTOField("PING", true).key);
+        assertNull(plan.getDTOField("nothing", true));
+    }
+
+    @Test
+    public void testEnumConstants() {
+        ConversionPlans.ClassPlan plan = ConversionPlans.forClass(MyDTO.Count.class);
+        assertSame(MyDTO.Count.TWO, plan.getEnumConstant("TWO"));
+        assertSame(MyDTO.Count.TWO, plan.getEnumConstant("two"));
+        assertNull(plan.getEnumConstant("four"));
+        assertNull(ConversionPlans.forClass(String.class).getEnumConstants());
+    }
+
+    @Test
+    public void testRepeatedConversions() {
+        Converter c = Converters.standardConverter();
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("ping", "p" + i);
+            m.put("pong", "" + i);
+            m.put("count", "THREE");
+            MyDTO dto = c.convert(m).to(MyDTO.class);
+            assertEquals("p" + i, dto.ping);
+            assertEquals(i, dto.pong);
+            assertEquals(MyDTO.Count.THREE, dto.count);
+
+            Map<String, Object> m2 = c.convert(dto).sourceAsDTO().to(
+                    new TypeReference<Map<String, Object>>() {});
+            assertEquals("p" + i, m2.get("ping"));
+
+            Config cfg = c.convert(m).to(Config.class);
+            assertEquals("p" + i, cfg.ping());
+            assertEquals(i, cfg.pong());
+        }
+    }
+
+    public interface Config {
+        String ping();
+        long pong();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.persister;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A store of many entities of the same type, kept in a single file.
+ * Entities are persisted by a {@link Persister}, so that they are stored
+ * as JSON data as well.
+ * <p>
+ * The file is a log: changes are appended to it, and an entity already
+ * stored is updated by appending the fields that changed only. The file is
+ * compacted from time to time in the background. Fields of the entity may
+ * be indexed, to find entities by value or by range of values without
+ * reading the others.
+ *
+ * @param <E> The type of the Entity to store
+ */
+public interface EntityStore<E> extends Closeable {
+    /**
+     * Stores the entity under the given key. When an entity is already
+     * stored under that key, only the fields that changed are written.
+     */
+    void put(String key, E entity) throws IOException;
+
+    /**
+     * @return the entity stored under the given key, or {@code null}.
+     */
+    E get(String key) throws IOException;
+
+    /**
+     * @return {@code true} if an entity was stored under the given key.
+     */
+    boolean remove(String key) throws IOException;
+
+    List<String> keys();
+
+    int size();
+
+    /**
+     * @param field the name of an indexed field
+     * @return the entities whose field has the given value.
+     */
+    List<E> find(String field, Object value) throws IOException;
+
+    /**
+     * @param field the name of an indexed field
+     * @param from the lowest value included, or {@code null} for no lower bound
+     * @param to the highest value included, or {@code null} for no upper bound
+     * @return the entities whose field is within the range, ordered by the
+     * value of the field.
+     */
+    List<E> findRange(String field, Object from, Object to) throws IOException;
+
+    /**
+     * Rewrites the file with the current state of the entities only.
+     * Entities can still be read and written while the file is compacted.
+     */
+    void compact() throws IOException;
+}
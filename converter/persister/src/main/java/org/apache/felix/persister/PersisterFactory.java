@@ -16,7 +16,17 @@
  */
 package org.apache.felix.persister;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 public interface PersisterFactory {
 
     <D>Persister<D> newPersister(Class<D> forType);
+
+    /**
+     * Opens the store kept in the given file, creating the file if needed.
+     *
+     * @param indexedFields the names of the fields of the type to index
+     */
+    <D>EntityStore<D> newStore(Class<D> forType, Path file, String... indexedFields) throws IOException;
 }
@@ -0,0 +1,668 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.persister.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+
+import org.apache.felix.persister.EntityStore;
+import org.apache.felix.persister.Persister;
+import org.osgi.dto.DTO;
+import org.osgi.util.converter.Converter;
+import org.osgi.util.converter.Converters;
+
+/**
+ * An {@link EntityStore} appending its changes to a log file.
+ * <p>
+ * The file starts with a magic number, followed by records made of their
+ * length, a CRC-32 of the rest of the record, their type, the key of the
+ * entity and, for PUT and PATCH records, the entity written by the
+ * {@link Persister}. A PATCH record also lists the
+ * fields it changes, its entity only has these fields set. The records of
+ * each entity, a PUT followed by its PATCHes, are kept in memory by their
+ * offset in the file, as well as the indexes.
+ * <p>
+ * Changes are not forced to disk until the store is closed. When the file
+ * is opened again, it is truncated at the first record that was not
+ * completely written or does not match its checksum.
+ */
+public class LogEntityStore<E> implements EntityStore<E> {
+    private static final int MAGIC = 0x46454C32;
+    private static final byte PUT = 1;
+    private static final byte PATCH = 2;
+    private static final byte REMOVE = 3;
+
+    // Beyond this many patches the whole entity is written again
+    private static final int MAX_PATCHES = 16;
+
+    // Compaction starts when at least this many records are in the file,
+    // and more than half of them are not the PUT of a current entity
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private final Class<E> dataType;
+    private final Persister<E> persister;
+    private final Path file;
+    private final Map<String, Field> fields = new LinkedHashMap<>();
+    private final Map<String, Index> indexes = new LinkedHashMap<>();
+    private final ExecutorService compactor;
+    private final Object compactionLock = new Object();
+
+    private FileChannel channel;
+    private long size;
+    private int records;
+    private Map<String, long[]> entries = new HashMap<>();
+    private boolean compactionScheduled;
+
+    public LogEntityStore(Class<E> aDataType, Persister<E> aPersister, Path aFile, String... indexedFields)
+            throws IOException {
+        dataType = aDataType;
+        persister = aPersister;
+        file = aFile;
+
+        for (Field f : dataType.getFields()) {
+            if (!Modifier.isStatic(f.getModifiers()))
+                fields.put(f.getName(), f);
+        }
+        for (String name : indexedFields) {
+            Field f = fields.get(name);
+            if (f == null)
+                throw new IllegalArgumentException("No field " + name + " in " + dataType);
+            if (!f.getType().isPrimitive() && !Comparable.class.isAssignableFrom(f.getType()))
+                throw new IllegalArgumentException("Field " + name + " of " + dataType + " cannot be indexed");
+            indexes.put(name, new Index(f));
+        }
+
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Compaction of " + file);
+            t.setDaemon(true);
+            return t;
+        });
+        open();
+    }
+
+    @Override
+    public synchronized void put(String key, E entity) throws IOException {
+        ensureOpen();
+        long[] chain = entries.get(key);
+        if (chain == null || chain.length > MAX_PATCHES) {
+            entries.put(key, new long[] {append(encode(PUT, key, null, entity))});
+        } else {
+            E current = read(channel, chain);
+            E patch = newEntity();
+            List<String> changed = new ArrayList<>();
+            for (Field f : fields.values()) {
+                Object value = getField(f, entity);
+                if (!same(getField(f, current), value)) {
+                    changed.add(f.getName());
+                    setField(f, patch, value);
+                }
+            }
+            if (changed.isEmpty())
+                return;
+
+            long offset = append(encode(PATCH, key, changed, patch));
+            long[] newChain = Arrays.copyOf(chain, chain.length + 1);
+            newChain[chain.length] = offset;
+            entries.put(key, newChain);
+        }
+
+        for (Index index : indexes.values()) {
+            index.update(key, getField(index.field, entity));
+        }
+        scheduleCompaction();
+    }
+
+    @Override
+    public synchronized E get(String key) throws IOException {
+        ensureOpen();
+        long[] chain = entries.get(key);
+        return chain != null ? read(channel, chain) : null;
+    }
+
+    @Override
+    public synchronized boolean remove(String key) throws IOException {
+        ensureOpen();
+        if (!entries.containsKey(key))
+            return false;
+
+        append(encode(REMOVE, key, null, null));
+        entries.remove(key);
+        for (Index index : indexes.values()) {
+            index.remove(key);
+        }
+        scheduleCompaction();
+        return true;
+    }
+
+    @Override
+    public synchronized List<String> keys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized List<E> find(String field, Object value) throws IOException {
+        Index index = index(field);
+        Set<String> keys = index.keys.get(index.toKey(value));
+        return keys != null ? getAll(keys) : new ArrayList<>();
+    }
+
+    @Override
+    public synchronized List<E> findRange(String field, Object from, Object to) throws IOException {
+        Index index = index(field);
+        NavigableMap<Object, Set<String>> range = index.keys;
+        if (from != null)
+            range = range.tailMap(index.toKey(from), true);
+        if (to != null)
+            range = range.headMap(index.toKey(to), true);
+
+        List<String> keys = new ArrayList<>();
+        for (Set<String> k : range.values()) {
+            keys.addAll(k);
+        }
+        return getAll(keys);
+    }
+
+    @Override
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            FileChannel source;
+            long end;
+            Map<String, long[]> snapshot;
+            synchronized (this) {
+                ensureOpen();
+                source = channel;
+                end = size;
+                snapshot = new HashMap<>(entries);
+            }
+
+            // The records are never changed once written, so the current
+            // entities are copied while the store is still in use
+            Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+            FileChannel target = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long targetSize = writeHeader(target);
+                Map<String, long[]> compacted = new HashMap<>(snapshot.size() * 4 / 3 + 1);
+                for (Map.Entry<String, long[]> e : snapshot.entrySet()) {
+                    byte[] record = encode(PUT, e.getKey(), null, read(source, e.getValue()));
+                    compacted.put(e.getKey(), new long[] {targetSize});
+                    targetSize += write(target, record, targetSize);
+                }
+                int compactedRecords = compacted.size();
+
+                synchronized (this) {
+                    if (channel != source)
+                        throw new ClosedChannelException();
+
+                    // Then the records appended in the meantime
+                    for (long offset = end; offset < size;) {
+                        byte[] record = readRecord(source, offset);
+                        apply(compacted, Record.parse(record), targetSize);
+                        targetSize += write(target, record, targetSize);
+                        offset += record.length;
+                        compactedRecords++;
+                    }
+
+                    target.force(true);
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    // Nothing may fail between the move and the switch to
+                    // the new file
+                    channel = target;
+                    size = targetSize;
+                    records = compactedRecords;
+                    entries = compacted;
+                }
+            } catch (IOException | RuntimeException e) {
+                target.close();
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+
+            try {
+                source.close();
+            } catch (IOException e) {
+                // The old file is no longer used
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        synchronized (compactionLock) {
+            synchronized (this) {
+                if (channel != null) {
+                    try {
+                        channel.force(true);
+                    } finally {
+                        channel.close();
+                        channel = null;
+                    }
+                }
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long end = channel.size();
+        if (end == 0) {
+            size = writeHeader(channel);
+            return;
+        }
+
+        long offset = 4;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 65536))) {
+            if (end < 4 || in.readInt() != MAGIC) {
+                channel.close();
+                throw new IOException("Not an entity store: " + file);
+            }
+
+            while (offset + 4 <= end) {
+                int length = in.readInt();
+                if (length <= 4 || offset + 4 + length > end)
+                    break;
+
+                byte[] record = new byte[4 + length];
+                ByteBuffer.wrap(record).putInt(length);
+                in.readFully(record, 4, length);
+                if (ByteBuffer.wrap(record).getInt(4) != checksum(record))
+                    break;
+
+                Record r = Record.parse(record);
+                apply(entries, r, offset);
+                if (!indexes.isEmpty())
+                    applyToIndexes(r);
+                offset += record.length;
+                records++;
+            }
+        } catch (EOFException e) {
+            // The end of the last record is missing
+        }
+
+        if (offset < end) {
+            // The last record was not completely written, or the file was
+            // damaged
+            channel.truncate(offset);
+        }
+        size = offset;
+    }
+
+    private void applyToIndexes(Record r) throws IOException {
+        switch (r.type) {
+        case PUT:
+            E entity = entity(r);
+            for (Index index : indexes.values()) {
+                index.update(r.key, getField(index.field, entity));
+            }
+            break;
+        case PATCH:
+            E patch = null;
+            for (String name : r.fields) {
+                Index index = indexes.get(name);
+                if (index != null) {
+                    if (patch == null)
+                        patch = entity(r);
+                    index.update(r.key, getField(index.field, patch));
+                }
+            }
+            break;
+        case REMOVE:
+            for (Index index : indexes.values()) {
+                index.remove(r.key);
+            }
+            break;
+        }
+    }
+
+    private static void apply(Map<String, long[]> entries, Record r, long offset) {
+        switch (r.type) {
+        case PUT:
+            entries.put(r.key, new long[] {offset});
+            break;
+        case PATCH:
+            long[] chain = entries.get(r.key);
+            if (chain != null) {
+                long[] newChain = Arrays.copyOf(chain, chain.length + 1);
+                newChain[chain.length] = offset;
+                entries.put(r.key, newChain);
+            }
+            break;
+        case REMOVE:
+            entries.remove(r.key);
+            break;
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled || records < MIN_COMPACTION_RECORDS || records <= 2 * entries.size())
+            return;
+
+        compactionScheduled = true;
+        try {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    // The log is still complete, compaction is tried again
+                    // after the next changes
+                } finally {
+                    synchronized (LogEntityStore.this) {
+                        compactionScheduled = false;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The store is being closed
+            compactionScheduled = false;
+        }
+    }
+
+    private E read(FileChannel ch, long[] chain) throws IOException {
+        E entity = entity(Record.parse(readRecord(ch, chain[0])));
+        for (int i = 1; i < chain.length; i++) {
+            Record r = Record.parse(readRecord(ch, chain[i]));
+            E patch = entity(r);
+            for (String name : r.fields) {
+                Field f = fields.get(name);
+                if (f != null)
+                    setField(f, entity, getField(f, patch));
+            }
+        }
+        return entity;
+    }
+
+    private List<E> getAll(Collection<String> keys) throws IOException {
+        ensureOpen();
+        List<E> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            result.add(read(channel, entries.get(key)));
+        }
+        return result;
+    }
+
+    private E entity(Record r) {
+        return persister.deserialize(r.payload());
+    }
+
+    private byte[] encode(byte type, String key, List<String> changed, E entity) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeByte(type);
+        out.writeUTF(key);
+        if (type == PATCH) {
+            out.writeShort(changed.size());
+            for (String name : changed) {
+                out.writeUTF(name);
+            }
+        }
+        out.flush();
+        if (entity != null)
+            persister.serialize(bytes, entity);
+
+        byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap(record).putInt(record.length - 4).putInt(checksum(record));
+        return record;
+    }
+
+    // The checksum covers the record after its length and the checksum
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 8, record.length - 8);
+        return (int) crc.getValue();
+    }
+
+    private long append(byte[] record) throws IOException {
+        long offset = size;
+        size += write(channel, record, offset);
+        records++;
+        return offset;
+    }
+
+    private static int write(FileChannel ch, byte[] record, long offset) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        while (buf.hasRemaining()) {
+            offset += ch.write(buf, offset);
+        }
+        return record.length;
+    }
+
+    private static long writeHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        header.putInt(0, MAGIC);
+        return write(ch, header.array(), 0);
+    }
+
+    private static byte[] readRecord(FileChannel ch, long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(ch, length, offset);
+        ByteBuffer record = ByteBuffer.allocate(4 + length.getInt(0));
+        record.putInt(length.getInt(0));
+        readFully(ch, record, offset + 4);
+        return record.array();
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long offset) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, offset);
+            if (n < 0)
+                throw new EOFException();
+            offset += n;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null)
+            throw new ClosedChannelException();
+    }
+
+    private Index index(String field) {
+        Index index = indexes.get(field);
+        if (index == null)
+            throw new IllegalArgumentException("No index on field " + field);
+        return index;
+    }
+
+    private E newEntity() {
+        try {
+            return dataType.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot create " + dataType, e);
+        }
+    }
+
+    private static Object getField(Field f, Object obj) {
+        try {
+            return f.get(obj);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void setField(Field f, Object obj, Object value) {
+        try {
+            f.set(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // DTOs do not implement equals()
+    private static boolean same(Object a, Object b) {
+        if (a == b)
+            return true;
+        if (a == null || b == null)
+            return false;
+
+        if (a instanceof DTO && a.getClass() == b.getClass()) {
+            for (Field f : a.getClass().getFields()) {
+                if (!Modifier.isStatic(f.getModifiers()) && !same(getField(f, a), getField(f, b)))
+                    return false;
+            }
+            return true;
+        }
+        if (a.getClass().isArray() && b.getClass().isArray()) {
+            int length = Array.getLength(a);
+            if (length != Array.getLength(b))
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (!same(Array.get(a, i), Array.get(b, i)))
+                    return false;
+            }
+            return true;
+        }
+        if (a instanceof List && b instanceof List) {
+            List<?> la = (List<?>) a;
+            List<?> lb = (List<?>) b;
+            if (la.size() != lb.size())
+                return false;
+            for (int i = 0; i < la.size(); i++) {
+                if (!same(la.get(i), lb.get(i)))
+                    return false;
+            }
+            return true;
+        }
+        if (a instanceof Map && b instanceof Map) {
+            Map<?, ?> ma = (Map<?, ?>) a;
+            Map<?, ?> mb = (Map<?, ?>) b;
+            if (ma.size() != mb.size())
+                return false;
+            for (Map.Entry<?, ?> e : ma.entrySet()) {
+                if (!mb.containsKey(e.getKey()) || !same(e.getValue(), mb.get(e.getKey())))
+                    return false;
+            }
+            return true;
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * A record read from the file.
+     */
+    private static class Record {
+        final byte type;
+        final String key;
+        final String[] fields;
+        final byte[] data;
+        final int payload;
+
+        private Record(byte type, String key, String[] fields, byte[] data, int payload) {
+            this.type = type;
+            this.key = key;
+            this.fields = fields;
+            this.data = data;
+            this.payload = payload;
+        }
+
+        static Record parse(byte[] data) throws IOException {
+            ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+            DataInputStream in = new DataInputStream(bytes);
+            in.readInt();
+            in.readInt();
+            byte type = in.readByte();
+            String key = in.readUTF();
+            String[] fields = new String[0];
+            if (type == PATCH) {
+                fields = new String[in.readUnsignedShort()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = in.readUTF();
+                }
+            }
+            return new Record(type, key, fields, data, data.length - bytes.available());
+        }
+
+        InputStream payload() {
+            return new ByteArrayInputStream(data, payload, data.length - payload);
+        }
+    }
+
+    /**
+     * The keys of the entities by value of a field.
+     */
+    private static class Index {
+        final Field field;
+        final NavigableMap<Object, Set<String>> keys = new TreeMap<>();
+        final Map<String, Object> values = new HashMap<>();
+
+        Index(Field field) {
+            this.field = field;
+        }
+
+        void update(String key, Object value) {
+            remove(key);
+            if (value != null) {
+                values.put(key, value);
+                keys.computeIfAbsent(value, v -> new HashSet<>()).add(key);
+            }
+        }
+
+        void remove(String key) {
+            Object value = values.remove(key);
+            if (value != null) {
+                Set<String> k = keys.get(value);
+                k.remove(key);
+                if (k.isEmpty())
+                    keys.remove(value);
+            }
+        }
+
+        // Values of another type, such as an int for a long field, are
+        // converted to the type of the field to be compared
+        Object toKey(Object value) {
+            Converter converter = Converters.standardConverter();
+            return converter.convert(value).to(field.getGenericType());
+        }
+    }
+}
@@ -16,6 +16,10 @@
  */
 package org.apache.felix.persister.impl;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.felix.persister.EntityStore;
 import org.apache.felix.persister.Persister;
 import org.apache.felix.persister.PersisterFactory;
 import org.apache.felix.serializer.Serializer;
@@ -31,4 +35,8 @@ public class PersisterFactoryService implements PersisterFactory {
     public <D>Persister<D> newPersister(Class<D> forDataType) {
         return new StandardPersister<>(forDataType, serializer);
     }
+
+    public <D>EntityStore<D> newStore(Class<D> forDataType, Path file, String... indexedFields) throws IOException {
+        return new LogEntityStore<>(forDataType, newPersister(forDataType), file, indexedFields);
+    }
 }
@@ -15,9 +15,9 @@
  */
 
 /**
- * Persister Package Version 1.0.
+ * Persister Package Version 1.1.
  * 
  * @author $Id$
  */
-@org.osgi.annotation.versioning.Version("1.0")
+@org.osgi.annotation.versioning.Version("1.1")
 package org.apache.felix.persister;
\ No newline at end of file
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.persister.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.felix.persister.EntityStore;
+import org.apache.felix.persister.PersisterFactory;
+import org.apache.felix.persister.test.objects.Bottom;
+import org.apache.felix.persister.test.objects.SimpleMiddle;
+import org.apache.felix.persister.test.objects.SimpleTop;
+import org.apache.felix.serializer.impl.json.JsonSerializerImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class LogEntityStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PersisterFactory factory;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        factory = new PersisterFactoryService(new JsonSerializerImpl());
+        file = folder.getRoot().toPath().resolve("store.log");
+    }
+
+    @Test
+    public void testPutGetRemove() throws IOException {
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            store.put("a", newTop("a", "1"));
+            store.put("b", newTop("b", "2"));
+            store.put("c", newTop("c", "3"));
+            assertTrue(store.remove("b"));
+            assertFalse(store.remove("b"));
+
+            assertEquals(2, store.size());
+            assertEquals("1", store.get("a").value1);
+            assertEquals("BUM", store.get("a").embedded.embedded.id);
+            assertNull(store.get("b"));
+        }
+
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            List<String> keys = store.keys();
+            Collections.sort(keys);
+            assertEquals(Arrays.asList("a", "c"), keys);
+            assertEquals("3", store.get("c").value1);
+            assertEquals("mid-value", store.get("c").embedded.value);
+        }
+    }
+
+    @Test
+    public void testChangedFieldsOnly() throws IOException {
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            SimpleTop.SimpleTopDTO top = newTop("a", "1");
+            store.put("a", top);
+            long size = Files.size(file);
+            store.put("a", newTop("a", "1"));
+            assertEquals(size, Files.size(file));
+
+            // Smaller than the whole entity
+            top.value2 = "changed";
+            store.put("a", top);
+            assertTrue(Files.size(file) - size < size - 4);
+
+            top.embedded.embedded.cul = "changed too";
+            store.put("a", top);
+
+            SimpleTop.SimpleTopDTO result = store.get("a");
+            assertEquals("1", result.value1);
+            assertEquals("changed", result.value2);
+            assertEquals("changed too", result.embedded.embedded.cul);
+            assertEquals("mid-value", result.embedded.value);
+        }
+
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            assertEquals("changed", store.get("a").value2);
+        }
+    }
+
+    @Test
+    public void testIndexes() throws IOException {
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore("value1", "value2")) {
+            for (int i = 0; i < 10; i++) {
+                store.put("k" + i, newTop("k" + i, "v" + i));
+            }
+            assertEquals("k4", store.find("value1", "v4").get(0).id);
+            assertEquals(10, store.find("value2", "top-value2").size());
+            assertTrue(store.find("value1", "none").isEmpty());
+            assertEquals(Arrays.asList("k3", "k4", "k5"), ids(store.findRange("value1", "v3", "v5")));
+            assertEquals(Arrays.asList("k8", "k9"), ids(store.findRange("value1", "v8", null)));
+
+            store.put("k4", newTop("k4", "w4"));
+            store.remove("k5");
+            assertEquals(Arrays.asList("k3"), ids(store.findRange("value1", "v3", "v5")));
+            assertEquals(Arrays.asList("k4"), ids(store.find("value1", "w4")));
+        }
+
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore("value1")) {
+            assertEquals(Arrays.asList("k0", "k1", "k2", "k3"), ids(store.findRange("value1", null, "v3")));
+            assertEquals(Arrays.asList("k4"), ids(store.find("value1", "w4")));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoSuchField() throws IOException {
+        newStore("nothing");
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore("value1")) {
+            for (int i = 0; i < 500; i++) {
+                store.put("k" + (i % 10), newTop("k" + (i % 10), "v" + i));
+            }
+            store.remove("k0");
+            long size = Files.size(file);
+            store.compact();
+            assertTrue(Files.size(file) < size / 10);
+
+            assertEquals(9, store.size());
+            assertEquals("v499", store.get("k9").value1);
+            store.put("k9", newTop("k9", "last"));
+            assertEquals(Arrays.asList("k9"), ids(store.find("value1", "last")));
+        }
+
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore("value1")) {
+            assertEquals(9, store.size());
+            assertNull(store.get("k0"));
+            assertEquals("v491", store.get("k1").value1);
+            assertEquals(Arrays.asList("k9"), ids(store.find("value1", "last")));
+        }
+    }
+
+    @Test
+    public void testIncompleteRecord() throws IOException {
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            store.put("a", newTop("a", "1"));
+        }
+        long size = Files.size(file);
+        ByteBuffer partial = ByteBuffer.allocate(8);
+        partial.putInt(1000).putInt(42).flip();
+        Files.write(file, partial.array(), StandardOpenOption.APPEND);
+
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            assertEquals(size, Files.size(file));
+            assertEquals("1", store.get("a").value1);
+            store.put("b", newTop("b", "2"));
+        }
+
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            assertEquals(2, store.size());
+            assertEquals("2", store.get("b").value1);
+        }
+    }
+
+    @Test
+    public void testDamagedRecords() throws IOException {
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            store.put("a", newTop("a", "1"));
+        }
+        long size = Files.size(file);
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            store.put("b", newTop("b", "2"));
+        }
+
+        // A byte of the last record is changed, then zeroes and garbage follow
+        byte[] data = Files.readAllBytes(file);
+        data[data.length - 2] ^= 0x20;
+        Files.write(file, data);
+        Files.write(file, new byte[64], StandardOpenOption.APPEND);
+        Files.write(file, "garbage after the records".getBytes("UTF-8"), StandardOpenOption.APPEND);
+
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            assertEquals(size, Files.size(file));
+            assertEquals(1, store.size());
+            assertEquals("1", store.get("a").value1);
+            store.put("c", newTop("c", "3"));
+        }
+
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore()) {
+            assertEquals(2, store.size());
+            assertEquals("3", store.get("c").value1);
+        }
+    }
+
+    @Test
+    public void testConcurrentCompaction() throws Exception {
+        int count = 2000;
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore("value1")) {
+            for (int i = 0; i < count; i++) {
+                store.put("k" + i, newTop("k" + i, "v0"));
+            }
+
+            // The changes made while the entities are copied are appended
+            // to the compacted file afterwards
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int round = 1; round <= 5; round++) {
+                        for (int i = 0; i < count; i++) {
+                            store.put("k" + i, newTop("k" + i, "v" + round));
+                        }
+                    }
+                    for (int i = 0; i < count; i += 2) {
+                        store.remove("k" + i);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            writer.start();
+            while (writer.isAlive()) {
+                store.compact();
+            }
+            writer.join();
+            store.compact();
+
+            assertEquals(count / 2, store.size());
+            assertEquals(count / 2, store.find("value1", "v5").size());
+            assertNull(store.get("k0"));
+            assertEquals("v5", store.get("k1").value1);
+        }
+
+        try (EntityStore<SimpleTop.SimpleTopDTO> store = newStore("value1")) {
+            assertEquals(count / 2, store.size());
+            assertEquals(count / 2, store.find("value1", "v5").size());
+            assertEquals("v5", store.get("k" + (count - 1)).value1);
+        }
+    }
+
+    private EntityStore<SimpleTop.SimpleTopDTO> newStore(String... indexedFields) throws IOException {
+        return factory.newStore(SimpleTop.SimpleTopDTO.class, file, indexedFields);
+    }
+
+    private static List<String> ids(List<SimpleTop.SimpleTopDTO> tops) {
+        List<String> ids = new ArrayList<>();
+        for (SimpleTop.SimpleTopDTO top : tops) {
+            ids.add(top.id);
+        }
+        return ids;
+    }
+
+    static SimpleTop.SimpleTopDTO newTop(String id, String value1) {
+        SimpleTop.SimpleTopDTO top = new SimpleTop.SimpleTopDTO();
+        top.id = id;
+        top.value1 = value1;
+        top.value2 = "top-value2";
+
+        SimpleMiddle.SimpleMiddleDTO mid = new SimpleMiddle.SimpleMiddleDTO();
+        mid.id = "MID";
+        mid.value = "mid-value";
+
+        Bottom.BottomDTO bum = new Bottom.BottomDTO();
+        bum.id = "BUM";
+        bum.cul = "moncul";
+
+        mid.embedded = bum;
+        top.embedded = mid;
+        return top;
+    }
+}
@@ -20,12 +20,14 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.felix.schematizer.Node;
 import org.apache.felix.schematizer.Schema;
-import org.osgi.dto.DTO;
 import org.osgi.util.converter.ConversionException;
 import org.osgi.util.converter.Converter;
 import org.osgi.util.converter.ConverterFunction;
@@ -39,6 +41,7 @@ import static org.apache.felix.schematizer.impl.Util.rawClassOf;
 public class SchemaBasedConverter<T> implements TargetRule {
     private final SchemaImpl schema;
     private final Converter converter;
+    private final ConcurrentMap<String, DTOConversion> conversions = new ConcurrentHashMap<>();
 
     public SchemaBasedConverter(SchemaImpl aSchema) {
         schema = aSchema;
@@ -74,70 +77,123 @@ public class SchemaBasedConverter<T> implements TargetRule {
         if (!contextPath.endsWith("/"))
             contextPath = contextPath + "/";
 
-        return (T)convertToDTO((Class<? extends DTO>)cls, map, s, contextPath);
+        return (T)conversionFor(cls, contextPath).convert(map);
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    private <U extends DTO>U convertToDTO(Class<U> targetCls, Map<?,?> m, Schema schema, String contextPath) {
-        try {
-            U dto;
+    private DTOConversion conversionFor(Class<?> cls, String contextPath) {
+        DTOConversion conversion = conversions.get(contextPath);
+        if (conversion == null) {
+            // Nested DTOs are compiled when first converted, a concurrent
+            // compilation of the same DTO gives an equivalent result
+            conversion = new DTOConversion(cls, contextPath);
+            DTOConversion previous = conversions.putIfAbsent(contextPath, conversion);
+            if (previous != null)
+                conversion = previous;
+        }
+        return conversion;
+    }
 
-            try {
-                dto = targetCls.newInstance();
-            } catch (Throwable t) {
-                throw new ConversionException("Cannot create instance of DTO " + targetCls + ". Bad constructor?", t);
+    /**
+     * The conversion of a map to the DTO at a path of the schema, with the
+     * field and the conversion of each value resolved once.
+     */
+    private class DTOConversion {
+        private final Class<?> targetCls;
+        private final Map<String, FieldConversion> fields = new HashMap<>();
+
+        DTOConversion(Class<?> aTargetCls, String contextPath) {
+            targetCls = aTargetCls;
+            for (Field f : targetCls.getFields()) {
+                if (fields.containsKey(f.getName()))
+                    continue;
+                try {
+                    Field field = targetCls.getField(f.getName());
+                    fields.put(field.getName(), new FieldConversion(field, compile(contextPath + field.getName())));
+                } catch (NoSuchFieldException e) {
+                }
             }
+        }
+
+        Object convert(Map<?,?> m) {
+            try {
+                Object dto;
 
-            for (Map.Entry entry : m.entrySet()) {
                 try {
-                    Field f = targetCls.getField(entry.getKey().toString());
+                    dto = targetCls.newInstance();
+                } catch (Throwable t) {
+                    throw new ConversionException("Cannot create instance of DTO " + targetCls + ". Bad constructor?", t);
+                }
+
+                for (Map.Entry<?,?> entry : m.entrySet()) {
+                    FieldConversion fc = fields.get(entry.getKey().toString());
                     Object val = entry.getValue();
-                    if (val == null)
+                    if (fc == null || val == null)
                         continue;
-                    String path = contextPath + f.getName();
-                    Node node = schema.nodeAtPath(path);
-                    Object obj;
-                    if (node.typeReference().isPresent()) {
-                        TypeReference<?> tr = Util.typeReferenceOf(node.typeReference().get());
-                        if (node.isCollection())
-                            if (!Collection.class.isAssignableFrom(val.getClass()))
-                                // TODO: PANIC! Something is wrong... what should we do??
-                                obj = null;
-                            else
-                                obj = convertToCollection( (Class)Util.rawClassOf(tr), (Class)node.collectionType(), (Collection)val, schema, path);
-                        else
-                            obj = convertToDTO((Class<? extends DTO>)rawClassOf(tr), (Map<?,?>)val, schema, path + "/");
-                    } else {
-                        if (node.isCollection()) {
-                            Collection c = instantiateCollection(node.collectionType());
-                            Type type = node.type();
-                            for (Object o : (Collection)val) {
-                                if (o == null)
-                                    c.add(null);
-                                else if (asDTO(rawClassOf(type)))
-                                    c.add(convertToDTO((Class)Util.rawClassOf(type), (Map)o, schema, path + "/"));
-                                else
-                                    c.add(converter.convert(o).to(type));
-                            }
-                            obj = c;
-                        } else {
-                            Class<?> rawClass = rawClassOf(node.type());
-                            if (asDTO(rawClass))
-                                obj = convertToDTO((Class<? extends DTO>)rawClass, (Map<?,?>)val, schema, path + "/");
-                            else
-                                obj = converter.convert(val).to(node.type());
-                        }
-                    }
-
-                    f.set(dto, obj);
-                } catch (NoSuchFieldException e) {
+                    fc.field.set(dto, fc.valueConversion.convert(val));
                 }
+
+                return dto;
+            } catch (Exception e) {
+                throw new ConversionException("Cannot create DTO " + targetCls, e);
             }
+        }
+    }
 
-            return dto;
-        } catch (Exception e) {
-            throw new ConversionException("Cannot create DTO " + targetCls, e);
+    private static class FieldConversion {
+        final Field field;
+        final ValueConversion valueConversion;
+
+        FieldConversion(Field aField, ValueConversion aValueConversion) {
+            field = aField;
+            valueConversion = aValueConversion;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueConversion {
+        Object convert(Object val) throws Exception;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private ValueConversion compile(String path) {
+        Node node = schema.nodeAtPath(path);
+        if (node == null)
+            return val -> { throw new ConversionException("No node in the schema at " + path); };
+
+        if (node.typeReference().isPresent()) {
+            TypeReference<?> tr = Util.typeReferenceOf(node.typeReference().get());
+            Class<?> rawClass = Util.rawClassOf(tr);
+            if (node.isCollection())
+                return val -> {
+                    if (!Collection.class.isAssignableFrom(val.getClass()))
+                        // TODO: PANIC! Something is wrong... what should we do??
+                        return null;
+                    return convertToCollection((Class)rawClass, (Class)node.collectionType(), (Collection)val, schema, path);
+                };
+            return val -> conversionFor(rawClass, path + "/").convert((Map<?,?>)val);
+        }
+
+        Type type = node.type();
+        Class<?> rawClass = rawClassOf(type);
+        boolean isDTO = rawClass != null && asDTO(rawClass);
+        if (node.isCollection()) {
+            Class<? extends Collection<?>> collectionType = node.collectionType();
+            return val -> {
+                Collection c = instantiateCollection(collectionType);
+                for (Object o : (Collection)val) {
+                    if (o == null)
+                        c.add(null);
+                    else if (isDTO)
+                        c.add(conversionFor(rawClass, path + "/").convert((Map)o));
+                    else
+                        c.add(converter.convert(o).to(type));
+                }
+                return c;
+            };
         }
+        if (isDTO)
+            return val -> conversionFor(rawClass, path + "/").convert((Map<?,?>)val);
+        return val -> converter.convert(val).to(type);
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -19,12 +19,14 @@ package org.apache.felix.schematizer.impl;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
@@ -43,6 +45,9 @@ import static org.apache.felix.schematizer.impl.Util.*;
 public class SchematizerImpl implements Schematizer, ServiceFactory<Schematizer> {
     private final Map<String, SchemaImpl> schemas = new HashMap<>();
     private final Map<String, Map<String, Object>> typeRules = new HashMap<>();
+    // The schemas of types without rules, which only depend on the type
+    private final Map<List<Object>, SchemaImpl> schemasByType = new HashMap<>();
+    private final Map<String, Converter> converters = new HashMap<>();
 
     @Override
     public Schematizer getService( Bundle bundle, ServiceRegistration<Schematizer> registration ) {
@@ -56,6 +61,8 @@ public class SchematizerImpl implements Schematizer, ServiceFactory<Schematizer>
         //
         // TODO: something more precise, which will remove only the classes that are no longer valid (if that is possible).
         schemas.clear();
+        schemasByType.clear();
+        converters.clear();
     }
 
     @Override
@@ -94,8 +101,23 @@ public class SchematizerImpl implements Schematizer, ServiceFactory<Schematizer>
         // TODO: test to ensure that the schema is not already in the cache
         Map<String, Object> rules = typeRules.get(schemaName);
         rules = ( rules != null ) ? rules : Collections.emptyMap();
-        SchemaImpl schema = internalSchematize(schemaName, type, context, rules, false);
+        SchemaImpl schema;
+        if (rules.isEmpty() && context.isEmpty()) {
+            TypeRefOrClass typeRefOrClass = new TypeRefOrClass(type);
+            List<Object> key = Arrays.asList(typeRefOrClass.isTypeRef(), typeRefOrClass.getType());
+            SchemaImpl cached = schemasByType.get(key);
+            if (cached == null) {
+                cached = internalSchematize(schemaName, type, context, rules, false);
+                schemasByType.put(key, cached);
+            }
+            // The nodes are not changed once the schema is built, so they can be shared
+            schema = new SchemaImpl(schemaName);
+            schema.add(cached.toMapInternal());
+        } else {
+            schema = internalSchematize(schemaName, type, context, rules, false);
+        }
         schemas.put(schemaName, schema);
+        converters.remove(schemaName);
         return this;
     }
 
@@ -299,10 +321,15 @@ public class SchematizerImpl implements Schematizer, ServiceFactory<Schematizer>
 //        s.visit( ex );
 //        ex.rules().stream().forEach( rule -> b.rule(rule) );
 //        return b.build();
-        return Converters
-                .newConverterBuilder()
-                .rule(new SchemaBasedConverter<Object>(schemas.get(schemaName)))
-                .build();
+        Converter converter = converters.get(schemaName);
+        if (converter == null) {
+            converter = Converters
+                    .newConverterBuilder()
+                    .rule(new SchemaBasedConverter<Object>(schemas.get(schemaName)))
+                    .build();
+            converters.put(schemaName, converter);
+        }
+        return converter;
     }
 
 //    private static class RuleExtractor implements NodeVisitor {
@@ -171,8 +171,17 @@ public class Util {
         return asDTOAnnotation != null;
     }
 
+    // Looking for the annotation and the methods of the class is costly,
+    // and done for each value converted
+    private static final ClassValue<Boolean> dtoClasses = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> clazz) {
+            return hasDTOAnnotation(clazz) || isDTOType(clazz);
+        }
+    };
+
     public static boolean asDTO(Class<?> clazz) {
-        return hasDTOAnnotation(clazz) || isDTOType(clazz);
+        return dtoClasses.get(clazz);
     }
 
     public static boolean hasCollectionTypeAnnotation(Field field) {
@@ -16,6 +16,9 @@
  */
 package org.apache.felix.schematizer.impl;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.felix.schematizer.Node;
@@ -24,10 +27,14 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.osgi.util.converter.Converter;
 import org.osgi.util.converter.TypeReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class SchematizerServiceTest {
@@ -294,6 +301,65 @@ public class SchematizerServiceTest {
         assertEquals("/", grandparentNode.absolutePath());
     }
 
+    @Test
+    public void testSchemaCachedPerType() {
+        Schema s1 = schematizer
+                .schematize("MyDTO", new TypeReference<MyDTO>(){})
+                .get("MyDTO");
+        Schema s2 = schematizer
+                .schematize("Other", MyDTO.class)
+                .get("Other");
+        Schema s3 = schematizer
+                .schematize("Again", new TypeReference<MyDTO>(){})
+                .get("Again");
+        assertEquals("MyDTO", s1.name());
+        assertEquals("Again", s3.name());
+        assertSame(s1.nodeAtPath("/embedded"), s3.nodeAtPath("/embedded"));
+        assertNotSame(s1.rootNode(), s2.rootNode());
+        assertEquals(s1.rootNode().type(), s2.rootNode().type());
+
+        Converter c = schematizer.converterFor("MyDTO");
+        assertSame(c, schematizer.converterFor("MyDTO"));
+        schematizer.schematize("MyDTO", MyDTO4.class);
+        assertNotSame(c, schematizer.converterFor("MyDTO"));
+    }
+
+    @Test
+    public void testConvertCollectionOfDTOs() {
+        Converter c = schematizer
+                .schematize("MyDTO4", MyDTO4.class)
+                .converterFor("MyDTO4");
+
+        List<Map<String, Object>> embedded = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> e = new HashMap<>();
+            e.put("marco", "m" + i);
+            e.put("polo", String.valueOf(i));
+            e.put("alpha", "B");
+            e.put("unknown", i);
+            embedded.add(e);
+        }
+        embedded.add(null);
+        Map<String, Object> m = new HashMap<>();
+        m.put("ping", "p");
+        m.put("pong", 12);
+        m.put("count", "TWO");
+        m.put("embedded", embedded);
+        m.put("unknown", "u");
+
+        for (int i = 0; i < 2; i++) {
+            MyDTO4 dto = c.convert(m).to(MyDTO4.class);
+            assertEquals("p", dto.ping);
+            assertEquals(12L, dto.pong);
+            assertEquals(MyDTO4.Count.TWO, dto.count);
+            assertEquals(4, dto.embedded.size());
+            assertEquals("m2", dto.embedded.get(2).marco);
+            assertEquals(2L, dto.embedded.get(2).polo);
+            assertEquals(MyEmbeddedDTO.Alpha.B, dto.embedded.get(0).alpha);
+            assertNull(dto.embedded.get(3));
+        }
+    }
+
     private void assertNodeEquals(String name, String path, boolean isCollection, Object type, boolean fieldNotNull, Node node) {
         assertNotNull(node);
         assertEquals(name, node.name());
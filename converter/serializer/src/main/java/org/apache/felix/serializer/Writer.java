@@ -15,6 +15,7 @@
  */
 package org.apache.felix.serializer;
 
+import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +25,20 @@ import java.util.Map;
  */
 public interface Writer {
     String write(Object obj);
+
+    /**
+     * Write the object to an appendable. Writers that can produce their
+     * output incrementally should override this, the default implementation
+     * appends the result of {@link #write(Object)}.
+     *
+     * @param obj The object to write.
+     * @param out The appendable to write to.
+     * @throws IOException If an I/O error occurred.
+     */
+    default void write(Object obj, Appendable out) throws IOException {
+        out.append(write(obj));
+    }
+
     Map<String,List<String>> mapOrderingRules();
     Map<String,Comparator<?>> arrayOrderingRules();
 }
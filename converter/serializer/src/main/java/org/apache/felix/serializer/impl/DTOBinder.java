@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.serializer.impl;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osgi.dto.DTO;
+import org.osgi.util.converter.ConversionException;
+import org.osgi.util.converter.Converter;
+import org.osgi.util.converter.Converters;
+
+/**
+ * Binds the events of a parser straight to DTOs, without building the map
+ * of each object first. Field names are matched and values converted the
+ * same way as the standard converter does when converting a map to a DTO.
+ */
+public class DTOBinder {
+    public enum Event { START_MAP, END_MAP, START_LIST, END_LIST, VALUE, ALIAS, END }
+
+    /**
+     * The events of a parser. The keys of a map are reported as values.
+     */
+    public interface Events {
+        Event next() throws IOException;
+
+        /**
+         * @return the value of a VALUE event, the anchor referred to by an
+         * ALIAS event.
+         */
+        Object value();
+
+        /**
+         * @return the anchor of the current map, list or value, if any.
+         */
+        String anchor();
+
+        /**
+         * @return a new map for an object bound to no particular type, of
+         * the same kind as the parser returns.
+         */
+        default Map<Object, Object> newMap() {
+            return new HashMap<>();
+        }
+    }
+
+    private static final ClassValue<DTOType> DTO_TYPES = new ClassValue<DTOType>() {
+        @Override
+        protected DTOType computeValue(Class<?> cls) {
+            return DTOType.create(cls);
+        }
+    };
+
+    private final Converter converter;
+    private final Events events;
+    private Map<String, Object> anchors;
+
+    public DTOBinder(Converter converter, Events events) {
+        this.converter = converter;
+        this.events = events;
+    }
+
+    /**
+     * Whether values of the given type can be bound by this class. The
+     * converter may have rules for any type, so only the standard converter
+     * is supported.
+     */
+    public static boolean canBind(Converter converter, Type type) {
+        return converter == Converters.standardConverter()
+            && type instanceof Class && DTO_TYPES.get((Class<?>) type) != null;
+    }
+
+    public Object bind(Type type) throws IOException {
+        return read(events.next(), type);
+    }
+
+    private Object read(Event event, Type type) throws IOException {
+        String anchor = events.anchor();
+        if (anchor != null) {
+            // Aliases may be used where another type is expected, keep the
+            // value as parsed and convert it for each use
+            Object value = readValue(event, Object.class);
+            if (anchors == null)
+                anchors = new HashMap<>();
+            anchors.put(anchor, value);
+            return convert(value, type);
+        }
+        return readValue(event, type);
+    }
+
+    private Object readValue(Event event, Type type) throws IOException {
+        switch (event) {
+        case START_MAP:
+            DTOType dtoType = type instanceof Class ? DTO_TYPES.get((Class<?>) type) : null;
+            return dtoType != null ? readDTO(dtoType) : convert(readMap(), type);
+        case START_LIST:
+            if (type instanceof Class && ((Class<?>) type).isArray())
+                return readArray(((Class<?>) type).getComponentType());
+            return convert(readList(Object.class), type);
+        case VALUE:
+            return convert(events.value(), type);
+        case ALIAS:
+            if (anchors == null || !anchors.containsKey(events.value()))
+                throw new ConversionException("Unknown anchor " + events.value());
+            return convert(anchors.get(events.value()), type);
+        default:
+            throw new ConversionException("Unexpected " + event);
+        }
+    }
+
+    private Object readDTO(DTOType dtoType) throws IOException {
+        Object dto = dtoType.newInstance();
+        for (Event event = events.next(); event != Event.END_MAP; event = events.next()) {
+            Object key = read(event, Object.class);
+            Field f = key != null ? dtoType.fields.get(key.toString()) : null;
+            if (f == null) {
+                // Not a field of the DTO, read and ignore the value
+                read(events.next(), Object.class);
+                continue;
+            }
+            Object value = read(events.next(), f.getType());
+            try {
+                f.set(dto, value);
+            } catch (IllegalAccessException e) {
+                throw new ConversionException("Cannot create DTO " + dtoType.cls, e);
+            }
+        }
+        return dto;
+    }
+
+    private Map<Object, Object> readMap() throws IOException {
+        Map<Object, Object> map = events.newMap();
+        for (Event event = events.next(); event != Event.END_MAP; event = events.next()) {
+            Object key = read(event, Object.class);
+            map.put(key, read(events.next(), Object.class));
+        }
+        return map;
+    }
+
+    private List<Object> readList(Type elementType) throws IOException {
+        List<Object> list = new ArrayList<>();
+        for (Event event = events.next(); event != Event.END_LIST; event = events.next()) {
+            list.add(read(event, elementType));
+        }
+        return list;
+    }
+
+    private Object readArray(Class<?> componentType) throws IOException {
+        List<Object> list = readList(componentType);
+        Object array = Array.newInstance(componentType, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            Array.set(array, i, list.get(i));
+        }
+        return array;
+    }
+
+    private Object convert(Object value, Type type) {
+        if (type == Object.class)
+            return value;
+        return converter.convert(value).to(type);
+    }
+
+    /**
+     * The fields of a DTO class by key.
+     */
+    private static class DTOType {
+        final Class<?> cls;
+        final Constructor<?> constructor;
+        final Map<String, Field> fields;
+
+        private DTOType(Class<?> cls, Constructor<?> constructor, Map<String, Field> fields) {
+            this.cls = cls;
+            this.constructor = constructor;
+            this.fields = fields;
+        }
+
+        /**
+         * @return the type, or {@code null} if the class is not a DTO that
+         * the converter would fill field by field.
+         */
+        static DTOType create(Class<?> cls) {
+            if (!DTO.class.isAssignableFrom(cls) || Modifier.isAbstract(cls.getModifiers())
+                || cls.getDeclaredMethods().length > 0)
+                return null;
+
+            Constructor<?> constructor;
+            try {
+                constructor = cls.getConstructor();
+            } catch (NoSuchMethodException | SecurityException e) {
+                return null;
+            }
+
+            // Same rule as the converter's DTO check: every public method,
+            // inherited ones included, must be one of Object's.
+            for (Method m : cls.getMethods()) {
+                try {
+                    Object.class.getMethod(m.getName(), m.getParameterTypes());
+                } catch (NoSuchMethodException e) {
+                    return null;
+                }
+            }
+
+            String prefix = getPrefix(cls);
+            Map<String, Field> fields = new HashMap<>();
+            for (Field f : cls.getFields()) {
+                int modifiers = f.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers))
+                    continue;
+
+                String key = prefix + unMangleName(f.getName());
+                // Declared fields take precedence over inherited ones
+                Field other = fields.get(key);
+                if (other == null || other.getDeclaringClass().isAssignableFrom(f.getDeclaringClass()))
+                    fields.put(key, f);
+            }
+            if (fields.isEmpty())
+                return null;
+
+            return new DTOType(cls, constructor, Collections.unmodifiableMap(fields));
+        }
+
+        Object newInstance() {
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new ConversionException("Cannot create DTO " + cls, e);
+            }
+        }
+
+        private static String getPrefix(Class<?> cls) {
+            try {
+                Field prefixField = cls.getDeclaredField("PREFIX_");
+                if (prefixField.getType().equals(String.class))
+                    return (String) prefixField.get(null);
+            } catch (Exception ex) {
+                // No usable prefix field
+            }
+
+            if (!cls.isInterface()) {
+                for (Class<?> intf : cls.getInterfaces()) {
+                    String prefix = getPrefix(intf);
+                    if (prefix.length() > 0)
+                        return prefix;
+                }
+            }
+            return "";
+        }
+
+        // The reverse of the name mangling done by the converter
+        private static String unMangleName(String id) {
+            StringBuilder sb = new StringBuilder(id.length());
+            for (int i = 0; i < id.length(); i++) {
+                if (id.startsWith("$$", i) || id.startsWith("__", i)) {
+                    sb.append(id.charAt(i++));
+                } else if (id.startsWith("$_$", i)) {
+                    sb.append('-');
+                    i += 2;
+                } else {
+                    char c = id.charAt(i);
+                    if (c == '_')
+                        sb.append('.');
+                    else if (c != '$')
+                        sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
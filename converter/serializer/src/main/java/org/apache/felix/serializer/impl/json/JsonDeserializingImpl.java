@@ -18,6 +18,8 @@ package org.apache.felix.serializer.impl.json;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -26,7 +28,9 @@ import java.util.Scanner;
 
 import org.apache.felix.serializer.Deserializing;
 import org.apache.felix.serializer.Parser;
+import org.apache.felix.serializer.impl.DTOBinder;
 import org.apache.felix.serializer.impl.Util;
+import org.apache.felix.utils.json.JSONReader;
 import org.osgi.util.converter.ConversionException;
 import org.osgi.util.converter.Converter;
 
@@ -44,6 +48,9 @@ public class JsonDeserializingImpl<T> implements Deserializing<T> {
     @Override
     @SuppressWarnings("unchecked")
     public T from(CharSequence in) {
+        if (canBind())
+            return bind(new JSONReader(in));
+
         Map<?,?> m = parser.parse(in);
         if (type instanceof Class)
             if (m.getClass().isAssignableFrom((Class<?>) type))
@@ -59,6 +66,9 @@ public class JsonDeserializingImpl<T> implements Deserializing<T> {
 
     @Override
     public T from(InputStream in, Charset charset) {
+        if (canBind())
+            return bind(new JSONReader(new InputStreamReader(in, charset)));
+
         try {
             byte[] bytes = Util.readStream(in);
             String s = new String(bytes, charset);
@@ -70,12 +80,36 @@ public class JsonDeserializingImpl<T> implements Deserializing<T> {
 
     @Override
     public T from(Readable in) {
+        if (in instanceof Reader && canBind())
+            return bind(new JSONReader((Reader) in));
+
         try (Scanner s = new Scanner(in)) {
             s.useDelimiter("\\Z");
             return from(s.next());
         }
     }
 
+    // DTOs are read directly from the JSON events, unless a custom parser
+    // or converter is used
+    private boolean canBind() {
+        return parser instanceof DefaultJsonParser && DTOBinder.canBind(converter, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T bind(JSONReader reader) {
+        try (JSONReader r = reader) {
+            T result = (T) new DTOBinder(converter, new JsonEvents(r)).bind(type);
+            // like JSONParser, reject anything after the value
+            if (r.next() != JSONReader.Event.END_DOCUMENT)
+                throw new ConversionException("Unexpected content after the JSON value");
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw new ConversionException("Error reading JSON", e);
+        } catch (IOException e) {
+            throw new ConversionException("Error reading JSON", e);
+        }
+    }
+
     @Override
     public Deserializing<T> convertWith(Converter c) {
         converter = c;
@@ -87,4 +121,42 @@ public class JsonDeserializingImpl<T> implements Deserializing<T> {
         parser = p;
         return this;
     }
+
+    private static class JsonEvents implements DTOBinder.Events {
+        private final JSONReader reader;
+        private JSONReader.Event current;
+
+        JsonEvents(JSONReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public DTOBinder.Event next() throws IOException {
+            current = reader.next();
+            switch (current) {
+            case START_OBJECT:
+                return DTOBinder.Event.START_MAP;
+            case END_OBJECT:
+                return DTOBinder.Event.END_MAP;
+            case START_ARRAY:
+                return DTOBinder.Event.START_LIST;
+            case END_ARRAY:
+                return DTOBinder.Event.END_LIST;
+            case END_DOCUMENT:
+                return DTOBinder.Event.END;
+            default:
+                return DTOBinder.Event.VALUE;
+            }
+        }
+
+        @Override
+        public Object value() {
+            return current == JSONReader.Event.KEY ? reader.getString() : reader.getValue();
+        }
+
+        @Override
+        public String anchor() {
+            return null;
+        }
+    }
 }
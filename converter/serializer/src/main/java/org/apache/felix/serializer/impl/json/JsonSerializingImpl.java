@@ -16,8 +16,10 @@
  */
 package org.apache.felix.serializer.impl.json;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
@@ -42,7 +44,7 @@ public class JsonSerializingImpl extends AbstractSpecifying<Serializing> impleme
     @Override
     public Appendable to(Appendable out) {
         try {
-            out.append(writer.write(object));
+            writer.write(object, out);
             return out;
         } catch (IOException e) {
             throw new ConversionException("Problem converting to JSON", e);
@@ -52,7 +54,9 @@ public class JsonSerializingImpl extends AbstractSpecifying<Serializing> impleme
     @Override
     public void to(OutputStream os, Charset charset) {
         try {
-            os.write(writer.write(object).getBytes(charset));
+            BufferedWriter w = new BufferedWriter(new OutputStreamWriter(os, charset));
+            writer.write(object, w);
+            w.flush();
         } catch (IOException e) {
             throw new ConversionException("Problem converting to JSON", e);
         }
@@ -16,8 +16,8 @@
  */
 package org.apache.felix.serializer.impl.yaml;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -40,7 +40,19 @@ public class DefaultYamlWriter implements Writer {
 
     @Override
     public String write(Object obj) {
-        return encode(obj, 0).trim();
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(obj, sb);
+        } catch (IOException e) {
+            // Cannot happen with a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void write(Object obj, Appendable out) throws IOException {
+        encode(obj, 0, new Trimming(out));
     }
 
     @Override
@@ -54,65 +66,114 @@ public class DefaultYamlWriter implements Writer {
     }
 
     @SuppressWarnings("rawtypes")
-    private String encode(Object obj, int level) {
+    private void encode(Object obj, int level, Appendable out) throws IOException {
         if (obj == null)
-            return "";
+            return;
 
         if (obj instanceof Map) {
-            return encodeMap((Map) obj, level);
+            encodeMap((Map) obj, level, out);
         } else if (obj instanceof Collection) {
-            return encodeCollection((Collection) obj, level);
+            encodeCollection((Collection) obj, level, out);
         } else if (obj.getClass().isArray()) {
-            return encodeCollection(asCollection(obj), level);
+            encodeArray(obj, level, out);
         } else if (obj instanceof Number)  {
-            return obj.toString();
+            out.append(obj.toString());
         } else if (obj instanceof Boolean) {
-            return obj.toString();
+            out.append(obj.toString());
+        } else {
+            out.append('\'').append(converter.convert(obj).to(String.class)).append('\'');
         }
-
-        return "'" + converter.convert(obj).to(String.class) + "'";
     }
 
-    private Collection<?> asCollection(Object arr) {
+    private void encodeArray(Object arr, int level, Appendable out) throws IOException {
         // Arrays.asList() doesn't work for primitive arrays
-        int len = Array.getLength(arr);
-        List<Object> l = new ArrayList<>(len);
-        for (int i=0; i<len; i++) {
-            l.add(Array.get(arr, i));
+        for (int i = 0, len = Array.getLength(arr); i < len; i++) {
+            encodeItem(Array.get(arr, i), level, out);
         }
-        return l;
     }
 
-    private String encodeCollection(Collection<?> collection, int level) {
-        StringBuilder sb = new StringBuilder();
+    private void encodeCollection(Collection<?> collection, int level, Appendable out) throws IOException {
         for (Object o : collection) {
-            sb.append("\n");
-            sb.append(getIdentPrefix(level));
-            sb.append("- ");
-            sb.append(encode(o, level + 1));
+            encodeItem(o, level, out);
         }
-        return sb.toString();
+    }
+
+    private void encodeItem(Object o, int level, Appendable out) throws IOException {
+        out.append('\n');
+        appendIndent(level, out);
+        out.append("- ");
+        encode(o, level + 1, out);
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    private String encodeMap(Map m, int level) {
-        StringBuilder sb = new StringBuilder();
+    private void encodeMap(Map m, int level, Appendable out) throws IOException {
         for (Entry entry : (Set<Entry>) m.entrySet()) {
-            sb.append("\n");
-            sb.append(getIdentPrefix(level));
-            sb.append(entry.getKey().toString());
-            sb.append(": ");
-            sb.append(encode(entry.getValue(), level + 1));
+            out.append('\n');
+            appendIndent(level, out);
+            out.append(entry.getKey().toString());
+            out.append(": ");
+            encode(entry.getValue(), level + 1, out);
         }
-
-        return sb.toString();
     }
 
-    private String getIdentPrefix(int level) {
+    private void appendIndent(int level, Appendable out) throws IOException {
         int numSpaces = indentation * level;
-        StringBuilder sb = new StringBuilder(numSpaces);
         for (int i=0; i < numSpaces; i++)
-            sb.append(' ');
-        return sb.toString();
+            out.append(' ');
+    }
+
+    /**
+     * Drops the leading and trailing whitespace of the output, as
+     * {@link String#trim()} does, while passing the rest through.
+     */
+    private static class Trimming implements Appendable {
+        private final Appendable out;
+        private final StringBuilder whitespace = new StringBuilder();
+        private boolean started;
+
+        Trimming(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            int i = start;
+            while (i < end) {
+                if (csq.charAt(i) <= ' ') {
+                    append(csq.charAt(i++));
+                } else {
+                    // Pass runs of non whitespace characters through at once
+                    int j = i + 1;
+                    while (j < end && csq.charAt(j) > ' ')
+                        j++;
+                    append(csq.charAt(i));
+                    out.append(csq, i + 1, j);
+                    i = j;
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            if (c <= ' ') {
+                // Only written once something else follows
+                if (started)
+                    whitespace.append(c);
+            } else {
+                if (whitespace.length() > 0) {
+                    out.append(whitespace);
+                    whitespace.setLength(0);
+                }
+                out.append(c);
+                started = true;
+            }
+            return this;
+        }
     }
 }
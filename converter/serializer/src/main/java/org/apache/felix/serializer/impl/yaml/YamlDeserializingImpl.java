@@ -18,17 +18,32 @@ package org.apache.felix.serializer.impl.yaml;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Scanner;
 
 import org.apache.felix.serializer.Deserializing;
 import org.apache.felix.serializer.Parser;
+import org.apache.felix.serializer.impl.DTOBinder;
 import org.apache.felix.serializer.impl.Util;
 import org.osgi.util.converter.ConversionException;
 import org.osgi.util.converter.Converter;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
 
 public class YamlDeserializingImpl<T> implements Deserializing<T> {
     private volatile Converter converter;
@@ -68,6 +83,15 @@ public class YamlDeserializingImpl<T> implements Deserializing<T> {
     @Override
     @SuppressWarnings("unchecked")
     public T from(CharSequence in) {
+        if (canBind()) {
+            try {
+                return bind(in.toString());
+            } catch (MergeKeyException e) {
+                // Merge keys copy entries from other maps, leave that to the
+                // parser and convert the loaded map instead
+            }
+        }
+
         Map<?,?> m = parser.parse(in);
         if (type instanceof Class)
             if (m.getClass().isAssignableFrom((Class<?>) type))
@@ -76,6 +100,22 @@ public class YamlDeserializingImpl<T> implements Deserializing<T> {
         return (T) converter.convert(m).to(type);
     }
 
+    // DTOs are read directly from the YAML events, unless a custom parser
+    // or converter is used or the document has merge keys
+    private boolean canBind() {
+        return parser instanceof DefaultYamlParser && DTOBinder.canBind(converter, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T bind(String in) {
+        try (Reader r = new StringReader(in)) {
+            Iterator<Event> events = new Yaml().parse(r).iterator();
+            return (T) new DTOBinder(converter, new YamlEvents(events)).bind(type);
+        } catch (IOException e) {
+            throw new ConversionException("Error reading YAML", e);
+        }
+    }
+
     @Override
     public Deserializing<T> convertWith(Converter c) {
         converter = c;
@@ -87,4 +127,82 @@ public class YamlDeserializingImpl<T> implements Deserializing<T> {
         parser = p;
         return this;
     }
+
+    private static class YamlEvents implements DTOBinder.Events {
+        private final Iterator<Event> events;
+        private final Resolver resolver = new Resolver();
+        private final ScalarConstructor constructor = new ScalarConstructor();
+        private Event current;
+
+        YamlEvents(Iterator<Event> events) {
+            this.events = events;
+        }
+
+        @Override
+        public DTOBinder.Event next() {
+            while (events.hasNext()) {
+                current = events.next();
+                if (current.is(Event.ID.MappingStart))
+                    return DTOBinder.Event.START_MAP;
+                if (current.is(Event.ID.MappingEnd))
+                    return DTOBinder.Event.END_MAP;
+                if (current.is(Event.ID.SequenceStart))
+                    return DTOBinder.Event.START_LIST;
+                if (current.is(Event.ID.SequenceEnd))
+                    return DTOBinder.Event.END_LIST;
+                if (current.is(Event.ID.Scalar))
+                    return DTOBinder.Event.VALUE;
+                if (current.is(Event.ID.Alias))
+                    return DTOBinder.Event.ALIAS;
+                if (current.is(Event.ID.DocumentEnd))
+                    break;
+                // Skip the start of the stream and of the document
+            }
+            current = null;
+            return DTOBinder.Event.END;
+        }
+
+        @Override
+        public Object value() {
+            if (current instanceof AliasEvent)
+                return ((AliasEvent) current).getAnchor();
+
+            // Scalars get the same types as when loading the document
+            ScalarEvent event = (ScalarEvent) current;
+            Tag tag;
+            if (event.getTag() == null || event.getTag().equals("!"))
+                tag = resolver.resolve(NodeId.scalar, event.getValue(), event.getImplicit().canOmitTagInPlainScalar());
+            else
+                tag = new Tag(event.getTag());
+            if (Tag.MERGE.equals(tag))
+                throw new MergeKeyException();
+            return constructor.construct(new ScalarNode(tag, event.getValue(), null, null, event.getStyle()));
+        }
+
+        @Override
+        public String anchor() {
+            return current instanceof NodeEvent && !(current instanceof AliasEvent)
+                ? ((NodeEvent) current).getAnchor() : null;
+        }
+
+        // The maps loaded by SnakeYAML keep the order of their keys
+        @Override
+        public Map<Object, Object> newMap() {
+            return new LinkedHashMap<>();
+        }
+    }
+
+    private static class MergeKeyException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MergeKeyException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class ScalarConstructor extends Constructor {
+        Object construct(ScalarNode node) {
+            return getConstructor(node).construct(node);
+        }
+    }
 }
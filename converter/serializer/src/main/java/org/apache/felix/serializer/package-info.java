@@ -15,7 +15,7 @@
  */
 
 /**
- * Converter Package Version 1.0.
+ * Converter Package Version 1.1.
  * <p>
  * Bundles wishing to use this package must list the package in the
  * Import-Package header of the bundle's manifest. This package has two types of
@@ -28,11 +28,11 @@
  * <p>
  * Example import for providers implementing the API in this package:
  * <p>
- * {@code  Import-Package: org.osgi.service.serializer; version="[1.0,1.1)"}
+ * {@code  Import-Package: org.osgi.service.serializer; version="[1.1,1.2)"}
  * 
  * @author $Id: 1b82a2a1db1431c5e4398f368662b5b6fb5f8547 $
  */
-@Version("1.0")
+@Version("1.1")
 package org.apache.felix.serializer;
 
 import org.osgi.annotation.versioning.Version;
@@ -16,9 +16,14 @@
  */
 package org.apache.felix.serializer.impl.json;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.felix.serializer.impl.DTOBinder;
 import org.apache.felix.serializer.impl.json.MyDTO.Count;
 import org.apache.felix.serializer.impl.json.MyEmbeddedDTO.Alpha;
 import org.apache.sling.commons.json.JSONException;
@@ -26,13 +31,17 @@ import org.apache.sling.commons.json.JSONObject;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.osgi.dto.DTO;
+import org.osgi.util.converter.ConversionException;
 import org.osgi.util.converter.Converter;
 import org.osgi.util.converter.Converters;
 import org.osgi.util.converter.TypeReference;
 import org.osgi.util.converter.TypeRule;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class JsonSerializerTest {
     private Converter converter;
@@ -133,6 +142,85 @@ public class JsonSerializerTest {
         assertEquals(327, embedded2.polo);
     }
 
+    @Test
+    public void testDTOStreaming() throws Exception {
+        String json = "{\"name\":\"graph\",\"counts\":[1,2,3],\"tags\":[\"a\",\"b\"],"
+            + "\"props\":{\"x\":1,\"y\":[true,null]},"
+            + "\"main\":{\"count\":\"TWO\",\"ping\":\"p\",\"pong\":\"12\",\"unknown\":{\"z\":[1]},"
+            + "\"embedded\":{\"alpha\":\"C\",\"marco\":\"m\",\"polo\":7}},"
+            + "\"others\":[{\"alpha\":\"A\",\"polo\":1},{\"marco\":\"x\"}],"
+            + "\"items\":[{\"alpha\":\"B\",\"marco\":\"y\"},{\"polo\":\"9\"}],"
+            + "\"key.name\":\"k\",\"with-dash\":\"d\"}";
+
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        MyGraphDTO dto = jsonCodec.deserialize(MyGraphDTO.class).from(json);
+        assertEquals("graph", dto.name);
+        assertEquals(3, dto.counts[2]);
+        assertEquals("b", dto.tags.get(1));
+        assertEquals(2, dto.props.size());
+        assertEquals(Count.TWO, dto.main.count);
+        assertEquals(12L, dto.main.pong);
+        assertEquals(Alpha.C, dto.main.embedded.alpha);
+        assertEquals(2, dto.others.size());
+        assertEquals(Alpha.B, dto.items[0].alpha);
+        assertEquals(9L, dto.items[1].polo);
+        assertEquals("k", dto.key_name);
+        assertEquals("d", dto.with$_$dash);
+
+        // The same result as converting the parsed map
+        MyGraphDTO expected = converter.convert(new DefaultJsonParser().parse(json)).to(MyGraphDTO.class);
+        String expectedJson = jsonCodec.serialize(expected).toString();
+        assertEquals(expectedJson, jsonCodec.serialize(dto).toString());
+
+        MyGraphDTO fromStream = jsonCodec.deserialize(MyGraphDTO.class).from(
+            new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expectedJson, jsonCodec.serialize(fromStream).toString());
+        MyGraphDTO fromReader = jsonCodec.deserialize(MyGraphDTO.class).from(new StringReader(json));
+        assertEquals(expectedJson, jsonCodec.serialize(fromReader).toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonCodec.serialize(dto).to(out);
+        assertEquals(expectedJson, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(expectedJson, jsonCodec.serialize(dto).to(new StringBuilder()).toString());
+    }
+
+    @Test
+    public void testDTOTrailingContent() {
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        assertEquals("x", jsonCodec.deserialize(MyGraphDTO.class).from("{\"name\":\"x\"}  ").name);
+        for (String json : new String[] {"{\"name\":\"x\"} junk", "{\"name\":\"x\"}{}"}) {
+            try {
+                jsonCodec.deserialize(MyGraphDTO.class).from(json);
+                fail("Trailing content accepted: " + json);
+            } catch (ConversionException e) {
+                // expected
+            }
+            try {
+                jsonCodec.deserialize(MyGraphDTO.class).from(new StringReader(json));
+                fail("Trailing content accepted: " + json);
+            } catch (ConversionException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testDTOBindingFollowsConverter() {
+        assertTrue(DTOBinder.canBind(converter, MyGraphDTO.class));
+        // Inherited public methods make the converter treat it as a bean
+        assertFalse(DTOBinder.canBind(converter, MyMethodDTO.class));
+    }
+
+    public static class MyBaseDTO extends DTO {
+        public String describe() {
+            return "base";
+        }
+    }
+
+    public static class MyMethodDTO extends MyBaseDTO {
+        public String name;
+    }
+
     static class Foo {
         private final String val;
 
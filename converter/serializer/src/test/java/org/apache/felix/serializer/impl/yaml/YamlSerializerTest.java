@@ -16,9 +16,18 @@
  */
 package org.apache.felix.serializer.impl.yaml;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.felix.serializer.impl.json.JsonSerializerImpl;
+import org.apache.felix.serializer.impl.json.MyDTO.Count;
+import org.apache.felix.serializer.impl.json.MyEmbeddedDTO.Alpha;
+import org.apache.felix.serializer.impl.json.MyGraphDTO;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -94,6 +103,94 @@ public class YamlSerializerTest {
         assertEquals(m, m2);
     }
 
+    @Test
+    public void testDTOStreaming() throws Exception {
+        String yaml = "name: graph\n" +
+                "counts: [1, 2, 0x10]\n" +
+                "tags:\n" +
+                "  - yes\n" +
+                "  - '3'\n" +
+                "props:\n" +
+                "  x: 1\n" +
+                "  y: [true, ~]\n" +
+                "main:\n" +
+                "  count: THREE\n" +
+                "  ping: on\n" +
+                "  pong: 1_000\n" +
+                "  embedded: &e\n" +
+                "    alpha: B\n" +
+                "    polo: 3\n" +
+                "others:\n" +
+                "  - *e\n" +
+                "  - {marco: x}\n" +
+                "items:\n" +
+                "  - *e\n" +
+                "  - {polo: '9'}\n" +
+                "key.name: k\n" +
+                "with-dash: d\n";
+
+        YamlSerializerImpl yamlCodec = new YamlSerializerImpl();
+        MyGraphDTO dto = yamlCodec.deserialize(MyGraphDTO.class).from(yaml);
+        assertEquals("graph", dto.name);
+        assertEquals(16, dto.counts[2]);
+        assertEquals(Arrays.<Object>asList(true, "3"), dto.tags);
+        assertEquals(Count.THREE, dto.main.count);
+        assertEquals("true", dto.main.ping);
+        assertEquals(1000L, dto.main.pong);
+        assertEquals(Alpha.B, dto.main.embedded.alpha);
+        assertEquals(2, dto.others.size());
+        assertEquals(Alpha.B, dto.items[0].alpha);
+        assertEquals(9L, dto.items[1].polo);
+        assertEquals("k", dto.key_name);
+        assertEquals("d", dto.with$_$dash);
+
+        // The same result as converting the loaded map
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        MyGraphDTO expected = converter.convert(new DefaultYamlParser().parse(yaml)).to(MyGraphDTO.class);
+        String expectedJson = jsonCodec.serialize(expected).toString();
+        assertEquals(expectedJson, jsonCodec.serialize(dto).toString());
+
+        MyGraphDTO fromStream = yamlCodec.deserialize(MyGraphDTO.class).from(
+            new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expectedJson, jsonCodec.serialize(fromStream).toString());
+
+        Map<String, Object> m = new HashMap<>();
+        m.put("a", Arrays.asList(1, 2));
+        m.put("b", "c");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        yamlCodec.serialize(m).to(out);
+        assertEquals(yamlCodec.serialize(m).toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDTOMergeKeys() throws Exception {
+        String yaml = "name: graph\n" +
+                "base: &b\n" +
+                "  alpha: A\n" +
+                "  marco: m\n" +
+                "main:\n" +
+                "  embedded:\n" +
+                "    <<: *b\n" +
+                "    polo: 4\n" +
+                "items:\n" +
+                "  - {<<: *b, alpha: C}\n";
+
+        MyGraphDTO dto = new YamlSerializerImpl().deserialize(MyGraphDTO.class).from(yaml);
+        assertEquals(Alpha.A, dto.main.embedded.alpha);
+        assertEquals("m", dto.main.embedded.marco);
+        assertEquals(4L, dto.main.embedded.polo);
+        assertEquals(Alpha.C, dto.items[0].alpha);
+        assertEquals("m", dto.items[0].marco);
+
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        MyGraphDTO expected = converter.convert(new DefaultYamlParser().parse(yaml)).to(MyGraphDTO.class);
+        assertEquals(jsonCodec.serialize(expected).toString(), jsonCodec.serialize(dto).toString());
+
+        MyGraphDTO fromStream = new YamlSerializerImpl().deserialize(MyGraphDTO.class).from(
+            new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(jsonCodec.serialize(expected).toString(), jsonCodec.serialize(fromStream).toString());
+    }
+
     static class Foo {
         private final String val;
 
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.controller;
+
+/**
+ * This service is registered by scenario bundles in order to measure service churn latencies. Once all the
+ * scenario components are started, the controller removes one Track service, waits for the Track, its Album
+ * and its Artist to be stopped, then adds the Track again and waits for the three components to be started again.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public interface ServiceChurn {
+    /**
+     * Removes one of the Track services.
+     */
+    void removeTrack();
+
+    /**
+     * Adds again the Track service removed by {@link #removeTrack()}.
+     */
+    void addTrack();
+}
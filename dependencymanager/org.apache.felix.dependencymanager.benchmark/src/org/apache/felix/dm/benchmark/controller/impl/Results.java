@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.controller.impl;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+
+/**
+ * Records the benchmark results of a scenario bundle in a machine readable format: one JSON object per line
+ * is appended to the file specified by the "org.apache.felix.dm.benchmark.results" system property.
+ * Each line contains the startup, shutdown and service churn latency percentiles (in nanos), and the number of 
+ * bytes allocated per start/stop iteration, when the JVM supports thread allocation accounting.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class Results {
+    /**
+     * The percentiles recorded for each latency distribution.
+     */
+    final static double[] PERCENTILES = { 0, 50, 90, 99, 100 };
+    
+    /**
+     * The file where results are appended, or null.
+     */
+    private final String m_file;
+    
+    public Results(String file) {
+        m_file = file;
+    }
+    
+    /**
+     * Returns the total number of bytes allocated so far by all live threads, or -1 if not supported by the JVM.
+     * Bytes allocated by threads which have terminated in the meantime are not accounted for.
+     */
+    public static long allocatedBytes() {
+        try {
+            ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+            if (mx instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunmx = (com.sun.management.ThreadMXBean) mx;
+                if (sunmx.isThreadAllocatedMemorySupported() && sunmx.isThreadAllocatedMemoryEnabled()) {
+                    long total = 0;
+                    for (long bytes : sunmx.getThreadAllocatedBytes(mx.getAllThreadIds())) {
+                        if (bytes > 0) {
+                            total += bytes;
+                        }
+                    }
+                    return total;
+                }
+            }
+        } catch (LinkageError e) {
+            // com.sun.management not available
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the value at a given percentile from a sorted list.
+     */
+    public static long percentile(List<Long> sortedValues, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sortedValues.size()) - 1;
+        return sortedValues.get(Math.min(sortedValues.size() - 1, Math.max(0, index)));
+    }
+    
+    /**
+     * Appends the results of a scenario bundle.
+     * @param bundle the benchmarked bundle symbolic name
+     * @param processing true if components are doing some processing in their start methods
+     * @param components the number of components created by the bundle
+     * @param sortedStartTimes the sorted startup latencies
+     * @param sortedStopTimes the sorted shutdown latencies
+     * @param sortedChurnTimes the sorted service churn latencies, or an empty list if the bundle does not support churn
+     * @param allocatedBytesPerIteration the bytes allocated per start/stop iteration, or -1
+     */
+    public void record(String bundle, boolean processing, int components, List<Long> sortedStartTimes, List<Long> sortedStopTimes, List<Long> sortedChurnTimes, long allocatedBytesPerIteration) {
+        if (m_file == null) {
+            return;
+        }
+        String line = "{\"bundle\":\"" + bundle + "\""
+            + ",\"processing\":" + processing
+            + ",\"components\":" + components
+            + ",\"iterations\":" + sortedStartTimes.size()
+            + ",\"start\":" + toJson(sortedStartTimes)
+            + ",\"stop\":" + toJson(sortedStopTimes)
+            + ",\"churn\":" + toJson(sortedChurnTimes)
+            + ",\"allocatedBytesPerIteration\":" + allocatedBytesPerIteration
+            + "}";
+        try (PrintWriter out = new PrintWriter(new FileWriter(m_file, true))) {
+            out.println(line);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private String toJson(List<Long> sortedValues) {
+        if (sortedValues.isEmpty()) {
+            return "null";
+        }
+        return DoubleStream.of(PERCENTILES)
+            .mapToObj(p -> "\"p" + (int) p + "\":" + percentile(sortedValues, p))
+            .collect(Collectors.joining(",", "{", "}"));
+    }
+}
@@ -20,7 +20,6 @@ package org.apache.felix.dm.benchmark.controller.impl;
 
 import static java.lang.System.out;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
 import static org.apache.felix.dm.benchmark.scenario.Artist.ALBUMS;
 import static org.apache.felix.dm.benchmark.scenario.Artist.ARTISTS;
 import static org.apache.felix.dm.benchmark.scenario.Artist.TRACKS;
@@ -29,7 +28,9 @@ import static org.apache.felix.dm.benchmark.scenario.Helper.debug;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -37,10 +38,10 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import org.apache.felix.dm.benchmark.controller.ScenarioController;
+import org.apache.felix.dm.benchmark.controller.ServiceChurn;
 import org.apache.felix.dm.benchmark.scenario.Album;
 import org.apache.felix.dm.benchmark.scenario.Artist;
 import org.apache.felix.dm.benchmark.scenario.Helper;
@@ -48,6 +49,7 @@ import org.apache.felix.dm.benchmark.scenario.Track;
 import org.apache.felix.dm.benchmark.scenario.Unchecked;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 
 /**
  * The controller which perform microbenchmarks on some scenario bundles.
@@ -60,9 +62,36 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     final List<String> TESTS = Arrays.asList(
         "org.apache.felix.dependencymanager.benchmark.dependencymanager",
-        "org.apache.felix.dependencymanager.benchmark.dependencymanager.parallel"
+        "org.apache.felix.dependencymanager.benchmark.dependencymanager.parallel",
+        "org.apache.felix.dependencymanager.benchmark.dependencymanager.workstealing",
+        "org.apache.felix.dependencymanager.benchmark.scr"
     );
     
+    /**
+     * Number of components created by each scenario bundle.
+     */
+    final static int COMPONENTS = ARTISTS + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS)));
+    
+    /**
+     * Number of service churns measured for each scenario bundle.
+     */
+    final static int CHURNS = 100;
+    
+    /**
+     * Number of components stopped, then started again, during one service churn: a Track, its Album and its Artist.
+     */
+    final static int CHURNED_COMPONENTS = 3;
+    
+    /**
+     * System property used to specify the file where machine readable results are appended (see {@link Results}).
+     */
+    final static String RESULTS = "org.apache.felix.dm.benchmark.results";
+    
+    /**
+     * System property used to stop the framework once the benchmarks are done (headless mode).
+     */
+    final static String EXIT = "org.apache.felix.dm.benchmark.exit";
+    
     /**
      * Our injected bundle context, used to lookup the bundles to benchmark.
      */
@@ -78,6 +107,11 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      * attribute is true.
      */
     private volatile boolean m_doProcessingInStartStop;
+    
+    /**
+     * Machine readable results.
+     */
+    private volatile Results m_results;
         
     /**
      * Our component is starting: we'll first stop all bundles participating in the benchmark, then we'll 
@@ -96,7 +130,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
         // wait a bit in order to let the gogo banner be displayed before we start the bench.
         Unchecked.run(() -> Thread.sleep(500)); 
         
-        out.println("Starting benchmarks (each tested bundle will add/remove " + (ARTISTS + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS)))) 
+        out.println("Starting benchmarks (each tested bundle will add/remove " + COMPONENTS 
            + " components during bundle activation).");
        
         // Stop all tested bundles.
@@ -105,6 +139,8 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
             bundle.stop();
         }));
         
+        m_results = new Results(m_bctx.getProperty(RESULTS));
+        
         // Register our controller service
         m_bctx.registerService(ScenarioController.class.getName(), this, null);
         
@@ -117,6 +153,10 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
         m_doProcessingInStartStop = true;
         out.println("\n\t[Starting benchmarks with processing done in components start methods]");
         startStopScenarioBundles(TESTS, 5);
+        
+        if (Boolean.parseBoolean(m_bctx.getProperty(EXIT))) {
+            Unchecked.run(() -> m_bctx.getBundle(0).stop());
+        }
     }
 
     @Override
@@ -169,17 +209,52 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
     private void startStopScenarioBundles(List<String> tests, int iterations) {
         forEachScenarioBundle(tests, bundle -> {
             out.print("\nBenchmarking bundle: " + bundle.getSymbolicName() + " ");            
-            List<Long> sortedResults = LongStream.range(0, iterations)
-                .peek(i -> out.print("."))
-                .map(n -> durationOf(() -> start(bundle)))
-                .peek(n -> stop(bundle))
-                .sorted().boxed().collect(toList());
+            List<Long> startResults = new ArrayList<>(iterations);
+            List<Long> stopResults = new ArrayList<>(iterations);
+            long allocated = Results.allocatedBytes();
+            for (int i = 0; i < iterations; i ++) {
+                out.print(".");
+                startResults.add(durationOf(() -> start(bundle)));
+                stopResults.add(durationOf(() -> stop(bundle)));
+            }
+            long allocatedPerIteration = allocated == -1 ? -1 : (Results.allocatedBytes() - allocated) / iterations;
+            List<Long> churnResults = churnScenarioBundle(bundle);
             out.println();
-            displaySortedResults(sortedResults);
+            Collections.sort(startResults);
+            Collections.sort(stopResults);
+            Collections.sort(churnResults);
+            displaySortedResults(startResults);
+            if (churnResults.size() > 0) {
+                out.print("-> service churn ");
+                displaySortedResults(churnResults);
+            }
+            m_results.record(bundle.getSymbolicName(), m_doProcessingInStartStop, COMPONENTS, startResults, stopResults, churnResults, allocatedPerIteration);
             Unchecked.run(() -> Thread.sleep(500));
         });               
     }
 
+    /**
+     * Starts a scenario bundle, then removes and adds again one of its Track services several times. 
+     * Returns the durations of each churn, or an empty list if the bundle does not register a {@link ServiceChurn} service.
+     */
+    private List<Long> churnScenarioBundle(Bundle bundle) {
+        List<Long> churnResults = new ArrayList<>(CHURNS);
+        start(bundle);
+        try {
+            ServiceReference<ServiceChurn> ref = m_bctx.getServiceReference(ServiceChurn.class);
+            if (ref != null && bundle.equals(ref.getBundle())) {
+                ServiceChurn churn = m_bctx.getService(ref);
+                for (int i = 0; i < CHURNS; i ++) {
+                    churnResults.add(durationOf(() -> churn(churn)));
+                }
+                m_bctx.ungetService(ref);
+            }
+        } finally {
+            stop(bundle);
+        }
+        return churnResults;
+    }
+
     /**
      * Displays meaningful values in the sorted results (first=fastest, midle=average, last entry=slowest)
      * @param sortedResults
@@ -246,8 +321,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     void start(Bundle b) {
         try {
-            m_startLatch = new CountDownLatch(ARTISTS
-                + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS))));
+            m_startLatch = new CountDownLatch(COMPONENTS);
             
             debug(() -> "starting bundle " + b.getSymbolicName());
             b.start();
@@ -274,8 +348,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     void stop(Bundle b) {
         try {
-            m_stopLatch = new CountDownLatch(ARTISTS
-                + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS))));
+            m_stopLatch = new CountDownLatch(COMPONENTS);
                         
             debug(() -> "stopping bundle " + b.getSymbolicName());
             b.stop();
@@ -296,6 +369,43 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
         }
     }
     
+    /**
+     * This function removes a Track service, waits for the Track, its Album and its Artist to be stopped, 
+     * then adds the Track service again and waits for the three components to be started again.
+     * 
+     * @param churn the service churn registered by the benchmarked scenario bundle
+     */
+    void churn(ServiceChurn churn) {
+        try {
+            m_stopLatch = new CountDownLatch(CHURNED_COMPONENTS);
+            m_startLatch = new CountDownLatch(CHURNED_COMPONENTS);
+            
+            debug(() -> "removing track");
+            churn.removeTrack();
+            
+            if (! m_stopLatch.await(60, TimeUnit.SECONDS)) {
+                out.println("Could not stop churned components timely: current start latch=" + m_startLatch.getCount() + ", stop latch=" + m_stopLatch.getCount());
+                Unchecked.run(() -> Thread.sleep(Integer.MAX_VALUE)); // FIXME
+            }
+            
+            debug(() -> "adding track");
+            churn.addTrack();
+            
+            if (! m_startLatch.await(60, TimeUnit.SECONDS)) {
+                out.println("Could not start churned components timely: current start latch=" + m_startLatch.getCount() + ", stop latch=" + m_stopLatch.getCount());
+                Unchecked.run(() -> Thread.sleep(Integer.MAX_VALUE)); // FIXME
+            }
+            
+            // Make sure the threadpool is quiescent and has finished to register all components
+            if (! Helper.getThreadPool().awaitQuiescence(5, TimeUnit.SECONDS)) {
+                out.println("could not start churned components timely (thread pool is still active after 5 seconds)");
+                Unchecked.run(() -> Thread.sleep(Integer.MAX_VALUE)); // FIXME
+            }
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }
+    
     /**
      * Returns the time consumed by the given runnable, ²ch is executed by this method.
      */
@@ -21,6 +21,7 @@ package org.apache.felix.dm.benchmark.dependencymanager;
 import org.apache.felix.dm.DependencyActivatorBase;
 import org.apache.felix.dm.DependencyManager;
 import org.apache.felix.dm.benchmark.controller.ScenarioController;
+import org.apache.felix.dm.benchmark.controller.ServiceChurn;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -33,6 +34,7 @@ public class Activator extends DependencyActivatorBase {
     @Override
     public void init(BundleContext context, DependencyManager dm) throws Exception {  
         dm.add(createComponent()
+            .setInterface(ServiceChurn.class.getName(), null)
             .setImplementation(Benchmark.class)
             .add(createServiceDependency().setService(ScenarioController.class).setRequired(true)));
     }
@@ -31,6 +31,7 @@ import java.util.stream.Stream;
 import org.apache.felix.dm.Component;
 import org.apache.felix.dm.DependencyManager;
 import org.apache.felix.dm.benchmark.controller.ScenarioController;
+import org.apache.felix.dm.benchmark.controller.ServiceChurn;
 import org.apache.felix.dm.benchmark.scenario.Album;
 import org.apache.felix.dm.benchmark.scenario.Artist;
 import org.apache.felix.dm.benchmark.scenario.Helper;
@@ -42,10 +43,15 @@ import org.apache.felix.dm.benchmark.scenario.impl.TrackImpl;
 /**
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
-public class Benchmark {
+public class Benchmark implements ServiceChurn {
     volatile DependencyManager m_dm;
     volatile ScenarioController m_controller;
     final List<Component> m_components = new ArrayList<>();
+    
+    /**
+     * The Track component removed and added again when measuring service churn.
+     */
+    volatile Component m_churnedTrack;
 
     /**
      * Initialize our Artists, Albums/Tracks, possibly using a parallel dependency manager.
@@ -68,6 +74,17 @@ public class Benchmark {
     @SuppressWarnings("unused")
     private void stop() {
         m_components.forEach(m_dm::remove);
+        m_churnedTrack = null;
+    }
+    
+    @Override
+    public void removeTrack() {
+        m_dm.remove(m_churnedTrack);
+    }
+
+    @Override
+    public void addTrack() {
+        m_dm.add(m_churnedTrack);
     }
 
     private Component createArtists(DependencyManager dm) {
@@ -78,7 +95,7 @@ public class Benchmark {
         return IntStream.range(0, ALBUMS).mapToObj(i -> {
             long id = Helper.generateId();
             String filter = "(id=" + id + ")";
-            artist.add(dm.createServiceDependency().setService(Album.class, filter).setRequired(true).setCallbacks("addAlbum", null));     
+            artist.add(dm.createServiceDependency().setService(Album.class, filter).setRequired(true).setCallbacks("addAlbum", "removeAlbum"));     
             
             Hashtable<String, Object> props = new Hashtable<>();
             props.put("id", String.valueOf(id));
@@ -90,11 +107,15 @@ public class Benchmark {
         return IntStream.range(0, TRACKS).mapToObj(i -> {
             long id = Helper.generateId();
             String f = "(id=" + String.valueOf(id) + ")";
-            album.add(dm.createServiceDependency().setService(Track.class, f).setRequired(true).setCallbacks("addTrack", null));
+            album.add(dm.createServiceDependency().setService(Track.class, f).setRequired(true).setCallbacks("addTrack", "removeTrack"));
 
             Hashtable<String, Object> p = new Hashtable<>();
             p.put("id", String.valueOf(id));
-            return dm.createComponent().setInterface(Track.class.getName(), p).setImplementation(new TrackImpl(m_controller));
+            Component track = dm.createComponent().setInterface(Track.class.getName(), p).setImplementation(new TrackImpl(m_controller));
+            if (m_churnedTrack == null) {
+                m_churnedTrack = track;
+            }
+            return track;
         });
     }
 }
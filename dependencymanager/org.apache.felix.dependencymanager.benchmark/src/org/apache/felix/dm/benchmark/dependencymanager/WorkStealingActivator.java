@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.dependencymanager;
+
+import org.apache.felix.dm.DependencyManager;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Parallel version of our default Activator, using the Dependency Manager built-in work-stealing threadpool
+ * instead of registering a ComponentExecutorFactory. This scenario must be run with the 
+ * "org.apache.felix.dependencymanager.parallelism" OSGi system property (see workstealing.bndrun).
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class WorkStealingActivator extends Activator {
+    public void init(BundleContext context, DependencyManager mgr) throws Exception {
+        if (context.getProperty(DependencyManager.PARALLELISM) == null) {
+            throw new IllegalStateException(DependencyManager.PARALLELISM + " property is not set: the built-in threadpool is not enabled.");
+        }
+        super.init(context, mgr);
+    }
+}
@@ -28,9 +28,11 @@ import java.util.List;
 public interface Artist {
     /**
      * When a scenario bundles starts, it creates the following number of Artists (service)
-     * (you have to regenerate the SCR xml descriptor if you modify this, see README)
+     * (you have to regenerate the SCR xml descriptor if you modify this, see README).
+     * The default can be overridden using the "org.apache.felix.dm.benchmark.artists" system property 
+     * (476 artists are creating around 10000 components).
      */
-    public final int ARTISTS = 30;
+    public final int ARTISTS = Integer.getInteger("org.apache.felix.dm.benchmark.artists", 30);
     
     /**
      * Each Artist creates the following number of musical Albums.
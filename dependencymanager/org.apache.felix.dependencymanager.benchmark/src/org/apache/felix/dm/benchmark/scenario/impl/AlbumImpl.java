@@ -41,6 +41,10 @@ public class AlbumImpl implements Album {
     void addTrack(Track dep) {
         m_musicTracks.add(dep);
     }
+    
+    void removeTrack(Track dep) {
+        m_musicTracks.remove(dep);
+    }
         
     void start() {
         m_controller.albumAdded(this);
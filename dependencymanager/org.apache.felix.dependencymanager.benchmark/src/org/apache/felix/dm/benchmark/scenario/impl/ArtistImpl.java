@@ -41,6 +41,10 @@ public class ArtistImpl implements Artist {
     void addAlbum(Album dep) {
         m_albums.add(dep);
     }
+    
+    void removeAlbum(Album dep) {
+        m_albums.remove(dep);
+    }
 
     void start() {
         m_controller.artistAdded(this);
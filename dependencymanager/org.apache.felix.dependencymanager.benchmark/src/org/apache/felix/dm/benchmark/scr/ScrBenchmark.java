@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.scr;
+
+import static org.apache.felix.dm.benchmark.scenario.Artist.ALBUMS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.ARTISTS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.TRACKS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.felix.dm.benchmark.controller.ServiceChurn;
+import org.apache.felix.dm.benchmark.scenario.Helper;
+import org.apache.felix.dm.benchmark.scenario.Unchecked;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Declarative Services version of the scenario. SCR can't declare dependencies with a per instance filter 
+ * programmatically, so we create one factory configuration for each Artist, Album and Track component. 
+ * Each Album configuration sets the target filter of its "tracks" reference, as well as the minimum cardinality
+ * of the reference (see DS 1.3 specification, 112.6.2.1), and each Artist configuration does the same for its "albums" reference.
+ * Service churn is measured by deleting the configuration of one Track, then creating it again.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+@Component(immediate = true, service = ServiceChurn.class)
+public class ScrBenchmark implements ServiceChurn {
+    final static String ARTIST = "org.apache.felix.dm.benchmark.scr.Artist";
+    final static String ALBUM = "org.apache.felix.dm.benchmark.scr.Album";
+    final static String TRACK = "org.apache.felix.dm.benchmark.scr.Track";
+    
+    @Reference
+    ConfigurationAdmin m_cm;
+    
+    final List<Configuration> m_configurations = new ArrayList<>();
+    
+    /**
+     * The configuration of the Track removed and added again when measuring service churn, and the id of its Album.
+     */
+    volatile Configuration m_churnedTrack;
+    volatile String m_churnedAlbumId;
+
+    @Activate
+    void start() {
+        Helper.debug(() -> "ScrBenchmark.start");
+        IntStream.range(0, ARTISTS).forEach(i -> {
+            String artistId = String.valueOf(Helper.generateId());
+            IntStream.range(0, ALBUMS).forEach(j -> {
+                String albumId = String.valueOf(Helper.generateId());
+                IntStream.range(0, TRACKS).forEach(k -> {
+                    Configuration track = createConfiguration(TRACK, String.valueOf(Helper.generateId()), "album", albumId);
+                    if (m_churnedTrack == null) {
+                        m_churnedTrack = track;
+                        m_churnedAlbumId = albumId;
+                    }
+                });
+                createConfiguration(ALBUM, albumId, "artist", artistId, 
+                    "tracks.target", "(album=" + albumId + ")", "tracks.cardinality.minimum", TRACKS);
+            });
+            createConfiguration(ARTIST, artistId, 
+                "albums.target", "(artist=" + artistId + ")", "albums.cardinality.minimum", ALBUMS);
+        });
+    }
+    
+    @Deactivate
+    void stop() {
+        m_configurations.forEach(Unchecked.consumer(Configuration::delete));
+        m_configurations.clear();
+        m_churnedTrack = null;
+    }
+    
+    @Override
+    public void removeTrack() {
+        m_configurations.remove(m_churnedTrack);
+        Unchecked.run(m_churnedTrack::delete);
+    }
+
+    @Override
+    public void addTrack() {
+        m_churnedTrack = createConfiguration(TRACK, String.valueOf(Helper.generateId()), "album", m_churnedAlbumId);
+    }
+    
+    private Configuration createConfiguration(String factoryPid, String id, Object ... keyValues) {
+        try {
+            Hashtable<String, Object> props = new Hashtable<>();
+            props.put("id", id);
+            for (int i = 0; i < keyValues.length; i += 2) {
+                props.put((String) keyValues[i], keyValues[i + 1]);
+            }
+            Configuration conf = m_cm.createFactoryConfiguration(factoryPid);
+            conf.update(props);
+            m_configurations.add(conf);
+            return conf;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -111,6 +111,18 @@ import java.util.concurrent.Executor;
  *      components whose implementations class names are starting with "foo.threadpool" prefix). 
  * </pre></blockquote>
  * 
+ * <h3>Using the built-in work-stealing threadpool:</h3>
+ * 
+ * Instead of registering your own ComponentExecutorFactory, you can also let Dependency Manager use its built-in 
+ * work-stealing threadpool by setting the "org.apache.felix.dependencymanager.parallelism" OSGi system property
+ * to the number of threads to use (or "*" for the number of available processors). The built-in threadpool is used
+ * only when no ComponentExecutorFactory service is registered, and the "org.apache.felix.dependencymanager.parallel" 
+ * property can still be used to select the components that will be managed concurrently.
+ * 
+ * <blockquote><pre>
+ * org.apache.felix.dependencymanager.parallelism=*
+ * </pre></blockquote>
+ * 
  * <h3>Examples of a ComponentExecutorFactory that provides a shared threadpool:</h3>
  * 
  * First, we define the OSGi bundle context system property to enable parallelism for all DM Components
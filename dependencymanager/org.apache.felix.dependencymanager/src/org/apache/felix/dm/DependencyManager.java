@@ -61,6 +61,13 @@ public class DependencyManager {
      */
     public final static String PARALLEL = "org.apache.felix.dependencymanager.parallel";
 
+    /**
+     * If this OSGi system property is set, the DependencyManager uses a built-in work-stealing threadpool to manage 
+     * components when no ComponentExecutorFactory is registered in the OSGi registry. The value is the number of 
+     * threads, or "*" for the number of available processors. Each component is still managed serially.
+     */
+    public final static String PARALLELISM = "org.apache.felix.dependencymanager.parallelism";
+
     public static final String ASPECT = "org.apache.felix.dependencymanager.aspect";
     public static final String SERVICEREGISTRY_CACHE_INDICES = "org.apache.felix.dependencymanager.filterindex";
     public static final String METHOD_CACHE_SIZE = "org.apache.felix.dependencymanager.methodcache";
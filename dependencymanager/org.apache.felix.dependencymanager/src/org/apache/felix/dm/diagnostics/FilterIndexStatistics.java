@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.felix.dm.FilterIndex;
+import org.apache.felix.dm.impl.index.ServiceRegistryCache;
+import org.apache.felix.dm.impl.index.ServiceRegistryCacheManager;
+import org.apache.felix.dm.impl.index.multiproperty.AutoFilterIndex;
+
+/**
+ * This represents the usage statistics of a filter index that has been automatically created by the
+ * Dependency Manager for a frequently used filter shape (see the <code>*auto*</code> token of the 
+ * <code>org.apache.felix.dependencymanager.filterindex</code> system property).
+ * A hit is a service lookup or listener registration answered by the index, a miss is a request for the same 
+ * filter shape that was forwarded to the framework because the index did not exist yet.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class FilterIndexStatistics {
+	
+	private final String definition;
+	private final long hits;
+	private final long misses;
+	private final int listeners;
+	
+	public FilterIndexStatistics(String definition, long hits, long misses, int listeners) {
+		this.definition = definition;
+		this.hits = hits;
+		this.misses = misses;
+		this.listeners = listeners;
+	}
+	
+	/**
+	 * Returns the statistics of all automatically created filter indices, or an empty list if the 
+	 * service registry cache is not enabled.
+	 */
+	public static List<FilterIndexStatistics> getStatistics() {
+		List<FilterIndexStatistics> result = new ArrayList<>();
+		ServiceRegistryCache cache = ServiceRegistryCacheManager.getCache();
+		if (cache != null) {
+			for (FilterIndex index : cache.getFilterIndices()) {
+				if (index instanceof AutoFilterIndex) {
+					result.addAll(((AutoFilterIndex) index).getStatistics());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the index definition, using the <code>org.apache.felix.dependencymanager.filterindex</code> syntax.
+	 */
+	public String getDefinition() {
+		return definition;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of service listeners currently dispatched by the index.
+	 */
+	public int getListeners() {
+		return listeners;
+	}
+	
+	@Override
+	public String toString() {
+		return "Filter index: " 
+				+ "definition = " + definition + " "
+				+ "hits = " + hits + " "
+				+ "misses = " + misses + " "
+				+ "listeners = " + listeners;
+	}
+
+}
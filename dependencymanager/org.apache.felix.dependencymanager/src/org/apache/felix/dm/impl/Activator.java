@@ -19,7 +19,9 @@
 package org.apache.felix.dm.impl;
 
 import org.apache.felix.dm.ComponentExecutorFactory;
+import org.apache.felix.dm.DependencyManager;
 import org.apache.felix.dm.FilterIndex;
+import org.apache.felix.dm.Logger;
 import org.apache.felix.dm.impl.index.ServiceRegistryCacheManager;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
@@ -30,7 +32,9 @@ import org.osgi.util.tracker.ServiceTrackerCustomizer;
 
 /**
  * DependencyManager Activator used to track a ComponentExecutorFactory service
- * optionally registered by a management agent bundle.
+ * optionally registered by a management agent bundle. The Activator also creates the built-in
+ * work-stealing ComponentExecutorFactory if the "org.apache.felix.dependencymanager.parallelism"
+ * OSGi system property is set.
  * 
  * @see {@link ComponentExecutorFactory}
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
@@ -39,6 +43,7 @@ public class Activator implements BundleActivator {
 	private BundleContext m_context;
 	private ServiceTracker<ComponentExecutorFactory, ComponentExecutorFactory> m_execTracker;
 	private ServiceTracker<FilterIndex, FilterIndex> m_indexTracker;
+	private WorkStealingExecutorFactory m_defaultExecutorFactory;
 
 	@Override
 	public void start(BundleContext context) throws Exception {		
@@ -46,6 +51,16 @@ public class Activator implements BundleActivator {
 		ServiceRegistryCacheManager.init(); 
 
 		m_context = context;
+		String parallelism = context.getProperty(DependencyManager.PARALLELISM);
+		if (parallelism != null) {
+			try {
+				m_defaultExecutorFactory = new WorkStealingExecutorFactory(WorkStealingExecutorFactory.parseParallelism(parallelism));
+				ComponentScheduler.instance().bindDefault(m_defaultExecutorFactory);
+			} catch (NumberFormatException e) {
+				new Logger(context).log(Logger.LOG_WARNING, "Invalid " + DependencyManager.PARALLELISM + " property: " + parallelism, e);
+			}
+		}
+
 		Filter execFilter = context.createFilter("(objectClass=" + ComponentExecutorFactory.class.getName() + ")");
 		m_execTracker = new ServiceTracker<>(context, execFilter, new ExecutorFactoryCustomizer());
 		m_execTracker.open();
@@ -63,6 +78,11 @@ public class Activator implements BundleActivator {
 		if (m_indexTracker != null) {
 			m_indexTracker.close();
 		}
+		if (m_defaultExecutorFactory != null) {
+			ComponentScheduler.instance().unbindDefault(m_defaultExecutorFactory);
+			m_defaultExecutorFactory.shutdown();
+			m_defaultExecutorFactory = null;
+		}
 	}
 
 	private class ExecutorFactoryCustomizer implements ServiceTrackerCustomizer<ComponentExecutorFactory, ComponentExecutorFactory> {
@@ -31,7 +31,8 @@ import org.osgi.framework.BundleContext;
 /**
  * The Dependency Manager delegates all components addition/removal to this class.
  * If a ComponentExecutorFactory is registered in the OSGi registry, this class will use it to get an 
- * Executor used for components management and lifecycle callbacks.
+ * Executor used for components management and lifecycle callbacks. Otherwise, the built-in work-stealing 
+ * ComponentExecutorFactory is used, if it has been enabled.
  * 
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
@@ -39,6 +40,7 @@ public class ComponentScheduler {
     private final static ComponentScheduler m_instance = new ComponentScheduler();
     private final static String PARALLEL = "org.apache.felix.dependencymanager.parallel";
     private volatile ComponentExecutorFactory m_componentExecutorFactory;
+    private volatile ComponentExecutorFactory m_defaultComponentExecutorFactory;
     private final Executor m_serial = new SerialExecutor(null);
     private ConcurrentMap<Component, Component> m_pending = new ConcurrentHashMap<>();
 
@@ -61,7 +63,25 @@ public class ComponentScheduler {
     }
 
     protected void unbind(ComponentExecutorFactory threadPool) {
-        m_componentExecutorFactory = null;
+        // fall back to the built-in executor factory, if any.
+        m_componentExecutorFactory = m_defaultComponentExecutorFactory;
+    }
+
+    /**
+     * Binds the built-in executor factory, which is used when no ComponentExecutorFactory is registered in the OSGi registry.
+     */
+    protected void bindDefault(ComponentExecutorFactory componentExecutorFactory) {
+        m_defaultComponentExecutorFactory = componentExecutorFactory;
+        if (m_componentExecutorFactory == null) {
+            bind(componentExecutorFactory);
+        }
+    }
+
+    protected void unbindDefault(ComponentExecutorFactory componentExecutorFactory) {
+        m_defaultComponentExecutorFactory = null;
+        if (m_componentExecutorFactory == componentExecutorFactory) {
+            m_componentExecutorFactory = null;
+        }
     }
 
     public void add(final Component c) {
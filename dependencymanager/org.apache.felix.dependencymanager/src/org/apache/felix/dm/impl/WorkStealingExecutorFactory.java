@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.dm.Component;
+import org.apache.felix.dm.ComponentExecutorFactory;
+
+/**
+ * Built-in ComponentExecutorFactory, which is used when the "org.apache.felix.dependencymanager.parallelism" 
+ * OSGi system property is set. All components share a work-stealing ForkJoinPool, and each component still
+ * runs its jobs serially, because DM wraps the returned executor in a {@link DispatchExecutor}.
+ * <p>
+ * 
+ * When a component queue is scheduled from one of the pool worker threads (for example when a component
+ * registers a service that another component depends on), the queue is pushed on the local deque of the 
+ * current worker instead of the shared submission queue, and idle workers steal from busy ones.
+ * The pool runs in async (FIFO) mode, since component queues are never joined.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class WorkStealingExecutorFactory implements ComponentExecutorFactory, Executor {
+    /**
+     * The work-stealing pool shared by all components.
+     */
+    private final ForkJoinPool m_pool;
+
+    /**
+     * Creates a new work-stealing executor factory.
+     * @param parallelism the number of worker threads
+     */
+    public WorkStealingExecutorFactory(int parallelism) {
+        m_pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            worker.setName("DependencyManager-" + worker.getPoolIndex());
+            worker.setDaemon(true);
+            return worker;
+        }, null, true);
+    }
+
+    /**
+     * Parses the value of the "org.apache.felix.dependencymanager.parallelism" property.
+     * @param value the property value: a number of threads, or "*" (or 0) for the number of available processors
+     * @return the number of worker threads
+     * @throws NumberFormatException if the value is not a positive number, "*", or 0
+     */
+    public static int parseParallelism(String value) {
+        value = value.trim();
+        int parallelism = "*".equals(value) ? 0 : Integer.parseInt(value);
+        if (parallelism < 0) {
+            throw new NumberFormatException("Invalid parallelism: " + value);
+        }
+        return parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+    }
+
+    @Override
+    public Executor getExecutorFor(Component component) {
+        return this;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Thread current = Thread.currentThread();
+        if (current instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) current).getPool() == m_pool) {
+            // push the task on the local deque of the current worker, it will be stolen by other workers if they are idle
+            ForkJoinTask.adapt(task).fork();
+        } else {
+            m_pool.execute(task);
+        }
+    }
+
+    /**
+     * Returns the number of worker threads.
+     */
+    public int getParallelism() {
+        return m_pool.getParallelism();
+    }
+
+    /**
+     * Waits until all scheduled component jobs have been executed.
+     * @return true if the pool is quiescent, false if the timeout elapsed before.
+     */
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) {
+        return m_pool.awaitQuiescence(timeout, unit);
+    }
+
+    /**
+     * Stops the pool. Jobs scheduled afterwards are executed by the caller thread (see {@link DispatchExecutor}).
+     */
+    public void shutdown() {
+        m_pool.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "WorkStealingExecutorFactory[" + m_pool + "]";
+    }
+}
@@ -23,6 +23,7 @@ import java.util.function.Consumer;
 
 import org.apache.felix.dm.DependencyManager;
 import org.apache.felix.dm.FilterIndex;
+import org.apache.felix.dm.impl.index.multiproperty.AutoFilterIndex;
 import org.apache.felix.dm.impl.index.multiproperty.MultiPropertyFilterIndex;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -171,6 +172,8 @@ public class ServiceRegistryCacheManager {
 						cache.addFilterIndex(new AspectFilterIndex());
 					} else if (props[i].equals("*adapter*")) {
 						cache.addFilterIndex(new AdapterFilterIndex());
+					} else if (props[i].equals("*auto*")) {
+						cache.addFilterIndex(new AutoFilterIndex());
 					} else {
 						cache.addFilterIndex(new MultiPropertyFilterIndex(props[i]));
 					}
@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.apache.felix.dm.impl.index.multiproperty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.felix.dm.FilterIndex;
+import org.apache.felix.dm.Logger;
+import org.apache.felix.dm.diagnostics.FilterIndexStatistics;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Filter index which learns the filters actually used by service trackers and dependencies. Each filter is
+ * reduced to its shape (the set of property keys it tests, with negated presence tests prefixed by a "!"), 
+ * and once a shape has been requested more than a given number of times, a {@link MultiPropertyFilterIndex} 
+ * is created for it. Lookups and listener registrations for that shape are then answered by the new index.
+ * 
+ * Only conjunctions of equality tests and negated presence tests are indexed; any other filter is left to the framework.
+ * This index is enabled using the "*auto*" token in the "org.apache.felix.dependencymanager.filterindex" system property.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+@SuppressWarnings("rawtypes")
+public class AutoFilterIndex implements FilterIndex {
+	/**
+	 * Number of unindexed requests for a given filter shape before an index is created for it (default = 3).
+	 */
+	public static final String THRESHOLD = "org.apache.felix.dependencymanager.filterindex.auto.threshold";
+
+	/**
+	 * Maximum number of indices that can be created automatically (default = 32). Each index tracks all services.
+	 */
+	public static final String MAX_INDICES = "org.apache.felix.dependencymanager.filterindex.auto.max";
+
+	/**
+	 * Maximum number of filters whose shape is remembered. When exceeded, the filter cache is cleared.
+	 */
+	private static final int MAX_FILTERS = 10000;
+
+	/**
+	 * Shape used for filters that can't be indexed.
+	 */
+	private static final Shape NOT_INDEXABLE = new Shape(null);
+
+	private final Object m_lock = new Object();
+
+	private final Map<String, Shape> m_filterToShape = new ConcurrentHashMap<>();
+
+	private final Map<String, Shape> m_definitionToShape = new HashMap<>();
+
+	private final List<Shape> m_indexedShapes = new CopyOnWriteArrayList<>();
+
+	private volatile BundleContext m_context;
+
+	private Logger m_logger;
+
+	private int m_threshold = 3;
+
+	private int m_maxIndices = 32;
+
+	public void open(BundleContext context) {
+		synchronized (m_lock) {
+			if (m_context != null) {
+				throw new IllegalStateException("Filter already open.");
+			}
+			m_logger = new Logger(context);
+			m_threshold = getIntProperty(context, THRESHOLD, m_threshold);
+			m_maxIndices = getIntProperty(context, MAX_INDICES, m_maxIndices);
+			m_context = context;
+		}
+	}
+
+	public void close() {
+		List<Shape> shapes;
+		synchronized (m_lock) {
+			if (m_context == null) {
+				throw new IllegalStateException("Filter already closed.");
+			}
+			m_context = null;
+			shapes = new ArrayList<>(m_indexedShapes);
+			m_indexedShapes.clear();
+			m_definitionToShape.clear();
+			m_filterToShape.clear();
+		}
+		for (Shape shape : shapes) {
+			shape.m_index.close();
+		}
+	}
+
+	public boolean isApplicable(String clazz, String filter) {
+		Shape shape = getShape(clazz, filter);
+		if (shape == NOT_INDEXABLE) {
+			return false;
+		}
+		if (shape.m_index != null) {
+			return true;
+		}
+		// the request creating the index is answered by the index, so it is not a miss
+		if (shape.m_requests.incrementAndGet() >= m_threshold && createIndex(shape) != null) {
+			return true;
+		}
+		shape.m_misses.incrementAndGet();
+		return false;
+	}
+
+	public List<ServiceReference> getAllServiceReferences(String clazz, String filter) {
+		Shape shape = getShape(clazz, filter);
+		MultiPropertyFilterIndex index = shape.m_index;
+		if (index == null) {
+			// closed concurrently
+			return new ArrayList<>();
+		}
+		shape.m_hits.incrementAndGet();
+		return index.getAllServiceReferences(clazz, filter);
+	}
+
+	public void serviceChanged(ServiceEvent event) {
+		Iterator<Shape> iterator = m_indexedShapes.iterator();
+		while (iterator.hasNext()) {
+			iterator.next().m_index.serviceChanged(event);
+		}
+	}
+
+	public void addServiceListener(ServiceListener listener, String filter) {
+		Shape shape = getShape(null, filter);
+		MultiPropertyFilterIndex index = shape.m_index;
+		if (index != null) {
+			shape.m_hits.incrementAndGet();
+			index.addServiceListener(listener, filter);
+		}
+	}
+
+	public void removeServiceListener(ServiceListener listener) {
+		Iterator<Shape> iterator = m_indexedShapes.iterator();
+		while (iterator.hasNext()) {
+			iterator.next().m_index.removeServiceListener(listener);
+		}
+	}
+
+	/**
+	 * Returns the usage statistics of all indices created so far.
+	 */
+	public List<FilterIndexStatistics> getStatistics() {
+		List<FilterIndexStatistics> result = new ArrayList<>();
+		synchronized (m_lock) {
+			for (Shape shape : m_definitionToShape.values()) {
+				MultiPropertyFilterIndex index = shape.m_index;
+				int listeners = index != null ? index.getServiceListenerCount() : 0;
+				result.add(new FilterIndexStatistics(shape.m_definition, shape.m_hits.get(), shape.m_misses.get(), listeners));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the index definition for a given class and filter, or returns null if the filter can't be indexed.
+	 * The definition uses the syntax of the {@link MultiPropertyFilterIndex} configuration.
+	 */
+	public static String getDefinition(String clazz, String filterString) {
+		if (clazz == null && filterString == null) {
+			return null;
+		}
+		if (filterString != null && filterString.indexOf('\\') != -1) {
+			// escaped values are not supported by the filter parser
+			return null;
+		}
+		Filter filter = MultiPropertyFilterIndex.createFilter(clazz, filterString);
+		if (!filter.isValid() || filter.getPropertyKeys().isEmpty()) {
+			return null;
+		}
+		int negations = 0;
+		StringBuilder definition = new StringBuilder();
+		for (String key : new TreeSet<>(filter.getPropertyKeys())) {
+			if (key.indexOf('<') != -1 || key.indexOf('>') != -1 || key.indexOf('~') != -1) {
+				// not an equality test
+				return null;
+			}
+			Property property = filter.getProperty(key);
+			if (property.isNegate()) {
+				// only negated presence tests, like (!(key=*)), are supported
+				if (!property.isWildcard() || property.getValues().size() != 1) {
+					return null;
+				}
+				negations ++;
+			} else {
+				for (String value : property.getValues()) {
+					if (value.indexOf('*') != -1) {
+						// presence and substring tests are not supported
+						return null;
+					}
+				}
+			}
+			if (definition.length() > 0) {
+				definition.append(',');
+			}
+			definition.append(property.isNegate() ? "!" : "").append(key);
+		}
+		// make sure each "!" applies to a single presence test, and not to a nested expression
+		if (filterString != null && countNegations(filterString) != negations) {
+			return null;
+		}
+		return definition.toString();
+	}
+
+	/**
+	 * Counts the "(!" operators of a filter. A "!" in an attribute value is not an operator, and since escaped 
+	 * values are not indexed, a value can't contain a "(".
+	 */
+	private static int countNegations(String filterString) {
+		int count = 0;
+		for (int i = filterString.indexOf("(!"); i != -1; i = filterString.indexOf("(!", i + 2)) {
+			count ++;
+		}
+		return count;
+	}
+
+	private Shape getShape(String clazz, String filter) {
+		String key = clazz == null ? filter : clazz + "|" + filter;
+		if (key == null) {
+			return NOT_INDEXABLE;
+		}
+		Shape shape = m_filterToShape.get(key);
+		if (shape == null) {
+			String definition = getDefinition(clazz, filter);
+			if (definition == null) {
+				shape = NOT_INDEXABLE;
+			} else {
+				synchronized (m_lock) {
+					shape = m_definitionToShape.get(definition);
+					if (shape == null) {
+						shape = new Shape(definition);
+						m_definitionToShape.put(definition, shape);
+					}
+				}
+			}
+			if (m_filterToShape.size() >= MAX_FILTERS) {
+				m_filterToShape.clear();
+			}
+			m_filterToShape.put(key, shape);
+		}
+		return shape;
+	}
+
+	private MultiPropertyFilterIndex createIndex(Shape shape) {
+		BundleContext context;
+		synchronized (m_lock) {
+			context = m_context;
+			if (context == null || m_indexedShapes.size() >= m_maxIndices) {
+				return shape.m_index;
+			}
+		}
+		// open the index outside of our lock, since it synchronously tracks all existing services
+		MultiPropertyFilterIndex index = new MultiPropertyFilterIndex(shape.m_definition);
+		index.open(context);
+		boolean published = false;
+		synchronized (m_lock) {
+			if (shape.m_index == null && m_context == context && m_indexedShapes.size() < m_maxIndices) {
+				shape.m_index = index;
+				m_indexedShapes.add(shape);
+				published = true;
+			}
+		}
+		if (!published) {
+			index.close();
+		}
+		return shape.m_index;
+	}
+
+	private int getIntProperty(BundleContext context, String key, int defaultValue) {
+		String value = context.getProperty(key);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				m_logger.log(Logger.LOG_WARNING, "Invalid value for property " + key + ": " + value 
+					+ ", using default value " + defaultValue);
+			}
+		}
+		return defaultValue;
+	}
+
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(" AutoFilterIndex[");
+		sb.append("Shapes: " + m_definitionToShape.size());
+		sb.append(", Indices: " + m_indexedShapes);
+		sb.append("]");
+		return sb.toString();
+	}
+
+	/**
+	 * A filter shape, with its usage counters and its index, once created.
+	 */
+	private static class Shape {
+		final String m_definition;
+		final AtomicLong m_hits = new AtomicLong();
+		final AtomicLong m_requests = new AtomicLong();
+		final AtomicLong m_misses = new AtomicLong();
+		volatile MultiPropertyFilterIndex m_index;
+
+		Shape(String definition) {
+			m_definition = definition;
+		}
+
+		public String toString() {
+			return m_definition;
+		}
+	}
+}
@@ -10,6 +10,7 @@
  */
 package org.apache.felix.dm.impl.index.multiproperty;
 
+import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -145,7 +146,7 @@ public class MultiPropertyFilterIndex implements FilterIndex, ServiceTrackerCust
 	}
 
 	//KEYS OF A FILTER
-	private Filter createFilter(String clazz, String filterString) {
+	static Filter createFilter(String clazz, String filterString) {
 		String filterStringWithObjectClass = filterString;
 		if (clazz != null && !clazz.isEmpty()) {
 			if (filterString != null) {
@@ -182,8 +183,8 @@ public class MultiPropertyFilterIndex implements FilterIndex, ServiceTrackerCust
 			
 			if (m_configProperties.containsKey(key)) {
 				Object valueObject = reference.getProperty(key);
-				if (valueObject instanceof String[]) {
-					String[] values = (String[]) valueObject;
+				String[] values = toStrings(valueObject);
+				if (values != null) {
 					if (m_configProperties.get(key).isPermute()) {
 						sets.add(getPermutations(key, values));
 					} else {
@@ -229,6 +230,33 @@ public class MultiPropertyFilterIndex implements FilterIndex, ServiceTrackerCust
 		return results;
 	}
 
+	/**
+	 * Returns the elements of a multi-valued property (array or collection) as strings, or null
+	 * for a single value. As in an LDAP filter, each element is matched on its own.
+	 */
+	static String[] toStrings(Object value) {
+		if (value instanceof String[]) {
+			return (String[]) value;
+		}
+		if (value instanceof Collection) {
+			Collection<?> collection = (Collection<?>) value;
+			String[] values = new String[collection.size()];
+			int i = 0;
+			for (Object element : collection) {
+				values[i++] = String.valueOf(element);
+			}
+			return values;
+		}
+		if (value != null && value.getClass().isArray()) {
+			String[] values = new String[Array.getLength(value)];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = String.valueOf(Array.get(value, i));
+			}
+			return values;
+		}
+		return null;
+	}
+
 	private List<List<MultiPropertyKey>> carthesianProductMultiProperty(int index, List<List<MultiPropertyKey>> sets) {
 		List<List<MultiPropertyKey>> result = new ArrayList<>();
 		if (index == sets.size()) {
@@ -501,6 +529,12 @@ public class MultiPropertyFilterIndex implements FilterIndex, ServiceTrackerCust
 		return m_listenerToFilterMap.keySet();
 	}
 
+	int getServiceListenerCount() {
+		synchronized (m_keyToListenersMap) {
+			return m_listenerToFilterMap.size();
+		}
+	}
+
 	public String toString() {
 		StringBuffer sb = new StringBuffer();
 		sb.append(" dMultiPropertyExactFilter[");
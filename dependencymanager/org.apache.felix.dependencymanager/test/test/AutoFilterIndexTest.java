@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.apache.felix.dm.diagnostics.FilterIndexStatistics;
+import org.apache.felix.dm.impl.index.multiproperty.AutoFilterIndex;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+
+public class AutoFilterIndexTest {
+
+	@Test
+	public void definitionOfIndexableFilters() {
+		assertEquals("objectclass", AutoFilterIndex.getDefinition("java.lang.String", null));
+		assertEquals("objectclass", AutoFilterIndex.getDefinition(null, "(objectClass=java.lang.String)"));
+		assertEquals("id,objectclass", AutoFilterIndex.getDefinition("java.lang.String", "(id=1)"));
+		assertEquals("!context,id,objectclass", AutoFilterIndex.getDefinition(null, "(&(objectClass=java.lang.String)(id=1)(!(context=*)))"));
+		// a "!" in a value is not a negation
+		assertEquals("id,objectclass", AutoFilterIndex.getDefinition("A", "(id=hello!)"));
+		assertEquals("!context,id,objectclass", AutoFilterIndex.getDefinition("A", "(&(id=a!b)(!(context=*)))"));
+		// the shape does not depend on the tested values
+		assertEquals(AutoFilterIndex.getDefinition(null, "(&(objectClass=A)(id=1))"), AutoFilterIndex.getDefinition("B", "(id=2)"));
+	}
+
+	@Test
+	public void definitionOfNonIndexableFilters() {
+		assertNull(AutoFilterIndex.getDefinition(null, null));
+		assertNull(AutoFilterIndex.getDefinition(null, "(objectClass=*)"));
+		assertNull(AutoFilterIndex.getDefinition(null, "(|(objectClass=A)(objectClass=B))"));
+		assertNull(AutoFilterIndex.getDefinition("A", "(id=abc*)"));
+		assertNull(AutoFilterIndex.getDefinition("A", "(rank>=1)"));
+		assertNull(AutoFilterIndex.getDefinition("A", "(!(id=1))"));
+		assertNull(AutoFilterIndex.getDefinition("A", "(!(&(id=*)(rank=*)))"));
+		assertNull(AutoFilterIndex.getDefinition("A", "(id=a\\*b)"));
+	}
+
+	@Test
+	public void indexCreatedAfterThreshold() throws Exception {
+		BundleContext context = mock(BundleContext.class);
+		when(context.createFilter(anyString())).thenAnswer(invocation -> {
+			Filter filter = FrameworkUtil.createFilter((String) invocation.getArguments()[0]);
+			return filter;
+		});
+		AutoFilterIndex index = new AutoFilterIndex();
+		index.open(context);
+		
+		assertFalse(index.isApplicable("A", "(id=1)"));
+		assertFalse(index.isApplicable("A", "(id=2)"));
+		// third request for the same shape: the index is created
+		assertTrue(index.isApplicable("B", "(id=3)"));
+		assertTrue(index.isApplicable("A", "(id=1)"));
+		assertFalse(index.isApplicable("A", "(id=a*)"));
+		
+		assertTrue(index.getAllServiceReferences("A", "(id=1)").isEmpty());
+		
+		List<FilterIndexStatistics> statistics = index.getStatistics();
+		assertEquals(1, statistics.size());
+		assertEquals("id,objectclass", statistics.get(0).getDefinition());
+		assertEquals(1, statistics.get(0).getHits());
+		// the third request is answered by the new index
+		assertEquals(2, statistics.get(0).getMisses());
+		index.close();
+	}
+
+	@Test
+	public void invalidThresholdUsesDefault() throws Exception {
+		BundleContext context = mock(BundleContext.class);
+		when(context.getProperty(AutoFilterIndex.THRESHOLD)).thenReturn("three");
+		when(context.createFilter(anyString())).thenAnswer(invocation -> {
+			Filter filter = FrameworkUtil.createFilter((String) invocation.getArguments()[0]);
+			return filter;
+		});
+		AutoFilterIndex index = new AutoFilterIndex();
+		index.open(context);
+		
+		assertFalse(index.isApplicable("A", "(id=1)"));
+		assertFalse(index.isApplicable("A", "(id=2)"));
+		assertTrue(index.isApplicable("A", "(id=3)"));
+		index.close();
+	}
+}
@@ -20,6 +20,8 @@ package test;
 
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 
@@ -181,6 +183,39 @@ public class MultiPropertyFilterIndexReferencedTest {
 	}
 	
 	
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void collectionAndArrayProperties() {
+		MultiPropertyFilterIndex multiPropertyIndex = new MultiPropertyFilterIndex("objectClass,#tags,#ports");
+
+		TestReference ref1 = new TestReference();
+		ref1.addProperty("service.id", 4711);
+		ref1.addProperty("objectclass", "java.lang.String");
+		ref1.addProperty("tags", Arrays.asList("red", "green"));
+		ref1.addProperty("ports", new int[] {80, 443});
+
+		TestReference ref2 = new TestReference();
+		ref2.addProperty("service.id", 4712);
+		ref2.addProperty("objectclass", "java.lang.String");
+		ref2.addProperty("tags", new HashSet<>(Arrays.asList("blue")));
+		ref2.addProperty("ports", new Integer[] {443});
+
+		multiPropertyIndex.addedService(ref1, new String("Service1"));
+		multiPropertyIndex.addedService(ref2, new String("Service2"));
+
+		// every element of a collection or array is matched on its own
+		List<ServiceReference> result = multiPropertyIndex.getAllServiceReferences("java.lang.String", "(&(tags=green)(ports=80))");
+		assertTrue(result.size() == 1);
+		assertTrue(result.get(0).equals(ref1));
+
+		result = multiPropertyIndex.getAllServiceReferences("java.lang.String", "(&(tags=blue)(ports=443))");
+		assertTrue(result.size() == 1);
+		assertTrue(result.get(0).equals(ref2));
+
+		result = multiPropertyIndex.getAllServiceReferences("java.lang.String", "(&(tags=red)(ports=8080))");
+		assertTrue(result.isEmpty());
+	}
+
 	@SuppressWarnings("rawtypes")
 	@Test
 	public void MultiPropertyFilterIndexTypes() {
@@ -264,6 +299,10 @@ public class MultiPropertyFilterIndexReferencedTest {
 		public void addProperty(String key, String[] multiValue) {
 			props.put(key, multiValue);
 		}
+
+		public void addProperty(String key, Object multiValue) {
+			props.put(key, multiValue);
+		}
 		
 		
 		@Override
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.felix.dm.Logger;
+import org.apache.felix.dm.impl.DispatchExecutor;
+import org.apache.felix.dm.impl.WorkStealingExecutorFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Validates the built-in work-stealing ComponentExecutorFactory: jobs scheduled on different components are 
+ * executed concurrently, but jobs scheduled on the same component are executed serially, in FIFO order.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class WorkStealingExecutorFactoryTest extends TestBase {
+    final int COMPONENTS = 1000;
+    final int JOBS = 100;
+    
+    @Test
+    public void testParseParallelism() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Assert.assertEquals(cores, WorkStealingExecutorFactory.parseParallelism("*"));
+        Assert.assertEquals(cores, WorkStealingExecutorFactory.parseParallelism("0"));
+        Assert.assertEquals(4, WorkStealingExecutorFactory.parseParallelism(" 4 "));
+        try {
+            WorkStealingExecutorFactory.parseParallelism("-1");
+            Assert.fail("negative parallelism accepted");
+        } catch (NumberFormatException e) {
+        }
+    }
+    
+    @Test
+    public void testSerialPerComponent() throws InterruptedException {
+        info("Testing work-stealing executor factory");
+        WorkStealingExecutorFactory factory = new WorkStealingExecutorFactory(4);
+        try {
+            Executor threadPool = factory.getExecutorFor(null);
+            Logger logger = new Logger(null);
+            CountDownLatch latch = new CountDownLatch(COMPONENTS * JOBS);
+            AtomicBoolean failed = new AtomicBoolean();
+            List<DispatchExecutor> queues = new ArrayList<>();
+            List<AtomicInteger> counters = new ArrayList<>();
+            for (int i = 0; i < COMPONENTS; i++) {
+                queues.add(new DispatchExecutor(threadPool, logger));
+                counters.add(new AtomicInteger());
+            }
+            
+            // schedule the jobs of all components from a pool thread, in order to use the local deques of the workers 
+            threadPool.execute(() -> {
+                for (int j = 0; j < JOBS; j++) {
+                    for (int i = 0; i < COMPONENTS; i++) {
+                        final int expected = j;
+                        final AtomicInteger counter = counters.get(i);
+                        queues.get(i).execute(() -> {
+                            // jobs of a given component must not overlap and must run in FIFO order
+                            if (! counter.compareAndSet(expected * 2, expected * 2 + 1)) {
+                                failed.set(true);
+                            }
+                            counter.incrementAndGet();
+                            latch.countDown();
+                        });
+                    }
+                }
+            });
+            Assert.assertTrue("Jobs did not terminate timely", latch.await(20, TimeUnit.SECONDS));
+            Assert.assertFalse("Jobs of a component have been executed concurrently or out of order", failed.get());
+            Assert.assertTrue(factory.awaitQuiescence(5, TimeUnit.SECONDS));
+        } finally {
+            factory.shutdown();
+        }
+    }
+}
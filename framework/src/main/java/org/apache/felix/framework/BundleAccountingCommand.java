@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.felix.framework.accounting.BundleAccounting;
+import org.apache.felix.framework.accounting.BundleUsageDTO;
+import org.apache.felix.framework.accounting.CallbackUsageDTO;
+import org.osgi.framework.Bundle;
+
+/**
+ * Gogo commands printing the totals of the {@link BundleAccounting}
+ * service. The system bundle registers this object with the
+ * <code>felix</code> command scope; Gogo invokes its public methods by
+ * name.
+ */
+public class BundleAccountingCommand
+{
+    static final String SCOPE = "felix";
+    static final String[] FUNCTIONS = { "usage", "resetusage" };
+
+    private final Felix m_felix;
+    private final BundleAccounting m_accounting;
+
+    BundleAccountingCommand(Felix felix, BundleAccounting accounting)
+    {
+        m_felix = felix;
+        m_accounting = accounting;
+    }
+
+    /**
+     * Lists the usage of all bundles, highest CPU time (or elapsed time if
+     * the VM does not measure CPU time) first.
+     */
+    public void usage()
+    {
+        BundleUsageDTO[] usage = m_accounting.getBundleUsage();
+        Arrays.sort(usage, new Comparator<BundleUsageDTO>() {
+            @Override
+            public int compare(BundleUsageDTO u1, BundleUsageDTO u2)
+            {
+                long t1 = m_accounting.isCpuTimeSupported() ? u1.cpuTime : u1.wallTime;
+                long t2 = m_accounting.isCpuTimeSupported() ? u2.cpuTime : u2.wallTime;
+                return (t1 == t2) ? 0 : (t1 > t2) ? -1 : 1;
+            }
+        });
+
+        PrintStream out = System.out;
+        out.println(" ID|    Calls|Active|   Wall (ms)|    CPU (ms)|  Alloc (KB)|Name");
+        for (BundleUsageDTO dto : usage)
+        {
+            out.println(format(dto.bundle, 3) + "|" + format(dto.calls, 9) + "|"
+                + format(dto.activeCalls, 6) + "|" + format(toMillis(dto.wallTime), 12) + "|"
+                + format(toMillis(dto.cpuTime), 12) + "|" + format(toKilo(dto.allocatedBytes), 12) + "|"
+                + getName(dto.bundle));
+        }
+    }
+
+    /**
+     * Shows the usage of the given bundle per type of callback.
+     */
+    public void usage(long id)
+    {
+        PrintStream out = System.out;
+        BundleUsageDTO dto = m_accounting.getBundleUsage(id);
+        if (dto == null)
+        {
+            out.println("No usage recorded for bundle " + id);
+            return;
+        }
+
+        out.println(getName(id) + " [" + id + "], " + dto.activeCalls + " active calls");
+        out.println("Callback      |    Calls|   Wall (ms)|    CPU (ms)|  Alloc (KB)");
+        for (CallbackUsageDTO callback : dto.callbacks)
+        {
+            StringBuilder type = new StringBuilder(callback.type);
+            while (type.length() < 14)
+            {
+                type.append(' ');
+            }
+            out.println(type + "|" + format(callback.calls, 9) + "|"
+                + format(toMillis(callback.wallTime), 12) + "|"
+                + format(toMillis(callback.cpuTime), 12) + "|"
+                + format(toKilo(callback.allocatedBytes), 12));
+        }
+    }
+
+    /**
+     * Resets the usage totals of all bundles.
+     */
+    public void resetusage()
+    {
+        m_accounting.reset();
+    }
+
+    private String getName(long id)
+    {
+        Bundle bundle = m_felix.getBundle(id);
+        if (bundle == null)
+        {
+            return "<uninstalled>";
+        }
+        return (bundle.getSymbolicName() != null)
+            ? bundle.getSymbolicName() : bundle.getLocation();
+    }
+
+    private static long toMillis(long nanos)
+    {
+        return (nanos < 0) ? nanos : nanos / 1000000L;
+    }
+
+    private static long toKilo(long bytes)
+    {
+        return (bytes < 0) ? bytes : bytes / 1024L;
+    }
+
+    private static String format(long value, int width)
+    {
+        String s = (value < 0) ? "n/a" : Long.toString(value);
+        StringBuilder sb = new StringBuilder(width);
+        for (int i = s.length(); i < width; i++)
+        {
+            sb.append(' ');
+        }
+        return sb.append(s).toString();
+    }
+}
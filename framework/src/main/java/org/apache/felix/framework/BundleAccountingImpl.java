@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.felix.framework.accounting.BundleAccounting;
+import org.apache.felix.framework.accounting.BundleUsageDTO;
+import org.apache.felix.framework.accounting.CallbackUsageDTO;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+import org.osgi.framework.Bundle;
+
+/**
+ * Implements the {@link BundleAccounting} service. The framework brackets
+ * each callback into a bundle with {@link #enter(Bundle, int)} and
+ * {@link #exit()}, which sample the elapsed time and, where the VM supports
+ * it, the CPU time and allocated bytes of the current thread. Callbacks
+ * nested on the same thread are tracked on a thread local stack so their
+ * usage is only charged to the innermost bundle.
+ */
+class BundleAccountingImpl implements BundleAccounting
+{
+    static final int ACTIVATOR = 0;
+    static final int LISTENER = 1;
+    static final int SERVICE_FACTORY = 2;
+
+    private static final String[] CALLBACKS = {
+        CALLBACK_ACTIVATOR, CALLBACK_LISTENER, CALLBACK_SERVICE_FACTORY };
+
+    // Layout of the totals kept per callback type.
+    private static final int CALLS = 0;
+    private static final int WALL = 1;
+    private static final int CPU = 2;
+    private static final int ALLOC = 3;
+    private static final int TOTALS = 4;
+
+    private final Logger m_logger;
+    private final ThreadMXBean m_threadBean;
+    private final boolean m_cpuTime;
+    private final AllocatedBytes m_allocatedBytes;
+    private final ConcurrentMap<Long, Usage> m_usage = new ConcurrentHashMap<Long, Usage>();
+    private final ThreadLocal<Call> m_current = new ThreadLocal<Call>();
+
+    BundleAccountingImpl(Logger logger)
+    {
+        m_logger = logger;
+        m_threadBean = ManagementFactory.getThreadMXBean();
+
+        boolean cpuTime = false;
+        try
+        {
+            if (m_threadBean.isCurrentThreadCpuTimeSupported())
+            {
+                if (!m_threadBean.isThreadCpuTimeEnabled())
+                {
+                    m_threadBean.setThreadCpuTimeEnabled(true);
+                }
+                cpuTime = true;
+            }
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(Logger.LOG_WARNING,
+                "Unable to enable thread CPU time measurement for bundle accounting.", ex);
+        }
+        m_cpuTime = cpuTime;
+
+        // Allocated bytes are only available through the HotSpot
+        // specific extension of the thread MX bean, so only load the
+        // class casting to it once the extension has been found.
+        AllocatedBytes allocatedBytes = null;
+        try
+        {
+            if (Class.forName("com.sun.management.ThreadMXBean").isInstance(m_threadBean))
+            {
+                allocatedBytes = AllocatedBytes.create(m_threadBean);
+            }
+        }
+        catch (Throwable ex)
+        {
+            m_logger.log(Logger.LOG_DEBUG,
+                "Thread allocated memory measurement is not available for bundle accounting.", ex);
+        }
+        m_allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Starts accounting a callback of the given type into the given bundle
+     * on the current thread. Each call must be matched by a call to
+     * {@link #exit()} in a <code>finally</code> block.
+     */
+    void enter(Bundle bundle, int callback)
+    {
+        Long id = bundle.getBundleId();
+        Usage usage = m_usage.get(id);
+        if (usage == null)
+        {
+            usage = new Usage();
+            Usage existing = m_usage.putIfAbsent(id, usage);
+            if (existing != null)
+            {
+                usage = existing;
+            }
+        }
+        usage.m_active.incrementAndGet();
+
+        Call call = new Call(m_current.get(), usage, callback);
+        call.m_wall = System.nanoTime();
+        call.m_cpu = getCpuTime();
+        call.m_alloc = getAllocatedBytes();
+        m_current.set(call);
+    }
+
+    /**
+     * Ends accounting the innermost callback entered on the current thread.
+     */
+    void exit()
+    {
+        Call call = m_current.get();
+        if (call == null)
+        {
+            return;
+        }
+
+        long wall = System.nanoTime() - call.m_wall;
+        long cpu = m_cpuTime ? getCpuTime() - call.m_cpu : 0;
+        long alloc = (m_allocatedBytes != null) ? getAllocatedBytes() - call.m_alloc : 0;
+
+        if (call.m_parent != null)
+        {
+            m_current.set(call.m_parent);
+            call.m_parent.m_childWall += wall;
+            call.m_parent.m_childCpu += cpu;
+            call.m_parent.m_childAlloc += alloc;
+        }
+        else
+        {
+            m_current.remove();
+        }
+
+        call.m_usage.add(call.m_callback,
+            wall - call.m_childWall, cpu - call.m_childCpu, alloc - call.m_childAlloc);
+        call.m_usage.m_active.decrementAndGet();
+    }
+
+    /**
+     * Drops the usage of an uninstalled bundle.
+     */
+    void remove(Bundle bundle)
+    {
+        m_usage.remove(bundle.getBundleId());
+    }
+
+    @Override
+    public BundleUsageDTO[] getBundleUsage()
+    {
+        List<BundleUsageDTO> dtos = new ArrayList<BundleUsageDTO>();
+        for (Map.Entry<Long, Usage> entry : m_usage.entrySet())
+        {
+            dtos.add(createDTO(entry.getKey(), entry.getValue()));
+        }
+        return dtos.toArray(new BundleUsageDTO[dtos.size()]);
+    }
+
+    @Override
+    public BundleUsageDTO getBundleUsage(long bundleId)
+    {
+        Usage usage = m_usage.get(bundleId);
+        return (usage != null) ? createDTO(bundleId, usage) : null;
+    }
+
+    @Override
+    public boolean isCpuTimeSupported()
+    {
+        return m_cpuTime;
+    }
+
+    @Override
+    public boolean isAllocatedBytesSupported()
+    {
+        return m_allocatedBytes != null;
+    }
+
+    @Override
+    public void reset()
+    {
+        // Keep entries of bundles in a callback, so their active
+        // count stays balanced.
+        for (Usage usage : m_usage.values())
+        {
+            for (int i = 0; i < usage.m_totals.length(); i++)
+            {
+                usage.m_totals.set(i, 0);
+            }
+        }
+    }
+
+    private BundleUsageDTO createDTO(long bundleId, Usage usage)
+    {
+        BundleUsageDTO dto = new BundleUsageDTO();
+        dto.bundle = bundleId;
+        dto.activeCalls = usage.m_active.get();
+        dto.cpuTime = m_cpuTime ? 0 : -1;
+        dto.allocatedBytes = (m_allocatedBytes != null) ? 0 : -1;
+
+        List<CallbackUsageDTO> callbacks = new ArrayList<CallbackUsageDTO>(CALLBACKS.length);
+        for (int i = 0; i < CALLBACKS.length; i++)
+        {
+            long calls = usage.m_totals.get(i * TOTALS + CALLS);
+            if (calls > 0)
+            {
+                CallbackUsageDTO callback = new CallbackUsageDTO();
+                callback.type = CALLBACKS[i];
+                callback.calls = calls;
+                callback.wallTime = usage.m_totals.get(i * TOTALS + WALL);
+                callback.cpuTime = m_cpuTime ? usage.m_totals.get(i * TOTALS + CPU) : -1;
+                callback.allocatedBytes = (m_allocatedBytes != null)
+                    ? usage.m_totals.get(i * TOTALS + ALLOC) : -1;
+                callbacks.add(callback);
+
+                dto.calls += callback.calls;
+                dto.wallTime += callback.wallTime;
+                if (m_cpuTime)
+                {
+                    dto.cpuTime += callback.cpuTime;
+                }
+                if (m_allocatedBytes != null)
+                {
+                    dto.allocatedBytes += callback.allocatedBytes;
+                }
+            }
+        }
+        dto.callbacks = callbacks.toArray(new CallbackUsageDTO[callbacks.size()]);
+        return dto;
+    }
+
+    private long getCpuTime()
+    {
+        return m_cpuTime ? m_threadBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    private long getAllocatedBytes()
+    {
+        return (m_allocatedBytes != null) ? m_allocatedBytes.get() : 0;
+    }
+
+    /**
+     * Reads the allocated bytes of the current thread from the HotSpot
+     * thread MX bean. Only loaded after checking the bean implements it.
+     */
+    @IgnoreJRERequirement
+    private static class AllocatedBytes
+    {
+        private final com.sun.management.ThreadMXBean m_bean;
+
+        private AllocatedBytes(com.sun.management.ThreadMXBean bean)
+        {
+            m_bean = bean;
+        }
+
+        static AllocatedBytes create(ThreadMXBean threadBean)
+        {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+            if (!bean.isThreadAllocatedMemorySupported())
+            {
+                return null;
+            }
+            if (!bean.isThreadAllocatedMemoryEnabled())
+            {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return new AllocatedBytes(bean);
+        }
+
+        long get()
+        {
+            return m_bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+
+    /**
+     * Running totals of a bundle.
+     */
+    private static class Usage
+    {
+        private final AtomicInteger m_active = new AtomicInteger();
+        private final AtomicLongArray m_totals = new AtomicLongArray(CALLBACKS.length * TOTALS);
+
+        void add(int callback, long wall, long cpu, long alloc)
+        {
+            int base = callback * TOTALS;
+            m_totals.incrementAndGet(base + CALLS);
+            m_totals.addAndGet(base + WALL, wall);
+            m_totals.addAndGet(base + CPU, cpu);
+            m_totals.addAndGet(base + ALLOC, alloc);
+        }
+    }
+
+    /**
+     * A callback in progress on the current thread.
+     */
+    private static class Call
+    {
+        private final Call m_parent;
+        private final Usage m_usage;
+        private final int m_callback;
+        private long m_wall;
+        private long m_cpu;
+        private long m_alloc;
+        private long m_childWall;
+        private long m_childCpu;
+        private long m_childAlloc;
+
+        Call(Call parent, Usage usage, int callback)
+        {
+            m_parent = parent;
+            m_usage = usage;
+            m_callback = callback;
+        }
+    }
+}
@@ -25,6 +25,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.felix.framework.accounting.BundleAccounting;
+import org.apache.felix.framework.accounting.BundleUsageDTO;
 import org.osgi.dto.DTO;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -102,6 +104,12 @@ public class DTOFactory
         {
             return type.cast(createServiceReferenceDTOArray(bundle));
         }
+        else if (type == BundleUsageDTO.class && bundle instanceof BundleImpl)
+        {
+            BundleAccounting accounting = ((BundleImpl) bundle).getFramework().getBundleAccounting();
+            return (accounting != null)
+                ? type.cast(accounting.getBundleUsage(bundle.getBundleId())) : null;
+        }
         else if (type == FrameworkDTO.class && bundle instanceof Felix)
         {
             return type.cast(createFrameworkDTO((Felix) bundle));
@@ -55,6 +55,7 @@ public class EventDispatcher
 {
     private final Logger m_logger;
     private final ServiceRegistry m_registry;
+    private final BundleAccountingImpl m_accounting;
 
     private Map<BundleContext, List<ListenerInfo>>
         m_fwkListeners = Collections.EMPTY_MAP;
@@ -79,9 +80,15 @@ public class EventDispatcher
     private static final SecureAction m_secureAction = new SecureAction();
 
     public EventDispatcher(Logger logger, ServiceRegistry registry)
+    {
+        this(logger, registry, null);
+    }
+
+    EventDispatcher(Logger logger, ServiceRegistry registry, BundleAccountingImpl accounting)
     {
         m_logger = logger;
         m_registry = registry;
+        m_accounting = accounting;
     }
 
     public void startDispatching()
@@ -827,15 +834,17 @@ public class EventDispatcher
                     {
                         if (type == Request.FRAMEWORK_EVENT)
                         {
-                            invokeFrameworkListenerCallback(bundle, l, event);
+                            invokeFrameworkListenerCallback(
+                                dispatcher.m_accounting, bundle, l, event);
                         }
                         else if (type == Request.BUNDLE_EVENT)
                         {
-                            invokeBundleListenerCallback(bundle, l, event);
+                            invokeBundleListenerCallback(
+                                dispatcher.m_accounting, bundle, l, event);
                         }
                         else if (type == Request.SERVICE_EVENT)
                         {
-                            invokeServiceListenerCallback(
+                            invokeServiceListenerCallback(dispatcher.m_accounting,
                                 bundle, l, filter, acc, event, oldProps);
                         }
                     }
@@ -856,7 +865,7 @@ public class EventDispatcher
         }
     }
 
-    private static void invokeFrameworkListenerCallback(
+    private static void invokeFrameworkListenerCallback(BundleAccountingImpl accounting,
         Bundle bundle, final EventListener l, final EventObject event)
     {
         // The spec says only active bundles receive asynchronous events,
@@ -865,25 +874,39 @@ public class EventDispatcher
         if ((bundle.getState() == Bundle.STARTING) ||
             (bundle.getState() == Bundle.ACTIVE))
         {
-            if (System.getSecurityManager() != null)
+            if (accounting != null)
             {
-                AccessController.doPrivileged(new PrivilegedAction() {
-                    @Override
-                    public Object run()
-                    {
-                        ((FrameworkListener) l).frameworkEvent((FrameworkEvent) event);
-                        return null;
-                    }
-                });
+                accounting.enter(bundle, BundleAccountingImpl.LISTENER);
             }
-            else
+            try
             {
-                ((FrameworkListener) l).frameworkEvent((FrameworkEvent) event);
+                if (System.getSecurityManager() != null)
+                {
+                    AccessController.doPrivileged(new PrivilegedAction() {
+                        @Override
+                        public Object run()
+                        {
+                            ((FrameworkListener) l).frameworkEvent((FrameworkEvent) event);
+                            return null;
+                        }
+                    });
+                }
+                else
+                {
+                    ((FrameworkListener) l).frameworkEvent((FrameworkEvent) event);
+                }
+            }
+            finally
+            {
+                if (accounting != null)
+                {
+                    accounting.exit();
+                }
             }
         }
     }
 
-    private static void invokeBundleListenerCallback(
+    private static void invokeBundleListenerCallback(BundleAccountingImpl accounting,
         Bundle bundle, final EventListener l, final EventObject event)
     {
         // A bundle listener is either synchronous or asynchronous.
@@ -899,25 +922,39 @@ public class EventDispatcher
             ((bundle.getState() == Bundle.STARTING) ||
             (bundle.getState() == Bundle.ACTIVE)))
         {
-            if (System.getSecurityManager() != null)
+            if (accounting != null)
             {
-                AccessController.doPrivileged(new PrivilegedAction() {
-                    @Override
-                    public Object run()
-                    {
-                        ((BundleListener) l).bundleChanged((BundleEvent) event);
-                        return null;
-                    }
-                });
+                accounting.enter(bundle, BundleAccountingImpl.LISTENER);
             }
-            else
+            try
             {
-                ((BundleListener) l).bundleChanged((BundleEvent) event);
+                if (System.getSecurityManager() != null)
+                {
+                    AccessController.doPrivileged(new PrivilegedAction() {
+                        @Override
+                        public Object run()
+                        {
+                            ((BundleListener) l).bundleChanged((BundleEvent) event);
+                            return null;
+                        }
+                    });
+                }
+                else
+                {
+                    ((BundleListener) l).bundleChanged((BundleEvent) event);
+                }
+            }
+            finally
+            {
+                if (accounting != null)
+                {
+                    accounting.exit();
+                }
             }
         }
     }
 
-    private static void invokeServiceListenerCallback(
+    private static void invokeServiceListenerCallback(BundleAccountingImpl accounting,
         Bundle bundle, final EventListener l, Filter filter, Object acc,
         final EventObject event, final Dictionary oldProps)
     {
@@ -973,21 +1010,35 @@ public class EventDispatcher
                 if ((l instanceof AllServiceListener) ||
                     Util.isServiceAssignable(bundle, ((ServiceEvent) event).getServiceReference()))
                 {
-                    if (System.getSecurityManager() != null)
+                    if (accounting != null)
+                    {
+                        accounting.enter(bundle, BundleAccountingImpl.LISTENER);
+                    }
+                    try
                     {
-                        AccessController.doPrivileged(new PrivilegedAction()
+                        if (System.getSecurityManager() != null)
                         {
-                            @Override
-                            public Object run()
+                            AccessController.doPrivileged(new PrivilegedAction()
                             {
-                                ((ServiceListener) l).serviceChanged((ServiceEvent) event);
-                                return null;
-                            }
-                        });
+                                @Override
+                                public Object run()
+                                {
+                                    ((ServiceListener) l).serviceChanged((ServiceEvent) event);
+                                    return null;
+                                }
+                            });
+                        }
+                        else
+                        {
+                            ((ServiceListener) l).serviceChanged((ServiceEvent) event);
+                        }
                     }
-                    else
+                    finally
                     {
-                        ((ServiceListener) l).serviceChanged((ServiceEvent) event);
+                        if (accounting != null)
+                        {
+                            accounting.exit();
+                        }
                     }
                 }
             }
@@ -1000,21 +1051,35 @@ public class EventDispatcher
                     final ServiceEvent se = new ServiceEvent(
                         ServiceEvent.MODIFIED_ENDMATCH,
                         ((ServiceEvent) event).getServiceReference());
-                    if (System.getSecurityManager() != null)
+                    if (accounting != null)
+                    {
+                        accounting.enter(bundle, BundleAccountingImpl.LISTENER);
+                    }
+                    try
                     {
-                        AccessController.doPrivileged(new PrivilegedAction()
+                        if (System.getSecurityManager() != null)
                         {
-                            @Override
-                            public Object run()
+                            AccessController.doPrivileged(new PrivilegedAction()
                             {
-                                ((ServiceListener) l).serviceChanged(se);
-                                return null;
-                            }
-                        });
+                                @Override
+                                public Object run()
+                                {
+                                    ((ServiceListener) l).serviceChanged(se);
+                                    return null;
+                                }
+                            });
+                        }
+                        else
+                        {
+                            ((ServiceListener) l).serviceChanged(se);
+                        }
                     }
-                    else
+                    finally
                     {
-                        ((ServiceListener) l).serviceChanged(se);
+                        if (accounting != null)
+                        {
+                            accounting.exit();
+                        }
                     }
                 }
             }
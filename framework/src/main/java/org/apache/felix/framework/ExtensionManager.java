@@ -92,6 +92,9 @@ import java.util.Set;
 // instance.
 class ExtensionManager implements Content
 {
+    private static final String ACCOUNTING_PACKAGE =
+        "org.apache.felix.framework.accounting; version=1.0.0";
+
     static final ClassPathExtenderFactory.ClassPathExtender m_extenderFramework;
     static final ClassPathExtenderFactory.ClassPathExtender m_extenderBoot;
 
@@ -235,6 +238,15 @@ class ExtensionManager implements Content
                 configProps.getProperty(FelixConstants.FRAMEWORK_SYSTEMPACKAGES_EXTRA);
         syspkgs = ((pkgextra == null) || (pkgextra.trim().length() == 0))
             ? syspkgs : syspkgs + (pkgextra.trim().startsWith(",") ? pkgextra : "," + pkgextra);
+        // The bundle accounting package is only exported when bundle
+        // accounting is enabled.
+        String accounting = configProps.getProperty(FelixConstants.BUNDLE_ACCOUNTING_PROP,
+            System.getProperty(FelixConstants.BUNDLE_ACCOUNTING_PROP));
+        if ("true".equals(accounting))
+        {
+            syspkgs = (syspkgs.trim().length() == 0)
+                ? ACCOUNTING_PACKAGE : syspkgs + "," + ACCOUNTING_PACKAGE;
+        }
         m_headerMap.put(FelixConstants.BUNDLE_MANIFESTVERSION, "2");
         m_headerMap.put(FelixConstants.EXPORT_PACKAGE, syspkgs);
 
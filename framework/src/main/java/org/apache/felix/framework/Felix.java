@@ -40,6 +40,7 @@ import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -53,6 +54,7 @@ import java.util.WeakHashMap;
 
 import org.apache.felix.framework.BundleWiringImpl.BundleClassLoader;
 import org.apache.felix.framework.ServiceRegistry.ServiceRegistryCallbacks;
+import org.apache.felix.framework.accounting.BundleAccounting;
 import org.apache.felix.framework.cache.BundleArchive;
 import org.apache.felix.framework.cache.BundleCache;
 import org.apache.felix.framework.capabilityset.CapabilitySet;
@@ -189,6 +191,9 @@ public class Felix extends BundleImpl implements Framework
     // List of event listeners.
     private final EventDispatcher m_dispatcher;
 
+    // Accounting of bundle callbacks, null unless enabled.
+    private final BundleAccountingImpl m_accounting;
+
     // Reusable bundle URL stream handler.
     private final URLStreamHandler m_bundleStreamHandler;
 
@@ -412,6 +417,10 @@ public class Felix extends BundleImpl implements Framework
         // Create default bundle stream handler.
         m_bundleStreamHandler = new URLHandlersBundleStreamHandler(this);
 
+        // Create bundle accounting if enabled.
+        m_accounting = "true".equals(getProperty(FelixConstants.BUNDLE_ACCOUNTING_PROP))
+            ? new BundleAccountingImpl(m_logger) : null;
+
         // Create service registry.
         m_registry = new ServiceRegistry(m_logger, new ServiceRegistryCallbacks() {
             @Override
@@ -419,7 +428,7 @@ public class Felix extends BundleImpl implements Framework
             {
                 fireServiceEvent(event, oldProps);
             }
-        });
+        }, m_accounting);
 
         // Create a resolver and its state.
         m_resolver = new StatefulResolver(this, m_registry);
@@ -439,7 +448,7 @@ public class Felix extends BundleImpl implements Framework
         }
 
         // Create event dispatcher.
-        m_dispatcher = new EventDispatcher(m_logger, m_registry);
+        m_dispatcher = new EventDispatcher(m_logger, m_registry, m_accounting);
 
         // Create framework wiring object.
         m_fwkWiring = new FrameworkWiringImpl(this, m_registry);
@@ -452,6 +461,34 @@ public class Felix extends BundleImpl implements Framework
         return m_logger;
     }
 
+    /**
+     * Returns the bundle accounting service or <code>null</code> if
+     * bundle accounting is not enabled.
+     */
+    BundleAccounting getBundleAccounting()
+    {
+        return m_accounting;
+    }
+
+    private void startBundleAccounting()
+    {
+        if (m_accounting != null)
+        {
+            m_registry.registerService(this,
+                new String[] { BundleAccounting.class.getName() },
+                m_accounting,
+                null);
+
+            Hashtable<String, Object> props = new Hashtable<String, Object>();
+            props.put("osgi.command.scope", BundleAccountingCommand.SCOPE);
+            props.put("osgi.command.function", BundleAccountingCommand.FUNCTIONS);
+            m_registry.registerService(this,
+                new String[] { BundleAccountingCommand.class.getName() },
+                new BundleAccountingCommand(this, m_accounting),
+                props);
+        }
+    }
+
     Map<String, Object> getConfig()
     {
         return m_configMap;
@@ -839,6 +876,7 @@ public class Felix extends BundleImpl implements Framework
                 m_resolver.start();
                 m_fwkWiring.start();
                 m_fwkStartLevel.start();
+                startBundleAccounting();
 
                 try
                 {
@@ -2237,8 +2275,22 @@ public class Felix extends BundleImpl implements Framework
                 // Activate the bundle if it has an activator.
                 if (bundle.getActivator() != null)
                 {
-                    m_secureAction.startActivator(
-                        bundle.getActivator(), bundle._getBundleContext());
+                    if (m_accounting != null)
+                    {
+                        m_accounting.enter(bundle, BundleAccountingImpl.ACTIVATOR);
+                    }
+                    try
+                    {
+                        m_secureAction.startActivator(
+                            bundle.getActivator(), bundle._getBundleContext());
+                    }
+                    finally
+                    {
+                        if (m_accounting != null)
+                        {
+                            m_accounting.exit();
+                        }
+                    }
                 }
 
                 setBundleStateAndNotify(bundle, Bundle.ACTIVE);
@@ -2633,7 +2685,21 @@ public class Felix extends BundleImpl implements Framework
                 {
                     if (bundle.getActivator() != null)
                     {
-                        m_secureAction.stopActivator(bundle.getActivator(), bundle._getBundleContext());
+                        if (m_accounting != null)
+                        {
+                            m_accounting.enter(bundle, BundleAccountingImpl.ACTIVATOR);
+                        }
+                        try
+                        {
+                            m_secureAction.stopActivator(bundle.getActivator(), bundle._getBundleContext());
+                        }
+                        finally
+                        {
+                            if (m_accounting != null)
+                            {
+                                m_accounting.exit();
+                            }
+                        }
                     }
                 }
                 catch (Throwable th)
@@ -2817,6 +2883,12 @@ public class Felix extends BundleImpl implements Framework
         // Fire UNINSTALLED event without holding the lock.
         fireBundleEvent(BundleEvent.UNINSTALLED, bundle);
 
+        // Forget the usage of the uninstalled bundle.
+        if (m_accounting != null)
+        {
+            m_accounting.remove(bundle);
+        }
+
         // Acquire global lock to check if we should auto-refresh.
         boolean locked = acquireGlobalLock();
         if (locked)
@@ -342,6 +342,11 @@ class ServiceRegistrationImpl implements ServiceRegistration
     private Object getFactoryUnchecked(Bundle bundle)
     {
         Object svcObj = null;
+        BundleAccountingImpl accounting = m_registry.getAccounting();
+        if (accounting != null)
+        {
+            accounting.enter(m_bundle, BundleAccountingImpl.SERVICE_FACTORY);
+        }
         try
         {
             svcObj = m_factory.getService(bundle, this);
@@ -352,6 +357,13 @@ class ServiceRegistrationImpl implements ServiceRegistration
                 "Service factory exception: " + th.getMessage(),
                 ServiceException.FACTORY_EXCEPTION, th);
         }
+        finally
+        {
+            if (accounting != null)
+            {
+                accounting.exit();
+            }
+        }
         if (svcObj != null)
         {
             for (int i = 0; i < m_classes.length; i++)
@@ -385,7 +397,22 @@ class ServiceRegistrationImpl implements ServiceRegistration
 
     private void ungetFactoryUnchecked(Bundle bundle, Object svcObj)
     {
-        m_factory.ungetService(bundle, this, svcObj);
+        BundleAccountingImpl accounting = m_registry.getAccounting();
+        if (accounting != null)
+        {
+            accounting.enter(m_bundle, BundleAccountingImpl.SERVICE_FACTORY);
+        }
+        try
+        {
+            m_factory.ungetService(bundle, this, svcObj);
+        }
+        finally
+        {
+            if (accounting != null)
+            {
+                accounting.exit();
+            }
+        }
     }
 
     /**
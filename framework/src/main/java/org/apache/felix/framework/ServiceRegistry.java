@@ -60,12 +60,21 @@ public class ServiceRegistry
 
     private final ServiceRegistryCallbacks m_callbacks;
 
+    private final BundleAccountingImpl m_accounting;
+
     private final HookRegistry hookRegistry = new HookRegistry();
 
     public ServiceRegistry(final Logger logger, final ServiceRegistryCallbacks callbacks)
+    {
+        this(logger, callbacks, null);
+    }
+
+    ServiceRegistry(final Logger logger, final ServiceRegistryCallbacks callbacks,
+        final BundleAccountingImpl accounting)
     {
         m_logger = logger;
         m_callbacks = callbacks;
+        m_accounting = accounting;
     }
 
     /**
@@ -595,6 +604,11 @@ public class ServiceRegistry
         return m_logger;
     }
 
+    BundleAccountingImpl getAccounting()
+    {
+        return m_accounting;
+    }
+
     /**
      * Obtain a UsageCount object, by looking for an existing one or creating a new one (if possible).
      * This method tries to find a UsageCount object in the {@code m_inUseMap}. If one is found then
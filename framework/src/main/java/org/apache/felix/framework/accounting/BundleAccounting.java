@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.accounting;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Service keeping running totals of the time and memory used by bundles
+ * in callbacks made by the framework: bundle activator start and stop,
+ * listener dispatch and service factory get and unget. The service is
+ * registered by the system bundle when the framework is launched with the
+ * <code>felix.accounting</code> property set to <code>true</code>.
+ * <p>
+ * Usage is measured on the calling thread and accounted exclusively: when
+ * a callback of one bundle causes a nested callback into another bundle,
+ * for example a synchronous bundle listener called while an activator
+ * starts, the nested usage is charged to the other bundle only.
+ */
+@ProviderType
+public interface BundleAccounting
+{
+    /**
+     * Callback type for {@code BundleActivator.start} and
+     * {@code BundleActivator.stop}.
+     */
+    String CALLBACK_ACTIVATOR = "activator";
+
+    /**
+     * Callback type for framework, bundle and service listener dispatch.
+     */
+    String CALLBACK_LISTENER = "listener";
+
+    /**
+     * Callback type for {@code ServiceFactory.getService} and
+     * {@code ServiceFactory.ungetService}.
+     */
+    String CALLBACK_SERVICE_FACTORY = "serviceFactory";
+
+    /**
+     * Returns the usage of all bundles which have been called back since
+     * the framework started or the totals were last reset.
+     */
+    BundleUsageDTO[] getBundleUsage();
+
+    /**
+     * Returns the usage of the given bundle or <code>null</code> if it has
+     * not been called back since the framework started or the totals were
+     * last reset.
+     */
+    BundleUsageDTO getBundleUsage(long bundleId);
+
+    /**
+     * Returns whether the VM measures the CPU time of threads. If not, CPU
+     * times are reported as <code>-1</code>.
+     */
+    boolean isCpuTimeSupported();
+
+    /**
+     * Returns whether the VM measures the bytes allocated by threads. If
+     * not, allocated bytes are reported as <code>-1</code>.
+     */
+    boolean isAllocatedBytesSupported();
+
+    /**
+     * Resets all totals to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.accounting;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the usage of a bundle in callbacks made by the
+ * framework.
+ *
+ * @NotThreadSafe
+ */
+public class BundleUsageDTO extends DTO
+{
+    /**
+     * The id of the bundle.
+     */
+    public long bundle;
+
+    /**
+     * The number of threads currently executing callbacks of the bundle.
+     */
+    public int activeCalls;
+
+    /**
+     * The number of completed callbacks of the bundle.
+     */
+    public long calls;
+
+    /**
+     * The elapsed time spent in callbacks of the bundle in nanoseconds.
+     */
+    public long wallTime;
+
+    /**
+     * The CPU time spent in callbacks of the bundle in nanoseconds or
+     * <code>-1</code> if not supported by the VM.
+     */
+    public long cpuTime;
+
+    /**
+     * The bytes allocated in callbacks of the bundle or <code>-1</code> if
+     * not supported by the VM.
+     */
+    public long allocatedBytes;
+
+    /**
+     * The usage per type of callback. Only types for which the bundle has
+     * been called back are included.
+     */
+    public CallbackUsageDTO[] callbacks;
+}
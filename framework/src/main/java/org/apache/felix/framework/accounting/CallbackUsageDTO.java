@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.accounting;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the usage of a bundle in one type of callback
+ * made by the framework.
+ *
+ * @NotThreadSafe
+ */
+public class CallbackUsageDTO extends DTO
+{
+    /**
+     * The type of the callback, one of the <code>CALLBACK_</code> constants
+     * of {@link BundleAccounting}.
+     */
+    public String type;
+
+    /**
+     * The number of completed callbacks.
+     */
+    public long calls;
+
+    /**
+     * The elapsed time spent in the callbacks in nanoseconds.
+     */
+    public long wallTime;
+
+    /**
+     * The CPU time spent in the callbacks in nanoseconds or <code>-1</code>
+     * if not supported by the VM.
+     */
+    public long cpuTime;
+
+    /**
+     * The bytes allocated in the callbacks or <code>-1</code> if not
+     * supported by the VM.
+     */
+    public long allocatedBytes;
+}
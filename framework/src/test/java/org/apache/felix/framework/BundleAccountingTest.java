@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.framework.accounting.BundleAccounting;
+import org.apache.felix.framework.accounting.BundleUsageDTO;
+import org.apache.felix.framework.accounting.CallbackUsageDTO;
+import org.apache.felix.framework.util.FelixConstants;
+import org.easymock.EasyMock;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class BundleAccountingTest extends TestCase
+{
+    public void testAccountingDisabledByDefault() throws Exception
+    {
+        File cacheDir = createCacheDir();
+        Framework f = new Felix(createParams(cacheDir, false));
+        f.init();
+        f.start();
+        try
+        {
+            assertNull(f.getBundleContext().getServiceReference(BundleAccounting.class));
+            assertFalse(exportsAccounting(f));
+        }
+        finally
+        {
+            f.stop();
+            f.waitForStop(0);
+            deleteDir(cacheDir);
+        }
+    }
+
+    public void testActivatorAndServiceFactoryAccounting() throws Exception
+    {
+        File cacheDir = createCacheDir();
+        Framework f = new Felix(createParams(cacheDir, true));
+        f.init();
+        f.start();
+        try
+        {
+            BundleContext context = f.getBundleContext();
+            ServiceReference<BundleAccounting> accountingRef =
+                context.getServiceReference(BundleAccounting.class);
+            assertNotNull(accountingRef);
+            BundleAccounting accounting = context.getService(accountingRef);
+            assertTrue(exportsAccounting(f));
+
+            String mf = "Bundle-SymbolicName: accounting.test\n"
+                + "Bundle-Version: 1.0.0\n"
+                + "Bundle-ManifestVersion: 2\n"
+                + "Import-Package: org.osgi.framework\n";
+            Bundle bundle = context.installBundle(createBundle(mf, cacheDir).toURI().toString());
+            bundle.start();
+
+            ServiceReference<?> ref = context.getServiceReference(Runnable.class.getName());
+            assertNotNull(context.getService(ref));
+            context.ungetService(ref);
+
+            BundleUsageDTO usage = accounting.getBundleUsage(bundle.getBundleId());
+            assertNotNull(usage);
+            assertEquals(bundle.getBundleId(), usage.bundle);
+            assertEquals(0, usage.activeCalls);
+            assertEquals(3, usage.calls);
+            assertTrue(usage.wallTime > 0);
+
+            CallbackUsageDTO activator = getCallback(usage, BundleAccounting.CALLBACK_ACTIVATOR);
+            assertEquals(1, activator.calls);
+            if (accounting.isAllocatedBytesSupported())
+            {
+                assertTrue(activator.allocatedBytes >= TestBundleActivator.ALLOCATION);
+            }
+            assertEquals(2, getCallback(usage, BundleAccounting.CALLBACK_SERVICE_FACTORY).calls);
+
+            assertNotNull(bundle.adapt(BundleUsageDTO.class));
+
+            accounting.reset();
+            assertEquals(0, accounting.getBundleUsage(bundle.getBundleId()).calls);
+
+            bundle.uninstall();
+            assertNull(accounting.getBundleUsage(bundle.getBundleId()));
+        }
+        finally
+        {
+            f.stop();
+            f.waitForStop(0);
+            deleteDir(cacheDir);
+        }
+    }
+
+    public void testNestedCallbacksAreExclusive() throws Exception
+    {
+        Bundle outer = EasyMock.createMock(Bundle.class);
+        EasyMock.expect(outer.getBundleId()).andReturn(1L).anyTimes();
+        Bundle inner = EasyMock.createMock(Bundle.class);
+        EasyMock.expect(inner.getBundleId()).andReturn(2L).anyTimes();
+        EasyMock.replay(outer, inner);
+
+        BundleAccountingImpl accounting = new BundleAccountingImpl(new Logger());
+        accounting.enter(outer, BundleAccountingImpl.ACTIVATOR);
+        accounting.enter(inner, BundleAccountingImpl.LISTENER);
+        assertEquals(1, accounting.getBundleUsage(1).activeCalls);
+        assertEquals(1, accounting.getBundleUsage(2).activeCalls);
+        Thread.sleep(50);
+        accounting.exit();
+        accounting.exit();
+
+        BundleUsageDTO outerUsage = accounting.getBundleUsage(1);
+        BundleUsageDTO innerUsage = accounting.getBundleUsage(2);
+        assertEquals(0, outerUsage.activeCalls);
+        assertEquals(1, outerUsage.calls);
+        assertEquals(1, innerUsage.calls);
+        assertEquals(BundleAccounting.CALLBACK_LISTENER, innerUsage.callbacks[0].type);
+        assertTrue(innerUsage.wallTime >= 50000000L);
+        assertTrue(outerUsage.wallTime < innerUsage.wallTime);
+    }
+
+    private static boolean exportsAccounting(Framework f)
+    {
+        for (BundleCapability cap : f.adapt(BundleWiring.class)
+            .getCapabilities(PackageNamespace.PACKAGE_NAMESPACE))
+        {
+            if (BundleAccounting.class.getPackage().getName().equals(
+                cap.getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static CallbackUsageDTO getCallback(BundleUsageDTO usage, String type)
+    {
+        for (CallbackUsageDTO callback : usage.callbacks)
+        {
+            if (type.equals(callback.type))
+            {
+                return callback;
+            }
+        }
+        fail("No usage for callback " + type);
+        return null;
+    }
+
+    private static Map<String, Object> createParams(File cacheDir, boolean accounting)
+    {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(Constants.FRAMEWORK_STORAGE, cacheDir.getPath());
+        params.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        if (accounting)
+        {
+            params.put(FelixConstants.BUNDLE_ACCOUNTING_PROP, "true");
+        }
+        return params;
+    }
+
+    private static File createCacheDir() throws IOException
+    {
+        File cacheDir = File.createTempFile("felix-cache", ".dir");
+        cacheDir.delete();
+        cacheDir.mkdirs();
+        return cacheDir;
+    }
+
+    private static File createBundle(String manifest, File tempDir) throws IOException
+    {
+        File f = File.createTempFile("felix-bundle", ".jar", tempDir);
+
+        Manifest mf = new Manifest(new ByteArrayInputStream(manifest.getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        mf.getMainAttributes().putValue(Constants.BUNDLE_ACTIVATOR, TestBundleActivator.class.getName());
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+
+        String path = TestBundleActivator.class.getName().replace('.', '/') + ".class";
+        os.putNextEntry(new ZipEntry(path));
+
+        InputStream is = TestBundleActivator.class.getClassLoader().getResourceAsStream(path);
+        byte[] b = new byte[is.available()];
+        is.read(b);
+        is.close();
+        os.write(b);
+
+        os.close();
+        return f;
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertTrue(root.delete());
+    }
+
+    public static class TestBundleActivator implements BundleActivator, ServiceFactory<Runnable>
+    {
+        static final int ALLOCATION = 1024 * 1024;
+
+        static volatile byte[] s_data;
+
+        public void start(BundleContext context) throws Exception
+        {
+            s_data = new byte[ALLOCATION];
+            context.registerService(Runnable.class.getName(), this, null);
+        }
+
+        public void stop(BundleContext context) throws Exception
+        {
+            s_data = null;
+        }
+
+        public Runnable getService(Bundle bundle, ServiceRegistration<Runnable> registration)
+        {
+            return new Thread();
+        }
+
+        public void ungetService(Bundle bundle, ServiceRegistration<Runnable> registration, Runnable service)
+        {
+        }
+    }
+}
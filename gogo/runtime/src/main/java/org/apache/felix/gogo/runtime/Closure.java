@@ -50,6 +50,8 @@ public class Closure implements Function, Evaluate
 
     public static final String LOCATION = ".location";
     public static final String PIPE_EXCEPTION = "pipe-exception";
+    public static final String OPTION_OBJECT_PIPE = "gogo.option.objectpipe";
+    private static final int OBJECT_PIPE_CAPACITY = 1024;
     private static final String DEFAULT_LOCK = ".defaultLock";
 
     private static final ThreadLocal<String> location = new ThreadLocal<>();
@@ -80,7 +82,7 @@ public class Closure implements Function, Evaluate
         {
             try
             {
-                this.program = new Parser(source).program();
+                this.program = ((CommandProcessorImpl) session.processor()).parse(source);
             }
             catch (Exception e)
             {
@@ -243,16 +245,32 @@ public class Closure implements Function, Evaluate
                 Token e = exec.get(exec.size() - 1);
                 Token t = program.subSequence(s.start - program.start, e.start + e.length - program.start);
                 job = session().createJob(t);
+                boolean objects = isSet(OPTION_OBJECT_PIPE, false);
+                ObjectPipe input = null;
                 for (int i = 0; i < exec.size(); i++) {
                     Statement ex = (Statement) exec.get(i);
                     Operator op = i < exec.size() - 1 ? (Operator) exec.get(++i) : null;
                     Channel[] nstreams;
                     boolean[] ntoclose;
                     boolean endOfPipe;
+                    ObjectPipe output = null;
                     if (i == exec.size() - 1) {
                         nstreams = streams;
                         ntoclose = toclose;
                         endOfPipe = true;
+                    } else if (objects && (Token.eq("|", op) || Token.eq("|&", op))) {
+                        output = new ObjectPipe(session, OBJECT_PIPE_CAPACITY);
+                        nstreams = streams.clone();
+                        nstreams[1] = output.sink();
+                        ntoclose = toclose.clone();
+                        ntoclose[1] = true;
+                        if (Token.eq("|&", op)) {
+                            nstreams[2] = output.sink();
+                            ntoclose[2] = true;
+                        }
+                        streams[0] = output.source();
+                        toclose[0] = true;
+                        endOfPipe = false;
                     } else if (Token.eq("|", op)) {
                         PipedInputStream pis = new PipedInputStream();
                         PipedOutputStream pos = new PipedOutputStream(pis);
@@ -276,8 +294,9 @@ public class Closure implements Function, Evaluate
                     } else {
                         throw new IllegalStateException("Unrecognized pipe operator: '" + op + "'");
                     }
-                    Pipe pipe = new Pipe(this, job, ex, nstreams, ntoclose, endOfPipe);
+                    Pipe pipe = new Pipe(this, job, ex, nstreams, ntoclose, endOfPipe, input, output);
                     job.addPipe(pipe);
+                    input = output;
                 }
             } else {
                 job = session().createJob(executable);
@@ -34,6 +34,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 
+import org.apache.felix.gogo.runtime.Parser.Program;
 import org.apache.felix.service.command.*;
 import org.apache.felix.service.threadio.ThreadIO;
 
@@ -47,6 +48,18 @@ public class CommandProcessorImpl implements CommandProcessor
     protected final WeakHashMap<CommandSession, Object> sessions = new WeakHashMap<>();
     protected boolean stopped;
 
+    // Parsed scripts, most recently used last. The syntax trees are
+    // immutable, so they are shared by all sessions.
+    private static final int MAX_PROGRAMS = 256;
+    private final Map<String, Program> programs = new LinkedHashMap<String, Program>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Entry<String, Program> eldest)
+        {
+            return size() > MAX_PROGRAMS;
+        }
+    };
+
     public CommandProcessorImpl()
     {
         this(null);
@@ -353,6 +366,34 @@ public class CommandProcessorImpl implements CommandProcessor
         return session.execute(buf);
     }
 
+    /**
+     * Parses a script, reusing the syntax tree of a previous parse of the
+     * same text if there is one. Tokens keep their position in the text
+     * they come from, so they are always parsed again.
+     */
+    Program parse(CharSequence source)
+    {
+        if (source instanceof Token)
+        {
+            return new Parser(source).program();
+        }
+        String key = source.toString();
+        Program program;
+        synchronized (programs)
+        {
+            program = programs.get(key);
+        }
+        if (program == null)
+        {
+            program = new Parser(key).program();
+            synchronized (programs)
+            {
+                programs.put(key, program);
+            }
+        }
+        return program;
+    }
+
     void beforeExecute(CommandSession session, CharSequence commandline)
     {
         for (CommandSessionListener l : listeners)
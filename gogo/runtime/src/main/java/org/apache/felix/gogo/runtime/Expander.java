@@ -56,9 +56,27 @@ public class Expander extends BaseTokenizer
      */
     public static Object expand(CharSequence word, Evaluate eval) throws Exception
     {
+        // shortcut if word can't be changed by any of the expansions
+        if (isLiteral(word))
+        {
+            return word;
+        }
         return expand(word, eval, false, true, false, true, false);
     }
 
+    private static boolean isLiteral(CharSequence word)
+    {
+        final String special = "%$\\\"'{}~*(|<[?";
+        for (int i = 0; i < word.length(); i++)
+        {
+            if (special.indexOf(word.charAt(i)) >= 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static Object expand(CharSequence word, Evaluate eval, boolean inQuote) throws Exception
     {
         return new Expander(word, eval, inQuote, true, false, false, false).expand();
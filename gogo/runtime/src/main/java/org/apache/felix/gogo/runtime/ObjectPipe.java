@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.gogo.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.felix.service.command.Converter;
+
+/**
+ * A bounded buffer of objects connecting two stages of a pipeline.
+ *
+ * Stages exchange objects with {@link #put(Object)} and {@link #take()},
+ * which block while the buffer is full or empty. Stages working with text
+ * use the {@link #sink()} and {@link #source()} channels instead: each line
+ * written to the sink is passed as a String, and objects read from the
+ * source are formatted as one line each, so that object and text stages
+ * can be mixed in the same pipeline.
+ *
+ * Closing the source discards the pending objects and makes further writes
+ * fail, closing the sink ends the stream once its objects have been taken.
+ */
+public class ObjectPipe
+{
+    private final CommandSessionImpl session;
+    private final Object[] buffer;
+    private int head;
+    private int count;
+    private boolean writeClosed;
+    private boolean readClosed;
+
+    private final Sink sink = new Sink();
+    private final Source source = new Source();
+
+    public ObjectPipe(CommandSessionImpl session, int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        this.session = session;
+        this.buffer = new Object[capacity];
+    }
+
+    /**
+     * Writes an object, waiting for room in the buffer if needed.
+     * Null values are ignored.
+     */
+    public void put(Object object) throws IOException
+    {
+        sink.flushLine();
+        doPut(object);
+    }
+
+    /**
+     * Writes the elements of a collection or an array one by one, or the
+     * given object if it is neither.
+     */
+    public void putAll(Object objects) throws IOException
+    {
+        sink.flushLine();
+        if (objects instanceof Iterable)
+        {
+            for (Object o : (Iterable<?>) objects)
+            {
+                doPut(o);
+            }
+        }
+        else if (objects != null && objects.getClass().isArray())
+        {
+            for (int i = 0, l = Array.getLength(objects); i < l; i++)
+            {
+                doPut(Array.get(objects, i));
+            }
+        }
+        else
+        {
+            doPut(objects);
+        }
+    }
+
+    /**
+     * Reads the next object, waiting for one to be written if needed.
+     * @return the next object, or <code>null</code> at the end of the stream.
+     */
+    public synchronized Object take() throws IOException
+    {
+        while (count == 0)
+        {
+            if (writeClosed || readClosed)
+            {
+                return null;
+            }
+            await();
+        }
+        Object object = buffer[head];
+        buffer[head] = null;
+        head = (head + 1) % buffer.length;
+        if (count-- == buffer.length)
+        {
+            notifyAll();
+        }
+        return object;
+    }
+
+    public WritableByteChannel sink()
+    {
+        return sink;
+    }
+
+    public ReadableByteChannel source()
+    {
+        return source;
+    }
+
+    private synchronized void doPut(Object object) throws IOException
+    {
+        if (object == null)
+        {
+            return;
+        }
+        while (count == buffer.length && !readClosed)
+        {
+            await();
+        }
+        if (readClosed)
+        {
+            throw new IOException("Pipe closed");
+        }
+        if (writeClosed)
+        {
+            throw new ClosedChannelException();
+        }
+        buffer[(head + count) % buffer.length] = object;
+        if (count++ == 0)
+        {
+            notifyAll();
+        }
+    }
+
+    private synchronized void closeWrite()
+    {
+        writeClosed = true;
+        notifyAll();
+    }
+
+    private synchronized void closeRead()
+    {
+        readClosed = true;
+        for (int i = 0; i < buffer.length; i++)
+        {
+            buffer[i] = null;
+        }
+        count = 0;
+        notifyAll();
+    }
+
+    private void await() throws InterruptedIOException
+    {
+        try
+        {
+            wait();
+        }
+        catch (InterruptedException e)
+        {
+            throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+        }
+    }
+
+    /**
+     * Splits the written bytes into lines.
+     */
+    private class Sink implements WritableByteChannel
+    {
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private boolean open = true;
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException
+        {
+            if (!open)
+            {
+                throw new ClosedChannelException();
+            }
+            int n = src.remaining();
+            while (src.hasRemaining())
+            {
+                byte b = src.get();
+                if (b == '\n')
+                {
+                    doPut(toLine());
+                }
+                else
+                {
+                    line.write(b);
+                }
+            }
+            return n;
+        }
+
+        synchronized void flushLine() throws IOException
+        {
+            if (line.size() > 0)
+            {
+                doPut(toLine());
+            }
+        }
+
+        private String toLine()
+        {
+            int len = line.size();
+            byte[] bytes = line.toByteArray();
+            line.reset();
+            if (len > 0 && bytes[len - 1] == '\r')
+            {
+                len--;
+            }
+            return new String(bytes, 0, len);
+        }
+
+        @Override
+        public synchronized boolean isOpen()
+        {
+            return open;
+        }
+
+        @Override
+        public synchronized void close() throws IOException
+        {
+            if (open)
+            {
+                open = false;
+                try
+                {
+                    flushLine();
+                }
+                catch (IOException e)
+                {
+                    // The reader is gone, there is nobody left for the line
+                }
+                finally
+                {
+                    closeWrite();
+                }
+            }
+        }
+    }
+
+    /**
+     * Formats the objects read as lines of text.
+     */
+    private class Source implements ReadableByteChannel
+    {
+        private final AtomicBoolean open = new AtomicBoolean(true);
+        private ByteBuffer pending = ByteBuffer.allocate(0);
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException
+        {
+            if (!open.get())
+            {
+                throw new ClosedChannelException();
+            }
+            if (!pending.hasRemaining())
+            {
+                Object object = take();
+                if (object == null)
+                {
+                    return -1;
+                }
+                CharSequence text = object instanceof CharSequence
+                        ? (CharSequence) object
+                        : session.format(object, Converter.INSPECT);
+                pending = ByteBuffer.wrap((text + "\n").getBytes());
+            }
+            int n = Math.min(dst.remaining(), pending.remaining());
+            ByteBuffer slice = pending.duplicate();
+            slice.limit(slice.position() + n);
+            dst.put(slice);
+            pending.position(pending.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return open.get();
+        }
+
+        // Not synchronized, a reader may be waiting for objects
+        @Override
+        public void close()
+        {
+            if (open.compareAndSet(true, false))
+            {
+                closeRead();
+            }
+        }
+    }
+
+}
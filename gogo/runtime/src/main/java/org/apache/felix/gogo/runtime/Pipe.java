@@ -119,6 +119,8 @@ public class Pipe implements Callable<Result>, Process
     final Channel[] streams;
     final boolean[] toclose;
     final boolean endOfPipe;
+    final ObjectPipe objectInput;
+    final ObjectPipe objectOutput;
     int error;
 
     InputStream in;
@@ -126,6 +128,12 @@ public class Pipe implements Callable<Result>, Process
     PrintStream err;
 
     public Pipe(Closure closure, JobImpl job, Statement statement, Channel[] streams, boolean[] toclose, boolean endOfPipe)
+    {
+        this(closure, job, statement, streams, toclose, endOfPipe, null, null);
+    }
+
+    public Pipe(Closure closure, JobImpl job, Statement statement, Channel[] streams, boolean[] toclose, boolean endOfPipe,
+                ObjectPipe objectInput, ObjectPipe objectOutput)
     {
         this.closure = closure;
         this.job = job;
@@ -133,6 +141,8 @@ public class Pipe implements Callable<Result>, Process
         this.streams = streams;
         this.toclose = toclose;
         this.endOfPipe = endOfPipe;
+        this.objectInput = objectInput;
+        this.objectOutput = objectOutput;
     }
 
     public String toString()
@@ -208,6 +218,24 @@ public class Pipe implements Callable<Result>, Process
         return job;
     }
 
+    /**
+     * The objects written by the previous stage of an object pipeline.
+     * @return the pipe to read from, or <code>null</code> if this stage
+     *   is not preceded by an object pipe.
+     */
+    public ObjectPipe objectInput() {
+        return objectInput;
+    }
+
+    /**
+     * The objects passed to the next stage of an object pipeline.
+     * @return the pipe to write to, or <code>null</code> if this stage
+     *   is not followed by an object pipe.
+     */
+    public ObjectPipe objectOutput() {
+        return objectOutput;
+    }
+
     public boolean isTty(int fd) {
         // TODO: this assumes that the session is always created with input/output tty streams
         if (fd < 0 || fd > streams.length) {
@@ -379,6 +407,9 @@ public class Pipe implements Callable<Result>, Process
                 }
             }
 
+            // Results are passed as objects unless the output has been redirected
+            boolean outputObjects = objectOutput != null && streams[1] == objectOutput.sink();
+
             for (int i = 0; i < streams.length; i++) {
                 streams[i] = wrap(streams[i]);
             }
@@ -424,7 +455,15 @@ public class Pipe implements Callable<Result>, Process
                 // We don't print the result if we're at the end of the pipe
                 if (result != null && !endOfPipe && !Boolean.FALSE.equals(closure.session().get(".FormatPipe")))
                 {
-                    out.println(closure.session().format(result, Converter.INSPECT));
+                    if (outputObjects)
+                    {
+                        out.flush();
+                        objectOutput.putAll(result);
+                    }
+                    else
+                    {
+                        out.println(closure.session().format(result, Converter.INSPECT));
+                    }
                 }
                 return new Result(result);
 
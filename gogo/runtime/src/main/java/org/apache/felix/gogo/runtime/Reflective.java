@@ -31,6 +31,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.felix.service.command.CommandSession;
 import org.apache.felix.service.command.Parameter;
@@ -49,6 +51,16 @@ public final class Reflective
                 "finally", "long", "strictfp", "volatile", "const", "float", "native",
                 "super", "while" }));
 
+    // Dispatch information of the classes commands are invoked on
+    private static final ClassValue<Dispatch> DISPATCH = new ClassValue<Dispatch>()
+    {
+        @Override
+        protected Dispatch computeValue(Class<?> type)
+        {
+            return new Dispatch(type);
+        }
+    };
+
     /**
      * invokes the named method on the given target using the supplied args,
      * which are converted if necessary.
@@ -58,32 +70,26 @@ public final class Reflective
     public static Object invoke(CommandSession session, Object target, String name,
         List<Object> args) throws Exception
     {
-        Method[] methods = target.getClass().getMethods();
         name = name.toLowerCase(Locale.ENGLISH);
 
         String org = name;
-        String get = "get" + name;
-        String is = "is" + name;
-        String set = "set" + name;
 
         if (KEYWORDS.contains(name))
         {
             name = "_" + name;
         }
 
+        Dispatch dispatch = null;
+        Candidates candidates = null;
         if (target instanceof Class<?>)
         {
-            Method[] staticMethods = ((Class<?>) target).getMethods();
-            for (Method m : staticMethods)
-            {
-                String mname = m.getName().toLowerCase(Locale.ENGLISH);
-                if (mname.equals(name) || mname.equals(get) || mname.equals(set)
-                    || mname.equals(is) || mname.equals(MAIN))
-                {
-                    methods = staticMethods;
-                    break;
-                }
-            }
+            dispatch = DISPATCH.get((Class<?>) target);
+            candidates = dispatch.getCandidates(org);
+        }
+        if (candidates == null || candidates.methods.length == 0)
+        {
+            dispatch = DISPATCH.get(target.getClass());
+            candidates = dispatch.getCandidates(org);
         }
 
         Method bestMethod = null;
@@ -91,48 +97,58 @@ public final class Reflective
         int lowestMatch = Integer.MAX_VALUE;
         ArrayList<Class<?>[]> possibleTypes = new ArrayList<>();
 
-        for (Method m : methods)
+        // A method found without any conversion is found again for arguments
+        // of the same types, unless the arguments are evaluated or matched
+        // against parameter names, which depends on their values.
+        Shape shape = candidates.hasParameters ? null : Shape.of(session, org, args);
+        if (shape != null)
         {
-            String mname = m.getName().toLowerCase(Locale.ENGLISH);
-            if (mname.equals(name) || mname.equals(get) || mname.equals(set)
-                || mname.equals(is) || mname.equals(MAIN))
+            Candidate c = dispatch.winners.get(shape);
+            if (c != null)
             {
-                Class<?>[] types = m.getParameterTypes();
-                ArrayList<Object> xargs = new ArrayList<>(args);
-
-                // pass command name as argv[0] to main, so it can handle
-                // multiple commands
-                if (mname.equals(MAIN))
+                Object[] parms = new Object[c.types.length];
+                if (coerce(session, target, c.method, c.types, parms, c.arguments(org, args)) == 0)
                 {
-                    xargs.add(0, org);
+                    lowestMatch = 0;
+                    bestMethod = c.method;
+                    bestArgs = parms;
                 }
+            }
+        }
 
-                Object[] parms = new Object[types.length];
-                int match = coerce(session, target, m, types, parms, xargs);
+        for (int i = 0; lowestMatch > 0 && i < candidates.methods.length; i++)
+        {
+            Candidate c = candidates.methods[i];
+            if (!c.accepts(args.size()))
+            {
+                // can not match this number of arguments
+                possibleTypes.add(c.types);
+                continue;
+            }
 
-                if (match < 0)
-                {
-                    // coerce failed
-                    possibleTypes.add(types);
-                }
-                else
-                {
-                    if (match < lowestMatch)
-                    {
-                        lowestMatch = match;
-                        bestMethod = m;
-                        bestArgs = parms;
-                    }
+            Object[] parms = new Object[c.types.length];
+            int match = coerce(session, target, c.method, c.types, parms, c.arguments(org, args));
+
+            if (match < 0)
+            {
+                // coerce failed
+                possibleTypes.add(c.types);
+            }
+            else if (match < lowestMatch)
+            {
+                lowestMatch = match;
+                bestMethod = c.method;
+                bestArgs = parms;
 
-                    if (match == 0)
-                        break; // can't get better score
+                if (match == 0 && shape != null)
+                {
+                    dispatch.putWinner(shape, c);
                 }
             }
         }
 
         if (bestMethod != null)
         {
-            bestMethod.setAccessible(true);
             try
             {
                 return bestMethod.invoke(target, bestArgs);
@@ -607,4 +623,225 @@ public final class Reflective
         return null;
     }
 
+    /**
+     * The methods of a class matching command names, computed once per
+     * class and name, and the methods chosen for argument types that did
+     * not need any conversion.
+     * As the dispatch is reachable from its class, it only refers to classes
+     * of the same class loader, of the boot class loader or of this bundle,
+     * so it does not keep other class loaders alive.
+     */
+    private static final class Dispatch
+    {
+        private static final int MAX_CANDIDATES = 256;
+        private static final int MAX_WINNERS = 256;
+
+        private final Class<?> type;
+        private final ConcurrentMap<String, Candidates> candidates = new ConcurrentHashMap<>();
+        final ConcurrentMap<Shape, Candidate> winners = new ConcurrentHashMap<>();
+
+        Dispatch(Class<?> type)
+        {
+            this.type = type;
+        }
+
+        Candidates getCandidates(String org)
+        {
+            Candidates c = candidates.get(org);
+            if (c == null)
+            {
+                c = new Candidates(type.getMethods(), org);
+                if (candidates.size() < MAX_CANDIDATES)
+                {
+                    Candidates old = candidates.putIfAbsent(org, c);
+                    if (old != null)
+                    {
+                        c = old;
+                    }
+                }
+            }
+            return c;
+        }
+
+        void putWinner(Shape shape, Candidate c)
+        {
+            if (winners.size() < MAX_WINNERS && shape.isVisible(type.getClassLoader()))
+            {
+                winners.putIfAbsent(shape, c);
+            }
+        }
+    }
+
+    private static final class Candidates
+    {
+        final Candidate[] methods;
+        // whether any method takes named parameters
+        final boolean hasParameters;
+
+        Candidates(Method[] all, String org)
+        {
+            String name = KEYWORDS.contains(org) ? "_" + org : org;
+            String get = "get" + org;
+            String is = "is" + org;
+            String set = "set" + org;
+
+            List<Candidate> list = new ArrayList<>();
+            boolean parameters = false;
+            for (Method m : all)
+            {
+                String mname = m.getName().toLowerCase(Locale.ENGLISH);
+                if (mname.equals(name) || mname.equals(get) || mname.equals(set)
+                    || mname.equals(is) || mname.equals(MAIN))
+                {
+                    Candidate c = new Candidate(m, mname.equals(MAIN));
+                    parameters |= c.hasParameters;
+                    list.add(c);
+                }
+            }
+            methods = list.toArray(new Candidate[list.size()]);
+            hasParameters = parameters;
+        }
+    }
+
+    private static final class Candidate
+    {
+        final Method method;
+        final Class<?>[] types;
+        final boolean main;
+        final boolean hasParameters;
+        private final int minArgs;
+        private final int maxArgs;
+
+        Candidate(Method method, boolean main)
+        {
+            this.method = method;
+            this.types = method.getParameterTypes();
+            this.main = main;
+
+            boolean parameters = false;
+            for (Annotation[] as : method.getParameterAnnotations())
+            {
+                for (Annotation a : as)
+                {
+                    parameters |= a instanceof Parameter;
+                }
+            }
+            this.hasParameters = parameters;
+
+            // A session may be passed as first argument, and trailing
+            // arguments may be collected into a final array.
+            int k = types.length;
+            boolean session = k > 0 && types[0].isInterface();
+            boolean varargs = k > 0 && types[k - 1].isArray();
+            minArgs = (varargs ? k - 1 : k) - (session ? 1 : 0);
+            maxArgs = varargs ? Integer.MAX_VALUE : k;
+
+            try
+            {
+                method.setAccessible(true);
+            }
+            catch (RuntimeException e)
+            {
+                // invoke() reports the problem
+            }
+        }
+
+        /**
+         * @return false if the method can not be invoked with this number of
+         * arguments, whatever their values.
+         */
+        boolean accepts(int size)
+        {
+            if (hasParameters)
+            {
+                return true;
+            }
+            int n = main ? size + 1 : size;
+            return n >= minArgs && n <= maxArgs;
+        }
+
+        List<Object> arguments(String org, List<Object> args)
+        {
+            ArrayList<Object> xargs = new ArrayList<>(args);
+
+            // pass command name as argv[0] to main, so it can handle
+            // multiple commands
+            if (main)
+            {
+                xargs.add(0, org);
+            }
+            return xargs;
+        }
+    }
+
+    /**
+     * The command name, session type and argument types of an invocation.
+     */
+    private static final class Shape
+    {
+        private final String name;
+        private final Class<?>[] types;
+        private final int hash;
+
+        private Shape(String name, Class<?>[] types)
+        {
+            this.name = name;
+            this.types = types;
+            this.hash = name.hashCode() * 31 + Arrays.hashCode(types);
+        }
+
+        /**
+         * @return the shape of the invocation, or null if the arguments
+         * need to be evaluated.
+         */
+        static Shape of(CommandSession session, String name, List<Object> args)
+        {
+            Class<?>[] types = new Class<?>[args.size() + 1];
+            types[0] = session != null ? session.getClass() : null;
+            for (int i = 0; i < args.size(); i++)
+            {
+                Object arg = args.get(i);
+                if (arg instanceof Token)
+                {
+                    return null;
+                }
+                types[i + 1] = arg != null ? arg.getClass() : null;
+            }
+            return new Shape(name, types);
+        }
+
+        /**
+         * @return true if all types are defined by the given class loader,
+         * the boot class loader or the class loader of this bundle.
+         */
+        boolean isVisible(ClassLoader loader)
+        {
+            for (Class<?> type : types)
+            {
+                ClassLoader cl = type != null ? type.getClassLoader() : null;
+                if (cl != null && cl != loader && cl != Reflective.class.getClassLoader())
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Shape))
+            {
+                return false;
+            }
+            Shape s = (Shape) o;
+            return hash == s.hash && name.equals(s.name) && Arrays.equals(types, s.types);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
 }
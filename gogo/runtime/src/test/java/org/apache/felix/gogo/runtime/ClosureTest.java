@@ -22,9 +22,12 @@ import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 public class ClosureTest {
 
@@ -41,4 +44,28 @@ public class ClosureTest {
         assertEquals("a", ((Closure) parent.get("cmd")).execute(parent, Collections.emptyList()).toString());
         assertEquals("b", ((Closure) parent.get("cmd")).execute(child, Collections.emptyList()).toString());
     }
+
+    @Test
+    public void testParsedProgramsAreShared() throws Exception {
+        CommandProcessorImpl processor = new CommandProcessorImpl(null);
+        ByteArrayInputStream bais = new ByteArrayInputStream("".getBytes());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CommandSessionImpl s1 = processor.createSession(bais, baos, baos);
+        CommandSessionImpl s2 = processor.createSession(bais, baos, baos);
+        assertSame(processor.parse("echo $a; b = { c }"), processor.parse(new StringBuilder("echo $a; b = { c }")));
+        s1.execute("a = 1");
+        s2.execute("a = 2");
+        assertEquals("1", s1.execute("$a").toString());
+        assertEquals("2", s2.execute("$a").toString());
+        s1.execute("b = plain-word.txt");
+        assertEquals("plain-word.txt", s1.get("b").toString());
+        for (int i = 0; i < 2; i++) {
+            try {
+                s1.execute("echo {");
+                fail("Expected a syntax error");
+            } catch (EOFException e) {
+                // expected
+            }
+        }
+    }
 }
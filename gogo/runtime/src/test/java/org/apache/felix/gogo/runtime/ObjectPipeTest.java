@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.gogo.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ObjectPipeTest extends AbstractParserTest
+{
+    @Test
+    public void testLinesAndObjects() throws Exception
+    {
+        CommandProcessorImpl processor = new CommandProcessorImpl(null);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CommandSessionImpl session = processor.createSession(new ByteArrayInputStream(new byte[0]), baos, baos);
+
+        ObjectPipe pipe = new ObjectPipe(session, 4);
+        pipe.sink().write(ByteBuffer.wrap("abc\r\nde".getBytes()));
+        pipe.put(42L);
+        pipe.sink().write(ByteBuffer.wrap("f".getBytes()));
+        pipe.sink().close();
+        assertEquals("abc", pipe.take());
+        assertEquals("de", pipe.take());
+        assertEquals(42L, pipe.take());
+        assertEquals("f", pipe.take());
+        assertNull(pipe.take());
+
+        pipe = new ObjectPipe(session, 4);
+        pipe.putAll(Arrays.asList("a", 1L));
+        pipe.sink().close();
+        assertEquals("a\n1\n", read(Channels.newInputStream(pipe.source())));
+    }
+
+    @Test(timeout = 10000)
+    public void testClosedReader() throws Exception
+    {
+        CommandProcessorImpl processor = new CommandProcessorImpl(null);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CommandSessionImpl session = processor.createSession(new ByteArrayInputStream(new byte[0]), baos, baos);
+
+        final ObjectPipe pipe = new ObjectPipe(session, 2);
+        Thread reader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    pipe.take();
+                    pipe.source().close();
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        reader.start();
+        try
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                pipe.put(i);
+            }
+            fail("Expected the pipe to be closed");
+        }
+        catch (IOException e)
+        {
+            assertEquals("Pipe closed", e.getMessage());
+        }
+        reader.join();
+    }
+
+    @Test(timeout = 10000)
+    public void testObjectPipeline() throws Exception
+    {
+        Context c = new Context();
+        c.addCommand("items", this);
+        c.addCommand("count", this);
+        c.addCommand("first", this);
+        c.addCommand("echo", this);
+        c.addCommand("tac", this);
+
+        // Text pipes by default
+        assertEquals(0L, c.execute("items 3 | count"));
+
+        c.set(Closure.OPTION_OBJECT_PIPE, true);
+        assertEquals(3L, c.execute("items 3 | count"));
+        assertEquals("hello\nworld\n", c.execute("echo hello world | tac"));
+        assertEquals("[item 0]\n[item 1]\n", c.execute("items 2 | tac"));
+        assertEquals("[item 0]", c.execute("items 100000 | first").toString());
+        assertTrue(c.get(Closure.PIPE_EXCEPTION) != null);
+    }
+
+    public List<Item> items(int n)
+    {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+        {
+            items.add(new Item(i));
+        }
+        return items;
+    }
+
+    public long count() throws IOException
+    {
+        ObjectPipe in = Pipe.getCurrentPipe().objectInput();
+        long count = 0;
+        if (in != null)
+        {
+            Object o;
+            while ((o = in.take()) != null)
+            {
+                assertTrue(o instanceof Item);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public Object first() throws IOException
+    {
+        ObjectPipe in = Pipe.getCurrentPipe().objectInput();
+        return in.take();
+    }
+
+    public void echo(String... msgs)
+    {
+        for (String msg : msgs)
+        {
+            System.out.println(msg);
+        }
+    }
+
+    public String tac() throws IOException
+    {
+        return read(System.in);
+    }
+
+    private static String read(InputStream in) throws IOException
+    {
+        StringWriter sw = new StringWriter();
+        Reader rdr = new InputStreamReader(in);
+        char[] buf = new char[1024];
+        int len;
+        while ((len = rdr.read(buf)) >= 0)
+        {
+            sw.write(buf, 0, len);
+        }
+        return sw.toString();
+    }
+
+    public static class Item
+    {
+        private final int id;
+
+        public Item(int id)
+        {
+            this.id = id;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "[item " + id + "]";
+        }
+    }
+}
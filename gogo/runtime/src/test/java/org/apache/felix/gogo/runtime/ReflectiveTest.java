@@ -69,6 +69,58 @@ public class ReflectiveTest {
                 Collections.<Object>singletonList(conv));
     }
 
+    @Test
+    public void testOverloadsByArgumentType() throws Exception {
+        // the same overloads are chosen when dispatches are reused
+        for (int i = 0; i < 3; i++) {
+            assertEquals("string", invokeOverloaded("kind", Collections.<Object>singletonList("a")));
+            assertEquals("long", invokeOverloaded("kind", Collections.<Object>singletonList(1L)));
+            assertEquals("list", invokeOverloaded("kind", Collections.<Object>singletonList(Arrays.asList(1, 2))));
+            assertEquals("pair", invokeOverloaded("kind", Arrays.<Object>asList("a", "b")));
+            assertEquals(3, invokeOverloaded("add", Arrays.<Object>asList(1L, 2L)));
+            assertEquals("string", invokeOverloaded("kind", Collections.<Object>singletonList(true)));
+        }
+    }
+
+    @Test
+    public void testNoMatchingArity() throws Exception {
+        try {
+            invokeOverloaded("add", Arrays.<Object>asList(1L, 2L, 3L));
+            Assert.fail("add() does not take 3 arguments");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Cannot coerce add(Long, Long, Long) to any of [(int, int)]", e.getMessage());
+        }
+    }
+
+    public static class Overloaded {
+        public String kind(String s) {
+            return "string";
+        }
+
+        public String kind(Long l) {
+            return "long";
+        }
+
+        public String kind(List<?> l) {
+            return "list";
+        }
+
+        public String kind(String s1, String s2) {
+            return "pair";
+        }
+
+        public int add(int a, int b) {
+            return a + b;
+        }
+    }
+
+    static Object invokeOverloaded(String method, List<Object> args) throws Exception {
+        InputStream in = new ByteArrayInputStream(new byte[0]);
+        OutputStream out = new ByteArrayOutputStream();
+        CommandProcessorImpl processor = new CommandProcessorImpl(null);
+        return Reflective.invoke(new CommandSessionImpl(processor, in, out, out), new Overloaded(), method, args);
+    }
+
     static class Target {
         public Object test1(CommandSession session, Object[] argv) {
             return argv;
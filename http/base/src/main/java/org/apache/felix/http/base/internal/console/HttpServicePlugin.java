@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
@@ -37,13 +38,15 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTO;
+import org.apache.felix.http.base.internal.runtime.dto.ServletContextMetricsDTO;
+import org.apache.felix.http.base.internal.service.HttpServiceRuntimeImpl;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.dto.ServiceReferenceDTO;
-import org.osgi.service.http.runtime.HttpServiceRuntime;
 import org.osgi.service.http.runtime.dto.DTOConstants;
 import org.osgi.service.http.runtime.dto.ErrorPageDTO;
 import org.osgi.service.http.runtime.dto.FailedErrorPageDTO;
@@ -71,12 +74,12 @@ public class HttpServicePlugin extends HttpServlet
     private static final String ATTR_SUBMIT = "resolve";
 
 
-    private final HttpServiceRuntime runtime;
+    private final HttpServiceRuntimeImpl runtime;
     private final BundleContext context;
 
     private volatile ServiceRegistration<Servlet> serviceReg;
 
-    public HttpServicePlugin(final BundleContext context, final HttpServiceRuntime runtime)
+    public HttpServicePlugin(final BundleContext context, final HttpServiceRuntimeImpl runtime)
     {
         this.runtime = runtime;
         this.context = context;
@@ -209,6 +212,7 @@ public class HttpServicePlugin extends HttpServlet
     protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException
     {
         final RuntimeDTO dto = this.runtime.getRuntimeDTO();
+        final Map<Long, ServletContextMetricsDTO> metrics = getMetrics();
 
         final PrintWriter pw = resp.getWriter();
 
@@ -222,7 +226,7 @@ public class HttpServicePlugin extends HttpServlet
 
         for(final ServletContextDTO ctxDto : dto.servletContextDTOs )
         {
-            printContextDetails(pw, ctxDto);
+            printContextDetails(pw, ctxDto, metrics.get(ctxDto.serviceId));
         }
         for(final FailedServletContextDTO ctxDto : dto.failedServletContextDTOs )
         {
@@ -415,7 +419,7 @@ public class HttpServicePlugin extends HttpServlet
         return printRow(pw, odd, "${ranking}", String.valueOf(ranking));
     }
 
-    private void printContextDetails(final PrintWriter pw, final ServletContextDTO dto)
+    private void printContextDetails(final PrintWriter pw, final ServletContextDTO dto, final ServletContextMetricsDTO metrics)
     {
         pw.print("<p class=\"statline ui-state-highlight\">${Servlet Context} '");
         pw.print(escapeXml(dto.name));
@@ -438,10 +442,106 @@ public class HttpServicePlugin extends HttpServlet
         printResourceDetails(pw, dto);
         printErrorPageDetails(pw, dto);
         printListenerDetails(pw, dto);
+        printMetricsDetails(pw, dto, metrics);
 
         pw.println("<br/>");
     }
 
+    private Map<Long, ServletContextMetricsDTO> getMetrics()
+    {
+        final Map<Long, ServletContextMetricsDTO> result = new HashMap<Long, ServletContextMetricsDTO>();
+        for(final ServletContextMetricsDTO dto : this.runtime.getServletContextMetricsDTOs())
+        {
+            result.put(dto.serviceId, dto);
+        }
+        return result;
+    }
+
+    private String formatLatency(final long micros)
+    {
+        return String.format("%.3f ms", micros / 1000.0);
+    }
+
+    private boolean printMetricsRow(final PrintWriter pw, final boolean odd, final String type, final RequestMetricsDTO dto)
+    {
+        return printRow(pw, odd, type, dto.name == null ? "" : dto.name,
+                String.valueOf(dto.requestCount),
+                String.valueOf(dto.activeRequestCount),
+                String.valueOf(dto.errorCount),
+                formatLatency(dto.meanLatency),
+                formatLatency(dto.latency50),
+                formatLatency(dto.latency90),
+                formatLatency(dto.latency99),
+                formatLatency(dto.latency999),
+                formatLatency(dto.maxLatency));
+    }
+
+    private void printMetricsDetails(final PrintWriter pw, final ServletContextDTO dto, final ServletContextMetricsDTO metrics)
+    {
+        if ( metrics == null )
+        {
+            return;
+        }
+        pw.print("<p class=\"statline ui-state-highlight\">${Servlet Context} '");
+        pw.print(escapeXml(dto.name));
+        pw.println("' ${Request Metrics}</p>");
+
+        pw.println("<table class=\"nicetable\">");
+        pw.println("<thead><tr>");
+        pw.println("<th class=\"header\">${Type}</th>");
+        pw.println("<th class=\"header\">${Name}</th>");
+        pw.println("<th class=\"header\">${Requests}</th>");
+        pw.println("<th class=\"header\">${Active}</th>");
+        pw.println("<th class=\"header\">${Errors}</th>");
+        pw.println("<th class=\"header\">${Mean}</th>");
+        pw.println("<th class=\"header\">${50%}</th>");
+        pw.println("<th class=\"header\">${90%}</th>");
+        pw.println("<th class=\"header\">${99%}</th>");
+        pw.println("<th class=\"header\">${99.9%}</th>");
+        pw.println("<th class=\"header\">${Max}</th>");
+        pw.println("</tr></thead>");
+
+        boolean odd = true;
+        odd = printMetricsRow(pw, odd, "${Context}", metrics);
+        for(final RequestMetricsDTO filter : metrics.filterMetricsDTOs)
+        {
+            odd = printMetricsRow(pw, odd, "${Filter}", filter);
+        }
+        for(final RequestMetricsDTO servlet : metrics.servletMetricsDTOs)
+        {
+            odd = printMetricsRow(pw, odd, "${Servlet}", servlet);
+        }
+        pw.println("</table>");
+    }
+
+    private void printMetrics(final PrintWriter pw, final String type, final RequestMetricsDTO dto)
+    {
+        pw.print(type);
+        if ( dto.name != null )
+        {
+            pw.print(" ");
+            pw.print(dto.name);
+        }
+        pw.print(" : requests=");
+        pw.print(dto.requestCount);
+        pw.print(", active=");
+        pw.print(dto.activeRequestCount);
+        pw.print(", errors=");
+        pw.print(dto.errorCount);
+        pw.print(", mean=");
+        pw.print(formatLatency(dto.meanLatency));
+        pw.print(", 50%=");
+        pw.print(formatLatency(dto.latency50));
+        pw.print(", 90%=");
+        pw.print(formatLatency(dto.latency90));
+        pw.print(", 99%=");
+        pw.print(formatLatency(dto.latency99));
+        pw.print(", 99.9%=");
+        pw.print(formatLatency(dto.latency999));
+        pw.print(", max=");
+        pw.println(formatLatency(dto.maxLatency));
+    }
+
     private void printFailedContextDetails(final PrintWriter pw, final FailedServletContextDTO dto)
     {
         pw.print("<p class=\"statline ui-state-highlight\">${Servlet Context} '");
@@ -995,6 +1095,7 @@ public class HttpServicePlugin extends HttpServlet
     public void printConfiguration(final PrintWriter pw)
     {
         final RuntimeDTO dto = this.runtime.getRuntimeDTO();
+        final Map<Long, ServletContextMetricsDTO> metrics = getMetrics();
 
         pw.println("HTTP Service Details");
         pw.println("====================");
@@ -1161,6 +1262,22 @@ public class HttpServicePlugin extends HttpServlet
                 }
                 pw.println();
             }
+
+            final ServletContextMetricsDTO ctxMetrics = metrics.get(ctxDto.serviceId);
+            if ( ctxMetrics != null )
+            {
+                pw.println("Request Metrics");
+                printMetrics(pw, "Context", ctxMetrics);
+                for(final RequestMetricsDTO filter : ctxMetrics.filterMetricsDTOs)
+                {
+                    printMetrics(pw, "Filter", filter);
+                }
+                for(final RequestMetricsDTO servlet : ctxMetrics.servletMetricsDTOs)
+                {
+                    printMetrics(pw, "Servlet", servlet);
+                }
+                pw.println();
+            }
             pw.println();
         }
 
@@ -34,6 +34,7 @@ import org.apache.felix.http.base.internal.context.ExtServletContext;
 import org.apache.felix.http.base.internal.handler.FilterHandler;
 import org.apache.felix.http.base.internal.handler.HttpSessionWrapper;
 import org.apache.felix.http.base.internal.logger.SystemLogger;
+import org.apache.felix.http.base.internal.metrics.RequestMetrics;
 import org.apache.felix.http.base.internal.registry.HandlerRegistry;
 import org.apache.felix.http.base.internal.registry.PathResolution;
 import org.apache.felix.http.base.internal.registry.PerContextHandlerRegistry;
@@ -120,6 +121,9 @@ public final class Dispatcher
 		                pr.handler.getMultipartConfig());
 		        final FilterHandler[] filterHandlers = handlerRegistry.getFilters(pr, req.getDispatcherType(), pr.requestURI);
 
+		        final RequestMetrics metrics = pr.handlerRegistry.getMetrics();
+		        final long startTime = metrics.start();
+		        boolean failed = true;
 		        try
 		        {
 		            if ( servletContext.getServletRequestListener() != null )
@@ -128,7 +132,7 @@ public final class Dispatcher
 		            }
 		            final FilterChain filterChain = new InvocationChain(pr.handler, filterHandlers);
 		            filterChain.doFilter(wrappedRequest, wrappedResponse);
-
+		            failed = false;
 		        }
 		        catch ( final Exception e)
 		        {
@@ -144,6 +148,7 @@ public final class Dispatcher
 		            {
 		                servletContext.getServletRequestListener().requestDestroyed(new ServletRequestEvent(servletContext, wrappedRequest));
 		            }
+		            metrics.end(startTime, wrappedResponse, failed);
 		        }
 		}
     }
@@ -27,6 +27,7 @@ import javax.servlet.ServletResponse;
 
 import org.apache.felix.http.base.internal.context.ExtServletContext;
 import org.apache.felix.http.base.internal.logger.SystemLogger;
+import org.apache.felix.http.base.internal.metrics.RequestMetrics;
 import org.apache.felix.http.base.internal.runtime.FilterInfo;
 import org.osgi.service.http.runtime.dto.DTOConstants;
 
@@ -46,6 +47,8 @@ public abstract class FilterHandler implements Comparable<FilterHandler>
 
     protected volatile int useCount;
 
+    private final RequestMetrics metrics = new RequestMetrics();
+
     public FilterHandler(final long contextServiceId,
             final ExtServletContext context,
             final FilterInfo filterInfo)
@@ -132,7 +135,22 @@ public abstract class FilterHandler implements Comparable<FilterHandler>
             @Nonnull final ServletResponse res,
             @Nonnull final FilterChain chain) throws ServletException, IOException
     {
-        this.filter.doFilter(req, res, chain);
+        final long startTime = this.metrics.start();
+        boolean failed = true;
+        try
+        {
+            this.filter.doFilter(req, res, chain);
+            failed = false;
+        }
+        finally
+        {
+            this.metrics.end(startTime, res, failed);
+        }
+    }
+
+    public RequestMetrics getMetrics()
+    {
+        return this.metrics;
     }
 
     public boolean destroy()
@@ -27,6 +27,7 @@ import javax.servlet.ServletResponse;
 import org.apache.felix.http.base.internal.context.ExtServletContext;
 import org.apache.felix.http.base.internal.dispatch.MultipartConfig;
 import org.apache.felix.http.base.internal.logger.SystemLogger;
+import org.apache.felix.http.base.internal.metrics.RequestMetrics;
 import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.osgi.service.http.runtime.dto.DTOConstants;
 
@@ -52,6 +53,8 @@ public abstract class ServletHandler implements Comparable<ServletHandler>
 
     private final MultipartConfig mpConfig;
 
+    private final RequestMetrics metrics = new RequestMetrics();
+
     public ServletHandler(final long contextServiceId,
             final ExtServletContext context,
             final ServletInfo servletInfo)
@@ -116,7 +119,22 @@ public abstract class ServletHandler implements Comparable<ServletHandler>
     public void handle(final ServletRequest req, final ServletResponse res)
             throws ServletException, IOException
     {
-        this.servlet.service(req, res);
+        final long startTime = this.metrics.start();
+        boolean failed = true;
+        try
+        {
+            this.servlet.service(req, res);
+            failed = false;
+        }
+        finally
+        {
+            this.metrics.end(startTime, res, failed);
+        }
+    }
+
+    public RequestMetrics getMetrics()
+    {
+        return this.metrics;
     }
 
     public ServletInfo getServletInfo()
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free latency histogram with logarithmic buckets, similar to an
+ * HDR histogram. Values below 16 are counted exactly, larger values are
+ * counted in 16 linear sub buckets per power of two which keeps the
+ * relative error of a reported value below 6.25%.
+ * Recording a value is a few bit operations and an atomic increment.
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong totalCount = new AtomicLong();
+
+    private final AtomicLong totalSum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value
+     * @param value The value, negative values are recorded as {@code 0}
+     */
+    public void record(final long value)
+    {
+        final long v = value < 0 ? 0 : value;
+        this.counts.incrementAndGet(getIndex(v));
+        this.totalCount.incrementAndGet();
+        this.totalSum.addAndGet(v);
+
+        long current = this.max.get();
+        while ( v > current && !this.max.compareAndSet(current, v) )
+        {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Get the number of recorded values
+     * @return The number of values
+     */
+    public long getCount()
+    {
+        return this.totalCount.get();
+    }
+
+    /**
+     * Get the largest recorded value
+     * @return The maximum or {@code 0} if no value has been recorded
+     */
+    public long getMax()
+    {
+        return this.max.get();
+    }
+
+    /**
+     * Get the mean of all recorded values
+     * @return The mean or {@code 0} if no value has been recorded
+     */
+    public long getMean()
+    {
+        final long count = this.totalCount.get();
+        return count == 0 ? 0 : this.totalSum.get() / count;
+    }
+
+    /**
+     * Get the value at the given percentile. The returned value is the
+     * highest value of the bucket containing the percentile, but never
+     * larger than the recorded maximum.
+     * @param percentile The percentile between {@code 0} and {@code 100}
+     * @return The value or {@code 0} if no value has been recorded
+     */
+    public long getValueAtPercentile(final double percentile)
+    {
+        final long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++)
+        {
+            snapshot[i] = this.counts.get(i);
+            count += snapshot[i];
+        }
+        if ( count == 0 )
+        {
+            return 0;
+        }
+        final double p = Math.min(Math.max(percentile, 0.0), 100.0);
+        final long target = Math.max(1, (long) Math.ceil(p * count / 100.0));
+
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seen += snapshot[i];
+            if ( seen >= target )
+            {
+                return Math.min(getHighestValue(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    static int getIndex(final long value)
+    {
+        if ( value < SUB_BUCKET_COUNT )
+        {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    static long getHighestValue(final int index)
+    {
+        if ( index < SUB_BUCKET_COUNT )
+        {
+            return index;
+        }
+        final int shift = (index >> SUB_BUCKET_BITS) - 1;
+        final long mantissa = (index & SUB_BUCKET_MASK) | SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
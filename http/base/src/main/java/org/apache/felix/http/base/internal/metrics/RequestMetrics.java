@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Request metrics of a servlet, a filter or a servlet context.
+ * The latency is the time spent in the synchronous part of the
+ * invocation and recorded in microseconds. For a filter this includes
+ * the time spent in the remaining chain.
+ */
+public final class RequestMetrics
+{
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong activeCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Mark the start of an invocation.
+     * @return The start time to be passed to {@link #end(long, ServletResponse, boolean)}
+     */
+    public long start()
+    {
+        this.activeCount.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Mark the end of an invocation.
+     * @param startTime The value returned by {@link #start()}
+     * @param res The response
+     * @param failed {@code true} if the invocation threw an exception
+     */
+    public void end(final long startTime, final ServletResponse res, final boolean failed)
+    {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+        this.activeCount.decrementAndGet();
+        this.requestCount.incrementAndGet();
+        if ( failed || (res instanceof HttpServletResponse && ((HttpServletResponse) res).getStatus() >= 500) )
+        {
+            this.errorCount.incrementAndGet();
+        }
+        this.latency.record(micros);
+    }
+
+    /**
+     * The number of completed invocations
+     */
+    public long getRequestCount()
+    {
+        return this.requestCount.get();
+    }
+
+    /**
+     * The number of invocations currently in progress
+     */
+    public long getActiveCount()
+    {
+        return this.activeCount.get();
+    }
+
+    /**
+     * The number of invocations which threw an exception or
+     * resulted in a status code of 500 or higher
+     */
+    public long getErrorCount()
+    {
+        return this.errorCount.get();
+    }
+
+    /**
+     * The latency histogram in microseconds
+     */
+    public LatencyHistogram getLatency()
+    {
+        return this.latency;
+    }
+}
@@ -19,8 +19,12 @@ package org.apache.felix.http.base.internal.registry;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -28,8 +32,15 @@ import javax.servlet.DispatcherType;
 
 import org.apache.felix.http.base.internal.handler.FilterHandler;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.DefaultMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExactMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExtensionMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.PathMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.RootMatcher;
 import org.apache.felix.http.base.internal.runtime.FilterInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FilterDTOBuilder;
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTO;
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTOBuilder;
 import org.osgi.service.http.runtime.dto.FailedFilterDTO;
 import org.osgi.service.http.runtime.dto.FilterDTO;
 import org.osgi.service.http.runtime.dto.ServletContextDTO;
@@ -43,6 +54,11 @@ public final class FilterRegistry
     /** List of all filter registrations. These are sorted by the status objects. */
     private volatile List<FilterRegistrationStatus> filters = Collections.emptyList();
 
+    private static final FilterHandler[] EMPTY_FILTER_HANDLERS = new FilterHandler[0];
+
+    /** Compiled filter chains per dispatcher type, rebuilt whenever the filters change. */
+    private volatile Map<DispatcherType, FilterChainIndex> chains = buildChains(this.filters);
+
     /**
      * The status object keeps track of the registration status of a filter and holds
      * the resolvers to match against a uri.
@@ -125,7 +141,7 @@ public final class FilterRegistry
         newList.add(status);
         Collections.sort(newList);
 
-        this.filters = newList;
+        this.setFilters(newList);
     }
 
     /**
@@ -150,7 +166,7 @@ public final class FilterRegistry
         }
         if ( found != null )
         {
-            this.filters = newList;
+            this.setFilters(newList);
 
             if ( found.getResult() == -1 && destroy )
             {
@@ -161,7 +177,36 @@ public final class FilterRegistry
 
     public synchronized void cleanup()
     {
-        this.filters = Collections.emptyList();
+        this.setFilters(Collections.<FilterRegistrationStatus>emptyList());
+    }
+
+    private void setFilters(final List<FilterRegistrationStatus> newList)
+    {
+        this.filters = newList;
+        this.chains = buildChains(newList);
+    }
+
+    private static Map<DispatcherType, FilterChainIndex> buildChains(final List<FilterRegistrationStatus> allFilters)
+    {
+        final Map<DispatcherType, FilterChainIndex> result = new EnumMap<DispatcherType, FilterChainIndex>(DispatcherType.class);
+        for(final DispatcherType dispatcherType : DispatcherType.values())
+        {
+            final List<FilterRegistrationStatus> active = new ArrayList<FilterRegistrationStatus>();
+            for(final FilterRegistrationStatus status : allFilters)
+            {
+                // as soon as we encounter a failing filter, we can stop
+                if ( status.getResult() != -1 )
+                {
+                    break;
+                }
+                if ( referencesDispatcherType(status.getHandler(), dispatcherType) )
+                {
+                    active.add(status);
+                }
+            }
+            result.put(dispatcherType, new FilterChainIndex(active));
+        }
+        return result;
     }
 
     /**
@@ -176,47 +221,9 @@ public final class FilterRegistry
             @Nonnull final DispatcherType dispatcherType,
             @Nonnull final String requestURI)
     {
-        final List<FilterHandler> result = new ArrayList<FilterHandler>();
-        final List<FilterRegistrationStatus> allFilters = this.filters;
-
-        for(final FilterRegistrationStatus status : allFilters)
-        {
-            // as soon as we encounter a failing filter, we can stop
-            if ( status.getResult() != -1 )
-            {
-                break;
-            }
-            if (referencesDispatcherType(status.getHandler(), dispatcherType) )
-            {
-                boolean added = false;
-                for(final PathResolver resolver : status.getResolvers())
-                {
-                    if ( resolver.resolve(requestURI) != null )
-                    {
-                        result.add(status.getHandler());
-                        added = true;
-                        break;
-                    }
-                }
-                // check for servlet name if it's not a resource
-                final String servletName = (handler != null && !handler.getServletInfo().isResource()) ? handler.getName() : null;
-                if ( !added && servletName != null && status.getHandler().getFilterInfo().getServletNames() != null )
-                {
-                    for(final String name : status.getHandler().getFilterInfo().getServletNames())
-                    {
-                        if ( servletName.equals(name) )
-                        {
-                            result.add(status.getHandler());
-                            added = true;
-                            break;
-                        }
-                    }
-                }
-
-            }
-        }
-
-        return result.toArray(new FilterHandler[result.size()]);
+        // check for servlet name if it's not a resource
+        final String servletName = (handler != null && !handler.getServletInfo().isResource()) ? handler.getName() : null;
+        return this.chains.get(dispatcherType).getFilterHandlers(servletName, requestURI);
     }
 
     /**
@@ -225,7 +232,7 @@ public final class FilterRegistry
      * @param dispatcherType The requested dispatcher type
      * @return {@code true} if the filter can be applied.
      */
-    private boolean referencesDispatcherType(final FilterHandler handler, final DispatcherType dispatcherType)
+    private static boolean referencesDispatcherType(final FilterHandler handler, final DispatcherType dispatcherType)
     {
         for(final DispatcherType dt : handler.getFilterInfo().getDispatcher())
         {
@@ -265,4 +272,216 @@ public final class FilterRegistry
             servletContextDTO.filterDTOs = filterDTOs.toArray(new FilterDTO[filterDTOs.size()]);
         }
     }
+
+    /**
+     * Get the request metrics of the active filters
+     * @param metricsDTOs The list receiving the metrics
+     */
+    public void getMetricsInfo(final List<RequestMetricsDTO> metricsDTOs)
+    {
+        final List<FilterRegistrationStatus> allFilters = this.filters;
+        for(final FilterRegistrationStatus status : allFilters)
+        {
+            if ( status.getResult() == -1 )
+            {
+                final FilterHandler handler = status.getHandler();
+                metricsDTOs.add(RequestMetricsDTOBuilder.build(handler.getMetrics(),
+                        handler.getFilterInfo().getServiceId(), handler.getName()));
+            }
+        }
+    }
+
+    /**
+     * The filter chain index holds the active filters for a single dispatcher type,
+     * in the order they are applied, and indexes them by pattern and servlet name.
+     * Matching a request uri then costs a few hash lookups instead of trying every
+     * resolver of every filter.
+     * If no filter depends on the request uri (all filters are mapped to the root
+     * path, the default path or to servlet names), the chain only depends on the
+     * servlet and is cached per servlet name.
+     */
+    private static final class FilterChainIndex
+    {
+        private final FilterHandler[] handlers;
+
+        private final Map<String, List<Integer>> exactMatches = new HashMap<String, List<Integer>>();
+
+        private final Map<String, List<Integer>> pathMatches = new HashMap<String, List<Integer>>();
+
+        private final Map<String, List<Integer>> extensionMatches = new HashMap<String, List<Integer>>();
+
+        private final Map<String, List<Integer>> servletNames = new HashMap<String, List<Integer>>();
+
+        private final List<Integer> rootMatches = new ArrayList<Integer>();
+
+        private final List<Integer> defaultMatches = new ArrayList<Integer>();
+
+        private final List<PathResolver> otherResolvers = new ArrayList<PathResolver>();
+
+        private final List<Integer> otherMatches = new ArrayList<Integer>();
+
+        /** Cached chains per servlet name, {@code null} if the chain depends on the uri. */
+        private final ConcurrentHashMap<String, FilterHandler[]> chainsByServletName;
+
+        public FilterChainIndex(final List<FilterRegistrationStatus> active)
+        {
+            this.handlers = new FilterHandler[active.size()];
+            for(int i = 0; i < this.handlers.length; i++)
+            {
+                final FilterRegistrationStatus status = active.get(i);
+                this.handlers[i] = status.getHandler();
+                for(final PathResolver resolver : status.getResolvers())
+                {
+                    final String pattern = resolver.getPattern();
+                    if ( resolver instanceof ExactMatcher )
+                    {
+                        add(this.exactMatches, pattern, i);
+                    }
+                    else if ( resolver instanceof PathMatcher )
+                    {
+                        add(this.pathMatches, pattern.substring(0, pattern.length() - 2), i);
+                    }
+                    else if ( resolver instanceof ExtensionMatcher )
+                    {
+                        add(this.extensionMatches, pattern.substring(1), i);
+                    }
+                    else if ( resolver instanceof RootMatcher )
+                    {
+                        this.rootMatches.add(i);
+                    }
+                    else if ( resolver instanceof DefaultMatcher )
+                    {
+                        this.defaultMatches.add(i);
+                    }
+                    else
+                    {
+                        this.otherResolvers.add(resolver);
+                        this.otherMatches.add(i);
+                    }
+                }
+                if ( status.getHandler().getFilterInfo().getServletNames() != null )
+                {
+                    for(final String name : status.getHandler().getFilterInfo().getServletNames())
+                    {
+                        add(this.servletNames, name, i);
+                    }
+                }
+            }
+            final boolean uriIndependent = this.exactMatches.isEmpty()
+                    && this.extensionMatches.isEmpty()
+                    && this.rootMatches.isEmpty()
+                    && this.otherResolvers.isEmpty()
+                    && (this.pathMatches.isEmpty() || (this.pathMatches.size() == 1 && this.pathMatches.containsKey("")));
+            this.chainsByServletName = uriIndependent ? new ConcurrentHashMap<String, FilterHandler[]>() : null;
+        }
+
+        private static void add(final Map<String, List<Integer>> map, final String key, final int index)
+        {
+            List<Integer> list = map.get(key);
+            if ( list == null )
+            {
+                list = new ArrayList<Integer>();
+                map.put(key, list);
+            }
+            list.add(index);
+        }
+
+        public FilterHandler[] getFilterHandlers(final String servletName, final String requestURI)
+        {
+            if ( this.handlers.length == 0 )
+            {
+                return EMPTY_FILTER_HANDLERS;
+            }
+            if ( this.chainsByServletName != null )
+            {
+                // a "/*" filter matches the empty uri and every uri starting with a slash
+                final boolean matchesRootPath = requestURI.length() == 0 || requestURI.charAt(0) == '/';
+                if ( matchesRootPath || this.pathMatches.isEmpty() )
+                {
+                    // prefix servlet names to distinguish them from the "no servlet" key
+                    final String key = servletName == null ? "" : "/".concat(servletName);
+                    FilterHandler[] chain = this.chainsByServletName.get(key);
+                    if ( chain == null )
+                    {
+                        chain = this.match(servletName, requestURI);
+                        this.chainsByServletName.put(key, chain);
+                    }
+                    return chain;
+                }
+            }
+            return this.match(servletName, requestURI);
+        }
+
+        private FilterHandler[] match(final String servletName, final String requestURI)
+        {
+            final boolean[] matches = new boolean[this.handlers.length];
+
+            mark(matches, this.defaultMatches);
+            mark(matches, this.exactMatches.get(requestURI));
+            if ( !this.pathMatches.isEmpty() )
+            {
+                mark(matches, this.pathMatches.get(requestURI));
+                for(int i = requestURI.indexOf('/'); i != -1; i = requestURI.indexOf('/', i + 1))
+                {
+                    mark(matches, this.pathMatches.get(requestURI.substring(0, i)));
+                }
+            }
+            if ( !this.extensionMatches.isEmpty() )
+            {
+                for(int i = requestURI.indexOf('.'); i != -1; i = requestURI.indexOf('.', i + 1))
+                {
+                    mark(matches, this.extensionMatches.get(requestURI.substring(i)));
+                }
+            }
+            if ( requestURI.length() == 0 || requestURI.equals("/") )
+            {
+                mark(matches, this.rootMatches);
+            }
+            for(int i = 0; i < this.otherResolvers.size(); i++)
+            {
+                if ( this.otherResolvers.get(i).resolve(requestURI) != null )
+                {
+                    matches[this.otherMatches.get(i)] = true;
+                }
+            }
+            if ( servletName != null )
+            {
+                mark(matches, this.servletNames.get(servletName));
+            }
+
+            int count = 0;
+            for(final boolean m : matches)
+            {
+                if ( m )
+                {
+                    count++;
+                }
+            }
+            if ( count == 0 )
+            {
+                return EMPTY_FILTER_HANDLERS;
+            }
+            final FilterHandler[] result = new FilterHandler[count];
+            int pos = 0;
+            for(int i = 0; i < matches.length; i++)
+            {
+                if ( matches[i] )
+                {
+                    result[pos++] = this.handlers[i];
+                }
+            }
+            return result;
+        }
+
+        private static void mark(final boolean[] matches, final List<Integer> indexes)
+        {
+            if ( indexes != null )
+            {
+                for(final Integer index : indexes)
+                {
+                    matches[index] = true;
+                }
+            }
+        }
+    }
 }
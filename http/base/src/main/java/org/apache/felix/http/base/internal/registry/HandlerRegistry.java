@@ -18,8 +18,11 @@ package org.apache.felix.http.base.internal.registry;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -29,6 +32,7 @@ import org.apache.felix.http.base.internal.handler.FilterHandler;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
 import org.apache.felix.http.base.internal.runtime.ServletContextHelperInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
+import org.apache.felix.http.base.internal.runtime.dto.ServletContextMetricsDTO;
 import org.osgi.service.http.runtime.dto.ServletContextDTO;
 
 /**
@@ -44,6 +48,9 @@ public final class HandlerRegistry
     /** Current list of context registrations. */
     private volatile List<PerContextHandlerRegistry> registrations = Collections.emptyList();
 
+    /** Index over the context registrations, rebuilt whenever they change. */
+    private volatile ContextIndex contextIndex = new ContextIndex(this.registrations);
+
     /**
      * Register default context registry for Http Service
      */
@@ -57,7 +64,10 @@ public final class HandlerRegistry
      */
     public void reset()
     {
-        this.registrations.clear();
+        synchronized ( this )
+        {
+            this.setRegistrations(Collections.<PerContextHandlerRegistry>emptyList());
+        }
         this.init();
     }
 
@@ -71,7 +81,7 @@ public final class HandlerRegistry
         synchronized ( this )
         {
             list = new ArrayList<PerContextHandlerRegistry>(this.registrations);
-            this.registrations = Collections.emptyList();
+            this.setRegistrations(Collections.<PerContextHandlerRegistry>emptyList());
 
         }
 
@@ -97,7 +107,7 @@ public final class HandlerRegistry
                 if ( reg.getContextServiceId() == info.getServiceId() )
                 {
                     i.remove();
-                    this.registrations = updatedList;
+                    this.setRegistrations(updatedList);
                     break;
                 }
             }
@@ -116,21 +126,19 @@ public final class HandlerRegistry
             updatedList.add(registry);
             Collections.sort(updatedList);
 
-            this.registrations = updatedList;
+            this.setRegistrations(updatedList);
         }
     }
 
+    private void setRegistrations(final List<PerContextHandlerRegistry> list)
+    {
+        this.registrations = list;
+        this.contextIndex = new ContextIndex(list);
+    }
+
     public PerContextHandlerRegistry getRegistry(final long key)
     {
-        final List<PerContextHandlerRegistry> list = this.registrations;
-        for(final PerContextHandlerRegistry r : list)
-        {
-            if ( key == r.getContextServiceId())
-            {
-                return r;
-            }
-        }
-        return null;
+        return this.contextIndex.getById(key);
     }
 
     public @CheckForNull ServletResolution getErrorHandler(@Nonnull final String requestURI,
@@ -142,18 +150,7 @@ public final class HandlerRegistry
         if ( serviceId == null )
         {
             // if the context is unknown, we use the first matching one!
-            PerContextHandlerRegistry found = null;
-            final List<PerContextHandlerRegistry> regs = this.registrations;
-            for(final PerContextHandlerRegistry r : regs)
-            {
-                final String path = r.isMatching(requestURI);
-                if ( path != null )
-                {
-                    found = r;
-                    break;
-                }
-            }
-            reg = found;
+            reg = this.getBestMatchingRegistry(requestURI);
         }
         else
         {
@@ -187,7 +184,7 @@ public final class HandlerRegistry
 
     public PathResolution resolveServlet(@Nonnull final String requestURI)
     {
-        final List<PerContextHandlerRegistry> regs = this.registrations;
+        final List<PerContextHandlerRegistry> regs = this.contextIndex.getMatching(requestURI);
         for(final PerContextHandlerRegistry r : regs)
         {
             final String path = r.isMatching(requestURI);
@@ -243,20 +240,105 @@ public final class HandlerRegistry
         return false;
     }
 
+    /**
+     * Get the request metrics of all contexts
+     * @return The metrics DTOs
+     */
+    public @Nonnull ServletContextMetricsDTO[] getMetricsInfo()
+    {
+        final List<PerContextHandlerRegistry> regs = this.registrations;
+        final ServletContextMetricsDTO[] result = new ServletContextMetricsDTO[regs.size()];
+        int index = 0;
+        for(final PerContextHandlerRegistry reg : regs)
+        {
+            result[index] = new ServletContextMetricsDTO();
+            reg.getMetricsInfo(result[index]);
+            index++;
+        }
+        return result;
+    }
+
     public PerContextHandlerRegistry getBestMatchingRegistry(String requestURI)
     {
         // if the context is unknown, we use the first matching one!
-        PerContextHandlerRegistry found = null;
-        final List<PerContextHandlerRegistry> regs = this.registrations;
-        for(final PerContextHandlerRegistry r : regs)
+        final List<PerContextHandlerRegistry> regs = this.contextIndex.getMatching(requestURI);
+        return regs.isEmpty() ? null : regs.get(0);
+    }
+
+    /**
+     * Longest prefix index over the context paths.
+     * Context paths are either "/" or start with a slash and do not end with a slash,
+     * so the contexts matching a request uri are the ones registered for the uri itself,
+     * for each of the uri's parent paths and for "/". Collecting them longest path first,
+     * while keeping the registration order for the same path, gives the same order as
+     * the sorted registration list, with one lookup per path segment.
+     */
+    private static final class ContextIndex
+    {
+        private final Map<String, List<PerContextHandlerRegistry>> contextsByPath = new HashMap<String, List<PerContextHandlerRegistry>>();
+
+        private final List<PerContextHandlerRegistry> rootContexts = new ArrayList<PerContextHandlerRegistry>();
+
+        private final Map<Long, PerContextHandlerRegistry> contextsById = new HashMap<Long, PerContextHandlerRegistry>();
+
+        public ContextIndex(@Nonnull final List<PerContextHandlerRegistry> registrations)
         {
-            final String path = r.isMatching(requestURI);
-            if ( path != null )
+            final Map<String, List<PerContextHandlerRegistry>> byPath = new LinkedHashMap<String, List<PerContextHandlerRegistry>>();
+            for(final PerContextHandlerRegistry r : registrations)
+            {
+                if ( "/".equals(r.getPath()) )
+                {
+                    this.rootContexts.add(r);
+                }
+                else
+                {
+                    List<PerContextHandlerRegistry> list = byPath.get(r.getPath());
+                    if ( list == null )
+                    {
+                        list = new ArrayList<PerContextHandlerRegistry>();
+                        byPath.put(r.getPath(), list);
+                    }
+                    list.add(r);
+                }
+                if ( !this.contextsById.containsKey(r.getContextServiceId()) )
+                {
+                    this.contextsById.put(r.getContextServiceId(), r);
+                }
+            }
+            this.contextsByPath.putAll(byPath);
+        }
+
+        public @CheckForNull PerContextHandlerRegistry getById(final long id)
+        {
+            return this.contextsById.get(id);
+        }
+
+        /**
+         * Get all contexts matching the request uri, in registration order
+         * @param requestURI The request uri
+         * @return The matching contexts, might be empty
+         */
+        public @Nonnull List<PerContextHandlerRegistry> getMatching(@Nonnull final String requestURI)
+        {
+            final List<PerContextHandlerRegistry> result = new ArrayList<PerContextHandlerRegistry>();
+            if ( !this.contextsByPath.isEmpty() )
+            {
+                addAll(result, this.contextsByPath.get(requestURI));
+                for(int i = requestURI.lastIndexOf('/'); i > 0; i = requestURI.lastIndexOf('/', i - 1))
+                {
+                    addAll(result, this.contextsByPath.get(requestURI.substring(0, i)));
+                }
+            }
+            result.addAll(this.rootContexts);
+            return result;
+        }
+
+        private static void addAll(final List<PerContextHandlerRegistry> result, final List<PerContextHandlerRegistry> contexts)
+        {
+            if ( contexts != null )
             {
-                found = r;
-                break;
+                result.addAll(contexts);
             }
         }
-        return found;
     }
 }
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.DefaultMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExactAndPathMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExactMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExtensionMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.PathMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.RootMatcher;
+
+/**
+ * Immutable lookup structure for a sorted list of path resolvers.
+ * Instead of trying every resolver in order, the index resolves a request uri with
+ * a few hash lookups, one per path segment for the path mappings and one per dot
+ * for the extension mappings, while returning the same resolver as a linear walk
+ * over the sorted list:
+ * - exact matches (and exact and path matches of the http service) ordered by length
+ * - path matches, longest first
+ * - extension matches, longest first
+ * - root match
+ * - default match
+ *
+ * If the list contains a resolver not created by the {@link PathResolverFactory}
+ * pattern matchers, the index falls back to the linear walk.
+ */
+final class PathResolverIndex
+{
+    private final Map<String, PathResolver> exactMatches = new HashMap<String, PathResolver>();
+
+    private final Map<String, PathResolver> exactPrefixMatches = new HashMap<String, PathResolver>();
+
+    private final Map<String, PathResolver> pathMatches = new HashMap<String, PathResolver>();
+
+    private final Map<String, PathResolver> extensionMatches = new HashMap<String, PathResolver>();
+
+    private PathResolver rootMatch;
+
+    private PathResolver defaultMatch;
+
+    /** The sorted resolvers if they can't be indexed, {@code null} otherwise. */
+    private final PathResolver[] resolvers;
+
+    /**
+     * Create an index
+     * @param resolvers The resolvers, sorted
+     */
+    public PathResolverIndex(@Nonnull final List<PathResolver> resolvers)
+    {
+        boolean indexed = true;
+        // the list is sorted, so the first resolver for a key is the one to use
+        for(final PathResolver resolver : resolvers)
+        {
+            final String pattern = resolver.getPattern();
+            if ( resolver instanceof ExactMatcher )
+            {
+                putIfAbsent(this.exactMatches, pattern, resolver);
+            }
+            else if ( resolver instanceof ExactAndPathMatcher )
+            {
+                putIfAbsent(this.exactMatches, pattern, resolver);
+                putIfAbsent(this.exactPrefixMatches, pattern, resolver);
+            }
+            else if ( resolver instanceof PathMatcher )
+            {
+                putIfAbsent(this.pathMatches, pattern.substring(0, pattern.length() - 2), resolver);
+            }
+            else if ( resolver instanceof ExtensionMatcher )
+            {
+                putIfAbsent(this.extensionMatches, pattern.substring(1), resolver);
+            }
+            else if ( resolver instanceof RootMatcher )
+            {
+                if ( this.rootMatch == null )
+                {
+                    this.rootMatch = resolver;
+                }
+            }
+            else if ( resolver instanceof DefaultMatcher )
+            {
+                if ( this.defaultMatch == null )
+                {
+                    this.defaultMatch = resolver;
+                }
+            }
+            else
+            {
+                indexed = false;
+                break;
+            }
+        }
+        this.resolvers = indexed ? null : resolvers.toArray(new PathResolver[resolvers.size()]);
+    }
+
+    private static void putIfAbsent(final Map<String, PathResolver> map, final String key, final PathResolver resolver)
+    {
+        if ( !map.containsKey(key) )
+        {
+            map.put(key, resolver);
+        }
+    }
+
+    /**
+     * Find the resolver matching the request uri
+     * @param uri The request uri
+     * @return The first matching resolver or {@code null}
+     */
+    public @CheckForNull PathResolver find(@Nonnull final String uri)
+    {
+        if ( this.resolvers != null )
+        {
+            for(final PathResolver resolver : this.resolvers)
+            {
+                if ( resolver.resolve(uri) != null )
+                {
+                    return resolver;
+                }
+            }
+            return null;
+        }
+
+        PathResolver resolver = this.exactMatches.get(uri);
+        if ( resolver == null && !this.exactPrefixMatches.isEmpty() )
+        {
+            resolver = findPrefix(this.exactPrefixMatches, uri);
+        }
+        if ( resolver == null && !this.pathMatches.isEmpty() )
+        {
+            resolver = this.pathMatches.get(uri);
+            if ( resolver == null )
+            {
+                resolver = findPrefix(this.pathMatches, uri);
+            }
+        }
+        if ( resolver == null && !this.extensionMatches.isEmpty() )
+        {
+            // the longest extension starts at the first dot
+            for(int i = uri.indexOf('.'); resolver == null && i != -1; i = uri.indexOf('.', i + 1))
+            {
+                resolver = this.extensionMatches.get(uri.substring(i));
+            }
+        }
+        if ( resolver == null && this.rootMatch != null && (uri.length() == 0 || uri.equals("/")) )
+        {
+            resolver = this.rootMatch;
+        }
+        if ( resolver == null )
+        {
+            resolver = this.defaultMatch;
+        }
+        return resolver;
+    }
+
+    /**
+     * Find the longest path in the map which is followed by a slash in the uri
+     */
+    private static PathResolver findPrefix(final Map<String, PathResolver> map, final String uri)
+    {
+        for(int i = uri.lastIndexOf('/'); i != -1; i = uri.lastIndexOf('/', i - 1))
+        {
+            final PathResolver resolver = map.get(uri.substring(0, i));
+            if ( resolver != null )
+            {
+                return resolver;
+            }
+        }
+        return null;
+    }
+}
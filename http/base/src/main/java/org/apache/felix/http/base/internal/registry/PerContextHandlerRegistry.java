@@ -16,6 +16,9 @@
  */
 package org.apache.felix.http.base.internal.registry;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.servlet.DispatcherType;
@@ -23,11 +26,15 @@ import javax.servlet.DispatcherType;
 import org.apache.felix.http.base.internal.handler.FilterHandler;
 import org.apache.felix.http.base.internal.handler.ListenerHandler;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
+import org.apache.felix.http.base.internal.metrics.RequestMetrics;
 import org.apache.felix.http.base.internal.runtime.FilterInfo;
 import org.apache.felix.http.base.internal.runtime.ListenerInfo;
 import org.apache.felix.http.base.internal.runtime.ServletContextHelperInfo;
 import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTO;
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTOBuilder;
+import org.apache.felix.http.base.internal.runtime.dto.ServletContextMetricsDTO;
 import org.apache.felix.http.base.internal.service.HttpServiceFactory;
 import org.osgi.service.http.runtime.dto.ServletContextDTO;
 
@@ -59,6 +66,9 @@ public final class PerContextHandlerRegistry implements Comparable<PerContextHan
 
     private final EventListenerRegistry eventListenerRegistry = new EventListenerRegistry();
 
+    /** Request metrics of the context. */
+    private final RequestMetrics metrics = new RequestMetrics();
+
     /**
      * Default http service registry
      */
@@ -94,6 +104,16 @@ public final class PerContextHandlerRegistry implements Comparable<PerContextHan
         return this.serviceId;
     }
 
+    public String getPath()
+    {
+        return this.path;
+    }
+
+    public RequestMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
     public void removeAll()
     {
         this.errorPageRegistry.cleanup();
@@ -197,6 +217,24 @@ public final class PerContextHandlerRegistry implements Comparable<PerContextHan
         this.eventListenerRegistry.getRuntimeInfo(dto, failedDTOHolder.failedListenerDTOs);
     }
 
+    /**
+     * Create the request metrics DTOs of the context, its servlets and filters
+     * @param dto The metrics DTO to fill
+     */
+    public void getMetricsInfo(final ServletContextMetricsDTO dto)
+    {
+        RequestMetricsDTOBuilder.fill(dto, this.metrics, this.serviceId, null);
+        dto.contextPath = this.path;
+
+        final List<RequestMetricsDTO> servletDTOs = new ArrayList<RequestMetricsDTO>();
+        this.servletRegistry.getMetricsInfo(servletDTOs);
+        dto.servletMetricsDTOs = servletDTOs.toArray(new RequestMetricsDTO[servletDTOs.size()]);
+
+        final List<RequestMetricsDTO> filterDTOs = new ArrayList<RequestMetricsDTO>();
+        this.filterRegistry.getMetricsInfo(filterDTOs);
+        dto.filterMetricsDTOs = filterDTOs.toArray(new RequestMetricsDTO[filterDTOs.size()]);
+    }
+
     /**
      * Add a servlet
      * @param handler The servlet handler
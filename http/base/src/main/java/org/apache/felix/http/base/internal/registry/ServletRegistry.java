@@ -34,6 +34,8 @@ import javax.annotation.Nonnull;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
 import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.apache.felix.http.base.internal.runtime.dto.BuilderConstants;
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTO;
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTOBuilder;
 import org.apache.felix.http.base.internal.runtime.dto.ResourceDTOBuilder;
 import org.apache.felix.http.base.internal.runtime.dto.ServletDTOBuilder;
 import org.osgi.service.http.runtime.dto.DTOConstants;
@@ -53,6 +55,9 @@ public final class ServletRegistry
 
     private volatile List<PathResolver> activeResolvers = Collections.emptyList();
 
+    /** Index over the active resolvers, rebuilt whenever they change. */
+    private volatile PathResolverIndex resolverIndex = new PathResolverIndex(this.activeResolvers);
+
     private final Map<String, List<ServletHandler>> inactiveServletMappings = new HashMap<String, List<ServletHandler>>();
 
     private final Map<String, List<ServletHandler>> servletsByName = new ConcurrentHashMap<String, List<ServletHandler>>();
@@ -73,8 +78,8 @@ public final class ServletRegistry
      */
     public PathResolution resolve(@Nonnull final String relativeRequestURI)
     {
-        final List<PathResolver> resolvers = this.activeResolvers;
-        for(final PathResolver entry : resolvers)
+        final PathResolver entry = this.resolverIndex.find(relativeRequestURI);
+        if ( entry != null )
         {
             final PathResolution pr = entry.resolve(relativeRequestURI);
             if ( pr != null )
@@ -172,8 +177,7 @@ public final class ServletRegistry
             {
                 addToNameMapping(handler);
             }
-            Collections.sort(resolvers);
-            this.activeResolvers = resolvers;
+            this.setActiveResolvers(resolvers);
             this.mapping = newMap;
         }
         else if ( !handler.getServletInfo().isResource() && handler.getServletInfo().getName() != null )
@@ -338,8 +342,7 @@ public final class ServletRegistry
                 }
             }
 
-            Collections.sort(resolvers);
-            this.activeResolvers = resolvers;
+            this.setActiveResolvers(resolvers);
             this.mapping = newMap;
 
             if ( cleanupHandler != null )
@@ -364,9 +367,16 @@ public final class ServletRegistry
         }
     }
 
+    private void setActiveResolvers(final List<PathResolver> resolvers)
+    {
+        Collections.sort(resolvers);
+        this.activeResolvers = resolvers;
+        this.resolverIndex = new PathResolverIndex(resolvers);
+    }
+
     public synchronized void cleanup()
     {
-        this.activeResolvers = Collections.emptyList();
+        this.setActiveResolvers(new ArrayList<PathResolver>());
         this.inactiveServletMappings.clear();
         this.servletsByName.clear();
         this.mapping = Collections.emptyMap();
@@ -526,4 +536,21 @@ public final class ServletRegistry
         allFailedResourceDTOs.addAll(failedResourceDTOs.values());
         allFailedServletDTOs.addAll(failedServletDTOs.values());
     }
+
+    /**
+     * Get the request metrics of the active servlets and resources
+     * @param metricsDTOs The list receiving the metrics
+     */
+    public void getMetricsInfo(final List<RequestMetricsDTO> metricsDTOs)
+    {
+        for(final Map.Entry<ServletInfo, RegistrationStatus> entry : mapping.entrySet())
+        {
+            if ( entry.getValue().statusToPath.containsKey(-1) )
+            {
+                final ServletHandler handler = entry.getValue().handler;
+                metricsDTOs.add(RequestMetricsDTOBuilder.build(handler.getMetrics(),
+                        entry.getKey().getServiceId(), handler.getName()));
+            }
+        }
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.runtime.dto;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Request metrics of a servlet or a filter. All latencies are in microseconds.
+ */
+public class RequestMetricsDTO extends DTO
+{
+    /** The service id of the servlet or filter. */
+    public long serviceId;
+
+    /** The name of the servlet or filter. */
+    public String name;
+
+    /** The number of completed invocations. */
+    public long requestCount;
+
+    /** The number of invocations in progress. */
+    public long activeRequestCount;
+
+    /** The number of invocations failing with an exception or a status of 500 or higher. */
+    public long errorCount;
+
+    public long meanLatency;
+
+    public long latency50;
+
+    public long latency90;
+
+    public long latency99;
+
+    public long latency999;
+
+    public long maxLatency;
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.runtime.dto;
+
+import org.apache.felix.http.base.internal.metrics.LatencyHistogram;
+import org.apache.felix.http.base.internal.metrics.RequestMetrics;
+
+public final class RequestMetricsDTOBuilder
+{
+    public static final RequestMetricsDTO[] METRICS_DTO_ARRAY = new RequestMetricsDTO[0];
+
+    /**
+     * Build a metrics DTO
+     * @param metrics The metrics
+     * @param serviceId The service id of the servlet or filter
+     * @param name The name of the servlet or filter
+     * @return A metrics DTO
+     */
+    public static RequestMetricsDTO build(final RequestMetrics metrics, final long serviceId, final String name)
+    {
+        final RequestMetricsDTO dto = new RequestMetricsDTO();
+        fill(dto, metrics, serviceId, name);
+        return dto;
+    }
+
+    public static void fill(final RequestMetricsDTO dto,
+            final RequestMetrics metrics,
+            final long serviceId,
+            final String name)
+    {
+        dto.serviceId = serviceId;
+        dto.name = name;
+        dto.requestCount = metrics.getRequestCount();
+        dto.activeRequestCount = metrics.getActiveCount();
+        dto.errorCount = metrics.getErrorCount();
+
+        final LatencyHistogram latency = metrics.getLatency();
+        dto.meanLatency = latency.getMean();
+        dto.latency50 = latency.getValueAtPercentile(50.0);
+        dto.latency90 = latency.getValueAtPercentile(90.0);
+        dto.latency99 = latency.getValueAtPercentile(99.0);
+        dto.latency999 = latency.getValueAtPercentile(99.9);
+        dto.maxLatency = latency.getMax();
+    }
+}
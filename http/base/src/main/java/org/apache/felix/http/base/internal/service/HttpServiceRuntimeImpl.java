@@ -26,6 +26,7 @@ import java.util.TimerTask;
 import org.apache.felix.http.base.internal.registry.HandlerRegistry;
 import org.apache.felix.http.base.internal.runtime.dto.RequestInfoDTOBuilder;
 import org.apache.felix.http.base.internal.runtime.dto.RuntimeDTOBuilder;
+import org.apache.felix.http.base.internal.runtime.dto.ServletContextMetricsDTO;
 import org.apache.felix.http.base.internal.whiteboard.WhiteboardManager;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
@@ -98,6 +99,16 @@ public final class HttpServiceRuntimeImpl implements HttpServiceRuntime
         return new RequestInfoDTOBuilder(registry, path).build();
     }
 
+    /**
+     * Get the request metrics of all servlet contexts, their servlets and filters.
+     * This is an extension to the {@link HttpServiceRuntime} DTOs.
+     * @return The metrics DTOs
+     */
+    public ServletContextMetricsDTO[] getServletContextMetricsDTOs()
+    {
+        return registry.getMetricsInfo();
+    }
+
     public synchronized void setAttribute(String name, Object value)
     {
         Hashtable<String, Object> newAttributes = new Hashtable<String, Object>(attributes);
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded least recently used cache of static resources, shared by all
+ * resource servlets. The cache is bounded by the total size of the cached
+ * content (including the compressed variants). Lookups don't lock, the
+ * least recently used entries are evicted when an entry is added.
+ */
+final class ResourceCache
+{
+    /** Immutable cached resource. */
+    static final class Entry
+    {
+        /** The resource content. */
+        final byte[] content;
+
+        /** The gzip encoded content or {@code null}. */
+        final byte[] gzip;
+
+        /** The brotli encoded content (precompressed in the bundle) or {@code null}. */
+        final byte[] brotli;
+
+        /** The last modified time or {@code 0}. */
+        final long lastModified;
+
+        /** The strong entity tag of the identity encoding, without quotes. */
+        final String etag;
+
+        /** The file backing the resource or {@code null} for bundle entries. */
+        final File file;
+
+        Entry(final byte[] content, final byte[] gzip, final byte[] brotli, final long lastModified, final String etag, final File file)
+        {
+            this.content = content;
+            this.gzip = gzip;
+            this.brotli = brotli;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.file = file;
+        }
+
+        /**
+         * Bundle entries do not change for a registration, files might.
+         * @return {@code true} if the backing file changed.
+         */
+        boolean isStale()
+        {
+            return this.file != null
+                    && (this.file.lastModified() != this.lastModified || this.file.length() != this.content.length);
+        }
+
+        int size()
+        {
+            return this.content.length
+                    + (this.gzip == null ? 0 : this.gzip.length)
+                    + (this.brotli == null ? 0 : this.brotli.length);
+        }
+    }
+
+    /** Key of a resource: the owning servlet and the resource name. */
+    private static final class Key
+    {
+        private final Object owner;
+
+        private final String name;
+
+        Key(final Object owner, final String name)
+        {
+            this.owner = owner;
+            this.name = name;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * System.identityHashCode(this.owner) + this.name.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if ( !(obj instanceof Key) )
+            {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return this.owner == other.owner && this.name.equals(other.name);
+        }
+    }
+
+    /** A cache entry and the time of its last use. */
+    private static final class Node
+    {
+        final Key key;
+
+        final Entry entry;
+
+        volatile long lastAccess;
+
+        Node(final Key key, final Entry entry, final long lastAccess)
+        {
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * A node and its last access time, read once. Sorting on the volatile
+     * field could see it change and break the comparator contract.
+     */
+    private static final class Candidate
+    {
+        final Node node;
+
+        final long lastAccess;
+
+        Candidate(final Node node)
+        {
+            this.node = node;
+            this.lastAccess = node.lastAccess;
+        }
+    }
+
+    private static final Comparator<Candidate> BY_LAST_ACCESS = new Comparator<Candidate>()
+    {
+        @Override
+        public int compare(final Candidate c1, final Candidate c2)
+        {
+            return c1.lastAccess < c2.lastAccess ? -1 : (c1.lastAccess == c2.lastAccess ? 0 : 1);
+        }
+    };
+
+    private final long maxSize;
+
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Logical time of the last use of an entry. Only writes advance it, by
+     * two, so reads don't contend on it and still rank above earlier writes.
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    private final ConcurrentHashMap<Key, Node> entries = new ConcurrentHashMap<Key, Node>();
+
+    ResourceCache(final long maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    long getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    Entry get(final Object owner, final String name)
+    {
+        final Node node = this.entries.get(new Key(owner, name));
+        if ( node == null )
+        {
+            return null;
+        }
+        node.lastAccess = this.clock.get();
+        return node.entry;
+    }
+
+    void put(final Object owner, final String name, final Entry entry)
+    {
+        if ( entry.size() > this.maxSize )
+        {
+            return;
+        }
+        final Key key = new Key(owner, name);
+        final Node old = this.entries.put(key, new Node(key, entry, this.clock.addAndGet(2) - 1));
+        final long newSize = this.size.addAndGet(old == null ? entry.size() : entry.size() - old.entry.size());
+        if ( newSize > this.maxSize )
+        {
+            evict();
+        }
+    }
+
+    /**
+     * Remove the least recently used entries until the cache fits. Entries
+     * used while evicting may still be removed, the order is approximate.
+     */
+    private synchronized void evict()
+    {
+        if ( this.size.get() <= this.maxSize )
+        {
+            return;
+        }
+        final List<Candidate> candidates = new ArrayList<Candidate>(this.entries.size());
+        for(final Node node : this.entries.values())
+        {
+            candidates.add(new Candidate(node));
+        }
+        Collections.sort(candidates, BY_LAST_ACCESS);
+        for(final Candidate candidate : candidates)
+        {
+            final Node node = candidate.node;
+            if ( this.size.get() <= this.maxSize )
+            {
+                break;
+            }
+            if ( this.entries.remove(node.key, node) )
+            {
+                this.size.addAndGet(-node.entry.size());
+            }
+        }
+    }
+
+    void remove(final Object owner, final String name)
+    {
+        final Node old = this.entries.remove(new Key(owner, name));
+        if ( old != null )
+        {
+            this.size.addAndGet(-old.entry.size());
+        }
+    }
+
+    /**
+     * Remove all entries of an owner
+     * @param owner The owner
+     */
+    void removeAll(final Object owner)
+    {
+        for(final Node node : this.entries.values())
+        {
+            if ( node.key.owner == owner && this.entries.remove(node.key, node) )
+            {
+                this.size.addAndGet(-node.entry.size());
+            }
+        }
+    }
+}
@@ -16,12 +16,16 @@
  */
 package org.apache.felix.http.base.internal.service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -30,11 +34,32 @@ import javax.servlet.http.HttpServletResponse;
 
 /**
  * The resource servlet
+ *
+ * Small resources are kept in a cache shared by all resource servlets, together
+ * with a strong entity tag computed from their content and their compressed
+ * variants: a gzip variant computed once for compressible content types and the
+ * precompressed {@code .gz} and {@code .br} resources provided next to the resource.
+ * Both cached and streamed resources support conditional requests and single byte ranges.
  */
 public final class ResourceServlet extends HttpServlet
 {
     private static final long serialVersionUID = 1L;
 
+    /** Maximum size of all cached resources, in bytes. */
+    static final long CACHE_SIZE = Long.getLong("org.apache.felix.http.resource.cacheSize", 8 * 1024 * 1024);
+
+    /** Maximum size of a cached resource, in bytes. */
+    static final int MAX_CACHED_RESOURCE_SIZE = Integer.getInteger("org.apache.felix.http.resource.maxCachedSize", 256 * 1024);
+
+    /** Minimum size of a resource to compute a gzip variant. */
+    private static final int MIN_COMPRESS_SIZE = 256;
+
+    private static final ResourceCache CACHE = new ResourceCache(CACHE_SIZE);
+
+    private static final String GZIP = "gzip";
+
+    private static final String BROTLI = "br";
+
     /** The path of the resource registration. */
     private final String prefix;
 
@@ -43,6 +68,13 @@ public final class ResourceServlet extends HttpServlet
         this.prefix = prefix;
     }
 
+    @Override
+    public void destroy()
+    {
+        CACHE.removeAll(this);
+        super.destroy();
+    }
+
     @Override
     protected void doGet(final HttpServletRequest req, final HttpServletResponse res)
             throws ServletException, IOException
@@ -50,6 +82,18 @@ public final class ResourceServlet extends HttpServlet
         final String target = req.getPathInfo();
         final String resName = (target == null ? this.prefix : this.prefix + target);
 
+        ResourceCache.Entry entry = CACHE.get(this, resName);
+        if ( entry != null && entry.isStale() )
+        {
+            CACHE.remove(this, resName);
+            entry = null;
+        }
+        if ( entry != null )
+        {
+            handleCached(req, res, entry, resName);
+            return;
+        }
+
         final URL url = getServletContext().getResource(resName);
 
         if (url == null)
@@ -58,7 +102,96 @@ public final class ResourceServlet extends HttpServlet
         }
         else
         {
-            handle(req, res, url, resName);
+            entry = load(url, resName);
+            if ( entry != null )
+            {
+                CACHE.put(this, resName, entry);
+                handleCached(req, res, entry, resName);
+            }
+            else
+            {
+                handle(req, res, url, resName);
+            }
+        }
+    }
+
+    private void handleCached(final HttpServletRequest req,
+            final HttpServletResponse res, final ResourceCache.Entry entry, final String resName)
+    throws IOException
+    {
+        final String contentType = getServletContext().getMimeType(resName);
+        if (contentType != null)
+        {
+            res.setContentType(contentType);
+        }
+        if (entry.lastModified != 0)
+        {
+            res.setDateHeader("Last-Modified", entry.lastModified);
+        }
+        res.setHeader("Accept-Ranges", "bytes");
+
+        // byte ranges are only served from the identity encoding
+        final String range = req.getHeader("Range");
+        String encoding = null;
+        byte[] content = entry.content;
+        if ( entry.gzip != null || entry.brotli != null )
+        {
+            res.setHeader("Vary", "Accept-Encoding");
+            if ( range == null )
+            {
+                final String accept = req.getHeader("Accept-Encoding");
+                if ( entry.brotli != null && acceptsEncoding(accept, BROTLI) )
+                {
+                    encoding = BROTLI;
+                    content = entry.brotli;
+                }
+                else if ( entry.gzip != null && acceptsEncoding(accept, GZIP) )
+                {
+                    encoding = GZIP;
+                    content = entry.gzip;
+                }
+            }
+        }
+        final String etag = "\"" + (encoding == null ? entry.etag : entry.etag + "-" + encoding) + "\"";
+        res.setHeader("ETag", etag);
+
+        if ( !isModified(req, etag, entry.lastModified) )
+        {
+            res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        final long[] bytes = encoding == null ? getRange(req, range, etag, entry.lastModified, content.length) : null;
+        if ( bytes == UNSATISFIABLE_RANGE )
+        {
+            res.setHeader("Content-Range", "bytes */" + content.length);
+            res.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        int offset = 0;
+        int length = content.length;
+        if ( bytes != null )
+        {
+            offset = (int) bytes[0];
+            length = (int) (bytes[1] - bytes[0] + 1);
+            res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            res.setHeader("Content-Range", "bytes " + bytes[0] + "-" + bytes[1] + "/" + content.length);
+        }
+        if ( encoding != null )
+        {
+            res.setHeader("Content-Encoding", encoding);
+        }
+        res.setContentLength(length);
+
+        final OutputStream os = res.getOutputStream();
+        try
+        {
+            os.write(content, offset, length);
+        }
+        finally
+        {
+            os.close();
         }
     }
 
@@ -78,13 +211,298 @@ public final class ResourceServlet extends HttpServlet
             res.setDateHeader("Last-Modified", lastModified);
         }
 
-        if (!resourceModified(lastModified, req.getDateHeader("If-Modified-Since")))
+        final URLConnection conn = url.openConnection();
+        final InputStream is = conn.getInputStream();
+        try
         {
-            res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            // FELIX-3987 content length should be set *before* any streaming is done
+            // as headers should be written before the content is actually written...
+            final int len = getContentLength(conn);
+            // without a content hash, the entity tag is weak
+            final String etag = (len >= 0 && lastModified != 0) ? "W/\"" + len + "-" + lastModified + "\"" : null;
+            if (etag != null)
+            {
+                res.setHeader("ETag", etag);
+            }
+
+            if (!isModified(req, etag, lastModified))
+            {
+                res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            }
+            else
+            {
+                copyResource(req, is, len, lastModified, res);
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * Load a resource into a cache entry.
+     * @return The entry or {@code null} if the resource can't be cached
+     */
+    private ResourceCache.Entry load(final URL url, final String resName) throws IOException
+    {
+        final File file;
+        final String protocol = url.getProtocol();
+        if ( "file".equals(protocol) )
+        {
+            file = new File(url.getPath());
+        }
+        else if ( protocol.startsWith("bundle") )
+        {
+            // bundle, bundleentry and bundleresource urls don't change during a registration
+            file = null;
         }
         else
         {
-            copyResource(url, res);
+            return null;
+        }
+
+        final long lastModified = file != null ? file.lastModified() : getLastModified(url);
+        final byte[] content = read(url);
+        if ( content == null || (file != null && file.length() != content.length) )
+        {
+            return null;
+        }
+
+        byte[] gzip = readVariant(resName + ".gz");
+        if ( gzip == null && content.length >= MIN_COMPRESS_SIZE && isCompressible(getServletContext().getMimeType(resName)) )
+        {
+            gzip = gzip(content);
+        }
+        if ( gzip != null && gzip.length >= content.length )
+        {
+            gzip = null;
+        }
+        final byte[] brotli = readVariant(resName + ".br");
+
+        return new ResourceCache.Entry(content, gzip, brotli, lastModified, hash(content), file);
+    }
+
+    private byte[] readVariant(final String name) throws IOException
+    {
+        final URL url = getServletContext().getResource(name);
+        return url == null ? null : read(url);
+    }
+
+    /**
+     * Read the content of a resource
+     * @return The content or {@code null} if it's too large to be cached
+     */
+    private byte[] read(final URL url) throws IOException
+    {
+        final URLConnection conn = url.openConnection();
+        if ( conn.getContentLength() > MAX_CACHED_RESOURCE_SIZE )
+        {
+            return null;
+        }
+        final InputStream is = conn.getInputStream();
+        try
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(conn.getContentLength(), 32));
+            final byte[] buf = new byte[4096];
+            int n;
+            while ((n = is.read(buf, 0, buf.length)) >= 0)
+            {
+                out.write(buf, 0, n);
+                if ( out.size() > MAX_CACHED_RESOURCE_SIZE )
+                {
+                    return null;
+                }
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    private static byte[] gzip(final byte[] content) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+        final GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(content);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static boolean isCompressible(final String contentType)
+    {
+        if ( contentType == null )
+        {
+            return false;
+        }
+        return contentType.startsWith("text/")
+                || contentType.endsWith("/javascript")
+                || contentType.endsWith("/json")
+                || contentType.endsWith("/xml")
+                || contentType.endsWith("+xml")
+                || contentType.endsWith("+json");
+    }
+
+    private static String hash(final byte[] content)
+    {
+        try
+        {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+            final StringBuilder sb = new StringBuilder(digest.length * 2);
+            for(final byte b : digest)
+            {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        }
+        catch ( final NoSuchAlgorithmException e )
+        {
+            // SHA-1 is required to be supported by every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Check whether the client accepts a content coding (RFC 7231, section 5.3.4)
+     */
+    static boolean acceptsEncoding(final String acceptEncoding, final String encoding)
+    {
+        if ( acceptEncoding == null )
+        {
+            return false;
+        }
+        for(final String part : acceptEncoding.split(","))
+        {
+            final String[] params = part.split(";");
+            if ( params[0].trim().equalsIgnoreCase(encoding) )
+            {
+                for(int i = 1; i < params.length; i++)
+                {
+                    final String param = params[i].trim();
+                    if ( param.startsWith("q=") )
+                    {
+                        try
+                        {
+                            return Float.parseFloat(param.substring(2)) > 0;
+                        }
+                        catch ( final NumberFormatException nfe )
+                        {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluate If-None-Match, or If-Modified-Since if no entity tag is sent.
+     */
+    private boolean isModified(final HttpServletRequest req, final String etag, final long lastModified)
+    {
+        final String ifNoneMatch = req.getHeader("If-None-Match");
+        if ( ifNoneMatch != null )
+        {
+            final String opaqueTag = etag != null && etag.startsWith("W/") ? etag.substring(2) : etag;
+            for(final String tag : ifNoneMatch.split(","))
+            {
+                final String value = tag.trim();
+                // weak comparison
+                if ( value.equals("*") || (opaqueTag != null && (value.equals(opaqueTag) || value.equals("W/" + opaqueTag))) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return resourceModified(lastModified, req.getDateHeader("If-Modified-Since"));
+    }
+
+    /** Marker for a range which can't be satisfied. */
+    private static final long[] UNSATISFIABLE_RANGE = new long[0];
+
+    /**
+     * Parse a byte range request. Only a single range is supported, other
+     * requests are answered with the full content as permitted by RFC 7233.
+     * @return The first and last byte position, {@code null} for the full content
+     *         or {@link #UNSATISFIABLE_RANGE}
+     */
+    private long[] getRange(final HttpServletRequest req,
+            final String range,
+            final String etag,
+            final long lastModified,
+            final long length)
+    {
+        if ( range == null || !range.startsWith("bytes=") || range.indexOf(',') != -1 || length < 0 )
+        {
+            return null;
+        }
+        final String ifRange = req.getHeader("If-Range");
+        if ( ifRange != null )
+        {
+            if ( ifRange.startsWith("\"") || ifRange.startsWith("W/") )
+            {
+                // strong comparison
+                if ( etag == null || !ifRange.equals(etag) )
+                {
+                    return null;
+                }
+            }
+            else if ( lastModified == 0 || req.getDateHeader("If-Range") / 1000 != lastModified / 1000 )
+            {
+                return null;
+            }
+        }
+        final String spec = range.substring("bytes=".length()).trim();
+        final int dash = spec.indexOf('-');
+        if ( dash == -1 )
+        {
+            return null;
+        }
+        try
+        {
+            long first;
+            long last;
+            if ( dash == 0 )
+            {
+                // suffix range
+                final long suffix = Long.parseLong(spec.substring(1));
+                if ( suffix == 0 )
+                {
+                    return UNSATISFIABLE_RANGE;
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            }
+            else
+            {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = length - 1;
+                if ( dash < spec.length() - 1 )
+                {
+                    final long end = Long.parseLong(spec.substring(dash + 1));
+                    if ( end < first )
+                    {
+                        // syntactically invalid range, ignore
+                        return null;
+                    }
+                    last = Math.min(end, last);
+                }
+            }
+            if ( first >= length )
+            {
+                return UNSATISFIABLE_RANGE;
+            }
+            return new long[] {first, last};
+        }
+        catch ( final NumberFormatException nfe )
+        {
+            return null;
         }
     }
 
@@ -126,44 +544,76 @@ public final class ResourceServlet extends HttpServlet
         return resTimestamp == 0 || modSince == -1 || resTimestamp > modSince;
     }
 
-    private void copyResource(final URL url, final HttpServletResponse res) throws IOException
+    private void copyResource(final HttpServletRequest req,
+            final InputStream is,
+            int len,
+            final long lastModified,
+            final HttpServletResponse res) throws IOException
     {
-        URLConnection conn = null;
         OutputStream os = null;
-        InputStream is = null;
 
         try
         {
-            conn = url.openConnection();
-
-            is = conn.getInputStream();
-            os = res.getOutputStream();
-            // FELIX-3987 content length should be set *before* any streaming is done
-            // as headers should be written before the content is actually written...
-            int len = getContentLength(conn);
+            long toCopy = -1;
             if (len >= 0)
             {
+                res.setHeader("Accept-Ranges", "bytes");
+                final long[] bytes = getRange(req, req.getHeader("Range"), null, lastModified, len);
+                if ( bytes == UNSATISFIABLE_RANGE )
+                {
+                    res.setHeader("Content-Range", "bytes */" + len);
+                    res.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if ( bytes != null )
+                {
+                    res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    res.setHeader("Content-Range", "bytes " + bytes[0] + "-" + bytes[1] + "/" + len);
+                    skip(is, bytes[0]);
+                    toCopy = bytes[1] - bytes[0] + 1;
+                    len = (int) toCopy;
+                }
                 res.setContentLength(len);
             }
+            os = res.getOutputStream();
 
-            byte[] buf = new byte[1024];
+            byte[] buf = new byte[4096];
             int n;
 
-            while ((n = is.read(buf, 0, buf.length)) >= 0)
+            while (toCopy != 0 && (n = is.read(buf, 0, toCopy < 0 ? buf.length : (int) Math.min(buf.length, toCopy))) >= 0)
             {
                 os.write(buf, 0, n);
+                if (toCopy > 0)
+                {
+                    toCopy -= n;
+                }
             }
         }
         finally
         {
-            if (is != null)
+            if (os != null)
             {
-                is.close();
+                os.close();
             }
+        }
+    }
 
-            if (os != null)
+    private static void skip(final InputStream is, long bytes) throws IOException
+    {
+        while (bytes > 0)
+        {
+            final long n = is.skip(bytes);
+            if (n <= 0)
             {
-                os.close();
+                if (is.read() == -1)
+                {
+                    return;
+                }
+                bytes--;
+            }
+            else
+            {
+                bytes -= n;
             }
         }
     }
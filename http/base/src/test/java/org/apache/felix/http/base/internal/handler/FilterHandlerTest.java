@@ -19,8 +19,11 @@ package org.apache.felix.http.base.internal.handler;
 import static javax.servlet.http.HttpServletResponse.SC_FORBIDDEN;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 import static javax.servlet.http.HttpServletResponse.SC_PAYMENT_REQUIRED;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -33,6 +36,7 @@ import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -194,6 +198,34 @@ public class FilterHandlerTest
         verify(res, never()).sendError(SC_FORBIDDEN);
     }
 
+    @Test
+    public void testHandleMetrics() throws Exception
+    {
+        FilterHandler h1 = createHandler(0, "/a");
+        HttpServletRequest req = createServletRequest();
+        HttpServletResponse res = createServletResponse();
+        FilterChain chain = mock(FilterChain.class);
+        when(res.getStatus()).thenReturn(SC_OK);
+
+        h1.handle(req, res, chain);
+
+        doThrow(new ServletException()).when(this.filter).doFilter(req, res, chain);
+        try
+        {
+            h1.handle(req, res, chain);
+            fail("Exception expected");
+        }
+        catch ( final ServletException expected )
+        {
+            // expected
+        }
+
+        assertEquals(2, h1.getMetrics().getRequestCount());
+        assertEquals(1, h1.getMetrics().getErrorCount());
+        assertEquals(0, h1.getMetrics().getActiveCount());
+        assertEquals(2, h1.getMetrics().getLatency().getCount());
+    }
+
     @Test
     public void testHandleNotFound() throws Exception
     {
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void testEmpty()
+    {
+        final LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMean());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getValueAtPercentile(99.0));
+    }
+
+    @Test
+    public void testBuckets()
+    {
+        long previous = -1;
+        for(long v = 0; v < 1000000; v++)
+        {
+            final int index = LatencyHistogram.getIndex(v);
+            final long highest = LatencyHistogram.getHighestValue(index);
+            assertTrue(highest >= v);
+            assertTrue(highest - v <= v / 16);
+            assertTrue(highest >= previous);
+            previous = highest;
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.getHighestValue(LatencyHistogram.getIndex(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        final LatencyHistogram h = new LatencyHistogram();
+        for(long v = 1; v <= 1000; v++)
+        {
+            h.record(v);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(500, h.getMean());
+        assertEquals(1000, h.getMax());
+
+        assertEquals(1, h.getValueAtPercentile(0.0));
+        assertEquals(500, h.getValueAtPercentile(50.0), 500 / 16);
+        assertEquals(900, h.getValueAtPercentile(90.0), 900 / 16);
+        assertEquals(990, h.getValueAtPercentile(99.0), 990 / 16);
+        assertEquals(1000, h.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void testNegativeValue()
+    {
+        final LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        assertEquals(1, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+}
@@ -19,19 +19,27 @@ package org.apache.felix.http.base.internal.registry;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.EventListener;
 
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
 import javax.servlet.ServletContextListener;
 import javax.servlet.ServletException;
 
 import org.apache.felix.http.base.internal.context.ExtServletContext;
+import org.apache.felix.http.base.internal.handler.FilterHandler;
+import org.apache.felix.http.base.internal.handler.HttpServiceFilterHandler;
 import org.apache.felix.http.base.internal.handler.ListenerHandler;
+import org.apache.felix.http.base.internal.handler.ServletHandler;
 import org.apache.felix.http.base.internal.handler.WhiteboardListenerHandler;
+import org.apache.felix.http.base.internal.runtime.FilterInfo;
 import org.apache.felix.http.base.internal.runtime.ListenerInfo;
+import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
 import org.junit.Test;
 import org.mockito.Matchers;
@@ -42,6 +50,7 @@ import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceObjects;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.http.runtime.dto.ServletContextDTO;
+import org.osgi.service.http.whiteboard.HttpWhiteboardConstants;
 
 public class FilterRegistryTest {
 
@@ -89,6 +98,97 @@ public class FilterRegistryTest {
         assertEmpty(dto, holder);
     }
 
+    @Test public void testFilterChains() throws InvalidSyntaxException
+    {
+        final FilterRegistry reg = new FilterRegistry();
+
+        final FilterHandler all = createFilterHandler(1L, 10, new String[] {"/*"}, null, null);
+        final FilterHandler foo = createFilterHandler(2L, 9, new String[] {"/foo/*"}, null, null);
+        final FilterHandler jsp = createFilterHandler(3L, 8, new String[] {"*.jsp", "/exact"}, null, null);
+        final FilterHandler named = createFilterHandler(4L, 7, null, new String[] {"myservlet"}, null);
+        final FilterHandler error = createFilterHandler(5L, 6, new String[] {"/*"}, null, new String[] {"ERROR"});
+        reg.addFilter(all);
+        reg.addFilter(foo);
+        reg.addFilter(jsp);
+        reg.addFilter(named);
+        reg.addFilter(error);
+
+        final ServletHandler servlet = mock(ServletHandler.class);
+        final ServletInfo servletInfo = mock(ServletInfo.class);
+        when(servlet.getServletInfo()).thenReturn(servletInfo);
+        when(servlet.getName()).thenReturn("myservlet");
+
+        assertFilters(reg.getFilterHandlers(null, DispatcherType.REQUEST, "/bar"), all);
+        assertFilters(reg.getFilterHandlers(null, DispatcherType.REQUEST, "/foo"), all, foo);
+        assertFilters(reg.getFilterHandlers(null, DispatcherType.REQUEST, "/foo/a.jsp"), all, foo, jsp);
+        assertFilters(reg.getFilterHandlers(null, DispatcherType.REQUEST, "/exact"), all, jsp);
+        assertFilters(reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/bar"), all, named);
+        assertFilters(reg.getFilterHandlers(servlet, DispatcherType.ERROR, "/bar"), error);
+        assertFilters(reg.getFilterHandlers(servlet, DispatcherType.FORWARD, "/bar"));
+
+        // registration changes are reflected
+        reg.removeFilter(all.getFilterInfo(), true);
+        assertFilters(reg.getFilterHandlers(null, DispatcherType.REQUEST, "/foo/a.jsp"), foo, jsp);
+
+        reg.cleanup();
+        assertFilters(reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/foo/a.jsp"));
+    }
+
+    @Test public void testCachedFilterChains() throws InvalidSyntaxException
+    {
+        final FilterRegistry reg = new FilterRegistry();
+
+        final FilterHandler all = createFilterHandler(1L, 10, new String[] {"/*"}, null, null);
+        final FilterHandler named = createFilterHandler(2L, 9, null, new String[] {"myservlet"}, null);
+        reg.addFilter(all);
+        reg.addFilter(named);
+
+        final ServletHandler servlet = mock(ServletHandler.class);
+        final ServletInfo servletInfo = mock(ServletInfo.class);
+        when(servlet.getServletInfo()).thenReturn(servletInfo);
+        when(servlet.getName()).thenReturn("myservlet");
+
+        final FilterHandler[] chain = reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/foo");
+        assertFilters(chain, all, named);
+        assertSame(chain, reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/bar"));
+        assertFilters(reg.getFilterHandlers(null, DispatcherType.REQUEST, "/bar"), all);
+        // "/*" does not match a uri not starting with a slash
+        assertFilters(reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "bar"), named);
+    }
+
+    private static void assertFilters(final FilterHandler[] actual, final FilterHandler... expected)
+    {
+        assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i++)
+        {
+            assertSame(expected[i], actual[i]);
+        }
+    }
+
+    private static FilterHandler createFilterHandler(final long id,
+            final int ranking,
+            final String[] patterns,
+            final String[] servletNames,
+            final String[] dispatcher) throws InvalidSyntaxException
+    {
+        final BundleContext bCtx = mock(BundleContext.class);
+        when(bCtx.createFilter(Matchers.anyString())).thenReturn(null);
+        final Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleContext()).thenReturn(bCtx);
+
+        final ServiceReference<Filter> ref = mock(ServiceReference.class);
+        when(ref.getBundle()).thenReturn(bundle);
+        when(ref.getProperty(Constants.SERVICE_ID)).thenReturn(id);
+        when(ref.getProperty(Constants.SERVICE_RANKING)).thenReturn(ranking);
+        when(ref.getProperty(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_PATTERN)).thenReturn(patterns);
+        when(ref.getProperty(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_SERVLET)).thenReturn(servletNames);
+        when(ref.getProperty(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_DISPATCHER)).thenReturn(dispatcher);
+        when(ref.getPropertyKeys()).thenReturn(new String[0]);
+
+        final ExtServletContext ctx = mock(ExtServletContext.class);
+        return new HttpServiceFilterHandler(ctx, new FilterInfo(ref), mock(Filter.class));
+    }
+
     private static ListenerInfo createListenerInfo(final long id, final int ranking, final Class<? extends EventListener> type) throws InvalidSyntaxException
     {
         final String[] typeNames = new String[1];
@@ -18,15 +18,20 @@ package org.apache.felix.http.base.internal.registry;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletConfig;
 
 import org.apache.felix.http.base.internal.handler.HttpServiceServletHandler;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
+import org.apache.felix.http.base.internal.runtime.ServletContextHelperInfo;
 import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
 import org.apache.felix.http.base.internal.service.HttpServiceFactory;
@@ -94,6 +99,56 @@ public class HandlerRegistryTest
 
         registry.shutdown();
     }
+
+    @Test
+    public void testContextRouting() throws Exception
+    {
+        final List<PerContextHandlerRegistry> contexts = new ArrayList<PerContextHandlerRegistry>();
+        for(int i = 0; i < 1000; i++)
+        {
+            // nested tenant paths and contexts sharing a path with different rankings
+            final String path = (i % 10 == 0) ? "/tenant" + (i / 100) : "/tenant" + (i / 100) + "/sub" + (i % 10);
+            contexts.add(new PerContextHandlerRegistry(new ServletContextHelperInfo(i % 3, i + 1, "ctx" + i, path, null)));
+        }
+        contexts.add(new PerContextHandlerRegistry(new ServletContextHelperInfo(0, 5000, "root", "/", null)));
+        for(final PerContextHandlerRegistry context : contexts)
+        {
+            registry.add(context);
+        }
+        Collections.sort(contexts);
+
+        final String[] uris = new String[] {"", "/", "/tenant1", "/tenant1/", "/tenant1/sub3", "/tenant1/sub3/a/b",
+                "/tenant1/sub33", "/tenant12/sub3", "/tenant9/sub9/x", "/other", "tenant1"};
+        for(final String uri : uris)
+        {
+            PerContextHandlerRegistry expected = null;
+            for(final PerContextHandlerRegistry r : contexts)
+            {
+                if ( r.isMatching(uri) != null )
+                {
+                    expected = r;
+                    break;
+                }
+            }
+            assertSame(uri, expected, registry.getBestMatchingRegistry(uri));
+        }
+
+        assertSame(contexts.get(0), registry.getRegistry(contexts.get(0).getContextServiceId()));
+
+        // a servlet in the root context is found when the tenant context has no matching servlet
+        final ServletInfo info = new ServletInfo("foo", "/tenant1/sub3/foo", Collections.<String, String> emptyMap());
+        final ServletHandler handler = new HttpServiceServletHandler(null, info, Mockito.mock(Servlet.class));
+        registry.getRegistry(5000).registerServlet(handler);
+        final PathResolution pr = registry.resolveServlet("/tenant1/sub3/foo");
+        assertSame(handler, pr.handler);
+        assertSame(registry.getRegistry(5000), pr.handlerRegistry);
+
+        registry.remove(new ServletContextHelperInfo(0, 5000, "root", "/", null));
+        assertNull(registry.getRegistry(5000));
+        assertNull(registry.getBestMatchingRegistry("/other"));
+
+        registry.shutdown();
+    }
 /*
     @Test
     public void testAddServletWhileSameServletAddedDuringInit() throws Exception
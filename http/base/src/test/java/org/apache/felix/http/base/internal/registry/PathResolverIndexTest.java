@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.felix.http.base.internal.handler.ServletHandler;
+import org.apache.felix.http.base.internal.service.HttpServiceFactory;
+import org.junit.Test;
+
+public class PathResolverIndexTest {
+
+    private static final String[] URIS = new String[] {
+        "", "/", "/foo", "/fool", "/foo/", "/foo/bar", "/foo/bar/baz", "/foo/bar.jsp", "/foo/bar.tar.gz",
+        "/a.jsp", "/a.gz", "/other", "/other/x", "/x/y/z.html", "/b//c", "foo", ".jsp"
+    };
+
+    private static PathResolver findLinear(final List<PathResolver> resolvers, final String uri)
+    {
+        for(final PathResolver resolver : resolvers)
+        {
+            if ( resolver.resolve(uri) != null )
+            {
+                return resolver;
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameAsLinear(final List<PathResolver> resolvers)
+    {
+        Collections.sort(resolvers);
+        final PathResolverIndex index = new PathResolverIndex(resolvers);
+        for(final String uri : URIS)
+        {
+            assertSame("uri '" + uri + "'", findLinear(resolvers, uri), index.find(uri));
+        }
+    }
+
+    private static List<PathResolver> createResolvers(final ServletHandler handler, final String... patterns)
+    {
+        final List<PathResolver> resolvers = new ArrayList<PathResolver>();
+        for(final String pattern : patterns)
+        {
+            resolvers.add(PathResolverFactory.createPatternMatcher(handler, pattern));
+        }
+        return resolvers;
+    }
+
+    @Test public void testEmpty()
+    {
+        final PathResolverIndex index = new PathResolverIndex(new ArrayList<PathResolver>());
+        assertNull(index.find("/foo"));
+    }
+
+    @Test public void testWhiteboardPatterns()
+    {
+        assertSameAsLinear(createResolvers(null, "/foo", "/foo/*", "/foo/bar", "/foo/bar/*", "*.jsp", "*.gz", "*.tar.gz", "/other/*"));
+        assertSameAsLinear(createResolvers(null, "", "/foo/bar", "*.jsp", "/*"));
+        assertSameAsLinear(createResolvers(null, "/", "/b/*", "/b/c", "*.html"));
+        assertSameAsLinear(createResolvers(null, "/x/*", "/x/y/*", "/", ""));
+    }
+
+    @Test public void testHttpServicePatterns()
+    {
+        final ServletHandler handler = mock(ServletHandler.class);
+        when(handler.getContextServiceId()).thenReturn(HttpServiceFactory.HTTP_SERVICE_CONTEXT_SERVICE_ID);
+
+        assertSameAsLinear(createResolvers(handler, "/foo", "/foo/bar", "/other", "/b/", "/"));
+        assertSameAsLinear(createResolvers(handler, "/foo", "/foo/bar/*", "*.jsp", "/x/y"));
+    }
+
+    @Test public void testFallbackToLinearWalk()
+    {
+        final List<PathResolver> resolvers = createResolvers(null, "/foo/*", "*.jsp");
+        resolvers.add(PathResolverFactory.createRegexMatcher(".*bar.*"));
+        Collections.sort(resolvers);
+        final PathResolverIndex index = new PathResolverIndex(resolvers);
+        assertEquals("/foo/*", index.find("/foo/bar").getPattern());
+        assertEquals(".*bar.*", index.find("/bar").getPattern());
+        assertNull(index.find("/baz"));
+    }
+}
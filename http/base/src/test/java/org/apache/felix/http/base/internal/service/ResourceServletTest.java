@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.http.base.internal.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ResourceServletTest
+{
+    private File dir;
+
+    private ServletContext context;
+
+    private ResourceServlet servlet;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = File.createTempFile("resources", "");
+        dir.delete();
+        dir.mkdirs();
+
+        context = mock(ServletContext.class);
+        when(context.getMimeType("/res/page.html")).thenReturn("text/html");
+        when(context.getMimeType("/res/image.png")).thenReturn("image/png");
+        when(context.getResource(anyString())).then(new Answer<Object>()
+        {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable
+            {
+                final File f = new File(dir, (String) invocation.getArguments()[0]);
+                return f.exists() ? f.toURI().toURL() : null;
+            }
+        });
+        final ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+
+        servlet = new ResourceServlet("/res");
+        servlet.init(config);
+    }
+
+    @After
+    public void tearDown()
+    {
+        servlet.destroy();
+        delete(dir);
+    }
+
+    private static void delete(final File f)
+    {
+        final File[] children = f.listFiles();
+        if ( children != null )
+        {
+            for(final File c : children)
+            {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    private byte[] write(final String name, final byte[] content) throws IOException
+    {
+        final File f = new File(dir, name);
+        f.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(f);
+        try
+        {
+            out.write(content);
+        }
+        finally
+        {
+            out.close();
+        }
+        return content;
+    }
+
+    private static byte[] html()
+    {
+        final StringBuilder sb = new StringBuilder("<html><body>");
+        for(int i = 0; i < 100; i++)
+        {
+            sb.append("<p>Paragraph ").append(i).append("</p>");
+        }
+        return sb.append("</body></html>").toString().getBytes();
+    }
+
+    /** Simple response capturing status, headers and content. */
+    private static final class Response
+    {
+        final HttpServletResponse res = mock(HttpServletResponse.class);
+
+        final Map<String, String> headers = new HashMap<String, String>();
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        int status = HttpServletResponse.SC_OK;
+
+        Response() throws IOException
+        {
+            final Answer<Object> header = new Answer<Object>()
+            {
+                @Override
+                public Object answer(final InvocationOnMock invocation) throws Throwable
+                {
+                    headers.put((String) invocation.getArguments()[0], String.valueOf(invocation.getArguments()[1]));
+                    return null;
+                }
+            };
+            final Answer<Object> status = new Answer<Object>()
+            {
+                @Override
+                public Object answer(final InvocationOnMock invocation) throws Throwable
+                {
+                    Response.this.status = (Integer) invocation.getArguments()[0];
+                    return null;
+                }
+            };
+            doAnswer(header).when(res).setHeader(anyString(), anyString());
+            doAnswer(status).when(res).setStatus(anyInt());
+            doAnswer(status).when(res).sendError(anyInt());
+            when(res.getOutputStream()).thenReturn(new ServletOutputStream()
+            {
+                @Override
+                public void write(final int b) throws IOException
+                {
+                    content.write(b);
+                }
+
+                @Override
+                public boolean isReady()
+                {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(final WriteListener writeListener)
+                {
+                    // not used
+                }
+            });
+        }
+    }
+
+    private HttpServletRequest request(final String path, final String... headers)
+    {
+        final HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getPathInfo()).thenReturn(path);
+        when(req.getDateHeader(anyString())).thenReturn(-1L);
+        for(int i = 0; i < headers.length; i += 2)
+        {
+            when(req.getHeader(headers[i])).thenReturn(headers[i + 1]);
+        }
+        return req;
+    }
+
+    private Response get(final HttpServletRequest req) throws Exception
+    {
+        final Response res = new Response();
+        servlet.doGet(req, res.res);
+        return res;
+    }
+
+    @Test
+    public void testNotFound() throws Exception
+    {
+        final Response res = get(request("/missing.txt"));
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, res.status);
+    }
+
+    @Test
+    public void testCachedResource() throws Exception
+    {
+        final byte[] content = write("/res/image.png", new byte[] {1, 2, 3, 4, 5});
+
+        final Response first = get(request("/image.png"));
+        assertEquals(HttpServletResponse.SC_OK, first.status);
+        assertArrayEquals(content, first.content.toByteArray());
+        final String etag = first.headers.get("ETag");
+        assertTrue(etag.startsWith("\""));
+        assertEquals("bytes", first.headers.get("Accept-Ranges"));
+
+        // served from the cache: the resource is not looked up again
+        final Response second = get(request("/image.png"));
+        assertArrayEquals(content, second.content.toByteArray());
+        assertEquals(etag, second.headers.get("ETag"));
+        verify(context, times(1)).getResource("/res/image.png");
+
+        final Response notModified = get(request("/image.png", "If-None-Match", etag));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.status);
+        assertEquals(0, notModified.content.size());
+
+        final Response other = get(request("/image.png", "If-None-Match", "\"other\""));
+        assertEquals(HttpServletResponse.SC_OK, other.status);
+    }
+
+    @Test
+    public void testModifiedFileInvalidatesEntry() throws Exception
+    {
+        write("/res/image.png", new byte[] {1, 2, 3});
+        final String etag = get(request("/image.png")).headers.get("ETag");
+
+        final byte[] changed = write("/res/image.png", new byte[] {4, 5, 6, 7});
+        final Response res = get(request("/image.png", "If-None-Match", etag));
+        assertEquals(HttpServletResponse.SC_OK, res.status);
+        assertArrayEquals(changed, res.content.toByteArray());
+        assertFalse(etag.equals(res.headers.get("ETag")));
+    }
+
+    @Test
+    public void testStreamedResource() throws Exception
+    {
+        final byte[] content = write("/res/image.png", new byte[ResourceServlet.MAX_CACHED_RESOURCE_SIZE + 1]);
+
+        final Response first = get(request("/image.png"));
+        assertEquals(HttpServletResponse.SC_OK, first.status);
+        assertEquals(content.length, first.content.size());
+        final String etag = first.headers.get("ETag");
+        assertTrue(etag.startsWith("W/\""));
+
+        final Response notModified = get(request("/image.png", "If-None-Match", etag));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.status);
+        assertEquals(0, notModified.content.size());
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED,
+                get(request("/image.png", "If-None-Match", etag.substring(2))).status);
+
+        // If-None-Match takes precedence over If-Modified-Since
+        final HttpServletRequest req = request("/image.png", "If-None-Match", "\"other\"");
+        when(req.getDateHeader("If-Modified-Since")).thenReturn(System.currentTimeMillis() + 60000);
+        final Response other = get(req);
+        assertEquals(HttpServletResponse.SC_OK, other.status);
+        assertEquals(content.length, other.content.size());
+    }
+
+    @Test
+    public void testGzip() throws Exception
+    {
+        final byte[] content = write("/res/page.html", html());
+
+        final Response plain = get(request("/page.html"));
+        assertArrayEquals(content, plain.content.toByteArray());
+        assertEquals("Accept-Encoding", plain.headers.get("Vary"));
+        verify(plain.res, never()).setHeader("Content-Encoding", "gzip");
+
+        final Response gzip = get(request("/page.html", "Accept-Encoding", "deflate, gzip"));
+        assertEquals("gzip", gzip.headers.get("Content-Encoding"));
+        assertTrue(gzip.content.size() < content.length);
+        assertArrayEquals(content, gunzip(gzip.content.toByteArray()));
+        assertEquals(plain.headers.get("ETag").replace("\"", "") + "-gzip", gzip.headers.get("ETag").replace("\"", ""));
+
+        final Response refused = get(request("/page.html", "Accept-Encoding", "gzip;q=0"));
+        assertArrayEquals(content, refused.content.toByteArray());
+    }
+
+    @Test
+    public void testPrecompressedBrotli() throws Exception
+    {
+        write("/res/page.html", html());
+        final byte[] brotli = write("/res/page.html.br", new byte[] {9, 9, 9});
+
+        final Response res = get(request("/page.html", "Accept-Encoding", "gzip, br"));
+        assertEquals("br", res.headers.get("Content-Encoding"));
+        assertArrayEquals(brotli, res.content.toByteArray());
+    }
+
+    @Test
+    public void testRange() throws Exception
+    {
+        final byte[] content = write("/res/page.html", html());
+
+        final Response res = get(request("/page.html", "Range", "bytes=10-19", "Accept-Encoding", "gzip"));
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, res.status);
+        assertEquals("bytes 10-19/" + content.length, res.headers.get("Content-Range"));
+        assertEquals(new String(content, 10, 10), new String(res.content.toByteArray()));
+        verify(res.res, never()).setHeader("Content-Encoding", "gzip");
+
+        final Response suffix = get(request("/page.html", "Range", "bytes=-5"));
+        assertEquals(new String(content, content.length - 5, 5), new String(suffix.content.toByteArray()));
+
+        final Response unsatisfiable = get(request("/page.html", "Range", "bytes=100000-"));
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, unsatisfiable.status);
+
+        final Response invalid = get(request("/page.html", "Range", "bytes=1-0"));
+        assertEquals(HttpServletResponse.SC_OK, invalid.status);
+        assertArrayEquals(content, invalid.content.toByteArray());
+
+        final Response beyond = get(request("/page.html", "Range", "bytes=" + (content.length + 1) + "-" + content.length));
+        assertEquals(HttpServletResponse.SC_OK, beyond.status);
+
+        final Response outdated = get(request("/page.html", "Range", "bytes=0-4", "If-Range", "\"outdated\""));
+        assertEquals(HttpServletResponse.SC_OK, outdated.status);
+        assertArrayEquals(content, outdated.content.toByteArray());
+    }
+
+    @Test
+    public void testAcceptsEncoding()
+    {
+        assertTrue(ResourceServlet.acceptsEncoding("gzip", "gzip"));
+        assertTrue(ResourceServlet.acceptsEncoding("br;q=0.5, gzip", "br"));
+        assertFalse(ResourceServlet.acceptsEncoding("gzip;q=0", "gzip"));
+        assertFalse(ResourceServlet.acceptsEncoding("deflate", "gzip"));
+        assertFalse(ResourceServlet.acceptsEncoding(null, "gzip"));
+    }
+
+    @Test
+    public void testCacheEviction()
+    {
+        final ResourceCache cache = new ResourceCache(10);
+        final Object owner = new Object();
+        cache.put(owner, "a", new ResourceCache.Entry(new byte[4], null, null, 0, "a", null));
+        cache.put(owner, "b", new ResourceCache.Entry(new byte[4], null, null, 0, "b", null));
+        cache.get(owner, "a");
+        cache.put(owner, "c", new ResourceCache.Entry(new byte[4], null, null, 0, "c", null));
+        assertTrue(cache.get(owner, "a") != null);
+        assertTrue(cache.get(owner, "b") == null);
+        assertTrue(cache.get(owner, "c") != null);
+
+        cache.removeAll(owner);
+        assertTrue(cache.get(owner, "a") == null);
+    }
+
+    private static byte[] gunzip(final byte[] data) throws IOException
+    {
+        final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[1024];
+        int n;
+        while ((n = in.read(buf)) >= 0)
+        {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
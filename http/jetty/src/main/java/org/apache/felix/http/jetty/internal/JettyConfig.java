@@ -84,6 +84,9 @@ public final class JettyConfig
     /** Felix specific property to control the maximum size of the jetty thread pool */
     public static final String FELIX_JETTY_THREADPOOL_MAX = "org.apache.felix.http.jetty.threadpool.max";
 
+    /** Felix specific property to run requests on virtual threads if supported by the JVM (Java 21+). Default is false. */
+    public static final String FELIX_JETTY_THREADPOOL_VIRTUAL = "org.apache.felix.http.jetty.threadpool.virtual";
+
     /** Felix specific property to control the number of jetty acceptor threads */
     public static final String FELIX_JETTY_ACCEPTORS = "org.apache.felix.http.jetty.acceptors";
 
@@ -374,6 +377,11 @@ public final class JettyConfig
         return getIntProperty(FELIX_JETTY_THREADPOOL_MAX, -1);
     }
 
+    public boolean isUseVirtualThreads()
+    {
+        return getBooleanProperty(FELIX_JETTY_THREADPOOL_VIRTUAL, false);
+    }
+
     public int getAcceptors()
     {
         return getIntProperty(FELIX_JETTY_ACCEPTORS, -1);
@@ -351,7 +351,13 @@ public final class JettyService extends AbstractLifeCycle.AbstractLifeCycleListe
             final String version = fixJettyVersion();
 
             final int threadPoolMax = this.config.getThreadPoolMax();
-            if (threadPoolMax >= 0) {
+            final boolean useVirtualThreads = this.config.isUseVirtualThreads() && VirtualThreadPool.isSupported();
+            if (this.config.isUseVirtualThreads() && !useVirtualThreads) {
+                SystemLogger.warning("Virtual threads are not supported by this JVM, using the thread pool.", null);
+            }
+            if (useVirtualThreads) {
+                this.server = new Server( new VirtualThreadPool("jetty") );
+            } else if (threadPoolMax >= 0) {
                 this.server = new Server( new QueuedThreadPool(threadPoolMax) );
             } else {
                 this.server = new Server();
@@ -412,7 +418,9 @@ public final class JettyService extends AbstractLifeCycle.AbstractLifeCycleListe
 
                 message.append(" [");
                 ThreadPool threadPool = this.server.getThreadPool();
-                if (threadPool instanceof ThreadPool.SizedThreadPool) {
+                if (threadPool instanceof VirtualThreadPool) {
+                    message.append("virtualThreads=true,");
+                } else if (threadPool instanceof ThreadPool.SizedThreadPool) {
                     ThreadPool.SizedThreadPool sizedThreadPool = (ThreadPool.SizedThreadPool) threadPool;
                     message.append("minThreads=").append(sizedThreadPool.getMinThreads()).append(",");
                     message.append("maxThreads=").append(sizedThreadPool.getMaxThreads()).append(",");
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.jetty.internal;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.http.base.internal.logger.SystemLogger;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Jetty thread pool running every task on a new virtual thread, so blocking
+ * servlets are not limited by a maximum number of threads. Virtual threads
+ * are available as of Java 21; they are looked up reflectively as the bundle
+ * is built for older Java versions.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool
+{
+    private final ThreadFactory factory;
+
+    private final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+    private final Object lock = new Object();
+
+    /**
+     * Create a new thread pool
+     * @param name The name prefix of the threads
+     * @throws IllegalStateException If the JVM does not support virtual threads
+     */
+    public VirtualThreadPool(final String name)
+    {
+        this.factory = createFactory(name);
+        if ( this.factory == null )
+        {
+            throw new IllegalStateException("Virtual threads are not supported by this JVM");
+        }
+        // same default as the QueuedThreadPool
+        setStopTimeout(5000);
+    }
+
+    /**
+     * Check whether the JVM supports virtual threads.
+     * @return {@code true} if virtual threads can be created
+     */
+    public static boolean isSupported()
+    {
+        return createFactory("probe") != null;
+    }
+
+    /**
+     * Create a factory for virtual threads through {@code Thread.ofVirtual().name(name, 0).factory()}
+     * @return The factory or {@code null} if virtual threads are not supported
+     */
+    static ThreadFactory createFactory(final String name)
+    {
+        try
+        {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            final Object namedBuilder = nameMethod.invoke(builder, name + "-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+        }
+        catch ( final Exception e )
+        {
+            // not supported (Java 20 or lower, or preview features required)
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(final Runnable job)
+    {
+        if ( !isRunning() )
+        {
+            throw new RejectedExecutionException("Thread pool is not running");
+        }
+        final Thread thread = this.factory.newThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    job.run();
+                }
+                finally
+                {
+                    threads.remove(Thread.currentThread());
+                    if ( threads.isEmpty() )
+                    {
+                        synchronized ( lock )
+                        {
+                            lock.notifyAll();
+                        }
+                    }
+                }
+            }
+        });
+        this.threads.add(thread);
+        thread.start();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        // wait for running tasks, then interrupt the remaining ones
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getStopTimeout());
+        synchronized ( this.lock )
+        {
+            long wait;
+            while ( !this.threads.isEmpty() && (wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0 )
+            {
+                this.lock.wait(wait);
+            }
+        }
+        for(final Thread thread : this.threads)
+        {
+            SystemLogger.warning("Interrupting virtual thread " + thread.getName() + " on shutdown", null);
+            thread.interrupt();
+        }
+        synchronized ( this.lock )
+        {
+            this.lock.notifyAll();
+        }
+        super.doStop();
+    }
+
+    @Override
+    public void join() throws InterruptedException
+    {
+        synchronized ( this.lock )
+        {
+            while ( !isStopped() )
+            {
+                this.lock.wait(1000);
+            }
+        }
+    }
+
+    @Override
+    public int getThreads()
+    {
+        return this.threads.size();
+    }
+
+    @Override
+    public int getIdleThreads()
+    {
+        // threads are not pooled
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads()
+    {
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "VirtualThreadPool{" + getState() + ",threads=" + getThreads() + "}";
+    }
+}
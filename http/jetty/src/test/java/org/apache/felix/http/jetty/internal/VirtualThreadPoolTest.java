@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.jetty.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class VirtualThreadPoolTest
+{
+    @Test
+    public void testSupportMatchesJvm() throws Exception
+    {
+        boolean hasVirtualThreads;
+        try
+        {
+            Thread.class.getMethod("ofVirtual");
+            hasVirtualThreads = true;
+        }
+        catch ( final NoSuchMethodException e )
+        {
+            hasVirtualThreads = false;
+        }
+        assertEquals(hasVirtualThreads, VirtualThreadPool.isSupported());
+    }
+
+    @Test
+    public void testExecute() throws Exception
+    {
+        Assume.assumeTrue(VirtualThreadPool.isSupported());
+
+        final VirtualThreadPool pool = new VirtualThreadPool("test");
+        pool.start();
+
+        // more blocked tasks than any default pool size
+        final int count = 1000;
+        final CountDownLatch started = new CountDownLatch(count);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean virtual = new AtomicBoolean(true);
+        final Method isVirtual = Thread.class.getMethod("isVirtual");
+        for(int i = 0; i < count; i++)
+        {
+            pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        if ( !(Boolean) isVirtual.invoke(Thread.currentThread()) )
+                        {
+                            virtual.set(false);
+                        }
+                        started.countDown();
+                        release.await();
+                    }
+                    catch ( final Exception e )
+                    {
+                        virtual.set(false);
+                    }
+                }
+            });
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertTrue(virtual.get());
+        assertEquals(count, pool.getThreads());
+        assertFalse(pool.isLowOnThreads());
+
+        release.countDown();
+        pool.stop();
+        assertEquals(0, pool.getThreads());
+        try
+        {
+            pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // not executed
+                }
+            });
+            fail("Task accepted after stop");
+        }
+        catch ( final RejectedExecutionException expected )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.http.sslfilter.internal;
+
+import static org.apache.felix.http.sslfilter.internal.SslFilterConstants.UTF_8;
+import static org.apache.felix.http.sslfilter.internal.SslFilterConstants.X_509;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of the client certificate chains parsed from the forwarded
+ * certificate header, keyed by the raw header value. Behind a TLS terminating
+ * proxy most requests carry one of a few client certificates, so parsing them
+ * again for each request is avoidable work.
+ * <p>
+ * The cache does not lock: when it is full an arbitrary entry is evicted
+ * before a new chain is added. Callers get a copy of the cached chain so it
+ * can be exposed as request attribute without being shared.
+ */
+class CertificateCache
+{
+    /**
+     * Default maximum number of certificate chains kept.
+     */
+    static final int DEFAULT_SIZE = 64;
+
+    // pattern to convert the header to a PEM certificate for parsing
+    // by replacing spaces with line breaks
+    private static final Pattern HEADER_TO_CERT = Pattern.compile("(?! CERTIFICATE)(?= ) ");
+
+    private final ConcurrentMap<String, X509Certificate[]> certificates = new ConcurrentHashMap<String, X509Certificate[]>();
+
+    private final int maxSize;
+
+    CertificateCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the certificate chain for the given header value, parsing it
+     * if not cached yet.
+     *
+     * @param clientCertHeader the forwarded certificate header, may be <code>null</code>;
+     * @return the certificate chain, or <code>null</code> if the header is empty.
+     * @throws CertificateException in case the header cannot be parsed.
+     */
+    X509Certificate[] getCertificates(String clientCertHeader) throws CertificateException
+    {
+        if (clientCertHeader == null || "".equals(clientCertHeader.trim()))
+        {
+            return null;
+        }
+
+        X509Certificate[] certs = this.certificates.get(clientCertHeader);
+        if (certs == null)
+        {
+            certs = parse(clientCertHeader);
+            if (this.maxSize > 0)
+            {
+                if (this.certificates.size() >= this.maxSize)
+                {
+                    Iterator<String> keys = this.certificates.keySet().iterator();
+                    if (keys.hasNext())
+                    {
+                        keys.next();
+                        keys.remove();
+                    }
+                }
+                this.certificates.putIfAbsent(clientCertHeader, certs);
+            }
+        }
+        return certs.clone();
+    }
+
+    int size()
+    {
+        return this.certificates.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    static X509Certificate[] parse(String clientCertHeader) throws CertificateException
+    {
+        final String clientCert = HEADER_TO_CERT.matcher(clientCertHeader).replaceAll("\n");
+
+        try
+        {
+            CertificateFactory fac = CertificateFactory.getInstance(X_509);
+
+            InputStream instream = new ByteArrayInputStream(clientCert.getBytes(UTF_8));
+
+            Collection<X509Certificate> certs = (Collection<X509Certificate>) fac.generateCertificates(instream);
+            return certs.toArray(new X509Certificate[certs.size()]);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // Any JRE should support UTF-8...
+            throw new InternalError("UTF-8 not supported?!");
+        }
+    }
+}
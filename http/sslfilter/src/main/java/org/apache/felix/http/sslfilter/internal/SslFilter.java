@@ -52,6 +52,8 @@ public class SslFilter implements Filter
     private static final String PROP_SSL_CERT_KEY = "ssl-forward-cert.header";
     private static final String PROP_REWRITE_ABSOLUTE_URLS = "rewrite.absolute.urls";
 
+    private final CertificateCache certificateCache = new CertificateCache(CertificateCache.DEFAULT_SIZE);
+
     private volatile ConfigHolder config;
 
     SslFilter()
@@ -78,11 +80,12 @@ public class SslFilter implements Filter
 
         if (cfg.sslValue.equalsIgnoreCase(httpReq.getHeader(cfg.sslHeader)))
         {
+            httpResp = new SslFilterResponse(httpResp, httpReq, cfg);
             try
             {
-                httpResp = new SslFilterResponse(httpResp, httpReq, cfg);
                 // In case this fails, we fall back to the original HTTP request, which is better than nothing...
-                httpReq = new SslFilterRequest(httpReq, httpReq.getHeader(cfg.certHeader));
+                String certHeader = (cfg.certHeader != null) ? httpReq.getHeader(cfg.certHeader) : null;
+                httpReq = new SslFilterRequest(httpReq, this.certificateCache.getCertificates(certHeader));
             }
             catch (CertificateException e)
             {
@@ -21,17 +21,8 @@ package org.apache.felix.http.sslfilter.internal;
 import static org.apache.felix.http.sslfilter.internal.SslFilterConstants.ATTR_SSL_CERTIFICATE;
 import static org.apache.felix.http.sslfilter.internal.SslFilterConstants.HDR_X_FORWARDED_PORT;
 import static org.apache.felix.http.sslfilter.internal.SslFilterConstants.HTTPS;
-import static org.apache.felix.http.sslfilter.internal.SslFilterConstants.UTF_8;
-import static org.apache.felix.http.sslfilter.internal.SslFilterConstants.X_509;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
-import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
-import java.util.Collection;
-import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
@@ -41,12 +32,7 @@ class SslFilterRequest extends HttpServletRequestWrapper
     // The HTTP scheme prefix in an URL
     private static final String HTTP_SCHEME_PREFIX = "http://";
 
-    // pattern to convert the header to a PEM certificate for parsing
-    // by replacing spaces with line breaks
-    private static final Pattern HEADER_TO_CERT = Pattern.compile("(?! CERTIFICATE)(?= ) ");
-
-    @SuppressWarnings("unchecked")
-    SslFilterRequest(HttpServletRequest request, String clientCertHeader) throws CertificateException
+    SslFilterRequest(HttpServletRequest request, X509Certificate[] clientCerts)
     {
         super(request);
 
@@ -54,24 +40,9 @@ class SslFilterRequest extends HttpServletRequestWrapper
         // it now always assumes it should rewrite its URL, while this might not always be the
         // case...
 
-        if (clientCertHeader != null && !"".equals(clientCertHeader.trim()))
+        if (clientCerts != null)
         {
-            final String clientCert = HEADER_TO_CERT.matcher(clientCertHeader).replaceAll("\n");
-
-            try
-            {
-                CertificateFactory fac = CertificateFactory.getInstance(X_509);
-
-                InputStream instream = new ByteArrayInputStream(clientCert.getBytes(UTF_8));
-
-                Collection<X509Certificate> certs = (Collection<X509Certificate>) fac.generateCertificates(instream);
-                request.setAttribute(ATTR_SSL_CERTIFICATE, certs.toArray(new X509Certificate[certs.size()]));
-            }
-            catch (UnsupportedEncodingException e)
-            {
-                // Any JRE should support UTF-8...
-                throw new InternalError("UTF-8 not supported?!");
-            }
+            request.setAttribute(ATTR_SSL_CERTIFICATE, clientCerts);
         }
     }
 
@@ -108,17 +79,32 @@ class SslFilterRequest extends HttpServletRequestWrapper
     @Override
     public int getServerPort()
     {
-        int port;
+        int port = parsePort(getHeader(HDR_X_FORWARDED_PORT));
+        // Use default port
+        return (port < 0) ? 443 : port;
+    }
 
-        try
+    /**
+     * Parses a forwarded port header without the cost of an exception for
+     * the common case of the header being absent.
+     *
+     * @return the port, or -1 if the value is not a valid port number.
+     */
+    static int parsePort(String value)
+    {
+        if (value == null || value.length() == 0 || value.length() > 5)
         {
-            String fwdPort = getHeader(HDR_X_FORWARDED_PORT);
-            port = Integer.parseInt(fwdPort);
+            return -1;
         }
-        catch (Exception e)
+        int port = 0;
+        for (int i = 0; i < value.length(); i++)
         {
-            // Use default port
-            port = 443;
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+            {
+                return -1;
+            }
+            port = port * 10 + (c - '0');
         }
         return port;
     }
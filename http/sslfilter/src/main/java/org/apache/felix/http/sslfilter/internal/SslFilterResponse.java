@@ -44,24 +44,24 @@ import org.apache.felix.http.sslfilter.internal.SslFilter.ConfigHolder;
  */
 class SslFilterResponse extends HttpServletResponseWrapper
 {
-    private final URL requestURL;
-    private final String serverName;
+    private final HttpServletRequest request;
     private final String serverProto;
-    private final int serverPort;
     private final String clientProto;
     private final int clientPort;
 
     private final boolean rewriteAbsoluteUrls;
 
-    public SslFilterResponse(HttpServletResponse response, HttpServletRequest request, ConfigHolder config) throws MalformedURLException
+    // The request URL, server name and port are only needed for redirects,
+    // so they are only derived from the request when rewriting the first one
+    private URL requestURL;
+    private String serverName;
+    private int serverPort;
+
+    public SslFilterResponse(HttpServletResponse response, HttpServletRequest request, ConfigHolder config)
     {
         super(response);
 
-        this.requestURL = new URL(request.getRequestURL().toString());
-
-        // Only rewrite URLs for the host & port the request was sent to...
-        this.serverName = request.getServerName();
-        this.serverPort = request.getServerPort();
+        this.request = request;
 
         String value = request.getHeader(config.sslHeader);
 
@@ -79,17 +79,8 @@ class SslFilterResponse extends HttpServletResponseWrapper
             this.serverProto = HTTP;
         }
 
-        int port;
-        try
-        {
-            String fwdPort = request.getHeader(HDR_X_FORWARDED_PORT);
-            port = Integer.valueOf(fwdPort);
-        }
-        catch (Exception e)
-        {
-            // Use default port for the used protocol...
-            port = -1;
-        }
+        // Use default port for the used protocol if not forwarded...
+        int port = SslFilterRequest.parsePort(request.getHeader(HDR_X_FORWARDED_PORT));
         // Normalize the protocol port...
         if ((port > 0) && ((HTTPS.equals(this.clientProto) && (port == HTTPS_PORT)) || (HTTP.equals(this.clientProto) && (port == HTTP_PORT))))
         {
@@ -159,6 +150,15 @@ class SslFilterResponse extends HttpServletResponseWrapper
 
         try
         {
+            if (this.requestURL == null)
+            {
+                this.requestURL = new URL(this.request.getRequestURL().toString());
+
+                // Only rewrite URLs for the host & port the request was sent to...
+                this.serverName = this.request.getServerName();
+                this.serverPort = this.request.getServerPort();
+            }
+
             URI uri;
             if (value.startsWith(this.serverProto.concat("://")))
             {
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.http.sslfilter.internal;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import org.junit.Test;
+
+public class CertificateCacheTest
+{
+    static final String CLIENT_CERT_HEADER = "-----BEGIN CERTIFICATE----- "
+        + "MIIB7DCCAVWgAwIBAgIEftImRzANBgkqhkiG9w0BAQsFADAoMRUwEwYDVQQKEwxB "
+        + "cGFjaGUgRmVsaXgxDzANBgNVBAMTBmNsaWVudDAgFw0yNjEwMTkxNTQ1MzRaGA8y "
+        + "MTI2MDkyNTE1NDUzNFowKDEVMBMGA1UEChMMQXBhY2hlIEZlbGl4MQ8wDQYDVQQD "
+        + "EwZjbGllbnQwgZ8wDQYJKoZIhvcNAQEBBQADgY0AMIGJAoGBAIFMJI+D9Sr6czi1 "
+        + "3tzgnNFlw6TFddqgN9DH80EdNW0fGtWf6+NPvdYCUHmmyAggjq+pmjUaWo+MRGkO "
+        + "jR9Wn63bgpft8vSNNGPmSAZXFYEcLoiItzU7mM0s4aI1kXXS4C/Z4FAndq0OegmX "
+        + "9DRUUXp4myuJwTequu2PY5MbUXHlAgMBAAGjITAfMB0GA1UdDgQWBBSnJmct683Q "
+        + "W2eDPbHAuZ3jh/l7DDANBgkqhkiG9w0BAQsFAAOBgQARfg/LMCAxKswmf9i0e6Oi "
+        + "KeBjzexHI4X5565Wp8bj1X9Nds96w3IPtZzYsHQSHvMHyNbcKdLH2vaLxGGUtnnH "
+        + "xTrG93ZO3YdOBF6GAEXzXm51/zOuqkGNOEZR1A7YB1TttMwUu+ZF9PDiYhlbee57 "
+        + "CvYxZtTmgOs70qkUlB6GIg== "
+        + "-----END CERTIFICATE-----";
+
+    @Test
+    public void test_getCertificates() throws Exception
+    {
+        CertificateCache cache = new CertificateCache(CertificateCache.DEFAULT_SIZE);
+
+        X509Certificate[] certs = cache.getCertificates(CLIENT_CERT_HEADER);
+        assertEquals(1, certs.length);
+        assertTrue(certs[0].getSubjectX500Principal().getName().contains("CN=client"));
+        assertEquals(1, cache.size());
+
+        X509Certificate[] cached = cache.getCertificates(CLIENT_CERT_HEADER);
+        assertNotSame(certs, cached);
+        assertEquals(certs[0], cached[0]);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void test_getCertificatesWithoutHeader() throws Exception
+    {
+        CertificateCache cache = new CertificateCache(CertificateCache.DEFAULT_SIZE);
+
+        assertNull(cache.getCertificates(null));
+        assertNull(cache.getCertificates(" "));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_getCertificatesIsBounded() throws Exception
+    {
+        CertificateCache cache = new CertificateCache(2);
+
+        String header = CLIENT_CERT_HEADER;
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(1, cache.getCertificates(header).length);
+            assertTrue(cache.size() <= 2);
+            header = header + " ";
+        }
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void test_getCertificatesWithInvalidHeader() throws Exception
+    {
+        CertificateCache cache = new CertificateCache(CertificateCache.DEFAULT_SIZE);
+        try
+        {
+            cache.getCertificates("-----BEGIN CERTIFICATE----- invalid -----END CERTIFICATE-----");
+            fail("CertificateException expected");
+        }
+        catch (CertificateException e)
+        {
+            // expected
+        }
+        assertEquals(0, cache.size());
+    }
+}
@@ -122,10 +122,16 @@ public class Activator implements BundleActivator
             context.getProperty(Server.CONFIG_PROPERTY_THREADPOOL_LIMIT_PROP));
         config.put(Server.CONFIG_PROPERTY_THREADPOOL_TIMEOUT_PROP,
             context.getProperty(Server.CONFIG_PROPERTY_THREADPOOL_TIMEOUT_PROP));
+        config.put(Server.CONFIG_PROPERTY_THREADPOOL_VIRTUAL_PROP,
+            context.getProperty(Server.CONFIG_PROPERTY_THREADPOOL_VIRTUAL_PROP));
         config.put(Server.CONFIG_PROPERTY_CONNECTION_REQUESTLIMIT_PROP,
             context.getProperty(Server.CONFIG_PROPERTY_CONNECTION_REQUESTLIMIT_PROP));
         config.put(Server.CONFIG_PROPERTY_CONNECTION_TIMEOUT_PROP,
             context.getProperty(Server.CONFIG_PROPERTY_CONNECTION_TIMEOUT_PROP));
+        config.put(Server.CONFIG_PROPERTY_SELECTOR_ENABLE,
+            context.getProperty(Server.CONFIG_PROPERTY_SELECTOR_ENABLE));
+        config.put(Server.CONFIG_PROPERTY_SELECTOR_BODYLIMIT_PROP,
+            context.getProperty(Server.CONFIG_PROPERTY_SELECTOR_BODYLIMIT_PROP));
 
         return config;
     }
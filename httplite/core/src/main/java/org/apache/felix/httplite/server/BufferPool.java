@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class implements a simple pool of fixed size byte buffers used by
+ * connections to read requests and write responses. Connections only hold
+ * a buffer while a request is being read or processed, so idle persistent
+ * connections do not hold on to any memory.
+**/
+public class BufferPool
+{
+    /**
+     * Default buffer size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    /**
+     * Default number of pooled buffers.
+     */
+    public static final int DEFAULT_POOL_LIMIT = 64;
+
+    private final int m_bufferSize;
+    private final int m_limit;
+    private final List m_buffers = new ArrayList();
+
+    /**
+     * Constructs a buffer pool.
+     * @param bufferSize The size of the pooled buffers.
+     * @param limit The maximum number of buffers kept in the pool.
+    **/
+    public BufferPool(final int bufferSize, final int limit)
+    {
+        m_bufferSize = bufferSize;
+        m_limit = limit;
+    }
+
+    /**
+     * Returns the size of the pooled buffers.
+     * @return The buffer size.
+    **/
+    public int getBufferSize()
+    {
+        return m_bufferSize;
+    }
+
+    /**
+     * Takes a buffer from the pool or creates a new buffer if the pool is empty.
+     * @return A cleared buffer.
+    **/
+    public synchronized ByteBuffer acquire()
+    {
+        if (m_buffers.isEmpty())
+        {
+            return ByteBuffer.allocate(m_bufferSize);
+        }
+        return (ByteBuffer) m_buffers.remove(m_buffers.size() - 1);
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers which have not been created by
+     * the pool are discarded.
+     * @param buffer The buffer.
+    **/
+    public synchronized void release(final ByteBuffer buffer)
+    {
+        if ((buffer.capacity() == m_bufferSize) && (m_buffers.size() < m_limit))
+        {
+            buffer.clear();
+            m_buffers.add(buffer);
+        }
+    }
+}
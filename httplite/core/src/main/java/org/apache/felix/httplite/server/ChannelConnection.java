@@ -0,0 +1,514 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import javax.servlet.ServletException;
+
+import org.apache.felix.httplite.osgi.Logger;
+import org.apache.felix.httplite.osgi.ServiceRegistrationHandler;
+import org.apache.felix.httplite.osgi.ServiceRegistrationResolver;
+import org.apache.felix.httplite.servlet.ConcreteServletInputStream;
+import org.apache.felix.httplite.servlet.HttpConstants;
+import org.apache.felix.httplite.servlet.HttpServletRequestImpl;
+import org.apache.felix.httplite.servlet.HttpServletResponseImpl;
+
+/**
+ * This class represents a connection accepted by the {@link ConnectionSelector}.
+ * Requests are read by the selector thread into a pooled buffer without
+ * blocking; only complete requests (header and body) are handed to the
+ * thread pool for processing. Between requests the connection holds neither
+ * a thread nor a buffer, so idle persistent connections are cheap.
+ * As for {@link Connection}, persistent connections are limited in the
+ * number of consecutive requests and closed after a period of inactivity.
+ * Request bodies larger than the configured limit are refused with status
+ * 413 before any of it is read, and the read buffer only grows as the body
+ * arrives. As for {@link Connection},
+ * chunked request bodies are not supported; they are refused with status
+ * 501 rather than misread as the next request.
+**/
+public class ChannelConnection implements Runnable
+{
+    /**
+     * Maximum size of the request line and headers.
+     */
+    public static final int MAX_HEADER_SIZE = 65536;
+
+    /**
+     * Default maximum size of the request body.
+     */
+    public static final int DEFAULT_BODY_LIMIT = 10 * 1024 * 1024;
+
+    private static final byte[] CONTINUE_RESPONSE = HttpServletResponseImpl.buildResponse(
+        HttpConstants.HTTP_RESPONSE_CONTINUE, null);
+
+    private final SocketChannel m_channel;
+    private final ConnectionSelector m_selector;
+    private final BufferPool m_pool;
+    private final ChannelOutputStream m_os;
+    private final int m_timeout;
+    private final int m_requestLimit;
+    private final int m_bodyLimit;
+    private final ServiceRegistrationResolver m_resolver;
+    private final Logger m_logger;
+
+    private SelectionKey m_key;
+    private ByteBuffer m_buffer;
+    private int m_scanned = 0;
+    private int m_requestLength = -1;
+    private boolean m_expectContinue = false;
+    private int m_requestCount = 0;
+    private long m_lastActivity = System.currentTimeMillis();
+
+    /**
+     * Constructs a connection with the specified inactivity timeout and request limit.
+     * @param channel The non-blocking client channel.
+     * @param selector The selector reading requests from the channel.
+     * @param pool The pool providing read buffers.
+     * @param timeout The inactivity timeout of the connection in milliseconds.
+     * @param requestLimit The maximum number of consecutive requests.
+     * @param bodyLimit The maximum size of a request body in bytes.
+     * @param resolver resolves a request URI to a client or servlet registration via the HTTP Service.
+     * @param logger logger instance.
+     */
+    public ChannelConnection(final SocketChannel channel, final ConnectionSelector selector,
+        final BufferPool pool, final int timeout, final int requestLimit, final int bodyLimit,
+        final ServiceRegistrationResolver resolver, final Logger logger)
+    {
+        m_channel = channel;
+        m_selector = selector;
+        m_pool = pool;
+        m_timeout = timeout;
+        m_requestLimit = requestLimit;
+        // The header and body lengths are added up as an int.
+        m_bodyLimit = Math.max(0, Math.min(bodyLimit, Integer.MAX_VALUE - MAX_HEADER_SIZE));
+        m_resolver = resolver;
+        m_logger = logger;
+        m_os = new ChannelOutputStream(channel, timeout, pool);
+    }
+
+    SelectionKey getKey()
+    {
+        return m_key;
+    }
+
+    void setKey(final SelectionKey key)
+    {
+        m_key = key;
+    }
+
+    /**
+     * Reads available bytes from the channel. Only called by the selector thread.
+     * @return The number of bytes read, or -1 if the client closed the connection.
+     * @throws IOException If any I/O error occurs.
+    **/
+    int read() throws IOException
+    {
+        if (m_buffer == null)
+        {
+            m_buffer = m_pool.acquire();
+        }
+        final int n = m_channel.read(m_buffer);
+        if (n > 0)
+        {
+            m_lastActivity = System.currentTimeMillis();
+        }
+        return n;
+    }
+
+    /**
+     * Checks whether the connection has been inactive for longer than the timeout.
+     * @param now The current time.
+     * @return true if the connection is idle.
+    **/
+    boolean isExpired(final long now)
+    {
+        return (m_timeout > 0) && ((now - m_lastActivity) >= m_timeout);
+    }
+
+    /**
+     * Called when the connection is handed back to the selector to wait for
+     * the next request.
+    **/
+    void resumed()
+    {
+        m_lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Checks whether a complete request is buffered. The read buffer is grown
+     * as needed to hold the request headers and body.
+     * @return true if a complete request is buffered.
+     * @throws IOException If the request is malformed or too large.
+    **/
+    boolean parseRequest() throws IOException
+    {
+        if (m_buffer == null)
+        {
+            return false;
+        }
+        final byte[] data = m_buffer.array();
+        int limit = m_buffer.position();
+
+        if (m_requestLength < 0)
+        {
+            // Ignore empty lines preceding the request line.
+            int skip = 0;
+            while ((skip < limit) && ((data[skip] == '\r') || (data[skip] == '\n')))
+            {
+                skip++;
+            }
+            if (skip > 0)
+            {
+                System.arraycopy(data, skip, data, 0, limit - skip);
+                limit -= skip;
+                m_buffer.position(limit);
+            }
+
+            final int headerLength = findHeaderEnd(data, m_scanned, limit);
+            if (headerLength < 0)
+            {
+                m_scanned = Math.max(0, limit - 3);
+                if (limit == m_buffer.capacity())
+                {
+                    if (limit >= MAX_HEADER_SIZE)
+                    {
+                        throw new IOException("Request header exceeds " + MAX_HEADER_SIZE + " bytes.");
+                    }
+                    grow(Math.min(limit * 2, MAX_HEADER_SIZE));
+                }
+                return false;
+            }
+
+            m_requestLength = headerLength + parseHeader(data, headerLength);
+        }
+
+        if (limit >= m_requestLength)
+        {
+            return true;
+        }
+
+        // The buffer grows with the received body rather than with the
+        // declared length, so unsent bodies don't hold memory.
+        if (limit == m_buffer.capacity())
+        {
+            grow((int) Math.min((long) limit * 2, m_requestLength));
+        }
+
+        // The client waits for an interim response before sending the body.
+        if (m_expectContinue)
+        {
+            m_expectContinue = false;
+            m_channel.write(ByteBuffer.wrap(CONTINUE_RESPONSE));
+        }
+        return false;
+    }
+
+    /**
+     * Returns the length of the request line and headers including the empty
+     * line terminating them, or -1 if they are incomplete.
+    **/
+    private static int findHeaderEnd(final byte[] data, final int from, final int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (data[i] == '\n')
+            {
+                if ((i + 1 < to) && (data[i + 1] == '\n'))
+                {
+                    return i + 2;
+                }
+                if ((i + 2 < to) && (data[i + 1] == '\r') && (data[i + 2] == '\n'))
+                {
+                    return i + 3;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Extracts the headers needed to frame the request.
+     * @return The length of the request body.
+    **/
+    private int parseHeader(final byte[] data, final int length) throws IOException
+    {
+        final String header;
+        try
+        {
+            header = new String(data, 0, length, "ISO-8859-1");
+        }
+        catch (UnsupportedEncodingException ex)
+        {
+            // ISO-8859-1 is supported by every Java platform.
+            throw new IOException(ex.getMessage());
+        }
+
+        long contentLength = 0;
+        m_expectContinue = false;
+        final StringTokenizer st = new StringTokenizer(header, "\r\n");
+        while (st.hasMoreTokens())
+        {
+            final String line = st.nextToken();
+            final int idx = line.indexOf(':');
+            if (idx > 0)
+            {
+                final String name = line.substring(0, idx).trim();
+                final String value = line.substring(idx + 1).trim();
+                if (name.equalsIgnoreCase(HttpConstants.HEADER_CONTENT_LENGTH))
+                {
+                    try
+                    {
+                        contentLength = Long.parseLong(value);
+                    }
+                    catch (NumberFormatException ex)
+                    {
+                        throw new IOException("Malformed content length: " + value);
+                    }
+                    if (contentLength < 0)
+                    {
+                        throw new IOException("Malformed content length: " + value);
+                    }
+                    if (contentLength > m_bodyLimit)
+                    {
+                        refuse(HttpURLConnection.HTTP_ENTITY_TOO_LARGE,
+                            "Request body exceeds " + m_bodyLimit + " bytes.");
+                    }
+                }
+                else if (name.equalsIgnoreCase("Transfer-Encoding") && !value.equalsIgnoreCase("identity"))
+                {
+                    refuse(HttpURLConnection.HTTP_NOT_IMPLEMENTED,
+                        "Transfer encoding not supported: " + value);
+                }
+                else if (name.equalsIgnoreCase("Expect") && value.equalsIgnoreCase("100-continue"))
+                {
+                    m_expectContinue = true;
+                }
+            }
+        }
+        return (int) contentLength;
+    }
+
+    /**
+     * Answers a request that will not be read with the specified status. The
+     * connection is closed afterwards, as the rest of the request is unread.
+     * @throws IOException Always, to close the connection.
+    **/
+    private void refuse(final int status, final String message) throws IOException
+    {
+        final Map headers = new HashMap();
+        headers.put(HttpConstants.HEADER_CONNECTION, HttpConstants.CLOSE_CONNECTION);
+        // The response is small enough for the socket send buffer.
+        m_channel.write(ByteBuffer.wrap(HttpServletResponseImpl.buildResponse(
+            status, headers, message, null)));
+        throw new IOException(message);
+    }
+
+    private void grow(final int capacity)
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        m_buffer.flip();
+        buffer.put(m_buffer);
+        m_pool.release(m_buffer);
+        m_buffer = buffer;
+    }
+
+    /**
+     * Removes the processed request from the buffer, keeping any pipelined
+     * bytes that follow it.
+    **/
+    private void consumeRequest()
+    {
+        final int remaining = m_buffer.position() - m_requestLength;
+        System.arraycopy(m_buffer.array(), m_requestLength, m_buffer.array(), 0, remaining);
+        m_buffer.position(remaining);
+        m_requestLength = -1;
+        m_scanned = 0;
+        if (remaining == 0)
+        {
+            // Idle connections do not hold a buffer.
+            m_pool.release(m_buffer);
+            m_buffer = null;
+        }
+    }
+
+    /**
+     * Processes the buffered requests. This method is called by threads in
+     * the thread pool. Afterwards the connection is either handed back to the
+     * selector to wait for the next request or closed.
+    **/
+    public void run()
+    {
+        boolean keepAlive = false;
+        try
+        {
+            do
+            {
+                keepAlive = process();
+                consumeRequest();
+            }
+            while (keepAlive && parseRequest());
+        }
+        catch (SocketTimeoutException ex)
+        {
+            keepAlive = false;
+            m_logger.log(Logger.LOG_INFO, "Connection closed due to inactivity.");
+        }
+        catch (Exception ex)
+        {
+            keepAlive = false;
+            m_logger.log(Logger.LOG_ERROR, "Connection close due to unknown reason.", ex);
+        }
+
+        if (keepAlive)
+        {
+            m_selector.resume(this);
+        }
+        else
+        {
+            close();
+        }
+    }
+
+    /**
+     * Processes a single buffered request.
+     * @return true if the connection can be used for further requests.
+    **/
+    private boolean process() throws IOException, ServletException
+    {
+        HttpServletRequestImpl request = m_resolver.getServletRequest(m_channel.socket());
+        HttpServletResponseImpl response = m_resolver.getServletResponse(m_os);
+        ConcreteServletInputStream is = new ConcreteServletInputStream(
+            new ByteArrayInputStream(m_buffer.array(), 0, m_requestLength));
+
+        try
+        {
+            request.parseRequestLine(is);
+        }
+        catch (IOException e)
+        {
+            m_logger.log(Logger.LOG_ERROR,
+                "Error with request: " + request.toString() + ": " + e.getMessage());
+            throw e;
+        }
+        m_requestCount++;
+
+        boolean close = false;
+        boolean error = false;
+
+        m_logger.log(Logger.LOG_DEBUG,
+            "Processing " + request.getRequestURI() + " (" + (m_requestLimit - m_requestCount)
+                + " remaining)");
+
+        // The request body has already been received, so there is no need
+        // to send a continue message.
+        request.parseHeader(is);
+
+        String v = request.getHeader(HttpConstants.HEADER_CONNECTION);
+        if ((request.getProtocol().equals(HttpConstants.HTTP10_VERSION) && ((v == null) || (!v.equalsIgnoreCase(HttpConstants.KEEPALIVE_CONNECTION))))
+            || ((v != null) && v.equalsIgnoreCase(HttpConstants.CLOSE_CONNECTION)))
+        {
+            close = true;
+            response.setConnectionType("close");
+        }
+        else if (m_requestCount >= m_requestLimit)
+        {
+            close = true;
+            response.setConnectionType("close");
+        }
+        else if (request.getProtocol().equals(HttpConstants.HTTP10_VERSION))
+        {
+            // HTTP/1.0 clients expect the persistent connection to be confirmed.
+            response.setConnectionType(HttpConstants.KEEPALIVE_CONNECTION);
+        }
+
+        if (!HttpServletRequestImpl.isSupportedMethod(request.getMethod()))
+        {
+            error = true;
+            response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
+            response.sendNotImplementedResponse();
+        }
+
+        if (!error && request.getProtocol().equals(HttpConstants.HTTP11_VERSION)
+            && (request.getHeader(HttpConstants.HOST_HEADER) == null))
+        {
+            error = true;
+            response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
+            response.sendMissingHostResponse();
+        }
+
+        request.parseBody(is);
+
+        if (!error)
+        {
+            ServiceRegistrationHandler processor = m_resolver.getProcessor(
+                request, response, request.getRequestURI());
+
+            if (processor != null)
+            {
+                processor.handle(close);
+
+                m_logger.log(Logger.LOG_DEBUG, "Processed " + request.toString());
+            }
+            else
+            {
+                close = true;
+                response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
+                response.sendNotFoundResponse();
+            }
+        }
+        m_os.flush();
+        m_os.release();
+
+        // Responses without a content length are terminated by closing the connection.
+        return !close && !error && response.isPersistent();
+    }
+
+    /**
+     * Closes the connection and releases its buffers.
+    **/
+    void close()
+    {
+        try
+        {
+            m_channel.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing socket channel.", ex);
+        }
+        if (m_buffer != null)
+        {
+            m_pool.release(m_buffer);
+            m_buffer = null;
+        }
+        m_os.release();
+    }
+}
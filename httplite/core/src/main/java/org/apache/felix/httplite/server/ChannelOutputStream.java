@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Buffered output stream writing to a non-blocking socket channel. If the
+ * socket send buffer is full, the writing thread waits on a temporary
+ * selector until the channel is writable again or the timeout expires.
+ * The write buffer is taken from the pool on the first write and returned
+ * by {@link #release()} once the response has been written.
+**/
+public class ChannelOutputStream extends OutputStream
+{
+    private final SocketChannel m_channel;
+    private final int m_timeout;
+    private final BufferPool m_pool;
+    private ByteBuffer m_buffer;
+
+    /**
+     * Constructs an output stream for a channel.
+     * @param channel The non-blocking socket channel.
+     * @param timeout The write timeout in milliseconds, zero means no timeout.
+     * @param pool The pool providing the write buffer.
+    **/
+    public ChannelOutputStream(final SocketChannel channel, final int timeout, final BufferPool pool)
+    {
+        m_channel = channel;
+        m_timeout = timeout;
+        m_pool = pool;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.OutputStream#write(int)
+     */
+    public void write(final int b) throws IOException
+    {
+        if (m_buffer == null)
+        {
+            m_buffer = m_pool.acquire();
+        }
+        else if (!m_buffer.hasRemaining())
+        {
+            flushBuffer();
+        }
+        m_buffer.put((byte) b);
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    public void write(final byte[] b, final int off, final int len) throws IOException
+    {
+        if (m_buffer == null)
+        {
+            m_buffer = m_pool.acquire();
+        }
+        if (len > m_buffer.remaining())
+        {
+            flushBuffer();
+            if (len > m_buffer.remaining())
+            {
+                // Too large to be buffered, write it directly.
+                writeFully(ByteBuffer.wrap(b, off, len));
+                return;
+            }
+        }
+        m_buffer.put(b, off, len);
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.OutputStream#flush()
+     */
+    public void flush() throws IOException
+    {
+        flushBuffer();
+    }
+
+    /**
+     * Flushes the buffer but leaves the channel open, the channel is owned by
+     * the connection.
+     * @see java.io.OutputStream#close()
+     */
+    public void close() throws IOException
+    {
+        flushBuffer();
+    }
+
+    /**
+     * Returns the write buffer to the pool. Buffered bytes which have not been
+     * flushed are discarded. A later write acquires a new buffer.
+    **/
+    void release()
+    {
+        if (m_buffer != null)
+        {
+            m_pool.release(m_buffer);
+            m_buffer = null;
+        }
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        if ((m_buffer != null) && (m_buffer.position() > 0))
+        {
+            m_buffer.flip();
+            try
+            {
+                writeFully(m_buffer);
+            }
+            finally
+            {
+                m_buffer.clear();
+            }
+        }
+    }
+
+    private void writeFully(final ByteBuffer buffer) throws IOException
+    {
+        Selector selector = null;
+        // A pending interrupt, e.g. from the thread pool shutting down, would
+        // wake up the selector immediately; clear it and restore it afterwards.
+        final boolean interrupted = Thread.interrupted();
+        try
+        {
+            long deadline = 0;
+            while (buffer.hasRemaining())
+            {
+                if (m_channel.write(buffer) > 0)
+                {
+                    deadline = 0;
+                }
+                else
+                {
+                    // The send buffer is full, wait until the client reads.
+                    if (selector == null)
+                    {
+                        selector = Selector.open();
+                        m_channel.register(selector, SelectionKey.OP_WRITE);
+                    }
+                    long wait = 0;
+                    if (m_timeout > 0)
+                    {
+                        final long now = System.currentTimeMillis();
+                        if (deadline == 0)
+                        {
+                            deadline = now + m_timeout;
+                        }
+                        wait = deadline - now;
+                        if (wait <= 0)
+                        {
+                            throw new SocketTimeoutException("Timed out writing to client.");
+                        }
+                    }
+                    selector.select(wait);
+                    selector.selectedKeys().clear();
+                }
+            }
+        }
+        finally
+        {
+            if (selector != null)
+            {
+                selector.close();
+            }
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
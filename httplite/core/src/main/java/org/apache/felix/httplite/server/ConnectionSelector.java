@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.felix.httplite.osgi.Logger;
+import org.apache.felix.httplite.osgi.ServiceRegistrationResolver;
+
+/**
+ * This class implements the non-blocking front end of the web server. A
+ * single thread accepts connections and reads requests from all of them;
+ * complete requests are handed to the thread pool for processing. Threads
+ * are therefore only used by connections with a request in progress, not by
+ * idle persistent connections.
+**/
+public class ConnectionSelector implements Runnable
+{
+    /**
+     * Interval in milliseconds at which idle connections are checked for expiry.
+     */
+    private static final long SELECT_TIMEOUT = 1000;
+
+    private final ServerSocketChannel m_serverChannel;
+    private final Selector m_selector;
+    private final ThreadPool m_threadPool;
+    private final BufferPool m_bufferPool;
+    private final int m_connectionTimeout;
+    private final int m_connectionRequestLimit;
+    private final int m_bodyLimit;
+    private final ServiceRegistrationResolver m_resolver;
+    private final Logger m_logger;
+
+    private final List m_resumed = new ArrayList();
+    private boolean m_closed = false;
+
+    /**
+     * Constructs a selector accepting connections on the specified server channel.
+     * @param serverChannel The bound server channel.
+     * @param threadPool The thread pool processing requests.
+     * @param bufferPool The pool providing read buffers.
+     * @param connectionTimeout The inactivity timeout of connections in milliseconds.
+     * @param connectionRequestLimit The maximum number of consecutive requests per connection.
+     * @param bodyLimit The maximum size of a request body in bytes.
+     * @param resolver resolves a request URI to a client or servlet registration via the HTTP Service.
+     * @param logger logger instance.
+     * @throws IOException If the selector cannot be opened.
+     */
+    public ConnectionSelector(final ServerSocketChannel serverChannel, final ThreadPool threadPool,
+        final BufferPool bufferPool, final int connectionTimeout, final int connectionRequestLimit,
+        final int bodyLimit, final ServiceRegistrationResolver resolver, final Logger logger) throws IOException
+    {
+        m_serverChannel = serverChannel;
+        m_threadPool = threadPool;
+        m_bufferPool = bufferPool;
+        m_connectionTimeout = connectionTimeout;
+        m_connectionRequestLimit = connectionRequestLimit;
+        m_bodyLimit = bodyLimit;
+        m_resolver = resolver;
+        m_logger = logger;
+        m_selector = Selector.open();
+        m_serverChannel.configureBlocking(false);
+        m_serverChannel.register(m_selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * This method is the main loop accepting connections and reading requests.
+     * It returns once the selector is closed.
+    **/
+    public void run()
+    {
+        m_logger.log(Logger.LOG_DEBUG, "Waiting for connections.");
+        long lastExpiry = System.currentTimeMillis();
+        try
+        {
+            while (!isClosed())
+            {
+                m_selector.select(SELECT_TIMEOUT);
+                resumeConnections();
+
+                for (Iterator i = m_selector.selectedKeys().iterator(); i.hasNext();)
+                {
+                    SelectionKey key = (SelectionKey) i.next();
+                    i.remove();
+                    try
+                    {
+                        if (key.isAcceptable())
+                        {
+                            acceptConnections();
+                        }
+                        else if (key.isReadable())
+                        {
+                            readConnection((ChannelConnection) key.attachment());
+                        }
+                    }
+                    catch (CancelledKeyException ex)
+                    {
+                        // The connection has been closed in the meantime.
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if ((now - lastExpiry) >= SELECT_TIMEOUT)
+                {
+                    expireConnections(now);
+                    lastExpiry = now;
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            if (!isClosed())
+            {
+                m_logger.log(Logger.LOG_ERROR,
+                    "The selector terminated with an exception.", ex);
+            }
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                m_closed = true;
+            }
+            closeConnections();
+        }
+    }
+
+    /**
+     * Stops the selector. Idle connections are closed, connections with a
+     * request in progress are closed once the request has been processed.
+    **/
+    public void close()
+    {
+        synchronized (this)
+        {
+            m_closed = true;
+        }
+        m_selector.wakeup();
+    }
+
+    private synchronized boolean isClosed()
+    {
+        return m_closed;
+    }
+
+    /**
+     * Hands a connection back to the selector to wait for its next request.
+     * This is called by the thread which processed the previous request.
+     * @param connection The connection.
+    **/
+    void resume(final ChannelConnection connection)
+    {
+        synchronized (this)
+        {
+            if (!m_closed)
+            {
+                m_resumed.add(connection);
+                m_selector.wakeup();
+                return;
+            }
+        }
+        connection.close();
+    }
+
+    private void resumeConnections()
+    {
+        Object[] resumed;
+        synchronized (this)
+        {
+            if (m_resumed.isEmpty())
+            {
+                return;
+            }
+            resumed = m_resumed.toArray();
+            m_resumed.clear();
+        }
+        for (int i = 0; i < resumed.length; i++)
+        {
+            ChannelConnection connection = (ChannelConnection) resumed[i];
+            SelectionKey key = connection.getKey();
+            if (key.isValid())
+            {
+                connection.resumed();
+                key.interestOps(SelectionKey.OP_READ);
+            }
+            else
+            {
+                connection.close();
+            }
+        }
+    }
+
+    private void acceptConnections()
+    {
+        while (true)
+        {
+            SocketChannel channel;
+            try
+            {
+                channel = m_serverChannel.accept();
+            }
+            catch (IOException ex)
+            {
+                m_logger.log(Logger.LOG_ERROR,
+                    "The call to accept() terminated with an exception.", ex);
+                return;
+            }
+            if (channel == null)
+            {
+                return;
+            }
+
+            try
+            {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                ChannelConnection connection = new ChannelConnection(channel, this,
+                    m_bufferPool, m_connectionTimeout, m_connectionRequestLimit,
+                    m_bodyLimit, m_resolver, m_logger);
+                connection.setKey(channel.register(m_selector, SelectionKey.OP_READ,
+                    connection));
+                m_logger.log(Logger.LOG_DEBUG, "Accepted a new connection.");
+            }
+            catch (IOException ex)
+            {
+                m_logger.log(Logger.LOG_ERROR, "Error creating connection.", ex);
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException ex2)
+                {
+                    m_logger.log(Logger.LOG_ERROR, "Error closing socket channel.", ex2);
+                }
+            }
+        }
+    }
+
+    private void readConnection(final ChannelConnection connection)
+    {
+        try
+        {
+            if (connection.read() < 0)
+            {
+                m_logger.log(Logger.LOG_DEBUG, "Connection closed by client.");
+                connection.close();
+            }
+            else if (connection.parseRequest())
+            {
+                // Stop reading until the request has been processed.
+                connection.getKey().interestOps(0);
+                m_threadPool.addTask(connection);
+            }
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_DEBUG, "Connection closed: " + ex.getMessage());
+            connection.close();
+        }
+        catch (IllegalStateException ex)
+        {
+            // The thread pool is stopping.
+            connection.close();
+        }
+    }
+
+    /**
+     * Closes connections waiting for a request for longer than the timeout.
+    **/
+    private void expireConnections(final long now)
+    {
+        for (Iterator i = m_selector.keys().iterator(); i.hasNext();)
+        {
+            SelectionKey key = (SelectionKey) i.next();
+            if (key.isValid() && (key.attachment() instanceof ChannelConnection)
+                && (key.interestOps() == SelectionKey.OP_READ))
+            {
+                ChannelConnection connection = (ChannelConnection) key.attachment();
+                if (connection.isExpired(now))
+                {
+                    m_logger.log(Logger.LOG_INFO, "Connection closed due to inactivity.");
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the selector, the server channel and all connections which are
+     * not processing a request.
+    **/
+    private void closeConnections()
+    {
+        for (Iterator i = m_selector.keys().iterator(); i.hasNext();)
+        {
+            SelectionKey key = (SelectionKey) i.next();
+            if (key.isValid() && (key.attachment() instanceof ChannelConnection)
+                && (key.interestOps() != 0))
+            {
+                ((ChannelConnection) key.attachment()).close();
+            }
+        }
+        synchronized (this)
+        {
+            for (Iterator i = m_resumed.iterator(); i.hasNext();)
+            {
+                ((ChannelConnection) i.next()).close();
+            }
+            m_resumed.clear();
+        }
+        try
+        {
+            m_selector.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing selector.", ex);
+        }
+        try
+        {
+            m_serverChannel.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing server socket.", ex);
+        }
+    }
+}
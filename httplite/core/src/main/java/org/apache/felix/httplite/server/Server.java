@@ -20,9 +20,11 @@ package org.apache.felix.httplite.server;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -53,6 +55,10 @@ public class Server
      * Thread pool limit property
      */
     public static final String CONFIG_PROPERTY_THREADPOOL_LIMIT_PROP = "org.apache.felix.http.threadpool.limit";
+    /**
+     * Flag to service requests on virtual threads if supported by the JVM (Java 21 or later). The default is false.
+     */
+    public static final String CONFIG_PROPERTY_THREADPOOL_VIRTUAL_PROP = "org.apache.felix.http.threadpool.virtual";
     /**
      * Flag to enable the user of HTTPS. The default is false.
      */
@@ -69,6 +75,15 @@ public class Server
      * The address of the host interface to bind http to. The default is to bind to all interfaces.
      */
     public static final String CONFIG_PROPERTY_HTTP_HOST = "org.apache.felix.http.host"; 
+    /**
+     * Flag to enable the non-blocking connection handling. The default is true.
+     * When disabled, every connection is serviced by a pool thread for its whole lifetime.
+     */
+    public static final String CONFIG_PROPERTY_SELECTOR_ENABLE = "org.apache.felix.http.selector.enable";
+    /**
+     * Maximum size in bytes of a request body read by the non-blocking connection handling.
+     */
+    public static final String CONFIG_PROPERTY_SELECTOR_BODYLIMIT_PROP = "org.apache.felix.http.selector.bodylimit";
 
     /**
      * Default HTTP port to listen on.
@@ -79,6 +94,12 @@ public class Server
      */
     private static final int DEFAULT_THREADPOOL_LIMIT = 10;
 
+    /**
+     * Length of the queue of incoming connections for the non-blocking
+     * connection handling, which is meant for many concurrent clients.
+     */
+    private static final int SELECTOR_ACCEPT_BACKLOG = 1024;
+
     /**
      * Server is inactive (off).
      */
@@ -101,7 +122,10 @@ public class Server
 
     private Thread m_serverThread;
     private ServerSocket m_serverSocket;
+    private ConnectionSelector m_connectionSelector;
     private final ThreadPool m_threadPool;
+    private final boolean m_selectorEnabled;
+    private final int m_selectorBodyLimit;
 
     private final int m_connectionTimeout;
     private final int m_connectionRequestLimit;
@@ -130,6 +154,10 @@ public class Server
      *       the thread pool after which time the threads will terminate; the
      *       default value is 60000 milliseconds.
      *   </li>
+     *   <li><tt>org.apache.felix.http.threadpool.virtual</tt> - whether every connection or request
+     *       is serviced by a new virtual thread instead of a pool thread, if supported by the JVM;
+     *       the thread limit does not apply to virtual threads; the default value is false.
+     *   </li>
      *   <li><tt>.org.apache.felix.http.connection.requestlimit</tt> - the maximum number of requests that
      *       will be accepted over a persistent connection before closing the
      *       connection; the default value is 50.
@@ -138,6 +166,14 @@ public class Server
      *       connections after which the connection is closed; the default value
      *       is 10000 milliseconds.
      *   </li>
+     *   <li><tt>org.apache.felix.http.selector.enable</tt> - whether connections are read by a
+     *       single non-blocking selector thread, so pool threads are only used to process
+     *       complete requests; the default value is true.
+     *   </li>
+     *   <li><tt>org.apache.felix.http.selector.bodylimit</tt> - the maximum size of a request body
+     *       buffered by the selector; larger requests are answered with status 413 and the
+     *       connection is closed; the default value is 10485760 bytes.
+     *   </li>
      * </ul>
      * The configuration properties cannot be changed after construction. The
      * web server is not active until it is started.
@@ -158,11 +194,16 @@ public class Server
             : Integer.parseInt((String) configMap.get(Server.CONFIG_PROPERTY_THREADPOOL_LIMIT_PROP));
         int threadTimeout = (configMap.get(Server.CONFIG_PROPERTY_THREADPOOL_TIMEOUT_PROP) == null) ? ThreadPool.DEFAULT_THREAD_TIMEOUT
             : Integer.parseInt((String) configMap.get(Server.CONFIG_PROPERTY_THREADPOOL_TIMEOUT_PROP));
-        m_threadPool = new ThreadPool(threadLimit, threadTimeout, m_logger);
+        boolean virtualThreads = "true".equalsIgnoreCase((String) configMap.get(Server.CONFIG_PROPERTY_THREADPOOL_VIRTUAL_PROP));
+        m_threadPool = new ThreadPool(threadLimit, threadTimeout, virtualThreads, m_logger);
         m_connectionTimeout = (configMap.get(Server.CONFIG_PROPERTY_CONNECTION_TIMEOUT_PROP) == null) ? Connection.DEFAULT_CONNECTION_TIMEOUT
             : Integer.parseInt((String) configMap.get(Server.CONFIG_PROPERTY_CONNECTION_TIMEOUT_PROP));
         m_connectionRequestLimit = (configMap.get(Server.CONFIG_PROPERTY_CONNECTION_REQUESTLIMIT_PROP) == null) ? Connection.DEFAULT_CONNECTION_REQUESTLIMIT
             : Integer.parseInt((String) configMap.get(Server.CONFIG_PROPERTY_CONNECTION_REQUESTLIMIT_PROP));
+        m_selectorEnabled = (configMap.get(Server.CONFIG_PROPERTY_SELECTOR_ENABLE) == null)
+            || "true".equalsIgnoreCase((String) configMap.get(Server.CONFIG_PROPERTY_SELECTOR_ENABLE));
+        m_selectorBodyLimit = (configMap.get(Server.CONFIG_PROPERTY_SELECTOR_BODYLIMIT_PROP) == null) ? ChannelConnection.DEFAULT_BODY_LIMIT
+            : Integer.parseInt((String) configMap.get(Server.CONFIG_PROPERTY_SELECTOR_BODYLIMIT_PROP));
     }
 
     /**
@@ -266,22 +307,55 @@ public class Server
         {
             // If inactive, then create server socket, server thread, and
             // set state to active.
-            if (m_bindAddr == null)
+            Runnable serverLoop;
+            if (m_selectorEnabled)
             {
-                m_serverSocket = new ServerSocket(m_port);
+                ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                try
+                {
+                    serverChannel.socket().setReuseAddress(true);
+                    serverChannel.socket().bind((m_bindAddr == null)
+                        ? new InetSocketAddress(m_port)
+                        : new InetSocketAddress(m_bindAddr, m_port), SELECTOR_ACCEPT_BACKLOG);
+                    m_connectionSelector = new ConnectionSelector(serverChannel, m_threadPool,
+                        new BufferPool(BufferPool.DEFAULT_BUFFER_SIZE, BufferPool.DEFAULT_POOL_LIMIT),
+                        m_connectionTimeout, m_connectionRequestLimit, m_selectorBodyLimit,
+                        m_resolver, m_logger);
+                }
+                catch (IOException ex)
+                {
+                    serverChannel.close();
+                    throw ex;
+                }
+                m_serverSocket = serverChannel.socket();
+                serverLoop = new Runnable()
+                {
+                    public void run()
+                    {
+                        selectConnections();
+                    }
+                };
             }
             else
             {
-                m_serverSocket = new ServerSocket(m_port, 0, m_bindAddr);
-            }
-
-            m_serverThread = new Thread(new Runnable()
-            {
-				public void run()
+                if (m_bindAddr == null)
                 {
-                    acceptConnections();
+                    m_serverSocket = new ServerSocket(m_port);
                 }
-            }, "HttpServer");
+                else
+                {
+                    m_serverSocket = new ServerSocket(m_port, 0, m_bindAddr);
+                }
+                serverLoop = new Runnable()
+                {
+                    public void run()
+                    {
+                        acceptConnections();
+                    }
+                };
+            }
+
+            m_serverThread = new Thread(serverLoop, "HttpServer");
             m_state = ACTIVE_STATE;
             m_serverThread.start();
         }
@@ -335,6 +409,12 @@ public class Server
                 catch (IOException ex)
                 {
                 }
+                // Wake up the selector, which will cause the server thread
+                // to exit its select() loop.
+                if (m_connectionSelector != null)
+                {
+                    m_connectionSelector.close();
+                }
             }
         }
 
@@ -397,6 +477,22 @@ public class Server
         shutdown();
     }
 
+    /**
+     * This method is the main server loop for the non-blocking connection
+     * handling. This is only ever called by the server thread.
+    **/
+    private void selectConnections()
+    {
+        // Start the thread pool.
+        m_threadPool.start();
+
+        // Accept connections and read requests until the selector is closed.
+        m_connectionSelector.run();
+
+        // Shutdown the server.
+        shutdown();
+    }
+
     /**
      * This method shuts down the server; it is only ever called by the
      * server thread.
@@ -427,6 +523,7 @@ public class Server
             // gate and set the state to inactive.
             m_shutdownGate.open();
             m_shutdownGate = null;
+            m_connectionSelector = null;
             m_state = INACTIVE_STATE;
         }
         m_logger.log(Logger.LOG_DEBUG, "Shutdown complete.");
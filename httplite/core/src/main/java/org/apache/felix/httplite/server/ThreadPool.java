@@ -18,6 +18,7 @@
  */
 package org.apache.felix.httplite.server;
 
+import java.lang.reflect.Method;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
@@ -25,12 +26,16 @@ import java.util.List;
 import org.apache.felix.httplite.osgi.Logger;
 
 /**
- * This class implements a simple thread pool for servicing HTTP connections.
+ * This class implements a simple thread pool for servicing HTTP connections
+ * and requests.
  * The thread pool does not create any threads initially, but waits for
  * connections to be added to create threads. As connections are added, threads
  * are only created if they are needed up until the thread limit. If threads
  * are inactive for a period of time, then the threads terminate; the default
  * is 60000 milliseconds.
+ * Alternatively, if supported by the JVM (Java 21 or later), every connection
+ * or request can be serviced by a new virtual thread; there is no thread limit
+ * in this case.
 **/
 public class ThreadPool
 {
@@ -47,8 +52,15 @@ public class ThreadPool
     private int m_threadLimit = 0;
     private int m_threadCount = 0;
     private int m_threadAvailable = 0;
-    private final List m_connectionList = new ArrayList();
+    private final List m_taskList = new ArrayList();
     private final Logger m_logger;
+    /**
+     * The java.util.concurrent.ThreadFactory for virtual threads, null if
+     * platform threads are used. It is accessed reflectively, since this
+     * bundle runs on Java 1.4.
+     */
+    private final Object m_virtualThreadFactory;
+    private final Method m_newThreadMethod;
 
     /**
      * Constructs a thread pool with the specified thread limit and with
@@ -69,11 +81,60 @@ public class ThreadPool
      * @param logger Logger instance.
     **/
     public ThreadPool(int threadLimit, int threadTimeout, Logger logger)
+    {
+        this(threadLimit, threadTimeout, false, logger);
+    }
+
+    /**
+     * Constructs a thread pool with the specified thread limit and inactivity
+     * timeout, optionally using virtual threads. If virtual threads are requested
+     * but not supported by the JVM, the thread pool uses platform threads.
+     * @param threadLimit The maximum number of threads in the pool.
+     * @param threadTimeout The inactivity timeout for threads in milliseconds.
+     * @param virtualThreads Whether to service every task on a new virtual thread.
+     * @param logger Logger instance.
+    **/
+    public ThreadPool(int threadLimit, int threadTimeout, boolean virtualThreads, Logger logger)
     {
         m_threadLimit = threadLimit;
         m_threadTimeout = threadTimeout;
         m_logger = logger;
         m_state = Server.INACTIVE_STATE;
+
+        Object factory = null;
+        Method newThread = null;
+        if (virtualThreads)
+        {
+            try
+            {
+                // Thread.ofVirtual().name("httplite-", 0).factory()
+                Class builderClass = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual", new Class[0]).invoke(null, new Object[0]);
+                builder = builderClass.getMethod("name", new Class[] { String.class, Long.TYPE })
+                    .invoke(builder, new Object[] { "httplite-", new Long(0) });
+                factory = builderClass.getMethod("factory", new Class[0]).invoke(builder, new Object[0]);
+                newThread = Class.forName("java.util.concurrent.ThreadFactory")
+                    .getMethod("newThread", new Class[] { Runnable.class });
+            }
+            catch (Exception ex)
+            {
+                factory = null;
+                newThread = null;
+                m_logger.log(Logger.LOG_WARNING,
+                    "Virtual threads are not supported by this JVM, using platform threads.");
+            }
+        }
+        m_virtualThreadFactory = factory;
+        m_newThreadMethod = newThread;
+    }
+
+    /**
+     * Returns whether tasks are serviced by virtual threads.
+     * @return true if virtual threads are used.
+    **/
+    public boolean isVirtual()
+    {
+        return m_virtualThreadFactory != null;
     }
 
     /**
@@ -144,9 +205,10 @@ public class ThreadPool
                 }
                 gate = m_shutdownGate;
                 m_state = Server.STOPPING_STATE;
-                // Interrupt all threads that have been created by the
-                // thread pool.
-                m_group.interrupt();
+                // Wake up all idle threads of the thread pool. Busy threads
+                // are not interrupted, since an interrupt closes the channel
+                // of a request which is still being processed.
+                notifyAll();
             }
         }
 
@@ -163,22 +225,44 @@ public class ThreadPool
      * @throws java.lang.IllegalStateException If the thread pool is not in the
      *         <tt>ThreadPool.ACTIVE_STATE</tt> state.
     **/
-    public synchronized void addConnection(final Connection connection)
+    public void addConnection(final Connection connection)
     {
-        if (m_state == Server.ACTIVE_STATE)
+        addTask(new Runnable()
         {
-            // Add the new connection to the connection list.
-            m_connectionList.add(connection);
+            public void run()
+            {
+                processConnection(connection);
+            }
+        });
+    }
+
+    /**
+     * This method adds a task, e.g. a request read by the
+     * {@link ConnectionSelector}, to the thread pool for servicing.
+     * @param task the task.
+     * @throws java.lang.IllegalStateException If the thread pool is not in the
+     *         <tt>ThreadPool.ACTIVE_STATE</tt> state.
+    **/
+    public synchronized void addTask(final Runnable task)
+    {
+        if ((m_state == Server.ACTIVE_STATE) && (m_virtualThreadFactory != null))
+        {
+            startVirtualThread(task);
+        }
+        else if (m_state == Server.ACTIVE_STATE)
+        {
+            // Add the new task to the task list.
+            m_taskList.add(task);
             notify();
 
             // If there are not enough available threads to handle all outstanding
-            // connections and we still haven't reached our thread limit, then
+            // tasks and we still haven't reached our thread limit, then
             // add another thread.
-            if ((m_threadAvailable < m_connectionList.size())
+            if ((m_threadAvailable < m_taskList.size())
                 && (m_threadCount < m_threadLimit))
             {
                 // Increase our thread count, but not number of available threads,
-                // since the new thread will be used to service the new connection
+                // since the new thread will be used to service the new task
                 // and thus is not available.
                 m_threadCount++;
                 // Use simple integer for thread name for logging purposes.
@@ -195,7 +279,7 @@ public class ThreadPool
                 {
                     public void run()
                     {
-                        processConnections();
+                        processTasks();
                     }
                 }, Integer.toString(m_threadName)).start();
                 m_logger.log(Logger.LOG_DEBUG, "Created new thread for pool; count = "
@@ -209,11 +293,67 @@ public class ThreadPool
     }
 
     /**
-     * This method is the main loop for all threads servicing connections.
+     * Services a task on a new virtual thread, which ends with the task.
+     * Must be called while holding the lock of the thread pool.
+     * @param task the task.
     **/
-    private void processConnections()
+    private void startVirtualThread(final Runnable task)
     {
-        Connection connection;
+        Runnable runner = new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (RuntimeException ex)
+                {
+                    m_logger.log(Logger.LOG_ERROR, "Task failed due to unknown reason.", ex);
+                }
+                finally
+                {
+                    virtualThreadStopped();
+                }
+            }
+        };
+
+        Thread thread;
+        try
+        {
+            thread = (Thread) m_newThreadMethod.invoke(m_virtualThreadFactory,
+                new Object[] { runner });
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException("Unable to create a virtual thread: " + ex);
+        }
+        m_threadCount++;
+        thread.start();
+    }
+
+    private synchronized void virtualThreadStopped()
+    {
+        m_threadCount--;
+        // If we are stopping and the last thread is done, then
+        // open the shutdown gate to release all threads waiting
+        // for us to stop.
+        if ((m_state == Server.STOPPING_STATE) && (m_threadCount == 0)
+            && (m_shutdownGate != null))
+        {
+            m_shutdownGate.open();
+            m_shutdownGate = null;
+            m_state = Server.INACTIVE_STATE;
+            m_logger.log(Logger.LOG_DEBUG, "Server shutdown complete.");
+        }
+    }
+
+    /**
+     * This method is the main loop for all threads servicing tasks.
+    **/
+    private void processTasks()
+    {
+        Runnable task;
         while (true)
         {
             synchronized (this)
@@ -228,14 +368,14 @@ public class ThreadPool
                     // know if our timeout expires.
                     long start = System.currentTimeMillis();
                     long current = start;
-                    // Wait until there is a connection to service or until
+                    // Wait until there is a task to service or until
                     // the timeout expires; if the timeout is zero, then there
                     // is no timeout.
                     while (m_state == Server.ACTIVE_STATE
-                        && (m_connectionList.size() == 0)
+                        && (m_taskList.size() == 0)
                         && ((m_threadTimeout == 0) || ((current - start) < m_threadTimeout)))
                     {
-                        // Try to wait for another connection, but our timeout
+                        // Try to wait for another task, but our timeout
                         // expires then commit suicide.
                         wait(m_threadTimeout - (current - start));
                         current = System.currentTimeMillis();
@@ -247,30 +387,30 @@ public class ThreadPool
                     Thread.currentThread().interrupt();
                 }
 
-                // Set connection to null if we are going to commit suicide;
-                // otherwise get the first available connection for servicing.
-                if (m_connectionList.size() == 0)
+                // Set task to null if we are going to commit suicide;
+                // otherwise get the first available task for servicing.
+                if (m_taskList.size() == 0)
                 {
-                    connection = null;
+                    task = null;
                 }
                 else
                 {
-                    connection = (Connection) m_connectionList.remove(0);
+                    task = (Runnable) m_taskList.remove(0);
                 }
 
                 // Decrement number of available threads, since we will either
-                // start to service a connection at this point or we will commit
+                // start to service a task at this point or we will commit
                 // suicide.
                 m_threadAvailable--;
 
-                // If we do not have a connection, then we are committing
+                // If we do not have a task, then we are committing
                 // suicide due to inactivity or because we were interrupted
                 // and are stopping the thread pool.
-                if (connection == null)
+                if (task == null)
                 {
                     // One less thread in use.
                     m_threadCount--;
-                    if (Thread.interrupted())
+                    if (Thread.interrupted() || (m_state == Server.STOPPING_STATE))
                     {
                         m_logger.log(Logger.LOG_DEBUG,
                             "Pool thread dying due to interrupt.");
@@ -296,24 +436,40 @@ public class ThreadPool
                 }
             }
 
-            // Otherwise, we have a connection so process it.
-            // Note, we might have outstanding connections to
+            // Otherwise, we have a task so process it.
+            // Note, we might have outstanding tasks to
             // process even if we are stopping, so we cleaning
-            // service those remaining connections before stopping.
+            // service those remaining tasks before stopping.
             try
             {
-                connection.process();
-                m_logger.log(Logger.LOG_DEBUG, "Connection closed normally.");
-            }
-            catch (SocketTimeoutException ex)
-            {
-                m_logger.log(Logger.LOG_INFO, "Connection closed due to inactivity.");
+                task.run();
             }
-            catch (Exception ex)
+            catch (RuntimeException ex)
             {
-                m_logger.log(Logger.LOG_ERROR, "Connection close due to unknown reason.",
-                    ex);
+                m_logger.log(Logger.LOG_ERROR, "Task failed due to unknown reason.", ex);
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Services a connection until it is closed.
+     * @param connection the HTTP connection.
+    **/
+    private void processConnection(final Connection connection)
+    {
+        try
+        {
+            connection.process();
+            m_logger.log(Logger.LOG_DEBUG, "Connection closed normally.");
+        }
+        catch (SocketTimeoutException ex)
+        {
+            m_logger.log(Logger.LOG_INFO, "Connection closed due to inactivity.");
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Connection close due to unknown reason.",
+                ex);
+        }
+    }
+}
@@ -66,6 +66,14 @@ public class HttpServletResponseImpl implements HttpServletResponse
     private int m_statusCode = HttpURLConnection.HTTP_OK;
     private String m_customStatusMessage = null;
     private boolean m_headersWritten = false;
+    /**
+     * Set when headers with a content length have been written.
+     */
+    private boolean m_delimited = false;
+    /**
+     * Set when a response without a content length has been written.
+     */
+    private boolean m_undelimited = false;
 
     /**
      * Constructs an HTTP response for the specified server and request.
@@ -97,6 +105,7 @@ public class HttpServletResponseImpl implements HttpServletResponse
             setContentLength(m_buffer.size());
         }
 
+        m_delimited = m_headers.containsKey(HttpConstants.HEADER_CONTENT_LENGTH);
         m_out.write(buildResponse(m_statusCode, m_headers, m_customStatusMessage, null));
         
         if (m_cookies != null)
@@ -125,6 +134,17 @@ public class HttpServletResponseImpl implements HttpServletResponse
         }
     }
 
+    /**
+     * A response can be followed by another response on the same connection
+     * if the client is able to determine where it ends.
+     * 
+     * @return true if all written responses declared their content length.
+     */
+    public boolean isPersistent()
+    {
+        return m_delimited && !m_undelimited;
+    }
+
     /**
      * Copy the contents of the input to the output stream, then close the input stream.
      * @param inputStream input stream
@@ -200,6 +220,7 @@ public class HttpServletResponseImpl implements HttpServletResponse
     **/
     public void sendMissingHostResponse() throws IOException
     {
+        m_undelimited = true;
         m_out.write(buildResponse(HttpURLConnection.HTTP_BAD_REQUEST));
         m_out.flush();
     }
@@ -210,6 +231,7 @@ public class HttpServletResponseImpl implements HttpServletResponse
     **/
     public void sendNotImplementedResponse() throws IOException
     {
+        m_undelimited = true;
         m_out.write(buildResponse(HttpURLConnection.HTTP_NOT_IMPLEMENTED));
         m_out.flush();
     }
@@ -238,6 +260,7 @@ public class HttpServletResponseImpl implements HttpServletResponse
         sb.append(newURI);
         sb.append(HttpConstants.HEADER_DELEMITER);
 
+        m_undelimited = true;
         m_out.write(buildResponse(301, null, sb.toString(), null));
         m_out.flush();
     }
@@ -248,6 +271,7 @@ public class HttpServletResponseImpl implements HttpServletResponse
     **/
     public void sendNotFoundResponse() throws IOException
     {
+        m_undelimited = true;
         m_out.write(buildResponse(HttpURLConnection.HTTP_NOT_FOUND));
         m_out.flush();
     }
@@ -528,6 +552,7 @@ public class HttpServletResponseImpl implements HttpServletResponse
             throw new IllegalStateException(
                 "Response has already been committed, unable to send error.");
 
+        m_undelimited = true;
         m_out.write(buildResponse(sc, msg));
         m_out.flush();
     }
@@ -552,6 +577,7 @@ public class HttpServletResponseImpl implements HttpServletResponse
 
         Map map = new HashMap();
         map.put("Location", location);
+        m_undelimited = true;
         m_out.write(buildResponse(307, map, null, null));
         m_out.flush();
     }
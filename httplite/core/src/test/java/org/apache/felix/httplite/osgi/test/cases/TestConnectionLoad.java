@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.osgi.test.cases;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import javax.servlet.ServletException;
+
+import org.apache.felix.httplite.osgi.test.AbstractHttpliteTestCase;
+import org.apache.felix.httplite.osgi.test.BasicTestingServlet;
+import org.osgi.service.http.HttpService;
+import org.osgi.service.http.NamespaceException;
+
+
+/**
+ * Tests for persistent connections: many idle keep-alive clients must not
+ * prevent the (small) thread pool from serving requests. The number of
+ * connections can be raised for a load run with
+ * <tt>-Dhttplite.test.connections=1000</tt>.
+ *
+ */
+public class TestConnectionLoad extends AbstractHttpliteTestCase
+{
+
+    private static final int CONNECTIONS = Integer.getInteger( "httplite.test.connections", 50 ).intValue();
+    private static final int ROUNDS = 3;
+    private static final String CONTENT = "test content";
+
+
+    /**
+     * Opens many persistent connections and sends several requests over each
+     * of them while the other connections are idle.
+     * 
+     * @throws ServletException
+     * @throws NamespaceException
+     * @throws IOException
+     */
+    public void testIdleKeepAliveConnections() throws ServletException, NamespaceException, IOException
+    {
+        HttpService httpService = getHTTPService( registry.getBundleContext() );
+        httpService.registerServlet( "/test", new BasicTestingServlet( CONTENT, false ), null, null );
+
+        Socket[] sockets = new Socket[CONNECTIONS];
+        try
+        {
+            for ( int i = 0; i < CONNECTIONS; ++i )
+            {
+                sockets[i] = new Socket( "localhost", DEFAULT_PORT );
+                sockets[i].setSoTimeout( 10000 );
+            }
+
+            for ( int round = 0; round < ROUNDS; ++round )
+            {
+                // Send a request on every connection before reading any response,
+                // so all connections are in use at the same time.
+                for ( int i = 0; i < CONNECTIONS; ++i )
+                {
+                    sendRequest( sockets[i].getOutputStream(), "/test" );
+                }
+                for ( int i = 0; i < CONNECTIONS; ++i )
+                {
+                    assertEquals( CONTENT, readResponse( sockets[i].getInputStream() ) );
+                }
+            }
+        }
+        finally
+        {
+            for ( int i = 0; i < CONNECTIONS; ++i )
+            {
+                if ( sockets[i] != null )
+                {
+                    sockets[i].close();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Sends several requests in a single write.
+     * 
+     * @throws ServletException
+     * @throws NamespaceException
+     * @throws IOException
+     */
+    public void testPipelinedRequests() throws ServletException, NamespaceException, IOException
+    {
+        HttpService httpService = getHTTPService( registry.getBundleContext() );
+        httpService.registerServlet( "/test", new BasicTestingServlet( CONTENT, false ), null, null );
+
+        Socket socket = new Socket( "localhost", DEFAULT_PORT );
+        try
+        {
+            socket.setSoTimeout( 10000 );
+            ByteArrayOutputStream requests = new ByteArrayOutputStream();
+            for ( int i = 0; i < 10; ++i )
+            {
+                sendRequest( requests, "/test" );
+            }
+            socket.getOutputStream().write( requests.toByteArray() );
+
+            for ( int i = 0; i < 10; ++i )
+            {
+                assertEquals( CONTENT, readResponse( socket.getInputStream() ) );
+            }
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+
+    /**
+     * A request body over the limit is refused before it is read.
+     * 
+     * @throws ServletException
+     * @throws NamespaceException
+     * @throws IOException
+     */
+    public void testRequestBodyTooLarge() throws ServletException, NamespaceException, IOException
+    {
+        HttpService httpService = getHTTPService( registry.getBundleContext() );
+        httpService.registerServlet( "/test", new BasicTestingServlet( CONTENT, false ), null, null );
+
+        assertEquals( 413, sendHeader( "Content-Length: " + Integer.MAX_VALUE ) );
+        assertEquals( 413, sendHeader( "Content-Length: 99999999999" ) );
+    }
+
+
+    /**
+     * A request body larger than the read buffer is received in parts.
+     * 
+     * @throws ServletException
+     * @throws NamespaceException
+     * @throws IOException
+     */
+    public void testRequestBodyInParts() throws ServletException, NamespaceException, IOException
+    {
+        HttpService httpService = getHTTPService( registry.getBundleContext() );
+        BasicTestingServlet servlet = new BasicTestingServlet( CONTENT, false );
+        httpService.registerServlet( "/test", servlet, null, null );
+
+        Socket socket = new Socket( "localhost", DEFAULT_PORT );
+        try
+        {
+            socket.setSoTimeout( 10000 );
+            OutputStream out = socket.getOutputStream();
+            byte[] part = new byte[10000];
+            out.write( ( "POST /test HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\nContent-Length: "
+                + ( part.length * 10 ) + "\r\n\r\n" ).getBytes( "ISO-8859-1" ) );
+            for ( int i = 0; i < 10; ++i )
+            {
+                out.write( part );
+                out.flush();
+            }
+            assertEquals( "200", readLine( socket.getInputStream() ).split( " " )[1] );
+            assertTrue( servlet.isPostCalled() );
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+
+    /**
+     * Chunked request bodies are not supported.
+     * 
+     * @throws ServletException
+     * @throws NamespaceException
+     * @throws IOException
+     */
+    public void testChunkedRequestBody() throws ServletException, NamespaceException, IOException
+    {
+        HttpService httpService = getHTTPService( registry.getBundleContext() );
+        httpService.registerServlet( "/test", new BasicTestingServlet( CONTENT, false ), null, null );
+
+        assertEquals( 501, sendHeader( "Transfer-Encoding: chunked" ) );
+    }
+
+
+    /**
+     * Sends a POST request header and returns the status of the response,
+     * after which the server must have closed the connection.
+     */
+    private static int sendHeader( String header ) throws IOException
+    {
+        Socket socket = new Socket( "localhost", DEFAULT_PORT );
+        try
+        {
+            socket.setSoTimeout( 10000 );
+            socket.getOutputStream().write( ( "POST /test HTTP/1.1\r\nHost: localhost\r\n" + header
+                + "\r\n\r\n" ).getBytes( "ISO-8859-1" ) );
+            InputStream in = socket.getInputStream();
+            String statusLine = readLine( in );
+            while ( in.read() >= 0 )
+            {
+                // Read up to the end of the stream
+            }
+            return Integer.parseInt( statusLine.split( " " )[1] );
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+
+    private static void sendRequest( OutputStream out, String path ) throws IOException
+    {
+        out.write( ( "GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n" ).getBytes( "ISO-8859-1" ) );
+        out.flush();
+    }
+
+
+    /**
+     * Reads a response delimited by its content length.
+     * 
+     * @return the response body
+     */
+    private static String readResponse( InputStream in ) throws IOException
+    {
+        int contentLength = -1;
+        for ( String line = readLine( in ); line.length() > 0; line = readLine( in ) )
+        {
+            if ( line.toLowerCase().startsWith( "content-length:" ) )
+            {
+                contentLength = Integer.parseInt( line.substring( "content-length:".length() ).trim() );
+            }
+        }
+        assertTrue( "Missing content length", contentLength >= 0 );
+
+        byte[] body = new byte[contentLength];
+        int read = 0;
+        while ( read < contentLength )
+        {
+            int n = in.read( body, read, contentLength - read );
+            assertTrue( "Unexpected end of stream", n > 0 );
+            read += n;
+        }
+        return new String( body, "ISO-8859-1" );
+    }
+
+
+    private static String readLine( InputStream in ) throws IOException
+    {
+        StringBuffer sb = new StringBuffer();
+        for ( int c = in.read(); c != '\n'; c = in.read() )
+        {
+            assertTrue( "Unexpected end of stream", c >= 0 );
+            if ( c != '\r' )
+            {
+                sb.append( ( char ) c );
+            }
+        }
+        return sb.toString();
+    }
+}
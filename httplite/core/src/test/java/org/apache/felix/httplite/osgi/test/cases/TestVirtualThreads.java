@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.osgi.test.cases;
+
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.felix.httplite.osgi.test.AbstractHttpliteTestCase;
+import org.apache.felix.httplite.server.Server;
+import org.osgi.service.http.HttpService;
+import org.osgi.service.http.NamespaceException;
+
+
+/**
+ * Tests for servicing requests on virtual threads. On JVMs without virtual
+ * threads the server must fall back to platform threads.
+ *
+ */
+public class TestVirtualThreads extends AbstractHttpliteTestCase
+{
+
+    protected void setUp() throws Exception
+    {
+        System.setProperty( Server.CONFIG_PROPERTY_THREADPOOL_VIRTUAL_PROP, "true" );
+        super.setUp();
+    }
+
+
+    protected void tearDown() throws Exception
+    {
+        super.tearDown();
+        System.getProperties().remove( Server.CONFIG_PROPERTY_THREADPOOL_VIRTUAL_PROP );
+    }
+
+
+    /**
+     * @throws ServletException
+     * @throws NamespaceException
+     * @throws IOException
+     */
+    public void testRequestThread() throws Exception
+    {
+        HttpService httpService = getHTTPService( registry.getBundleContext() );
+
+        final Thread[] servletThread = new Thread[1];
+        httpService.registerServlet( "/thread", new HttpServlet()
+        {
+            protected void doGet( HttpServletRequest req, HttpServletResponse resp ) throws ServletException,
+                IOException
+            {
+                servletThread[0] = Thread.currentThread();
+                resp.getOutputStream().print( "ok" );
+            }
+        }, null, null );
+
+        HttpURLConnection client = getConnection( DEFAULT_BASE_URL + "/thread", "GET" );
+        client.connect();
+        assertEquals( 200, client.getResponseCode() );
+        assertEquals( "ok", readInputAsString( client.getInputStream() ) );
+
+        assertNotNull( servletThread[0] );
+        assertEquals( hasVirtualThreads(), isVirtual( servletThread[0] ) );
+    }
+
+
+    private static boolean hasVirtualThreads()
+    {
+        try
+        {
+            Thread.class.getMethod( "ofVirtual", new Class[0] );
+            return true;
+        }
+        catch ( NoSuchMethodException e )
+        {
+            return false;
+        }
+    }
+
+
+    private static boolean isVirtual( Thread thread ) throws Exception
+    {
+        if ( !hasVirtualThreads() )
+        {
+            return false;
+        }
+        Method isVirtual = Thread.class.getMethod( "isVirtual", new Class[0] );
+        return ( ( Boolean ) isVirtual.invoke( thread, new Object[0] ) ).booleanValue();
+    }
+}
@@ -43,6 +43,11 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      */
     public static final  String IM_FIELD = "__IM";
 
+    /**
+     * Field slots field, holding the slots of the fields at the index assigned by the manipulator.
+     */
+    public static final  String SLOTS_FIELD = "__SLOTS";
+
     /**
      * All POJO method will be renamed by using this prefix.
      */
@@ -88,6 +93,11 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      */
     private static final  String SET = "onSet";
 
+    /**
+     * Field slot class.
+     */
+    private static final  String SLOT = "org/apache/felix/ipojo/FieldSlot";
+
     /**
      * The manipulator. It has already collected all the metadata about the class.
      */
@@ -104,6 +114,11 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      */
     private Set<String> m_fields;
 
+    /**
+     * Fields detected in the class, in the order of their slots.
+     */
+    private List<String> m_slots;
+
     /**
      * List of methods contained in the class.
      * This set contains method id.
@@ -144,6 +159,7 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         super(Opcodes.ASM5, visitor);
         m_manipulator = manipulator;
         m_fields = manipulator.getFields().keySet();
+        m_slots = new ArrayList<String>(m_fields);
         m_visitedMethods = manipulator.getMethods();
     }
 
@@ -166,6 +182,7 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         m_superclass = superName;
         addPOJOInterface(version, access, name, signature, superName, interfaces);
         addIMField();
+        addSlotsField();
         addFlagsForInnerClassMethods();
     }
 
@@ -601,6 +618,16 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         fv.visitEnd();
     }
 
+    /**
+     * Add the field slots field (__SLOTS).
+     * The field is declared as an object array, so reflecting on the class
+     * does not require the field slot class of newer runtimes.
+     */
+    private void addSlotsField() {
+        FieldVisitor fv = super.visitField(0, SLOTS_FIELD, "[Ljava/lang/Object;", null, null);
+        fv.visitEnd();
+    }
+
     /**
      * Add the boolean flag fields for methods from inner classes.
      */
@@ -738,6 +765,36 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         }
         mv.visitLabel(endif);
 
+        if (! m_slots.isEmpty()) {
+            // Get the field slots. Runtimes without field slots throw a linkage
+            // error, the fields are then accessed by name.
+            Label tryStart = new Label();
+            Label tryEnd = new Label();
+            Label noSlots = new Label();
+            Label slotsDone = new Label();
+            mv.visitTryCatchBlock(tryStart, tryEnd, noSlots, "java/lang/LinkageError");
+            mv.visitLabel(tryStart);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
+            pushInt(mv, m_slots.size());
+            mv.visitTypeInsn(ANEWARRAY, "java/lang/String");
+            for (int i = 0; i < m_slots.size(); i++) {
+                mv.visitInsn(DUP);
+                pushInt(mv, i);
+                mv.visitLdcInsn(m_slots.get(i));
+                mv.visitInsn(AASTORE);
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", "getFieldSlots",
+                    "([Ljava/lang/String;)[L" + SLOT + ";", false);
+            mv.visitFieldInsn(PUTFIELD, m_owner, SLOTS_FIELD, "[Ljava/lang/Object;");
+            mv.visitLabel(tryEnd);
+            mv.visitJumpInsn(GOTO, slotsDone);
+            mv.visitLabel(noSlots);
+            mv.visitInsn(POP);
+            mv.visitLabel(slotsDone);
+        }
+
         mv.visitVarInsn(ALOAD, 0);
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", "getRegistredMethods",
@@ -807,6 +864,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitInsn(RETURN);
         mv.visitLabel(l2);
 
+        visitSlotSet(mv, name, Type.getArgumentTypes(desc)[0]);
+
         mv.visitVarInsn(ALOAD, 0);
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
@@ -843,6 +902,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitInsn(ARETURN);
         mv.visitLabel(l1);
 
+        visitSlotGet(mv, name, Type.getReturnType(desc));
+
         mv.visitVarInsn(ALOAD, 0);
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
@@ -892,6 +953,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
 
                 mv.visitLabel(l1);
 
+                visitSlotGet(mv, name, type);
+
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
@@ -925,6 +988,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitInsn(LRETURN);
                 mv.visitLabel(l1);
 
+                visitSlotGet(mv, name, type);
+
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
@@ -959,6 +1024,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitInsn(DRETURN);
                 mv.visitLabel(l1);
 
+                visitSlotGet(mv, name, type);
+
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
@@ -993,6 +1060,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitInsn(FRETURN);
                 mv.visitLabel(l1);
 
+                visitSlotGet(mv, name, type);
+
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
@@ -1023,6 +1092,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitInsn(ARETURN);
                 mv.visitLabel(l1);
 
+                visitSlotGet(mv, name, type);
+
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
@@ -1077,6 +1148,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitInsn(RETURN);
                 mv.visitLabel(l22);
 
+                visitSlotSet(mv, name, type);
+
                 mv.visitTypeInsn(NEW, boxingType);
                 mv.visitInsn(DUP);
                 mv.visitVarInsn(type.getOpcode(ILOAD), 1);
@@ -1117,6 +1190,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitInsn(RETURN);
                 mv.visitLabel(l23);
 
+                visitSlotSet(mv, name, type);
+
                 mv.visitTypeInsn(NEW, boxingType);
                 mv.visitInsn(DUP);
                 mv.visitVarInsn(type.getOpcode(ILOAD), 1);
@@ -1150,6 +1225,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitInsn(RETURN);
                 mv.visitLabel(l24);
 
+                visitSlotSet(mv, name, type);
+
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
@@ -1169,4 +1246,94 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitEnd();
     }
 
+    /**
+     * Generates the read of a field through its slot, if the instance manager
+     * provided the field slots. Otherwise the generated code continues with the
+     * instructions following this call.
+     * @param mv : the getter method visitor
+     * @param name : field name
+     * @param type : field type
+     */
+    private void visitSlotGet(MethodVisitor mv, String name, Type type) {
+        Label noSlots = new Label();
+        visitSlot(mv, name, noSlots);
+        mv.visitVarInsn(ALOAD, 0);
+        if (isPrimitive(type)) {
+            mv.visitMethodInsn(INVOKEVIRTUAL, SLOT, "get" + getSlotSuffix(type),
+                    "(Ljava/lang/Object;)" + type.getDescriptor(), false);
+        } else {
+            mv.visitMethodInsn(INVOKEVIRTUAL, SLOT, "get", "(Ljava/lang/Object;)Ljava/lang/Object;", false);
+            mv.visitTypeInsn(CHECKCAST, type.getInternalName());
+        }
+        mv.visitInsn(type.getOpcode(IRETURN));
+        mv.visitLabel(noSlots);
+        mv.visitInsn(POP);
+    }
+
+    /**
+     * Generates the write of a field through its slot, if the instance manager
+     * provided the field slots. Otherwise the generated code continues with the
+     * instructions following this call.
+     * @param mv : the setter method visitor
+     * @param name : field name
+     * @param type : field type
+     */
+    private void visitSlotSet(MethodVisitor mv, String name, Type type) {
+        Label noSlots = new Label();
+        visitSlot(mv, name, noSlots);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(type.getOpcode(ILOAD), 1);
+        if (isPrimitive(type)) {
+            mv.visitMethodInsn(INVOKEVIRTUAL, SLOT, "set" + getSlotSuffix(type),
+                    "(Ljava/lang/Object;" + type.getDescriptor() + ")V", false);
+        } else {
+            mv.visitMethodInsn(INVOKEVIRTUAL, SLOT, "set", "(Ljava/lang/Object;Ljava/lang/Object;)V", false);
+        }
+        mv.visitInsn(RETURN);
+        mv.visitLabel(noSlots);
+        mv.visitInsn(POP);
+    }
+
+    /**
+     * Pushes the slot of a field, or jumps to the given label with the
+     * <code>null</code> slot array on the stack.
+     * @param mv : the method visitor
+     * @param name : field name
+     * @param noSlots : the label of the name based access
+     */
+    private void visitSlot(MethodVisitor mv, String name, Label noSlots) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, m_owner, SLOTS_FIELD, "[Ljava/lang/Object;");
+        mv.visitInsn(DUP);
+        mv.visitJumpInsn(IFNULL, noSlots);
+        pushInt(mv, m_slots.indexOf(name));
+        mv.visitInsn(AALOAD);
+        mv.visitTypeInsn(CHECKCAST, SLOT);
+    }
+
+    private static boolean isPrimitive(Type type) {
+        return type.getSort() != Type.OBJECT && type.getSort() != Type.ARRAY;
+    }
+
+    /**
+     * @param type : a primitive type
+     * @return the suffix of the {@link #SLOT} accessors of the type, e.g. <code>Int</code>
+     */
+    private static String getSlotSuffix(Type type) {
+        String className = type.getClassName();
+        return Character.toUpperCase(className.charAt(0)) + className.substring(1);
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
 }
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo;
+
+/**
+ * Field Slot Fake.
+ * We're using a fake to avoid the cyclic build dependency:
+ * manipulator -> ipojo -> maven-ipojo-plugin -> manipulator
+ */
+public class FieldSlot {
+
+    private Object m_value;
+
+    public Object get(Object pojo) {
+        return m_value;
+    }
+
+    public void set(Object pojo, Object value) {
+        m_value = value;
+    }
+
+    public int getInt(Object pojo) {
+        return ((Integer) m_value).intValue();
+    }
+
+    public void setInt(Object pojo, int value) {
+        m_value = value;
+    }
+
+    public long getLong(Object pojo) {
+        return ((Long) m_value).longValue();
+    }
+
+    public void setLong(Object pojo, long value) {
+        m_value = value;
+    }
+
+}
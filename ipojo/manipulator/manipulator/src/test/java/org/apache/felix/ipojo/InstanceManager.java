@@ -36,6 +36,18 @@ public class InstanceManager {
         return null;
     }
 
+    public FieldSlot[] getFieldSlots(String[] fields) {
+        return null;
+    }
+
+    public Object onGet(Object pojo, String fieldName) {
+        return null;
+    }
+
+    public void onSet(Object pojo, String fieldName, Object value) {
+
+    }
+
     public void onEntry(Object pojo, String methodId, Object[] args) {
 
     }
@@ -24,14 +24,18 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.HashSet;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import org.apache.felix.ipojo.FieldSlot;
 import org.apache.felix.ipojo.InstanceManager;
 import org.apache.felix.ipojo.Pojo;
 import org.junit.Ignore;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.util.CheckClassAdapter;
 
@@ -149,6 +153,64 @@ public class ManipulatorTest extends TestCase {
 
     }
 
+    public void testFieldSlots() throws Exception {
+        InstanceManager im = Mockito.mock(InstanceManager.class);
+        Mockito.when(im.getRegistredFields()).thenReturn(
+                new HashSet<String>(Arrays.asList("m_name", "m_count", "m_total", "m_values")));
+        final FieldSlot[][] slots = new FieldSlot[1][];
+        Mockito.when(im.getFieldSlots(Mockito.any(String[].class))).thenAnswer(new Answer<FieldSlot[]>() {
+            public FieldSlot[] answer(InvocationOnMock invocation) throws Throwable {
+                String[] fields = (String[]) invocation.getArguments()[0];
+                slots[0] = new FieldSlot[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    slots[0][i] = new FieldSlot();
+                }
+                return slots[0];
+            }
+        });
+        Object pojo = createManagedFields(im);
+
+        int[] values = new int[] {1, 2};
+        pojo.getClass().getMethod("setName", String.class).invoke(pojo, "name");
+        pojo.getClass().getMethod("setCount", int.class).invoke(pojo, 42);
+        pojo.getClass().getMethod("setTotal", long.class).invoke(pojo, 1L << 40);
+        pojo.getClass().getMethod("setValues", int[].class).invoke(pojo, values);
+        Assert.assertEquals("name", pojo.getClass().getMethod("getName").invoke(pojo));
+        Assert.assertEquals(42, pojo.getClass().getMethod("getCount").invoke(pojo));
+        Assert.assertEquals(1L << 40, pojo.getClass().getMethod("getTotal").invoke(pojo));
+        Assert.assertSame(values, pojo.getClass().getMethod("getValues").invoke(pojo));
+
+        // All the values went through the slots, and not through the instance manager.
+        Assert.assertEquals(4, slots[0].length);
+        Mockito.verify(im, Mockito.never()).onGet(Mockito.any(), Mockito.anyString());
+        Mockito.verify(im, Mockito.never()).onSet(Mockito.any(), Mockito.anyString(), Mockito.any());
+    }
+
+    public void testFieldAccessWithoutSlots() throws Exception {
+        // Runtimes without field slots
+        InstanceManager im = Mockito.mock(InstanceManager.class);
+        Mockito.when(im.getRegistredFields()).thenReturn(new HashSet<String>(Arrays.asList("m_count")));
+        Mockito.when(im.getFieldSlots(Mockito.any(String[].class))).thenThrow(new NoSuchMethodError());
+        Mockito.when(im.onGet(Mockito.any(), Mockito.eq("m_count"))).thenReturn(5);
+        Object pojo = createManagedFields(im);
+
+        Assert.assertEquals(5, pojo.getClass().getMethod("getCount").invoke(pojo));
+        pojo.getClass().getMethod("setCount", int.class).invoke(pojo, 2);
+        Mockito.verify(im).onSet(pojo, "m_count", 2);
+    }
+
+    private Object createManagedFields(InstanceManager im) throws Exception {
+        Manipulator manipulator = new Manipulator(this.getClass().getClassLoader());
+        byte[] origin = getBytesFromFile(new File("target/test-classes/test/ManagedFields.class"));
+        manipulator.prepare(origin);
+        byte[] clazz = manipulator.manipulate(origin);
+        ManipulatedClassLoader classloader = new ManipulatedClassLoader("test.ManagedFields", clazz);
+        Class cl = classloader.findClass("test.ManagedFields");
+        Constructor cst = cl.getDeclaredConstructor(InstanceManager.class);
+        cst.setAccessible(true);
+        return cst.newInstance(im);
+    }
+
     public void testManipulatingTheNonSunPOJO() throws Exception {
         Manipulator manipulator = new Manipulator(this.getClass().getClassLoader());
         byte[] origin = getBytesFromFile(new File("target/test-classes/test/NonSunClass.class"));
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package test;
+
+public class ManagedFields {
+
+    private String m_name;
+
+    private int m_count;
+
+    private long m_total;
+
+    private int[] m_values;
+
+    public String getName() {
+        return m_name;
+    }
+
+    public void setName(String name) {
+        m_name = name;
+    }
+
+    public int getCount() {
+        return m_count;
+    }
+
+    public void setCount(int count) {
+        m_count = count;
+    }
+
+    public long getTotal() {
+        return m_total;
+    }
+
+    public void setTotal(long total) {
+        m_total = total;
+    }
+
+    public int[] getValues() {
+        return m_values;
+    }
+
+    public void setValues(int[] values) {
+        m_values = values;
+    }
+
+}
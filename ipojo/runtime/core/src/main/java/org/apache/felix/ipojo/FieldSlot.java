@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.ipojo;
+
+import org.apache.felix.ipojo.util.Logger;
+
+/**
+ * Per-field state of a field monitored by field interceptors: the (immutable
+ * once configured) interceptor list and the last value injected or set.
+ * <p>
+ * Manipulated classes get the slots of their fields once, from
+ * {@link InstanceManager#getFieldSlots(String[])}, and then access managed
+ * fields through the slot at the index assigned by the manipulator, without
+ * looking up the field by name. The primitive accessors avoid boxing in the
+ * generated code; the interceptors still receive boxed values.
+ * Classes manipulated by older manipulators, or running on older runtimes,
+ * use {@link InstanceManager#onGet(Object, String)} and
+ * {@link InstanceManager#onSet(Object, String, Object)} which dispatch to the
+ * same slots.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public final class FieldSlot {
+
+    /**
+     * The field name.
+     */
+    private final String m_name;
+
+    /**
+     * The logger used to report injection conflicts.
+     */
+    private final Logger m_logger;
+
+    /**
+     * The interceptors monitoring the field.
+     */
+    FieldInterceptor[] m_interceptors;
+
+    /**
+     * The value managed by the container.
+     */
+    volatile Object m_value;
+
+    /**
+     * Creates a slot.
+     *
+     * @param name   the field name
+     * @param logger the logger of the instance
+     */
+    FieldSlot(String name, Logger logger) {
+        m_name = name;
+        m_logger = logger;
+    }
+
+    /**
+     * Gets the value to inject in the field.
+     * The method asks to each interceptor monitoring the field which value need
+     * to be injected. If the value changes, the interceptors are notified of the
+     * new value.
+     *
+     * @param pojo the pojo object on which the field was get
+     * @return the value decided by the last asked interceptor
+     * @see InstanceManager#onGet(Object, String)
+     */
+    public Object get(Object pojo) {
+        Object initialValue = m_value; // Volatile read.
+        FieldInterceptor[] list = m_interceptors; // Immutable list.
+        if (list.length == 1) {
+            // Fast path: a single interceptor, no conflict detection needed.
+            FieldInterceptor interceptor = list[0];
+            Object result = interceptor.onGet(pojo, m_name, initialValue);
+            if (result != initialValue) {
+                m_value = result;
+                interceptor.onSet(pojo, m_name, result);
+            }
+            return result;
+        }
+
+        Object result = initialValue;
+        boolean hasChanged = false;
+        for (int i = 0; i < list.length; i++) {
+            Object handlerResult = list[i].onGet(pojo, m_name, initialValue);
+            if (handlerResult == initialValue) {
+                continue; // Non-binding case (default implementation).
+            } else {
+                if (result != initialValue) {
+                    //TODO analyze impact of removing conflict detection
+                    if ((handlerResult != null && !handlerResult.equals(result)) || (result != null && handlerResult == null)) {
+                        m_logger.log(
+                                Logger.WARNING,
+                                "A conflict was detected on the injection of "
+                                        + m_name
+                        );
+                    }
+                }
+                result = handlerResult;
+                hasChanged = true;
+            }
+        }
+        if (hasChanged) {
+            // A change occurs => notify the change
+            m_value = result;
+            for (int i = 0; i < list.length; i++) {
+                list[i].onSet(pojo, m_name, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the value of the field and notifies the interceptors.
+     *
+     * @param pojo  the pojo object on which the field was set
+     * @param value the new value of the field
+     * @see InstanceManager#onSet(Object, String, Object)
+     */
+    public void set(Object pojo, Object value) {
+        m_value = value; // Volatile write.
+        FieldInterceptor[] list = m_interceptors;
+        for (int i = 0; i < list.length; i++) {
+            list[i].onSet(pojo, m_name, value);
+        }
+    }
+
+    public boolean getBoolean(Object pojo) {
+        return ((Boolean) get(pojo)).booleanValue();
+    }
+
+    public void setBoolean(Object pojo, boolean value) {
+        set(pojo, Boolean.valueOf(value));
+    }
+
+    public byte getByte(Object pojo) {
+        return ((Byte) get(pojo)).byteValue();
+    }
+
+    public void setByte(Object pojo, byte value) {
+        set(pojo, Byte.valueOf(value));
+    }
+
+    public short getShort(Object pojo) {
+        return ((Short) get(pojo)).shortValue();
+    }
+
+    public void setShort(Object pojo, short value) {
+        set(pojo, Short.valueOf(value));
+    }
+
+    public char getChar(Object pojo) {
+        return ((Character) get(pojo)).charValue();
+    }
+
+    public void setChar(Object pojo, char value) {
+        set(pojo, Character.valueOf(value));
+    }
+
+    public int getInt(Object pojo) {
+        return ((Integer) get(pojo)).intValue();
+    }
+
+    public void setInt(Object pojo, int value) {
+        set(pojo, Integer.valueOf(value));
+    }
+
+    public long getLong(Object pojo) {
+        return ((Long) get(pojo)).longValue();
+    }
+
+    public void setLong(Object pojo, long value) {
+        set(pojo, Long.valueOf(value));
+    }
+
+    public float getFloat(Object pojo) {
+        return ((Float) get(pojo)).floatValue();
+    }
+
+    public void setFloat(Object pojo, float value) {
+        set(pojo, Float.valueOf(value));
+    }
+
+    public double getDouble(Object pojo) {
+        return ((Double) get(pojo)).doubleValue();
+    }
+
+    public void setDouble(Object pojo, double value) {
+        set(pojo, Double.valueOf(value));
+    }
+}
@@ -100,6 +100,14 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      */
     private Map m_fieldRegistration;
 
+    /**
+     * The map [field, {@link FieldSlot}] giving, for each monitored field, the
+     * interceptor list and the value managed by the container in a single lookup.
+     * Slots are created when the field interceptors are registered, and so, once
+     * configured, this map can't change.
+     */
+    private Map m_fieldSlots;
+
     /**
      * the map [method identifier, {@link MethodInterceptor} list] interested
      * by the method.
@@ -139,7 +147,8 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
 
     /**
      * The map of [field, value], storing POJO managed
-     * field value.
+     * field value for fields without registered interceptors.
+     * Values of monitored fields are stored in their {@link FieldSlot}.
      */
     private Map m_fields = new HashMap();
 
@@ -368,7 +377,10 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
     public synchronized Object getFieldValue(String fieldName, Object pojo) {
         Object setByContainer = null;
 
-        if (m_fields != null) {
+        FieldSlot slot = getFieldSlot(fieldName);
+        if (slot != null) {
+            setByContainer = slot.m_value;
+        } else if (m_fields != null) {
             setByContainer = m_fields.get(fieldName);
         }
 
@@ -1060,25 +1072,50 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @param interceptor the field interceptor object
      */
     public void register(FieldMetadata field, FieldInterceptor interceptor) {
+        String name = field.getFieldName();
         if (m_fieldRegistration == null) {
             m_fieldRegistration = new HashMap();
-            m_fieldRegistration.put(field.getFieldName(), new FieldInterceptor[]{interceptor});
+            m_fieldSlots = new HashMap();
+        }
+        FieldInterceptor[] list = (FieldInterceptor[]) m_fieldRegistration.get(name);
+        FieldInterceptor[] newList;
+        if (list == null) {
+            newList = new FieldInterceptor[]{interceptor};
         } else {
-            FieldInterceptor[] list = (FieldInterceptor[]) m_fieldRegistration.get(field.getFieldName());
-            if (list == null) {
-                m_fieldRegistration.put(field.getFieldName(), new FieldInterceptor[]{interceptor});
-            } else {
-                for (int j = 0; j < list.length; j++) {
-                    if (list[j] == interceptor) {
-                        return;
-                    }
+            for (int j = 0; j < list.length; j++) {
+                if (list[j] == interceptor) {
+                    return;
                 }
-                FieldInterceptor[] newList = new FieldInterceptor[list.length + 1];
-                System.arraycopy(list, 0, newList, 0, list.length);
-                newList[list.length] = interceptor;
-                m_fieldRegistration.put(field.getFieldName(), newList);
             }
+            newList = new FieldInterceptor[list.length + 1];
+            System.arraycopy(list, 0, newList, 0, list.length);
+            newList[list.length] = interceptor;
+        }
+        m_fieldRegistration.put(name, newList);
+
+        FieldSlot slot = (FieldSlot) m_fieldSlots.get(name);
+        if (slot == null) {
+            slot = new FieldSlot(name, m_logger);
+            synchronized (this) {
+                // Migrate a value that may have been set before the registration.
+                slot.m_value = m_fields.remove(name);
+            }
+            m_fieldSlots.put(name, slot);
+        }
+        slot.m_interceptors = newList;
+    }
+
+    /**
+     * Gets the slot of a monitored field.
+     *
+     * @param fieldName the field name
+     * @return the slot, <code>null</code> if no interceptor monitors the field
+     */
+    private FieldSlot getFieldSlot(String fieldName) {
+        if (m_fieldSlots == null) { // Immutable once configured.
+            return null;
         }
+        return (FieldSlot) m_fieldSlots.get(fieldName);
     }
 
     /**
@@ -1180,46 +1217,14 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @return the value decided by the last asked handler (throws a warning if two fields decide two different values)
      */
     public Object onGet(Object pojo, String fieldName) {
-        Object initialValue = null;
-        synchronized (this) { // Stack confinement.
-            initialValue = m_fields.get(fieldName);
-        }
-        Object result = initialValue;
-        boolean hasChanged = false;
-        // Get the list of registered handlers
-        FieldInterceptor[] list = (FieldInterceptor[]) m_fieldRegistration.get(fieldName); // Immutable list.
-        for (int i = 0; list != null && i < list.length; i++) {
-            // Call onGet outside of a synchronized block.
-            Object handlerResult = list[i].onGet(pojo, fieldName, initialValue);
-            if (handlerResult == initialValue) {
-                continue; // Non-binding case (default implementation).
-            } else {
-                if (result != initialValue) {
-                    //TODO analyze impact of removing conflict detection
-                    if ((handlerResult != null && !handlerResult.equals(result)) || (result != null && handlerResult == null)) {
-                        m_logger.log(
-                                Logger.WARNING,
-                                "A conflict was detected on the injection of "
-                                        + fieldName
-                        );
-                    }
-                }
-                result = handlerResult;
-                hasChanged = true;
-            }
-        }
-        if (hasChanged) {
-            // A change occurs => notify the change
-            //TODO consider just changing the reference, however multiple thread can be an issue
+        FieldSlot slot = getFieldSlot(fieldName);
+        if (slot == null) {
+            // Not monitored, just return the value stored by the container.
             synchronized (this) {
-                m_fields.put(fieldName, result);
-            }
-            // Call onset outside of a synchronized block.
-            for (int i = 0; list != null && i < list.length; i++) {
-                list[i].onSet(pojo, fieldName, result);
+                return m_fields.get(fieldName);
             }
         }
-        return result;
+        return slot.get(pojo);
     }
 
     /**
@@ -1388,23 +1393,18 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @param objectValue the new value of the field
      */
     public void onSet(final Object pojo, final String fieldName, final Object objectValue) {
-        synchronized (this) {
-            // First, store the new value.
-            // This must be done in a synchronized block to avoid
-            // concurrent modification
-            m_fields.put(fieldName, objectValue);
-        }
-        // The registrations cannot be modified, so we can directly access
-        // the interceptor list.
-        FieldInterceptor[] list = (FieldInterceptor[]) m_fieldRegistration
-                .get(fieldName);
-        for (int i = 0; list != null && i < list.length; i++) {
-            // The callback must be call outside the synchronization block.
-            list[i].onSet(pojo, fieldName, objectValue);
+        FieldSlot slot = getFieldSlot(fieldName);
+        if (slot == null) {
+            synchronized (this) {
+                // Store the new value in a synchronized block to avoid
+                // concurrent modification
+                m_fields.put(fieldName, objectValue);
+            }
+            return;
         }
+        slot.set(pojo, objectValue);
     }
 
-
     /**
      * Gets the bundle context used by this component instance.
      *
@@ -1550,6 +1550,27 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
         return m_fieldRegistration.keySet();
     }
 
+    /**
+     * Gets the slots of the given fields, in the same order.
+     * This method is invoked by the POJO itself during its initialization,
+     * the manipulator assigns the index of each field.
+     *
+     * @param fields the names of the fields of the POJO
+     * @return the slots, containing <code>null</code> for fields which are not
+     *         monitored, or <code>null</code> if no field is monitored.
+     */
+    public FieldSlot[] getFieldSlots(String[] fields) {
+        // IMPORTANT - method used by the manipulator
+        if (m_fieldSlots == null) {
+            return null;
+        }
+        FieldSlot[] slots = new FieldSlot[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            slots[i] = (FieldSlot) m_fieldSlots.get(fields[i]);
+        }
+        return slots;
+    }
+
     /**
      * Gets the list of registered methods (containing method ids).
      * This method is invoked by the POJO itself during its
@@ -19,6 +19,7 @@
 
 package org.apache.felix.ipojo.extender.internal;
 
+import java.io.File;
 import java.util.concurrent.ThreadFactory;
 
 import org.apache.felix.ipojo.ConfigurationTracker;
@@ -75,6 +76,18 @@ public class Extender implements BundleActivator {
      */
     private static final String SYNCHRONOUS_PROCESSING = "ipojo.processing.synchronous";
 
+    /**
+     * Property allowing to disable the metadata index storing the parsed bundle
+     * metadata across restarts.
+     * Possible value are either {@literal true} or {@literal false}.
+     */
+    private static final String METADATA_INDEX = "ipojo.metadata.index";
+
+    /**
+     * Name of the directory of the iPOJO bundle data area storing the metadata index.
+     */
+    private static final String METADATA_INDEX_DIRECTORY = "metadata-index";
+
     /**
      * The Bundle Context of the iPOJO Core bundle.
      */
@@ -147,8 +160,9 @@ public class Extender implements BundleActivator {
         }
 
         BundleProcessor extensionBundleProcessor = new ExtensionBundleProcessor(m_logger);
-        BundleProcessor componentsProcessor = new ComponentsBundleProcessor(m_logger);
-        BundleProcessor configurationProcessor = new ConfigurationProcessor(m_logger);
+        MetadataIndex index = createMetadataIndex(context, m_logger);
+        BundleProcessor componentsProcessor = new ComponentsBundleProcessor(m_logger, index);
+        BundleProcessor configurationProcessor = new ConfigurationProcessor(m_logger, index);
         if (SYNCHRONOUS_PROCESSING_ENABLED) {
             m_queueService = new EnforcedQueueService(
                     new HeaderPreferenceSelection(),
@@ -298,6 +312,42 @@ public class Extender implements BundleActivator {
 
     }
 
+    /**
+     * Creates the metadata index reused by the bundle processors across restarts.
+     * The index is enabled unless the {@link Extender#METADATA_INDEX} property is
+     * set to {@literal false}. The property can be set as a system property
+     * ({@literal ipojo.metadata.index}) or inside the iPOJO bundle manifest.
+     * The index is not created if the framework does not provide file system support.
+     *
+     * @param context the bundle context.
+     * @param logger  the logger.
+     * @return the metadata index, <code>null</code> if disabled.
+     */
+    private static MetadataIndex createMetadataIndex(BundleContext context, Logger logger) {
+        String flag = context.getProperty(METADATA_INDEX);
+
+        // If null, look in bundle manifest
+        if (flag == null) {
+            String key = METADATA_INDEX.replace('.', '-');
+            flag = (String) context.getBundle().getHeaders().get(key);
+        }
+
+        if (flag != null && flag.equalsIgnoreCase("false")) {
+            logger.log(Logger.INFO, "iPOJO Metadata index disabled");
+            return null;
+        }
+
+        File directory = context.getDataFile(METADATA_INDEX_DIRECTORY);
+        if (directory == null) {
+            logger.log(Logger.INFO, "iPOJO Metadata index disabled, no file system support");
+            return null;
+        }
+
+        MetadataIndex index = new MetadataIndex(directory, logger);
+        index.purge(context);
+        return index;
+    }
+
     /**
      * Enables or disables the asynchronous processing, so sets the
      * {@link Extender#SYNCHRONOUS_PROCESSING_ENABLED} flag.
@@ -61,8 +61,14 @@ public class ComponentsBundleProcessor implements BundleProcessor {
      */
     private final Log m_logger;
 
+    /**
+     * The index storing parsed headers across restarts, <code>null</code> if not used.
+     */
+    private final MetadataIndex m_index;
+
     /**
      * Registry storing the bundle to components and instances declared within this bundle.
+     * Bundles may be processed concurrently, accesses are guarded by the map monitor.
      */
     private final Map<Bundle, ComponentsAndInstances> m_registry = new HashMap<Bundle, ComponentsAndInstances>();
 
@@ -72,7 +78,18 @@ public class ComponentsBundleProcessor implements BundleProcessor {
      * @param logger the logger.
      */
     public ComponentsBundleProcessor(Log logger) {
+        this(logger, null);
+    }
+
+    /**
+     * Creates the component bundle processor reusing the headers parsed during a previous execution.
+     *
+     * @param logger the logger.
+     * @param index  the metadata index, <code>null</code> to always parse the headers.
+     */
+    public ComponentsBundleProcessor(Log logger, MetadataIndex index) {
         m_logger = logger;
+        m_index = index;
     }
 
     /**
@@ -107,7 +124,10 @@ public class ComponentsBundleProcessor implements BundleProcessor {
      * @param bundle the bundle
      */
     public void deactivate(Bundle bundle) {
-        ComponentsAndInstances cai = m_registry.remove(bundle);
+        ComponentsAndInstances cai;
+        synchronized (m_registry) {
+            cai = m_registry.remove(bundle);
+        }
         if (cai != null) {
             cai.stop();
         }
@@ -141,7 +161,11 @@ public class ComponentsBundleProcessor implements BundleProcessor {
      */
     private void parse(Bundle bundle, String components) throws IOException, ParseException {
         ManifestMetadataParser parser = new ManifestMetadataParser();
-        parser.parseHeader(components);
+        if (m_index == null) {
+            parser.parseHeader(components);
+        } else {
+            parser.setRootElement(m_index.getComponents(bundle, components));
+        }
 
         // Get the component type declaration
         Element[] metadata = parser.getComponentsMetadata();
@@ -196,12 +220,14 @@ public class ComponentsBundleProcessor implements BundleProcessor {
      * @return the set of component and instances declared by the bundle, <code>null</code> otherwise
      */
     private ComponentsAndInstances getComponentsAndInstances(Bundle bundle) {
-        ComponentsAndInstances cai = m_registry.get(bundle);
-        if (cai == null) {
-            cai = new ComponentsAndInstances();
-            m_registry.put(bundle, cai);
+        synchronized (m_registry) {
+            ComponentsAndInstances cai = m_registry.get(bundle);
+            if (cai == null) {
+                cai = new ComponentsAndInstances();
+                m_registry.put(bundle, cai);
+            }
+            return cai;
         }
-        return cai;
     }
 
     /**
@@ -54,9 +54,15 @@ public class ConfigurationProcessor implements BundleProcessor {
      */
     private final Log m_logger;
 
+    /**
+     * The index storing the configuration classes across restarts, <code>null</code> if not used.
+     */
+    private final MetadataIndex m_index;
+
     /**
      * Registry storing the bundle to components and instances declared within this bundle.
      * Only instances are expected.
+     * Bundles may be processed concurrently, accesses are guarded by the map monitor.
      */
     private final Map<Bundle, ComponentsAndInstances> m_registry = new HashMap<Bundle, ComponentsAndInstances>();
 
@@ -72,8 +78,19 @@ public class ConfigurationProcessor implements BundleProcessor {
      * @param logger the logger.
      */
     public ConfigurationProcessor(Log logger) {
+        this(logger, null);
+    }
+
+    /**
+     * Creates the configuration processor reusing the configuration classes found during a previous execution.
+     *
+     * @param logger the logger.
+     * @param index  the metadata index, <code>null</code> to always scan the bundle classes.
+     */
+    public ConfigurationProcessor(Log logger, MetadataIndex index) {
 
         m_logger = logger;
+        m_index = index;
 
         // org.osgi.framework.wiring may not be available, in this case, disable us.
         try {
@@ -143,7 +160,10 @@ public class ConfigurationProcessor implements BundleProcessor {
     public void deactivate(Bundle bundle) {
         if (! m_enabled) { return; }
 
-        ComponentsAndInstances cai = m_registry.remove(bundle);
+        ComponentsAndInstances cai;
+        synchronized (m_registry) {
+            cai = m_registry.remove(bundle);
+        }
         if (cai != null) {
             cai.stop();
         }
@@ -166,26 +186,58 @@ public class ConfigurationProcessor implements BundleProcessor {
     }
 
     private void handleResources(Bundle bundle, Collection<String> resources, ClassLoader classLoader) {
+        if (m_index != null) {
+            List<String> configurations = m_index.getConfigurations(bundle, resources);
+            if (configurations != null) {
+                // Already scanned, only instantiate the configuration classes.
+                for (String resource : configurations) {
+                    instantiateAndDeclareInstances(bundle, resource, classLoader);
+                }
+                return;
+            }
+        }
+
+        List<String> configurations = new ArrayList<String>();
+        boolean complete = true;
         for (String resource : resources) {
-            handleResource(bundle, resource, classLoader);
+            Boolean configuration = handleResource(bundle, resource, classLoader);
+            if (configuration == null) {
+                complete = false;
+            } else if (configuration) {
+                configurations.add(resource);
+            }
+        }
+
+        // Only store complete scans, so a resource that could not be read is analyzed again.
+        if (m_index != null && complete) {
+            m_index.putConfigurations(bundle, resources, configurations);
         }
     }
 
-    private void handleResource(Bundle bundle, String resource, ClassLoader classLoader) {
+    /**
+     * Analyzes a class resource and declares its instances if it is a configuration class.
+     *
+     * @return whether the resource contains a configuration class, <code>null</code> if the resource
+     * cannot be analyzed
+     */
+    private Boolean handleResource(Bundle bundle, String resource, ClassLoader classLoader) {
         URL url = classLoader.getResource(resource);
         if (url == null) {
             m_logger.log(Log.ERROR, "The resource " + resource + " cannot be loaded by " + bundle.getBundleId() + " " +
                     "(" + bundle.getSymbolicName() + ")");
-            return;
+            return null;
         }
 
         try {
             if (hasConfigurationAnnotation(bundle, url, classLoader)) {
                 instantiateAndDeclareInstances(bundle, resource, classLoader);
+                return Boolean.TRUE;
             }
+            return Boolean.FALSE;
         } catch (IOException e) {
             m_logger.log(Log.ERROR, "The resource " + resource + " cannot be loaded by " + bundle.getBundleId() + " " +
                     "(" + bundle.getSymbolicName() + ")", e);
+            return null;
         }
 
     }
@@ -296,12 +348,14 @@ public class ConfigurationProcessor implements BundleProcessor {
      * @return the set of component and instances declared by the bundle, <code>null</code> otherwise
      */
     private ComponentsAndInstances getComponentsAndInstances(Bundle bundle) {
-        ComponentsAndInstances cai = m_registry.get(bundle);
-        if (cai == null) {
-            cai = new ComponentsAndInstances();
-            m_registry.put(bundle, cai);
+        synchronized (m_registry) {
+            ComponentsAndInstances cai = m_registry.get(bundle);
+            if (cai == null) {
+                cai = new ComponentsAndInstances();
+                m_registry.put(bundle, cai);
+            }
+            return cai;
         }
-        return cai;
     }
 
     /**
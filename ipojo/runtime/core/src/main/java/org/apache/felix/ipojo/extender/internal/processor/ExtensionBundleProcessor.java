@@ -49,8 +49,9 @@ public class ExtensionBundleProcessor implements BundleProcessor {
 
     /**
      * The map storing the association between bundles and the list of extension declaration.
+     * Bundles may be processed concurrently, accesses are guarded by the map monitor.
      */
-    private Map<Bundle, List<DefaultExtensionDeclaration>> m_extensions = new HashMap<Bundle, List<DefaultExtensionDeclaration>>();
+    private final Map<Bundle, List<DefaultExtensionDeclaration>> m_extensions = new HashMap<Bundle, List<DefaultExtensionDeclaration>>();
 
     /**
      * Creates the processor.
@@ -81,12 +82,14 @@ public class ExtensionBundleProcessor implements BundleProcessor {
      * @param bundle the bundle
      */
     public void deactivate(Bundle bundle) {
-        List<DefaultExtensionDeclaration> declarations = m_extensions.get(bundle);
+        List<DefaultExtensionDeclaration> declarations;
+        synchronized (m_extensions) {
+            declarations = m_extensions.remove(bundle);
+        }
         if (declarations != null) {
             for (DefaultExtensionDeclaration declaration : declarations) {
                 declaration.stop();
             }
-            m_extensions.remove(bundle);
         }
     }
 
@@ -165,12 +168,14 @@ public class ExtensionBundleProcessor implements BundleProcessor {
      * @return the list of extension declaration associated to the given bundle, <code>null</code> otherwise.
      */
     private List<DefaultExtensionDeclaration> getBundleDeclarations(Bundle bundle) {
-        List<DefaultExtensionDeclaration> declarations = m_extensions.get(bundle);
-        if (declarations == null) {
-            declarations = new ArrayList<DefaultExtensionDeclaration>();
-            m_extensions.put(bundle, declarations);
+        synchronized (m_extensions) {
+            List<DefaultExtensionDeclaration> declarations = m_extensions.get(bundle);
+            if (declarations == null) {
+                declarations = new ArrayList<DefaultExtensionDeclaration>();
+                m_extensions.put(bundle, declarations);
+            }
+            return declarations;
         }
-        return declarations;
     }
 
 }
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.extender.internal.processor;
+
+import org.apache.felix.ipojo.metadata.Attribute;
+import org.apache.felix.ipojo.metadata.Element;
+import org.apache.felix.ipojo.parser.ManifestMetadataParser;
+import org.apache.felix.ipojo.parser.ParseException;
+import org.apache.felix.ipojo.util.Log;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.apache.felix.ipojo.util.StreamUtils.closeQuietly;
+
+/**
+ * Persistent index of the metadata computed by the bundle processors, reused across restarts.
+ * <p/>
+ * For each bundle, the index stores:
+ * <ul>
+ * <li>the parsed <code>iPOJO-Components</code> header. The entry is only used when the stored header is
+ * strictly equal to the current one, so it is always consistent with the manifest.</li>
+ * <li>the classes annotated with <code>@Configuration</code>. The entry is bound to the bundle revision
+ * (last modification date and list of classes), and avoids scanning every class of the bundle.</li>
+ * </ul>
+ * Entries are stored in files (one per bundle and kind of metadata) in a directory of the iPOJO bundle data
+ * area. An entry that cannot be read is ignored and recomputed. Each file is only accessed by the processor
+ * handling the bundle, bundles being processed independently, possibly in parallel.
+ */
+public class MetadataIndex {
+
+    /**
+     * Format version of the index files, must be increased when the format changes.
+     */
+    private static final int FORMAT = 1;
+
+    private static final String COMPONENTS_SUFFIX = ".components";
+
+    private static final String CONFIGURATIONS_SUFFIX = ".configurations";
+
+    /**
+     * The directory containing the index files.
+     */
+    private final File m_directory;
+
+    /**
+     * The logger.
+     */
+    private final Log m_logger;
+
+    /**
+     * Creates the index.
+     *
+     * @param directory the directory storing the index, created if it does not exist
+     * @param logger    the logger
+     */
+    public MetadataIndex(File directory, Log logger) {
+        m_directory = directory;
+        m_logger = logger;
+        if (!m_directory.isDirectory() && !m_directory.mkdirs()) {
+            m_logger.log(Log.WARNING, "Cannot create the metadata index directory " + m_directory);
+        }
+    }
+
+    /**
+     * Gets the parsed <code>iPOJO-Components</code> header of the given bundle.
+     * If the index does not contain the header, it is parsed and stored.
+     *
+     * @param bundle the bundle
+     * @param header the iPOJO header of the bundle
+     * @return the <code>iPOJO</code> root element
+     * @throws ParseException if the header cannot be parsed
+     */
+    public Element getComponents(Bundle bundle, String header) throws ParseException {
+        File file = getFile(bundle, COMPONENTS_SUFFIX);
+        DataInputStream in = open(file);
+        if (in != null) {
+            try {
+                if (header.equals(readString(in))) {
+                    return readElement(in);
+                }
+            } catch (IOException e) {
+                m_logger.log(Log.DEBUG, "Cannot read the metadata index entry " + file, e);
+            } finally {
+                closeQuietly(in);
+            }
+        }
+
+        Element root = ManifestMetadataParser.parseHeaderMetadata(header.trim());
+        DataOutputStream out = create(file);
+        if (out != null) {
+            try {
+                writeString(out, header);
+                writeElement(out, root);
+            } catch (IOException e) {
+                m_logger.log(Log.DEBUG, "Cannot write the metadata index entry " + file, e);
+            } finally {
+                close(out, file);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Gets the resources containing a configuration class, computed for the current revision of the bundle.
+     *
+     * @param bundle    the bundle
+     * @param resources the class resources of the bundle
+     * @return the configuration class resources, <code>null</code> if the index does not contain the list
+     * for this revision of the bundle.
+     */
+    public List<String> getConfigurations(Bundle bundle, Collection<String> resources) {
+        File file = getFile(bundle, CONFIGURATIONS_SUFFIX);
+        DataInputStream in = open(file);
+        if (in == null) {
+            return null;
+        }
+        try {
+            if (in.readLong() != bundle.getLastModified()
+                    || in.readInt() != resources.size()
+                    || in.readInt() != hash(resources)) {
+                return null;
+            }
+            int size = in.readInt();
+            List<String> configurations = new ArrayList<String>(size);
+            for (int i = 0; i < size; i++) {
+                configurations.add(readString(in));
+            }
+            return configurations;
+        } catch (IOException e) {
+            m_logger.log(Log.DEBUG, "Cannot read the metadata index entry " + file, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores the resources containing a configuration class for the current revision of the bundle.
+     *
+     * @param bundle         the bundle
+     * @param resources      the class resources of the bundle
+     * @param configurations the resources containing a configuration class
+     */
+    public void putConfigurations(Bundle bundle, Collection<String> resources, List<String> configurations) {
+        File file = getFile(bundle, CONFIGURATIONS_SUFFIX);
+        DataOutputStream out = create(file);
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeLong(bundle.getLastModified());
+            out.writeInt(resources.size());
+            out.writeInt(hash(resources));
+            out.writeInt(configurations.size());
+            for (String configuration : configurations) {
+                writeString(out, configuration);
+            }
+        } catch (IOException e) {
+            m_logger.log(Log.DEBUG, "Cannot write the metadata index entry " + file, e);
+        } finally {
+            close(out, file);
+        }
+    }
+
+    /**
+     * Removes the entries of the bundles that are no more installed.
+     *
+     * @param context a bundle context used to retrieve the installed bundles
+     */
+    public void purge(BundleContext context) {
+        File[] files = m_directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            int index = name.indexOf('.');
+            try {
+                if (index == -1 || context.getBundle(Long.parseLong(name.substring(0, index))) == null) {
+                    delete(file);
+                }
+            } catch (NumberFormatException e) {
+                delete(file);
+            }
+        }
+    }
+
+    private File getFile(Bundle bundle, String suffix) {
+        return new File(m_directory, bundle.getBundleId() + suffix);
+    }
+
+    private DataInputStream open(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() == FORMAT) {
+                return in;
+            }
+            closeQuietly(in);
+        } catch (IOException e) {
+            m_logger.log(Log.DEBUG, "Cannot open the metadata index entry " + file, e);
+        }
+        return null;
+    }
+
+    private DataOutputStream create(File file) {
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(FORMAT);
+            return out;
+        } catch (IOException e) {
+            m_logger.log(Log.DEBUG, "Cannot create the metadata index entry " + file, e);
+            return null;
+        }
+    }
+
+    private void close(DataOutputStream out, File file) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            m_logger.log(Log.DEBUG, "Cannot write the metadata index entry " + file, e);
+            delete(file);
+        }
+    }
+
+    private void delete(File file) {
+        if (!file.delete()) {
+            m_logger.log(Log.DEBUG, "Cannot delete the metadata index entry " + file);
+        }
+    }
+
+    private static int hash(Collection<String> resources) {
+        int hash = 0;
+        for (String resource : resources) {
+            // Order independent.
+            hash += resource.hashCode();
+        }
+        return hash;
+    }
+
+    private static void writeElement(DataOutputStream out, Element element) throws IOException {
+        writeString(out, element.getName());
+        writeString(out, element.getNameSpace());
+        Attribute[] attributes = element.getAttributes();
+        out.writeInt(attributes.length);
+        for (Attribute attribute : attributes) {
+            writeString(out, attribute.getName());
+            writeString(out, attribute.getNameSpace());
+            writeString(out, attribute.getValue());
+        }
+        Element[] elements = element.getElements();
+        out.writeInt(elements.length);
+        for (Element child : elements) {
+            writeElement(out, child);
+        }
+    }
+
+    private static Element readElement(DataInputStream in) throws IOException {
+        Element element = new Element(readString(in), readString(in));
+        int attributes = in.readInt();
+        for (int i = 0; i < attributes; i++) {
+            element.addAttribute(new Attribute(readString(in), readString(in), readString(in)));
+        }
+        int elements = in.readInt();
+        for (int i = 0; i < elements; i++) {
+            element.addElement(readElement(in));
+        }
+        return element;
+    }
+
+    /**
+     * Writes a string (possibly <code>null</code>).
+     * {@link DataOutputStream#writeUTF(String)} cannot be used as headers may exceed 64 KB.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
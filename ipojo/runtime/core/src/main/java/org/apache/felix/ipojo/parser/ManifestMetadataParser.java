@@ -420,6 +420,18 @@ public class ManifestMetadataParser {
         parseElements(header.trim());
     }
 
+    /**
+     * Initializes the {@link ManifestMetadataParser#m_elements} list
+     * from an already parsed <code>iPOJO</code> element (such as
+     * the one returned by {@link ManifestMetadataParser#parseHeaderMetadata(String)}),
+     * so the component type declarations and instance configurations
+     * can be retrieved without parsing the header again.
+     * @param root the <code>iPOJO</code> root element
+     */
+    public void setRootElement(Element root) {
+        m_elements = new Element[] {root};
+    }
+
     /**
      * Parses the metadata from the string given in argument.
      * This methods creates a new {@link ManifestMetadataParser} object
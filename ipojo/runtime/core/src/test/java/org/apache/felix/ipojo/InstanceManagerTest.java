@@ -20,6 +20,7 @@ package org.apache.felix.ipojo;
 
 import org.apache.felix.ipojo.metadata.Attribute;
 import org.apache.felix.ipojo.metadata.Element;
+import org.apache.felix.ipojo.parser.FieldMetadata;
 import org.apache.felix.ipojo.parser.MethodMetadata;
 import org.junit.Test;
 import org.osgi.framework.Bundle;
@@ -125,6 +126,109 @@ public class InstanceManagerTest {
         assertThat(error.get()).isEqualTo(0);
     }
 
+    @Test
+    public void testFieldAccessWithSingleInterceptor() {
+        InstanceManager manager = createInstanceManager();
+        final AtomicInteger sets = new AtomicInteger();
+        final Object injected = new Object();
+        manager.register(new FieldMetadata("field", "java.lang.Object"), new FieldInterceptor() {
+            public void onSet(Object pojo, String fieldName, Object value) {
+                sets.incrementAndGet();
+            }
+
+            public Object onGet(Object pojo, String fieldName, Object value) {
+                return injected;
+            }
+        });
+
+        assertThat(manager.onGet(null, "field")).isSameAs(injected);
+        assertThat(sets.get()).isEqualTo(1);
+        // Second access, the value did not change, so no notification.
+        assertThat(manager.onGet(null, "field")).isSameAs(injected);
+        assertThat(sets.get()).isEqualTo(1);
+        assertThat(manager.getFieldValue("field", null)).isSameAs(injected);
+        assertThat(manager.getRegistredFields()).containsOnly("field");
+    }
+
+    @Test
+    public void testFieldAccessWithSeveralInterceptors() {
+        InstanceManager manager = createInstanceManager();
+        final AtomicInteger sets = new AtomicInteger();
+        FieldMetadata field = new FieldMetadata("field", "java.lang.String");
+        manager.register(field, new FieldInterceptor() {
+            public void onSet(Object pojo, String fieldName, Object value) {
+                sets.incrementAndGet();
+            }
+
+            public Object onGet(Object pojo, String fieldName, Object value) {
+                return value;
+            }
+        });
+        manager.register(field, new FieldInterceptor() {
+            public void onSet(Object pojo, String fieldName, Object value) {
+                sets.incrementAndGet();
+            }
+
+            public Object onGet(Object pojo, String fieldName, Object value) {
+                return "injected";
+            }
+        });
+
+        assertThat(manager.onGet(null, "field")).isEqualTo("injected");
+        assertThat(sets.get()).isEqualTo(2);
+
+        manager.onSet(null, "field", "set");
+        assertThat(sets.get()).isEqualTo(4);
+        assertThat(manager.getFieldValue("field", null)).isEqualTo("set");
+    }
+
+    @Test
+    public void testFieldAccessWithoutInterceptor() {
+        InstanceManager manager = createInstanceManager();
+        manager.onSet(null, "field", "value");
+        assertThat(manager.onGet(null, "field")).isEqualTo("value");
+        assertThat(manager.getFieldValue("field", null)).isEqualTo("value");
+    }
+
+    @Test
+    public void testFieldSlots() {
+        InstanceManager manager = createInstanceManager();
+        assertThat(manager.getFieldSlots(new String[] {"count"})).isNull();
+
+        final AtomicInteger sets = new AtomicInteger();
+        manager.register(new FieldMetadata("count", "int"), new FieldInterceptor() {
+            public void onSet(Object pojo, String fieldName, Object value) {
+                sets.incrementAndGet();
+            }
+
+            public Object onGet(Object pojo, String fieldName, Object value) {
+                return value;
+            }
+        });
+
+        FieldSlot[] slots = manager.getFieldSlots(new String[] {"other", "count"});
+        assertThat(slots.length).isEqualTo(2);
+        assertThat(slots[0]).isNull();
+        slots[1].setInt(null, 42);
+        assertThat(sets.get()).isEqualTo(1);
+        assertThat(slots[1].getInt(null)).isEqualTo(42);
+        // The name based accessors share the slot.
+        assertThat(manager.onGet(null, "count")).isEqualTo(42);
+        manager.onSet(null, "count", 7);
+        assertThat(slots[1].getInt(null)).isEqualTo(7);
+        assertThat(sets.get()).isEqualTo(2);
+    }
+
+    private InstanceManager createInstanceManager() {
+        ComponentFactory factory = mock(ComponentFactory.class);
+        when(factory.getClassName()).thenReturn(MyComponent.class.getName());
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getHeaders()).thenReturn(new Hashtable<String, String>());
+        BundleContext context = mock(BundleContext.class);
+        when(context.getBundle()).thenReturn(bundle);
+        return new InstanceManager(factory, context, new HandlerManager[0]);
+    }
+
     private class Caller implements Runnable {
 
         private final CountDownLatch startSignal;
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.extender.internal.processor;
+
+import junit.framework.TestCase;
+import org.apache.felix.ipojo.metadata.Element;
+import org.apache.felix.ipojo.parser.ManifestMetadataParser;
+import org.apache.felix.ipojo.util.Logger;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the metadata index.
+ */
+public class MetadataIndexTestCase extends TestCase {
+
+    private static final String HEADER = "component { $classname=\"org.example.Foo\" $name=\"foo\" " +
+            "requires { $field=\"m_bar\" $filter=\"(a=b)\" }callback { $transition=\"validate\" $method=\"start\" }" +
+            "manipulation { field { $name=\"m_bar\" $type=\"org.example.Bar\" }}}" +
+            "instance { $component=\"foo\" $name=\"foo-1\" property { $name=\"p\" $value=\"v\" }}";
+
+    @Mock
+    private Logger m_logger;
+    @Mock
+    private Bundle m_bundle;
+    @Mock
+    private BundleContext m_context;
+
+    private File m_directory;
+
+    @Override
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(m_bundle.getBundleId()).thenReturn(42l);
+        when(m_bundle.getLastModified()).thenReturn(1000l);
+        m_directory = new File("target/metadata-index-" + getName());
+        delete(m_directory);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        delete(m_directory);
+    }
+
+    public void testComponentsAreReusedAcrossInstances() throws Exception {
+        Element parsed = new MetadataIndex(m_directory, m_logger).getComponents(m_bundle, HEADER);
+        assertTrue(new File(m_directory, "42.components").isFile());
+
+        // A new index (i.e. a restart) reads the stored metadata.
+        Element read = new MetadataIndex(m_directory, m_logger).getComponents(m_bundle, HEADER);
+        assertNotSame(parsed, read);
+        assertEquals(parsed.toXMLString(), read.toXMLString());
+        assertEquals(ManifestMetadataParser.parseHeaderMetadata(HEADER).toXMLString(), read.toXMLString());
+
+        ManifestMetadataParser parser = new ManifestMetadataParser();
+        parser.setRootElement(read);
+        assertEquals(1, parser.getComponentsMetadata().length);
+        assertEquals("foo-1", parser.getInstances()[0].get("instance.name"));
+    }
+
+    public void testComponentsAreParsedWhenTheHeaderChanges() throws Exception {
+        MetadataIndex index = new MetadataIndex(m_directory, m_logger);
+        index.getComponents(m_bundle, HEADER);
+
+        String header = "component { $classname=\"org.example.Baz\" }";
+        Element element = new MetadataIndex(m_directory, m_logger).getComponents(m_bundle, header);
+        assertEquals("org.example.Baz", element.getElements("component")[0].getAttribute("classname"));
+    }
+
+    public void testConfigurationsAreBoundToTheRevision() throws Exception {
+        MetadataIndex index = new MetadataIndex(m_directory, m_logger);
+        List<String> resources = Arrays.asList("a/A.class", "a/B.class");
+        assertNull(index.getConfigurations(m_bundle, resources));
+
+        index.putConfigurations(m_bundle, resources, Collections.singletonList("a/B.class"));
+        assertEquals(Collections.singletonList("a/B.class"), index.getConfigurations(m_bundle, resources));
+
+        // New class
+        assertNull(index.getConfigurations(m_bundle, Arrays.asList("a/A.class", "a/B.class", "a/C.class")));
+
+        // Bundle updated
+        when(m_bundle.getLastModified()).thenReturn(2000l);
+        assertNull(index.getConfigurations(m_bundle, resources));
+    }
+
+    public void testPurge() throws Exception {
+        MetadataIndex index = new MetadataIndex(m_directory, m_logger);
+        index.getComponents(m_bundle, HEADER);
+        index.putConfigurations(m_bundle, Collections.<String>emptyList(), Collections.<String>emptyList());
+
+        when(m_context.getBundle(42l)).thenReturn(m_bundle);
+        index.purge(m_context);
+        assertEquals(2, m_directory.listFiles().length);
+
+        when(m_context.getBundle(42l)).thenReturn(null);
+        index.purge(m_context);
+        assertEquals(0, m_directory.listFiles().length);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -16,17 +16,15 @@
  */
 package org.apache.felix.utils.json;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A very small JSON parser.
@@ -35,53 +33,39 @@ import java.util.regex.Pattern;
  * <ul>
  * <li>Object names are represented as a {@link String}.
  * <li>String values are represented as a {@link String}.
- * <li>Numeric values without a decimal separator are represented as a {@link Long}.
- * <li>Numeric values with a decimal separator are represented as a {@link Double}.
+ * <li>Numeric values without a decimal separator or exponent are represented as a {@link Long}.
+ * <li>Other numeric values are represented as a {@link Double}.
  * <li>Boolean values are represented as a {@link Boolean}.
  * <li>Nested JSON objects are parsed into a {@link java.util.Map Map&lt;String, Object&gt;}.
  * <li>JSON lists are parsed into a {@link java.util.List} which may contain any of the above values.
  * </ul>
+ * The input is read in a single pass with a {@link JSONReader}; use that
+ * class directly to process large documents without building the whole
+ * structure in memory.
  */
 public class JSONParser {
-    private static final Pattern KEY_VALUE_PATTERN = Pattern.compile("^\\s*[\"](.+?)[\"]\\s*[:]\\s*(.+)$");
+    private final Object parsed;
 
-    private enum Scope { QUOTE, CURLY, BRACKET;
-        static Scope getScope(char c) {
-            switch (c) {
-            case '"':
-                return QUOTE;
-            case '[':
-            case ']':
-                return BRACKET;
-            case '{':
-            case '}':
-                return CURLY;
-            default:
-                return null;
-            }
+    public JSONParser(CharSequence json) {
+        try {
+            parsed = parse(new JSONReader(json));
+        } catch (IOException e) {
+            // Can not happen when reading from memory
+            throw new IllegalStateException(e);
         }
     }
 
-    static class Pair<K, V> {
-        final K key;
-        final V value;
-
-        Pair(K k, V v) {
-            key = k;
-            value = v;
+    public JSONParser(Reader reader) throws IOException {
+        JSONReader jsonReader = new JSONReader(reader);
+        try {
+            parsed = parse(jsonReader);
+        } finally {
+            jsonReader.close();
         }
     }
 
-    private final Object parsed;
-
-    public JSONParser(CharSequence json) {
-        String str = json.toString();
-        str = str.trim().replace('\n', ' ').replace('\r', ' ');
-        parsed = parseObject(str);
-    }
-
     public JSONParser(InputStream is) throws IOException {
-        this(readStreamAsString(is));
+        this(createReader(is));
     }
 
     @SuppressWarnings("unchecked")
@@ -100,259 +84,110 @@ public class JSONParser {
             return null;
     }
 
-    private static Pair<String, Object> parseKeyValue(String jsonKeyValue) {
-        Matcher matcher = KEY_VALUE_PATTERN.matcher(jsonKeyValue);
-        if (!matcher.matches() || matcher.groupCount() < 2) {
-            throw new IllegalArgumentException("Malformatted JSON key-value pair: " + jsonKeyValue);
-        }
-
-        return new Pair<String, Object>(unEscapeString(matcher.group(1)), parseValue(matcher.group(2)));
-    }
-
-    private static Object parseValue(String jsonValue) {
-        jsonValue = jsonValue.trim();
-
-        switch (jsonValue.charAt(0)) {
-        case '\"':
-            if (!jsonValue.endsWith("\""))
-                throw new IllegalArgumentException("Malformatted JSON string: " + jsonValue);
-
-            return unEscapeString(jsonValue.substring(1, jsonValue.length() - 1));
-        case '[':
-            List<Object> entries = new ArrayList<Object>();
-            for (String v : parseListValuesRaw(jsonValue)) {
-                entries.add(parseValue(v));
-            }
-            return entries;
-        case '{':
-            return parseObject(jsonValue);
-        case 't':
-        case 'T':
-        case 'f':
-        case 'F':
-            return Boolean.parseBoolean(jsonValue);
-        case 'n':
-        case 'N':
-            return null;
-        default:
-            if (jsonValue.contains(".")) {
-                return Double.parseDouble(jsonValue);
-            }
-            return Long.parseLong(jsonValue);
+    private static Object parse(JSONReader reader) throws IOException {
+        JSONReader.Event event = reader.next();
+        if (event != JSONReader.Event.START_OBJECT && event != JSONReader.Event.START_ARRAY) {
+            throw new IllegalArgumentException("Malformatted JSON: expected an object or a list but found " + event);
         }
+        Object value = parseValue(reader, event);
+        reader.next(); // fails on trailing content
+        return value;
     }
 
-    private static String unEscapeString(String s) {
-        StringBuilder sb = new StringBuilder(s);
-
-        for (int i = 0; i<sb.length(); i++) {
-            if (sb.charAt(i) == '\\' && sb.length() > i+1) {
-                sb.deleteCharAt(i);
-
-                char nextChar = sb.charAt(i);
-                switch (nextChar) {
-                case 'b':
-                    sb.setCharAt(i, '\b');
-                    break;
-                case 'f':
-                    sb.setCharAt(i, '\f');
-                    break;
-                case 'n':
-                    sb.setCharAt(i, '\n');
-                    break;
-                case 'r':
-                    sb.setCharAt(i, '\r');
-                    break;
-                case 't':
-                    sb.setCharAt(i, '\t');
-                    break;
-                case 'u':
-                    if (sb.length() > i+4) {
-                        int uc = Integer.parseInt(sb.substring(i+1, i+5), 16);
-                        sb.replace(i, i+5, "" + (char) uc);
-                    }
-                    break;
-                }
+    private static Object parseValue(JSONReader reader, JSONReader.Event event) throws IOException {
+        switch (event) {
+        case START_OBJECT:
+            Map<String, Object> map = new HashMap<String, Object>();
+            while (reader.next() == JSONReader.Event.KEY) {
+                String key = reader.getString();
+                map.put(key, parseValue(reader, reader.next()));
             }
-        }
-
-        return sb.toString();
-    }
-
-    private static Object parseObject(String jsonObject) {
-        if (jsonObject.startsWith("[") && jsonObject.endsWith("]")) {
-            // It's a list
-            List<Object> values = new ArrayList<Object>();
-
-            for(String val : parseListValuesRaw(jsonObject)) {
-                values.add(parseValue(val));
+            return map;
+        case START_ARRAY:
+            List<Object> list = new ArrayList<Object>();
+            for (event = reader.next(); event != JSONReader.Event.END_ARRAY; event = reader.next()) {
+                list.add(parseValue(reader, event));
             }
-            return values;
-        } else if (!(jsonObject.startsWith("{") && jsonObject.endsWith("}")))
-            throw new IllegalArgumentException("Malformatted JSON object: " + jsonObject);
-
-        Map<String, Object> values = new HashMap<String, Object>();
-
-        jsonObject = jsonObject.substring(1, jsonObject.length() - 1).trim();
-        if (jsonObject.length() == 0)
-            return values;
-
-        String lastParsedObject = "[START OF DOC]";
-        for (String element : parseKeyValueListRaw(jsonObject)) {
-            try {
-                Pair<String, Object> pair = parseKeyValue(element);
-                values.put(pair.key, pair.value);
-                lastParsedObject = jsonObject;
-            } catch (Throwable t) {
-                throw new IllegalArgumentException("An error occured after: " + lastParsedObject, t);
-            }
-        }
-
-        return values;
-    }
-
-    private static List<String> parseKeyValueListRaw(String jsonKeyValueList) {
-        if (jsonKeyValueList.trim().length() == 0)
-            return Collections.emptyList();
-        jsonKeyValueList = jsonKeyValueList + ","; // append comma to simplify parsing
-        List<String> elements = new ArrayList<String>();
-
-        int i=0;
-        int start=0;
-        Stack<Scope> scopeStack = new Stack<Scope>();
-        while (i < jsonKeyValueList.length()) {
-            char curChar = jsonKeyValueList.charAt(i);
-            switch (curChar) {
-            case '"':
-                if (i > 0 && jsonKeyValueList.charAt(i-1) == '\\') {
-                    // it's escaped, ignore for now
-                } else {
-                    if (!scopeStack.empty() && scopeStack.peek() == Scope.QUOTE) {
-                        scopeStack.pop();
-                    } else {
-                        scopeStack.push(Scope.QUOTE);
-                    }
-                }
-                break;
-            case '[':
-            case '{':
-                if ((scopeStack.empty() ? null : scopeStack.peek()) == Scope.QUOTE) {
-                    // inside quotes, ignore
-                } else {
-                    scopeStack.push(Scope.getScope(curChar));
-                }
-                break;
-            case ']':
-            case '}':
-                Scope curScope = scopeStack.empty() ? null : scopeStack.peek();
-                if (curScope == Scope.QUOTE) {
-                    // inside quotes, ignore
-                } else {
-                    Scope newScope = Scope.getScope(curChar);
-                    if (curScope == newScope) {
-                        scopeStack.pop();
-                    } else {
-                        throw new IllegalArgumentException("Unbalanced closing " +
-                            curChar + " in: " + jsonKeyValueList);
-                    }
-                }
-                break;
-            case ',':
-                if (scopeStack.empty()) {
-                    elements.add(jsonKeyValueList.substring(start, i));
-                    start = i+1;
-                }
-                break;
-            }
-
-            i++;
+            return list;
+        default:
+            return reader.getValue();
         }
-        return elements;
-    }
-
-    private static List<String> parseListValuesRaw(String jsonList) {
-        if (!(jsonList.startsWith("[") && jsonList.endsWith("]")))
-            throw new IllegalArgumentException("Malformatted JSON list: " + jsonList);
-
-        jsonList = jsonList.substring(1, jsonList.length() - 1);
-        return parseKeyValueListRaw(jsonList);
     }
 
     /**
-     * Read an entire input stream into a byte array.
-     * @param is The input stream to read.
-     * @return The byte array with the contents of the input stream.
-     * @throws IOException if the underlying read operation on the input stream
-     * throws an error.
+     * Create a reader for a JSON input stream, inferring its encoding as
+     * described in section 3 of http://www.ietf.org/rfc/rfc4627.txt which
+     * reads:
+     * <pre>
+     *   JSON text SHALL be encoded in Unicode.  The default encoding is
+     *   UTF-8.
+     *
+     *   Since the first two characters of a JSON text will always be ASCII
+     *   characters [RFC0020], it is possible to determine whether an octet
+     *   stream is UTF-8, UTF-16 (BE or LE), or UTF-32 (BE or LE) by looking
+     *   at the pattern of nulls in the first four octets.
+     *
+     *         00 00 00 xx  UTF-32BE
+     *         00 xx 00 xx  UTF-16BE
+     *         xx 00 00 00  UTF-32LE
+     *         xx 00 xx 00  UTF-16LE
+     *         xx xx xx xx  UTF-8
+     * </pre>
+     * A leading byte order mark is used when present and skipped. Only the
+     * first four bytes are examined, the rest of the stream is decoded as it
+     * is parsed.
      */
-    private static byte [] readStream(InputStream is) throws IOException {
+    private static Reader createReader(InputStream is) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(is, 4);
+        byte[] bytes = new byte[4];
+        int length = 0;
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] bytes = new byte[65536];
-
-            int length = 0;
-            int offset = 0;
-
-            while ((length = is.read(bytes, offset, bytes.length - offset)) != -1) {
-                offset += length;
-
-                if (offset == bytes.length) {
-                    baos.write(bytes, 0, bytes.length);
-                    offset = 0;
-                }
+            int n;
+            while (length < bytes.length && (n = in.read(bytes, length, bytes.length - length)) != -1) {
+                length += n;
             }
-            if (offset != 0) {
-                baos.write(bytes, 0, offset);
-            }
-            return baos.toByteArray();
-        } finally {
+        } catch (IOException e) {
             is.close();
-        }
-    }
-
-    private static String readStreamAsString(InputStream is) throws IOException {
-        byte [] bytes = readStream(is);
-        if (bytes.length < 5)
-            // need at least 5 bytes to establish the encoding
-            throw new IllegalArgumentException("Malformatted JSON");
-
-        int offset = 0;
-        if ((bytes[0] == -1 && bytes[1] == -2)
-            || (bytes[0] == -2 && bytes[1] == -1)) {
-            // Skip UTF16/UTF32 Byte Order Mark (BOM)
-            offset = 2;
+            throw e;
         }
 
-        /* Infer the encoding as described in section 3 of http://www.ietf.org/rfc/rfc4627.txt
-         * which reads:
-         *   Encoding
-         *
-         *   JSON text SHALL be encoded in Unicode.  The default encoding is
-         *   UTF-8.
-         *
-         *   Since the first two characters of a JSON text will always be ASCII
-         *   characters [RFC0020], it is possible to determine whether an octet
-         *   stream is UTF-8, UTF-16 (BE or LE), or UTF-32 (BE or LE) by looking
-         *   at the pattern of nulls in the first four octets.
-         *
-         *         00 00 00 xx  UTF-32BE
-         *         00 xx 00 xx  UTF-16BE
-         *         xx 00 00 00  UTF-32LE
-         *         xx 00 xx 00  UTF-16LE
-         *         xx xx xx xx  UTF-8
-         */
         String encoding;
-        if (bytes[offset + 2] == 0) {
-            if (bytes[offset + 1] != 0) {
-                encoding = "UTF-16";
-            } else {
-                encoding = "UTF-32";
-            }
-        } else if (bytes[offset + 1] == 0) {
-            encoding = "UTF-16";
+        int bom = 0;
+        if (startsWith(bytes, length, 0xEF, 0xBB, 0xBF)) {
+            encoding = "UTF-8";
+            bom = 3;
+        } else if (startsWith(bytes, length, 0x00, 0x00, 0xFE, 0xFF)) {
+            encoding = "UTF-32BE";
+            bom = 4;
+        } else if (startsWith(bytes, length, 0xFF, 0xFE, 0x00, 0x00)) {
+            encoding = "UTF-32LE";
+            bom = 4;
+        } else if (startsWith(bytes, length, 0xFE, 0xFF)) {
+            encoding = "UTF-16BE";
+            bom = 2;
+        } else if (startsWith(bytes, length, 0xFF, 0xFE)) {
+            encoding = "UTF-16LE";
+            bom = 2;
+        } else if (length < 4) {
+            encoding = "UTF-8";
+        } else if (bytes[0] == 0) {
+            encoding = bytes[1] == 0 ? "UTF-32BE" : "UTF-16BE";
+        } else if (bytes[1] == 0) {
+            encoding = bytes[2] == 0 ? "UTF-32LE" : "UTF-16LE";
         } else {
             encoding = "UTF-8";
         }
-        return new String(bytes, encoding);
+        in.unread(bytes, bom, length - bom);
+        return new InputStreamReader(in, encoding);
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, int... prefix) {
+        if (length < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i])
+                return false;
+        }
+        return true;
     }
 }
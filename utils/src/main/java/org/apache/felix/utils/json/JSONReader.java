@@ -0,0 +1,414 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.utils.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A streaming JSON pull parser.
+ *
+ * The input is read once, character by character, and reported as a
+ * sequence of {@link Event events} returned by {@link #next()}. The text of
+ * the current key or value is available from {@link #getString()} and its
+ * converted value from {@link #getValue()}, using the same types as
+ * {@link JSONParser}. For example:
+ * <pre>
+ * JSONReader reader = new JSONReader(new StringReader("{\"a\": [1, true]}"));
+ * reader.next(); // START_OBJECT
+ * reader.next(); // KEY, getString() returns "a"
+ * reader.next(); // START_ARRAY
+ * reader.next(); // NUMBER, getValue() returns 1L
+ * reader.next(); // BOOLEAN, getValue() returns Boolean.TRUE
+ * reader.next(); // END_ARRAY
+ * reader.next(); // END_OBJECT
+ * reader.next(); // END_DOCUMENT
+ * </pre>
+ * Malformed input is reported with an {@link IllegalArgumentException}.
+ * Instances are not thread safe.
+ */
+public class JSONReader implements Closeable {
+    public enum Event {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, KEY,
+        STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    // Parser states, i.e. what is expected next.
+    private static final int VALUE = 0;
+    private static final int FIRST_KEY = 1;
+    private static final int KEY = 2;
+    private static final int FIRST_VALUE = 3;
+    private static final int SEPARATOR = 4;
+    private static final int DONE = 5;
+
+    private static final int KEY_CACHE_SIZE = 256;
+
+    private final Reader reader;
+    private char[] buf;
+    private int pos;
+    private int limit;
+    private long offset;
+
+    private int state = VALUE;
+    private boolean[] objects = new boolean[32];
+    private int depth;
+
+    private final StringBuilder text = new StringBuilder();
+    private String string;
+    private Object value;
+
+    // Keys repeat a lot in arrays of objects, reuse the same instances.
+    private final String[] keys = new String[KEY_CACHE_SIZE];
+
+    public JSONReader(Reader reader) {
+        this.reader = reader;
+        this.buf = new char[8192];
+    }
+
+    public JSONReader(CharSequence json) {
+        this.reader = null;
+        this.buf = json.toString().toCharArray();
+        this.limit = buf.length;
+    }
+
+    /**
+     * Advances to the next event.
+     * @return the next event, {@link Event#END_DOCUMENT} once the top-level
+     * value has been read.
+     * @throws IOException if reading the input fails.
+     */
+    public Event next() throws IOException {
+        string = null;
+        value = null;
+        for (;;) {
+            int c = skipWhitespace();
+            switch (state) {
+            case SEPARATOR:
+                if (depth == 0) {
+                    if (c != -1) {
+                        throw error("Unexpected character '" + (char) c + "' after the end of the document");
+                    }
+                    state = DONE;
+                    return Event.END_DOCUMENT;
+                }
+                pos++;
+                if (c == ',') {
+                    state = objects[depth - 1] ? KEY : VALUE;
+                    continue;
+                }
+                if (c == '}' && objects[depth - 1]) {
+                    depth--;
+                    return Event.END_OBJECT;
+                }
+                if (c == ']' && !objects[depth - 1]) {
+                    depth--;
+                    return Event.END_ARRAY;
+                }
+                pos--;
+                throw error("Expected ',' or the end of the " + (objects[depth - 1] ? "object" : "array"));
+            case FIRST_KEY:
+                if (c == '}') {
+                    pos++;
+                    depth--;
+                    state = SEPARATOR;
+                    return Event.END_OBJECT;
+                }
+                // fall through
+            case KEY:
+                if (c != '"') {
+                    throw error("Expected a key");
+                }
+                pos++;
+                string = readString(true);
+                if (skipWhitespace() != ':') {
+                    throw error("Expected ':' after key \"" + string + "\"");
+                }
+                pos++;
+                state = VALUE;
+                return Event.KEY;
+            case FIRST_VALUE:
+                if (c == ']') {
+                    pos++;
+                    depth--;
+                    state = SEPARATOR;
+                    return Event.END_ARRAY;
+                }
+                // fall through
+            case VALUE:
+                return readValue(c);
+            default:
+                return Event.END_DOCUMENT;
+            }
+        }
+    }
+
+    /**
+     * @return the text of the current key, string or number, the literal
+     * of the current boolean or null, or {@code null} for other events.
+     */
+    public String getString() {
+        return string;
+    }
+
+    /**
+     * @return the value of the current string, number, boolean or null:
+     * a {@link String}, a {@link Long} or a {@link Double}, a
+     * {@link Boolean}, or {@code null}.
+     */
+    public Object getValue() {
+        if (value == null && string != null && state == SEPARATOR && isNumber(string)) {
+            value = parseNumber(string);
+        }
+        return value;
+    }
+
+    /**
+     * @return the number of objects and arrays enclosing the current
+     * position.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    private Event readValue(int c) throws IOException {
+        pos++;
+        state = SEPARATOR;
+        switch (c) {
+        case '{':
+            push(true);
+            state = FIRST_KEY;
+            return Event.START_OBJECT;
+        case '[':
+            push(false);
+            state = FIRST_VALUE;
+            return Event.START_ARRAY;
+        case '"':
+            string = readString(false);
+            value = string;
+            return Event.STRING;
+        case -1:
+            pos--;
+            throw error("Unexpected end of document");
+        default:
+            pos--;
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                string = readToken();
+                return Event.NUMBER;
+            }
+            String literal = readToken();
+            if ("true".equalsIgnoreCase(literal)) {
+                string = "true";
+                value = Boolean.TRUE;
+                return Event.BOOLEAN;
+            } else if ("false".equalsIgnoreCase(literal)) {
+                string = "false";
+                value = Boolean.FALSE;
+                return Event.BOOLEAN;
+            } else if ("null".equalsIgnoreCase(literal)) {
+                string = "null";
+                return Event.NULL;
+            }
+            throw error(literal.length() > 0 ? "Unexpected value '" + literal + "'" : "Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            boolean[] newObjects = new boolean[depth * 2];
+            System.arraycopy(objects, 0, newObjects, 0, depth);
+            objects = newObjects;
+        }
+        objects[depth++] = object;
+    }
+
+    private int skipWhitespace() throws IOException {
+        for (;;) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buf[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Reads the rest of a number or a literal.
+     */
+    private String readToken() throws IOException {
+        text.setLength(0);
+        for (;;) {
+            if (pos == limit && !fill()) {
+                break;
+            }
+            char c = buf[pos];
+            if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || c == '-' || c == '+' || c == '.') {
+                text.append(c);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Reads a string after its opening quote.
+     */
+    private String readString(boolean key) throws IOException {
+        // Fast path: the string is in the buffer and has no escapes, so it
+        // can be created directly, or reused from the key cache.
+        int start = pos;
+        int hash = 0;
+        for (int i = start; i < limit; i++) {
+            char c = buf[i];
+            if (c == '"') {
+                pos = i + 1;
+                int len = i - start;
+                if (key) {
+                    int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+                    String cached = keys[slot];
+                    if (cached != null && cached.hashCode() == hash && cached.length() == len
+                        && regionMatches(cached, start)) {
+                        return cached;
+                    }
+                    return keys[slot] = new String(buf, start, len);
+                }
+                return new String(buf, start, len);
+            }
+            if (c == '\\') {
+                break;
+            }
+            hash = 31 * hash + c;
+        }
+
+        text.setLength(0);
+        for (;;) {
+            if (pos == limit && !fill()) {
+                throw error("Unterminated string");
+            }
+            char c = buf[pos++];
+            if (c == '"') {
+                return text.toString();
+            }
+            if (c != '\\') {
+                text.append(c);
+                continue;
+            }
+            if (pos == limit && !fill()) {
+                throw error("Unterminated string");
+            }
+            c = buf[pos++];
+            switch (c) {
+            case 'b':
+                text.append('\b');
+                break;
+            case 'f':
+                text.append('\f');
+                break;
+            case 'n':
+                text.append('\n');
+                break;
+            case 'r':
+                text.append('\r');
+                break;
+            case 't':
+                text.append('\t');
+                break;
+            case 'u':
+                int uc = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (pos == limit && !fill()) {
+                        throw error("Unterminated string");
+                    }
+                    int digit = Character.digit(buf[pos++], 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape");
+                    }
+                    uc = (uc << 4) + digit;
+                }
+                text.append((char) uc);
+                break;
+            default:
+                // \" \\ \/ and lenient handling of anything else
+                text.append(c);
+            }
+        }
+    }
+
+    private boolean regionMatches(String s, int start) {
+        for (int i = 0, len = s.length(); i < len; i++) {
+            if (s.charAt(i) != buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        if (reader == null) {
+            return false;
+        }
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        while ((n = reader.read(buf, 0, buf.length)) == 0) {
+            // Keep trying, a reader may return nothing without being at the end.
+        }
+        if (n < 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Malformatted JSON: " + message + " at offset " + (offset + pos));
+    }
+
+    private static boolean isNumber(String s) {
+        char c = s.charAt(0);
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    static Object parseNumber(String s) {
+        try {
+            if (s.indexOf('.') >= 0 || s.indexOf('e') >= 0 || s.indexOf('E') >= 0) {
+                return Double.valueOf(s);
+            }
+            try {
+                return Long.valueOf(s);
+            } catch (NumberFormatException e) {
+                // Too large for a long
+                return Double.valueOf(s);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformatted JSON number: " + s);
+        }
+    }
+}
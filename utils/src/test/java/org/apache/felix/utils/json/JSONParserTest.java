@@ -16,6 +16,8 @@
  */
 package org.apache.felix.utils.json;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.Collections;
@@ -27,7 +29,9 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class JSONParserTest {
     @Test
@@ -142,4 +146,64 @@ public class JSONParserTest {
 
         assertEquals("hi ", l.get(1));
     }
+
+    @Test
+    public void testNumbersAndLiterals() throws Exception {
+        String s = "[-1, 1e3, 2.5E-1, 12345678901234567890, null, TRUE, False]";
+
+        List<Object> res = new JSONParser(s).getParsedList();
+        assertEquals(-1L, res.get(0));
+        assertEquals(1000d, res.get(1));
+        assertEquals(0.25d, res.get(2));
+        assertEquals(12345678901234567890d, res.get(3));
+        assertNull(res.get(4));
+        assertEquals(true, res.get(5));
+        assertEquals(false, res.get(6));
+    }
+
+    @Test
+    public void testInputStreamEncodings() throws Exception {
+        String s = "{\"k\u00e9y\": \"v\u00e0lue \u2708\"}";
+        for (String encoding : new String[] {"UTF-8", "UTF-16BE", "UTF-16LE", "UTF-16", "UTF-32BE", "UTF-32LE"}) {
+            JSONParser jp = new JSONParser(new ByteArrayInputStream(s.getBytes(encoding)));
+            assertEquals(encoding, "v\u00e0lue \u2708", jp.getParsed().get("k\u00e9y"));
+        }
+
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '[', '1', ']'};
+        assertEquals(Arrays.<Object>asList(1L), new JSONParser(new ByteArrayInputStream(bom)).getParsedList());
+        assertEquals(Collections.emptyMap(), new JSONParser(new ByteArrayInputStream("{}".getBytes("UTF-8"))).getParsed());
+    }
+
+    @Test
+    public void testLargeDocument() throws Exception {
+        // Spans many buffers of the underlying reader
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"id\": ").append(i).append(", \"name\": \"item \\\"").append(i).append("\\\"\"}");
+        }
+        sb.append(']');
+
+        List<Object> res = new JSONParser(new StringReader(sb.toString())).getParsedList();
+        assertEquals(10000, res.size());
+        Map<?, ?> last = (Map<?, ?>) res.get(9999);
+        assertEquals(9999L, last.get("id"));
+        assertEquals("item \"9999\"", last.get("name"));
+        assertEquals(res, new JSONParser(sb).getParsedList());
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        String[] invalid = {"", "\"a\"", "{\"a\" 1}", "{\"a\": 1,}", "[1 2]", "[1, 2", "{\"a\": 1}}",
+            "{\"a\": tru}", "{\"a\": \"b}", "{a: 1}", "[1] [2]"};
+        for (String s : invalid) {
+            try {
+                new JSONParser(s);
+                fail("Should not parse: " + s);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Malformatted JSON"));
+            }
+        }
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.utils.json;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.felix.utils.json.JSONReader.Event;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class JSONReaderTest {
+    @Test
+    public void testEvents() throws Exception {
+        JSONReader reader = new JSONReader("{\"a\": [1, 2.5, \"x\", true, null], \"b\": {}}");
+        List<Object> events = new ArrayList<Object>();
+        for (Event e = reader.next(); e != Event.END_DOCUMENT; e = reader.next()) {
+            events.add(e);
+            if (e == Event.KEY)
+                events.add(reader.getString());
+            else if (reader.getString() != null)
+                events.add(reader.getValue());
+        }
+        assertEquals(Arrays.<Object>asList(
+            Event.START_OBJECT,
+            Event.KEY, "a",
+            Event.START_ARRAY,
+            Event.NUMBER, 1L,
+            Event.NUMBER, 2.5d,
+            Event.STRING, "x",
+            Event.BOOLEAN, Boolean.TRUE,
+            Event.NULL, null,
+            Event.END_ARRAY,
+            Event.KEY, "b",
+            Event.START_OBJECT,
+            Event.END_OBJECT,
+            Event.END_OBJECT), events);
+        assertEquals(Event.END_DOCUMENT, reader.next());
+    }
+
+    @Test
+    public void testDepth() throws Exception {
+        JSONReader reader = new JSONReader("[[[]]]");
+        assertEquals(Event.START_ARRAY, reader.next());
+        assertEquals(1, reader.getDepth());
+        assertEquals(Event.START_ARRAY, reader.next());
+        assertEquals(Event.START_ARRAY, reader.next());
+        assertEquals(3, reader.getDepth());
+        assertEquals(Event.END_ARRAY, reader.next());
+        assertEquals(2, reader.getDepth());
+    }
+
+    @Test
+    public void testSmallReads() throws Exception {
+        // A reader returning one character at a time splits every token
+        Reader reader = new StringReader("{\"key\": \"a\\u0062c\\n\", \"n\": -12.5e1}") {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws java.io.IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+        };
+        JSONReader jr = new JSONReader(reader);
+        assertEquals(Event.START_OBJECT, jr.next());
+        assertEquals(Event.KEY, jr.next());
+        assertEquals("key", jr.getString());
+        assertEquals(Event.STRING, jr.next());
+        assertEquals("abc\n", jr.getValue());
+        assertEquals(Event.KEY, jr.next());
+        assertEquals(Event.NUMBER, jr.next());
+        assertEquals(-125d, jr.getValue());
+        assertEquals(Event.END_OBJECT, jr.next());
+        assertEquals(Event.END_DOCUMENT, jr.next());
+    }
+
+    @Test
+    public void testKeysAreShared() throws Exception {
+        JSONReader reader = new JSONReader("[{\"name\": 1}, {\"name\": 2}]");
+        reader.next();
+        reader.next();
+        reader.next();
+        String first = reader.getString();
+        reader.next();
+        reader.next();
+        reader.next();
+        reader.next();
+        assertEquals("name", reader.getString());
+        assertSame(first, reader.getString());
+    }
+}
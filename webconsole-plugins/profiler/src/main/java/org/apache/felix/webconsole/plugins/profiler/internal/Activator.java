@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceRegistration;
+
+public class Activator implements BundleActivator
+{
+
+    private Profiler profiler;
+
+    public void start(final BundleContext bundleContext)
+    {
+        profiler = new Profiler(bundleContext);
+
+        // install the Gogo commands
+        Dictionary<String, Object> commandProps = new Hashtable<String, Object>();
+        commandProps.put("osgi.command.scope", ProfilerCommand.SCOPE);
+        commandProps.put("osgi.command.function", ProfilerCommand.FUNCTIONS);
+        new AbstractServiceFactory(bundleContext, commandProps, ProfilerCommand.class.getName())
+        {
+            @Override
+            protected Object createObject()
+            {
+                return new ProfilerCommand(profiler);
+            }
+        };
+
+        // install Web Console plugin
+        Dictionary<String, Object> pluginProps = new Hashtable<String, Object>();
+        pluginProps.put("felix.webconsole.label", ProfilerConstants.LABEL);
+        pluginProps.put("felix.webconsole.category", ProfilerConstants.CATEGORY);
+        new AbstractServiceFactory(bundleContext, pluginProps, "javax.servlet.Servlet",
+            "org.apache.felix.webconsole.ConfigurationPrinter")
+        {
+            @Override
+            public Object createObject()
+            {
+                return new ProfilerPanel(bundleContext, profiler);
+            }
+        };
+    }
+
+    public void stop(BundleContext bundleContext)
+    {
+        if (profiler != null)
+        {
+            profiler.dispose();
+            profiler = null;
+        }
+    }
+
+    private static abstract class AbstractServiceFactory implements ServiceFactory
+    {
+        private int counter;
+        private Object service;
+
+        public AbstractServiceFactory(BundleContext context, Dictionary<String, Object> properties,
+            String... serviceNames)
+        {
+            // ensure properties
+            if (properties == null)
+            {
+                properties = new Hashtable<String, Object>();
+            }
+
+            // default settings
+            properties.put(Constants.SERVICE_DESCRIPTION, "Profiler (" + serviceNames[0] + ")");
+            properties.put(Constants.SERVICE_VENDOR, "Apache Software Foundation");
+
+            context.registerService(serviceNames, this, properties);
+        }
+
+        public synchronized void ungetService(Bundle bundle, ServiceRegistration registration, Object service)
+        {
+            counter--;
+            if (counter <= 0)
+            {
+                this.service = null;
+            }
+        }
+
+        public synchronized Object getService(Bundle bundle, ServiceRegistration registration)
+        {
+            counter++;
+            if (service == null)
+            {
+                service = createObject();
+            }
+            return service;
+        }
+
+        protected abstract Object createObject();
+    }
+}
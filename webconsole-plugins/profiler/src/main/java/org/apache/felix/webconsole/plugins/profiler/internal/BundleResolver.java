@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * The <code>BundleResolver</code> attributes sampled frames to the bundles
+ * owning their classes. Stack samples only carry class names, so a class is
+ * looked up by its resource in the bundles: first as a plain entry of the
+ * bundle, then by the framework class loader for JRE and framework classes
+ * and finally through the {@link BundleWiring} of bundles embedding
+ * libraries on their <code>Bundle-ClassPath</code>. Results are cached per
+ * class and dropped whenever the set of installed bundles changes.
+ */
+class BundleResolver implements SynchronousBundleListener
+{
+
+    private static final Object UNKNOWN = new Object();
+
+    private final BundleContext bundleContext;
+
+    private final Map<String, Object> classes = new ConcurrentHashMap<String, Object>();
+
+    private final Map<String, Bundle> packages = new ConcurrentHashMap<String, Bundle>();
+
+    private final Map<Long, Boolean> embedding = new ConcurrentHashMap<Long, Boolean>();
+
+    BundleResolver(final BundleContext bundleContext)
+    {
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Returns the bundle owning the named class or <code>null</code> if the
+     * class cannot be found in any bundle nor the framework.
+     */
+    Bundle getBundle(final String className)
+    {
+        Object bundle = classes.get(className);
+        if (bundle == null)
+        {
+            bundle = findBundle(className);
+            classes.put(className, bundle == null ? UNKNOWN : bundle);
+        }
+        return bundle == UNKNOWN ? null : (Bundle) bundle;
+    }
+
+    public void bundleChanged(final BundleEvent event)
+    {
+        switch (event.getType())
+        {
+            case BundleEvent.INSTALLED:
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNRESOLVED:
+            case BundleEvent.UNINSTALLED:
+                classes.clear();
+                packages.clear();
+                embedding.remove(event.getBundle().getBundleId());
+                break;
+        }
+    }
+
+    private Bundle findBundle(final String className)
+    {
+        final int lastDot = className.lastIndexOf('.');
+        final String pkg = lastDot > 0 ? className.substring(0, lastDot) : "";
+        final String resource = className.replace('.', '/') + ".class";
+
+        // try the bundle which provided the last class of the package first
+        final Bundle hint = packages.get(pkg);
+        if (hint != null && hint.getState() != Bundle.UNINSTALLED && hint.getEntry(resource) != null)
+        {
+            return hint;
+        }
+
+        final Bundle[] bundles = bundleContext.getBundles();
+        for (int i = 0; i < bundles.length; i++)
+        {
+            if (bundles[i].getBundleId() != 0 && bundles[i].getState() != Bundle.UNINSTALLED
+                && bundles[i].getEntry(resource) != null)
+            {
+                packages.put(pkg, bundles[i]);
+                return bundles[i];
+            }
+        }
+
+        // JRE and framework classes are visible through the system bundle
+        final Bundle systemBundle = bundleContext.getBundle(0);
+        try
+        {
+            final Bundle owner = FrameworkUtil.getBundle(systemBundle.loadClass(className));
+            return owner != null ? owner : systemBundle;
+        }
+        catch (ClassNotFoundException cnfe)
+        {
+            // not a framework class
+        }
+
+        // libraries embedded on the Bundle-ClassPath
+        final String path = lastDot > 0 ? resource.substring(0, lastDot) : "/";
+        final String name = resource.substring(lastDot + 1);
+        for (int i = 0; i < bundles.length; i++)
+        {
+            if (isEmbedding(bundles[i]))
+            {
+                final BundleWiring wiring = bundles[i].adapt(BundleWiring.class);
+                if (wiring != null)
+                {
+                    final Collection<String> found = wiring.listResources(path, name,
+                        BundleWiring.LISTRESOURCES_LOCAL);
+                    if (found != null && !found.isEmpty())
+                    {
+                        return bundles[i];
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private boolean isEmbedding(final Bundle bundle)
+    {
+        if (bundle.getBundleId() == 0 || bundle.getState() == Bundle.UNINSTALLED)
+        {
+            return false;
+        }
+
+        Boolean embeds = embedding.get(bundle.getBundleId());
+        if (embeds == null)
+        {
+            final Object classPath = bundle.getHeaders("").get(Constants.BUNDLE_CLASSPATH);
+            embeds = Boolean.valueOf(classPath != null && !".".equals(classPath.toString().trim()));
+            embedding.put(bundle.getBundleId(), embeds);
+        }
+        return embeds.booleanValue();
+    }
+}
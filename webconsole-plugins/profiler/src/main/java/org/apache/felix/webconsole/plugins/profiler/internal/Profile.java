@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * The <code>Profile</code> aggregates the stack samples taken during one
+ * sampling window. Stacks are kept in the collapsed ("folded") form used by
+ * flame graph tools: the frames from the outermost to the innermost call
+ * joined by semicolons, each mapped to the number of times it was sampled.
+ */
+final class Profile
+{
+
+    private final long startTime;
+
+    private final int interval;
+
+    private final Map<String, long[]> stacks = new HashMap<String, long[]>();
+
+    private long endTime;
+
+    private int rounds;
+
+    private long samples;
+
+    private long truncated;
+
+    private long samplingNanos;
+
+    Profile(final int interval)
+    {
+        this.startTime = System.currentTimeMillis();
+        this.interval = interval;
+    }
+
+    // ---------- sampling
+
+    /**
+     * Adds a single thread stack to the profile. The trace is ordered as
+     * returned by the VM, that is innermost frame first.
+     */
+    synchronized void add(final StackTraceElement[] trace)
+    {
+        final StringBuilder buf = new StringBuilder(trace.length * 48);
+        for (int i = trace.length - 1; i >= 0; i--)
+        {
+            if (buf.length() > 0)
+            {
+                buf.append(';');
+            }
+            buf.append(trace[i].getClassName()).append('.').append(trace[i].getMethodName());
+        }
+
+        samples++;
+        final String key = buf.toString();
+        final long[] count = stacks.get(key);
+        if (count != null)
+        {
+            count[0]++;
+        }
+        else if (stacks.size() < ProfilerConstants.MAX_STACKS)
+        {
+            stacks.put(key, new long[] { 1 });
+        }
+        else
+        {
+            truncated++;
+        }
+    }
+
+    /**
+     * Records the completion of one sampling round across all threads and
+     * the time it took.
+     */
+    synchronized void round(final long nanos)
+    {
+        rounds++;
+        samplingNanos += nanos;
+    }
+
+    synchronized void finish()
+    {
+        endTime = System.currentTimeMillis();
+    }
+
+    // ---------- status
+
+    long getStartTime()
+    {
+        return startTime;
+    }
+
+    synchronized long getEndTime()
+    {
+        return endTime;
+    }
+
+    int getInterval()
+    {
+        return interval;
+    }
+
+    synchronized int getRounds()
+    {
+        return rounds;
+    }
+
+    synchronized long getSamples()
+    {
+        return samples;
+    }
+
+    synchronized long getTruncated()
+    {
+        return truncated;
+    }
+
+    /**
+     * Returns the mean time in microseconds spent taking one sampling round.
+     */
+    synchronized long getMeanRoundMicros()
+    {
+        return rounds == 0 ? 0 : samplingNanos / rounds / 1000;
+    }
+
+    // ---------- reports
+
+    /**
+     * Writes the collapsed stacks, one per line followed by a blank and the
+     * sample count, as consumed by <code>flamegraph.pl</code> and
+     * compatible viewers.
+     */
+    void printFolded(final PrintWriter pw)
+    {
+        for (Map.Entry<String, long[]> stack : copyStacks().entrySet())
+        {
+            pw.print(stack.getKey());
+            pw.print(' ');
+            pw.println(stack.getValue()[0]);
+        }
+    }
+
+    /**
+     * Returns the sampled methods ordered by the number of samples in which
+     * they were the innermost frame (self) and then by the number of samples
+     * they appeared in at all (total).
+     */
+    List<Entry> getHotMethods(final BundleResolver resolver)
+    {
+        final Map<String, Entry> methods = new HashMap<String, Entry>();
+        final Set<String> seen = new HashSet<String>();
+        for (Map.Entry<String, long[]> stack : copyStacks().entrySet())
+        {
+            final String[] frames = split(stack.getKey());
+            final long count = stack.getValue()[0];
+            seen.clear();
+            for (int i = 0; i < frames.length; i++)
+            {
+                Entry entry = methods.get(frames[i]);
+                if (entry == null)
+                {
+                    entry = new Entry(frames[i], resolver.getBundle(getClassName(frames[i])));
+                    methods.put(frames[i], entry);
+                }
+                // recursive calls count once in total
+                if (seen.add(frames[i]))
+                {
+                    entry.total += count;
+                }
+                if (i == frames.length - 1)
+                {
+                    entry.self += count;
+                }
+            }
+        }
+        return sort(methods);
+    }
+
+    /**
+     * Returns the bundles owning sampled code. A sample is accounted as self
+     * time to the bundle of the innermost frame not owned by the system
+     * bundle, so time spent in JRE or framework code is charged to the
+     * bundle calling it. Total counts every sample a bundle appears in.
+     */
+    List<Entry> getHotBundles(final BundleResolver resolver)
+    {
+        final Map<String, Entry> bundles = new HashMap<String, Entry>();
+        final Set<Bundle> seen = new HashSet<Bundle>();
+        for (Map.Entry<String, long[]> stack : copyStacks().entrySet())
+        {
+            final String[] frames = split(stack.getKey());
+            final long count = stack.getValue()[0];
+            seen.clear();
+            Bundle owner = null;
+            for (int i = frames.length - 1; i >= 0; i--)
+            {
+                final Bundle bundle = resolver.getBundle(getClassName(frames[i]));
+                if (bundle != null)
+                {
+                    if (seen.add(bundle))
+                    {
+                        getEntry(bundles, bundle).total += count;
+                    }
+                    if (owner == null || (owner.getBundleId() == 0 && bundle.getBundleId() != 0))
+                    {
+                        owner = bundle;
+                    }
+                }
+            }
+            if (owner != null)
+            {
+                getEntry(bundles, owner).self += count;
+            }
+        }
+        return sort(bundles);
+    }
+
+    // ---------- internal
+
+    private synchronized Map<String, long[]> copyStacks()
+    {
+        final Map<String, long[]> copy = new HashMap<String, long[]>(stacks.size() * 4 / 3 + 1);
+        for (Map.Entry<String, long[]> stack : stacks.entrySet())
+        {
+            copy.put(stack.getKey(), new long[] { stack.getValue()[0] });
+        }
+        return copy;
+    }
+
+    private static Entry getEntry(final Map<String, Entry> entries, final Bundle bundle)
+    {
+        final String key = String.valueOf(bundle.getBundleId());
+        Entry entry = entries.get(key);
+        if (entry == null)
+        {
+            String name = bundle.getSymbolicName();
+            if (name == null)
+            {
+                name = bundle.getLocation();
+            }
+            entry = new Entry(name + " (" + bundle.getBundleId() + ")", bundle);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static String[] split(final String stack)
+    {
+        final List<String> frames = new ArrayList<String>();
+        int start = 0;
+        for (int semi = stack.indexOf(';'); semi >= 0; semi = stack.indexOf(';', start))
+        {
+            frames.add(stack.substring(start, semi));
+            start = semi + 1;
+        }
+        frames.add(stack.substring(start));
+        return frames.toArray(new String[frames.size()]);
+    }
+
+    static String getClassName(final String frame)
+    {
+        final int dot = frame.lastIndexOf('.');
+        return dot > 0 ? frame.substring(0, dot) : frame;
+    }
+
+    private static List<Entry> sort(final Map<String, Entry> entries)
+    {
+        final List<Entry> list = new ArrayList<Entry>(entries.values());
+        Collections.sort(list, new Comparator<Entry>()
+        {
+            public int compare(final Entry e1, final Entry e2)
+            {
+                if (e1.self != e2.self)
+                {
+                    return e1.self > e2.self ? -1 : 1;
+                }
+                if (e1.total != e2.total)
+                {
+                    return e1.total > e2.total ? -1 : 1;
+                }
+                return e1.name.compareTo(e2.name);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * A method or bundle with the number of samples it was charged with
+     * itself and the number of samples it appeared in.
+     */
+    static final class Entry
+    {
+        final String name;
+
+        final Bundle bundle;
+
+        long self;
+
+        long total;
+
+        Entry(final String name, final Bundle bundle)
+        {
+            this.name = name;
+            this.bundle = bundle;
+        }
+    }
+}
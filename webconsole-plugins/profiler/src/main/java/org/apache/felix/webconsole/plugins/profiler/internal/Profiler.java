@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.osgi.framework.BundleContext;
+
+/**
+ * The <code>Profiler</code> takes periodic stack samples of all runnable
+ * threads over a limited window and collects them into a {@link Profile}.
+ * Only one sampling window runs at any time; the last profile is kept
+ * after the window has passed until the next one is started.
+ */
+final class Profiler
+{
+
+    /**
+     * Frames on top of a runnable thread which actually wait for I/O in
+     * native code. Samples ending in one of these are not counted, as they
+     * consume no CPU although reported as runnable.
+     */
+    private static final Set<String> IDLE_FRAMES = new HashSet<String>();
+    static
+    {
+        IDLE_FRAMES.add("sun.nio.ch.EPollArrayWrapper.epollWait");
+        IDLE_FRAMES.add("sun.nio.ch.EPoll.wait");
+        IDLE_FRAMES.add("sun.nio.ch.KQueueArrayWrapper.kevent0");
+        IDLE_FRAMES.add("sun.nio.ch.KQueue.poll");
+        IDLE_FRAMES.add("sun.nio.ch.WindowsSelectorImpl$SubSelector.poll0");
+        IDLE_FRAMES.add("sun.nio.ch.ServerSocketChannelImpl.accept0");
+        IDLE_FRAMES.add("sun.nio.ch.Net.accept");
+        IDLE_FRAMES.add("sun.nio.ch.Net.poll");
+        IDLE_FRAMES.add("java.net.PlainSocketImpl.socketAccept");
+        IDLE_FRAMES.add("java.net.DualStackPlainSocketImpl.accept0");
+        IDLE_FRAMES.add("java.net.SocketInputStream.socketRead0");
+        IDLE_FRAMES.add("java.io.FileInputStream.readBytes");
+        IDLE_FRAMES.add("java.lang.ref.Reference.waitForReferencePendingList");
+    }
+
+    private final BundleContext bundleContext;
+
+    private final BundleResolver resolver;
+
+    private final ThreadMXBean threadBean;
+
+    private final int defaultInterval;
+
+    private final int defaultDuration;
+
+    private final int maxDepth;
+
+    private Sampler sampler;
+
+    private Profile profile;
+
+    Profiler(final BundleContext bundleContext)
+    {
+        this.bundleContext = bundleContext;
+        this.resolver = new BundleResolver(bundleContext);
+        this.threadBean = ManagementFactory.getThreadMXBean();
+        this.defaultInterval = getProperty(ProfilerConstants.PROP_INTERVAL, ProfilerConstants.DEFAULT_INTERVAL);
+        this.defaultDuration = getProperty(ProfilerConstants.PROP_DURATION, ProfilerConstants.DEFAULT_DURATION);
+        this.maxDepth = getProperty(ProfilerConstants.PROP_MAX_DEPTH, ProfilerConstants.DEFAULT_MAX_DEPTH);
+
+        bundleContext.addBundleListener(resolver);
+    }
+
+    void dispose()
+    {
+        bundleContext.removeBundleListener(resolver);
+        stop();
+    }
+
+    BundleResolver getResolver()
+    {
+        return resolver;
+    }
+
+    int getDefaultInterval()
+    {
+        return defaultInterval;
+    }
+
+    int getDefaultDuration()
+    {
+        return defaultDuration;
+    }
+
+    /**
+     * Starts a new sampling window, replacing the last profile.
+     *
+     * @param duration The length of the window in seconds, values less than
+     *            one select the default duration
+     * @param interval The time between samples in milliseconds, values less
+     *            than one select the default interval
+     * @return The new profile being sampled
+     * @throws IllegalStateException if a sampling window is already running
+     */
+    synchronized Profile start(int duration, int interval)
+    {
+        if (isRunning())
+        {
+            throw new IllegalStateException("Profiler is already sampling");
+        }
+
+        if (duration <= 0)
+        {
+            duration = defaultDuration;
+        }
+        if (interval <= 0)
+        {
+            interval = defaultInterval;
+        }
+
+        profile = new Profile(Math.max(interval, ProfilerConstants.MIN_INTERVAL));
+        sampler = new Sampler(profile, Math.min(duration, ProfilerConstants.MAX_DURATION) * 1000L);
+        sampler.start();
+        return profile;
+    }
+
+    /**
+     * Stops the running sampling window, if any, and waits for the sampler
+     * to terminate.
+     */
+    void stop()
+    {
+        final Sampler current;
+        synchronized (this)
+        {
+            current = sampler;
+            sampler = null;
+        }
+
+        if (current != null)
+        {
+            current.interrupt();
+            try
+            {
+                current.join();
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    synchronized boolean isRunning()
+    {
+        return sampler != null && sampler.isAlive();
+    }
+
+    /**
+     * Returns the profile of the running or last sampling window or
+     * <code>null</code> if none has been started yet.
+     */
+    synchronized Profile getProfile()
+    {
+        return profile;
+    }
+
+    // ---------- reports
+
+    void printStatus(final PrintWriter pw)
+    {
+        final Profile profile = getProfile();
+        if (profile == null)
+        {
+            pw.println("No profile has been taken yet.");
+            return;
+        }
+
+        final DateFormat format = DateFormat.getDateTimeInstance();
+        pw.print("Started " + format.format(new Date(profile.getStartTime())));
+        if (isRunning())
+        {
+            pw.println(", sampling");
+        }
+        else
+        {
+            pw.println(", finished " + format.format(new Date(profile.getEndTime())));
+        }
+        pw.println(profile.getSamples() + " samples in " + profile.getRounds() + " rounds every "
+            + profile.getInterval() + "ms, " + profile.getMeanRoundMicros() + "us per round");
+        if (profile.getTruncated() > 0)
+        {
+            pw.println(profile.getTruncated() + " samples of distinct stacks beyond the first "
+                + ProfilerConstants.MAX_STACKS + " not kept");
+        }
+    }
+
+    void printReport(final PrintWriter pw, final int max)
+    {
+        printStatus(pw);
+
+        final Profile profile = getProfile();
+        if (profile != null)
+        {
+            pw.println();
+            pw.println("Hot Bundles");
+            print(pw, profile.getHotBundles(resolver), profile.getSamples(), max, false);
+
+            pw.println();
+            pw.println("Hot Methods");
+            print(pw, profile.getHotMethods(resolver), profile.getSamples(), max, true);
+        }
+    }
+
+    private static void print(final PrintWriter pw, final List<Profile.Entry> entries, final long samples,
+        final int max, final boolean withBundle)
+    {
+        pw.println(pad("Self", 8) + pad("Total", 8) + "  Name");
+        int count = 0;
+        for (Iterator<Profile.Entry> ei = entries.iterator(); ei.hasNext() && count < max; count++)
+        {
+            final Profile.Entry entry = ei.next();
+            pw.print(pad(percent(entry.self, samples), 8));
+            pw.print(pad(percent(entry.total, samples), 8));
+            pw.print("  ");
+            pw.print(entry.name);
+            if (withBundle && entry.bundle != null)
+            {
+                pw.print(" [" + entry.bundle.getBundleId() + "]");
+            }
+            pw.println();
+        }
+    }
+
+    static String percent(final long count, final long samples)
+    {
+        if (samples == 0)
+        {
+            return "0.0%";
+        }
+        final long permille = count * 1000 / samples;
+        return (permille / 10) + "." + (permille % 10) + "%";
+    }
+
+    private static String pad(final String value, final int width)
+    {
+        final StringBuilder buf = new StringBuilder(width);
+        for (int i = value.length(); i < width; i++)
+        {
+            buf.append(' ');
+        }
+        return buf.append(value).toString();
+    }
+
+    private int getProperty(final String name, final int defaultValue)
+    {
+        final String value = bundleContext.getProperty(name);
+        if (value != null)
+        {
+            try
+            {
+                return Integer.parseInt(value);
+            }
+            catch (NumberFormatException nfe)
+            {
+                // ignore
+            }
+        }
+        return defaultValue;
+    }
+
+    private class Sampler extends Thread
+    {
+
+        private final Profile profile;
+
+        private final long duration;
+
+        Sampler(final Profile profile, final long duration)
+        {
+            super("Apache Felix Profiler Sampler");
+            setDaemon(true);
+            this.profile = profile;
+            this.duration = duration;
+        }
+
+        @Override
+        public void run()
+        {
+            final long self = getId();
+            final long end = System.currentTimeMillis() + duration;
+            try
+            {
+                while (!isInterrupted() && System.currentTimeMillis() < end)
+                {
+                    final long start = System.nanoTime();
+                    final ThreadInfo[] infos = threadBean.getThreadInfo(threadBean.getAllThreadIds(), maxDepth);
+                    for (int i = 0; i < infos.length; i++)
+                    {
+                        final ThreadInfo info = infos[i];
+                        if (info != null && info.getThreadId() != self
+                            && info.getThreadState() == Thread.State.RUNNABLE)
+                        {
+                            final StackTraceElement[] trace = info.getStackTrace();
+                            if (trace.length > 0 && !isIdle(trace[0]))
+                            {
+                                profile.add(trace);
+                            }
+                        }
+                    }
+                    profile.round(System.nanoTime() - start);
+
+                    Thread.sleep(profile.getInterval());
+                }
+            }
+            catch (InterruptedException ie)
+            {
+                // stopped
+            }
+            finally
+            {
+                profile.finish();
+            }
+        }
+
+        private boolean isIdle(final StackTraceElement top)
+        {
+            return top.isNativeMethod() && IDLE_FRAMES.contains(top.getClassName() + "." + top.getMethodName());
+        }
+    }
+}
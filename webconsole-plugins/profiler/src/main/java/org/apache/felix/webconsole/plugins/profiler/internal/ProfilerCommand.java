@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * The <code>ProfilerCommand</code> provides the Gogo shell commands of the
+ * <code>profiler</code> scope. It is registered with the function names
+ * listed in {@link #FUNCTIONS}; Gogo invokes the public methods by name.
+ */
+public class ProfilerCommand
+{
+
+    static final String SCOPE = "profiler";
+
+    static final String[] FUNCTIONS =
+        { "sample", "start", "stop", "status", "report", "folded" };
+
+    private static final int MAX_ENTRIES = 20;
+
+    private final Profiler profiler;
+
+    ProfilerCommand(final Profiler profiler)
+    {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Samples for the default duration and prints the report.
+     */
+    public void sample()
+    {
+        sample(0, 0);
+    }
+
+    /**
+     * Samples for the given number of seconds and prints the report.
+     */
+    public void sample(final int seconds)
+    {
+        sample(seconds, 0);
+    }
+
+    /**
+     * Samples for the given number of seconds every given number of
+     * milliseconds, waits for the window to pass and prints the report.
+     */
+    public void sample(final int seconds, final int interval)
+    {
+        profiler.start(seconds, interval);
+        try
+        {
+            while (profiler.isRunning())
+            {
+                Thread.sleep(100);
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            // the session was interrupted, report what has been sampled
+            profiler.stop();
+        }
+        report();
+    }
+
+    public void start()
+    {
+        start(0, 0);
+    }
+
+    public void start(final int seconds)
+    {
+        start(seconds, 0);
+    }
+
+    /**
+     * Starts sampling in the background.
+     */
+    public void start(final int seconds, final int interval)
+    {
+        profiler.start(seconds, interval);
+        status();
+    }
+
+    public void stop()
+    {
+        profiler.stop();
+        status();
+    }
+
+    public void status()
+    {
+        final PrintWriter pw = new PrintWriter(System.out);
+        profiler.printStatus(pw);
+        pw.flush();
+    }
+
+    public void report()
+    {
+        report(MAX_ENTRIES);
+    }
+
+    /**
+     * Prints the given number of the hottest bundles and methods.
+     */
+    public void report(final int max)
+    {
+        final PrintWriter pw = new PrintWriter(System.out);
+        profiler.printReport(pw, max);
+        pw.flush();
+    }
+
+    /**
+     * Prints the collapsed stacks of the last profile.
+     */
+    public void folded()
+    {
+        final PrintWriter pw = new PrintWriter(System.out);
+        printFolded(pw);
+        pw.flush();
+    }
+
+    /**
+     * Writes the collapsed stacks of the last profile to the given file.
+     */
+    public void folded(final String file) throws IOException
+    {
+        final PrintWriter pw = new PrintWriter(new FileWriter(file));
+        try
+        {
+            printFolded(pw);
+        }
+        finally
+        {
+            pw.close();
+        }
+    }
+
+    private void printFolded(final PrintWriter pw)
+    {
+        final Profile profile = profiler.getProfile();
+        if (profile != null)
+        {
+            profile.printFolded(pw);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+/**
+ * The <code>ProfilerConstants</code> provides some basic constants for
+ * the Profiler support bundle
+ */
+final class ProfilerConstants
+{
+
+    /**
+     * The label (or address) under which the Profiler Web Console Plugin
+     * is accessible.
+     */
+    static final String LABEL = "profiler";
+
+    /**
+     * The category under which the Profiler Web Console Plugin is listed.
+     */
+    static final String CATEGORY = "Status";
+
+    /**
+     * The name of the framework property providing the default sampling
+     * interval in milliseconds. If not set {@link #DEFAULT_INTERVAL} is used.
+     */
+    static final String PROP_INTERVAL = "felix.profiler.interval";
+
+    /**
+     * The name of the framework property providing the default length of
+     * a sampling window in seconds. If not set {@link #DEFAULT_DURATION} is
+     * used.
+     */
+    static final String PROP_DURATION = "felix.profiler.duration";
+
+    /**
+     * The name of the framework property providing the maximum number of
+     * frames taken per stack sample. If not set {@link #DEFAULT_MAX_DEPTH}
+     * is used.
+     */
+    static final String PROP_MAX_DEPTH = "felix.profiler.maxdepth";
+
+    /**
+     * Default sampling interval in milliseconds.
+     */
+    static final int DEFAULT_INTERVAL = 20;
+
+    /**
+     * Default length of a sampling window in seconds.
+     */
+    static final int DEFAULT_DURATION = 30;
+
+    /**
+     * Default maximum number of frames taken per stack sample.
+     */
+    static final int DEFAULT_MAX_DEPTH = 128;
+
+    /**
+     * The smallest sampling interval accepted in milliseconds. Shorter
+     * intervals cause the sampling itself to dominate the profile.
+     */
+    static final int MIN_INTERVAL = 5;
+
+    /**
+     * The longest sampling window accepted in seconds.
+     */
+    static final int MAX_DURATION = 3600;
+
+    /**
+     * The maximum number of distinct stacks kept for a profile. Samples
+     * for further distinct stacks are only counted as truncated.
+     */
+    static final int MAX_STACKS = 50000;
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.felix.webconsole.AbstractWebConsolePlugin;
+import org.apache.felix.webconsole.ConfigurationPrinter;
+import org.apache.felix.webconsole.WebConsoleUtil;
+import org.osgi.framework.BundleContext;
+
+@SuppressWarnings("serial")
+class ProfilerPanel extends AbstractWebConsolePlugin implements ConfigurationPrinter
+{
+
+    private static final String FOLDED = "/folded.txt";
+
+    private static final int MAX_ENTRIES = 50;
+
+    private final Profiler profiler;
+
+    ProfilerPanel(final BundleContext bundleContext, final Profiler profiler)
+    {
+        this.profiler = profiler;
+        activate(bundleContext);
+    }
+
+    // ---------- AbstractWebConsolePlugin
+
+    @Override
+    public String getLabel()
+    {
+        return ProfilerConstants.LABEL;
+    }
+
+    @Override
+    public String getTitle()
+    {
+        return "%profiler.title";
+    }
+
+    @Override
+    protected void renderContent(HttpServletRequest req, HttpServletResponse res) throws IOException
+    {
+        final PrintWriter pw = res.getWriter();
+        final String action = req.getContextPath() + req.getServletPath() + "/" + getLabel();
+        final boolean running = profiler.isRunning();
+        final Profile profile = profiler.getProfile();
+
+        pw.println("<form method='post' action='" + action + "'>");
+        pw.println("<p class='statline ui-state-highlight'>" + WebConsoleUtil.escapeHtml(getStatus(profile, running))
+            + "</p>");
+        pw.println("<table class='nicetable'><tr>");
+        if (running)
+        {
+            pw.println("<td><input type='hidden' name='command' value='stop' />");
+            pw.println("<input type='submit' value='${profiler.stop}' /></td>");
+        }
+        else
+        {
+            pw.println("<td>${profiler.duration} <input type='text' name='duration' size='5' value='"
+                + profiler.getDefaultDuration() + "' /></td>");
+            pw.println("<td>${profiler.interval} <input type='text' name='interval' size='5' value='"
+                + profiler.getDefaultInterval() + "' /></td>");
+            pw.println("<td><input type='hidden' name='command' value='start' />");
+            pw.println("<input type='submit' value='${profiler.start}' /></td>");
+        }
+        if (profile != null)
+        {
+            pw.println("<td><a href='" + action + FOLDED + "'>${profiler.folded}</a></td>");
+        }
+        pw.println("</tr></table>");
+        pw.println("</form>");
+
+        if (profile != null)
+        {
+            renderEntries(pw, "${profiler.bundles}", "${profiler.bundle}",
+                profile.getHotBundles(profiler.getResolver()), profile.getSamples(), false);
+            renderEntries(pw, "${profiler.methods}", "${profiler.method}",
+                profile.getHotMethods(profiler.getResolver()), profile.getSamples(), true);
+        }
+    }
+
+    // ---------- Configuration Printer
+
+    public void printConfiguration(PrintWriter pw)
+    {
+        profiler.printReport(pw, MAX_ENTRIES);
+    }
+
+    // ---------- GenericServlet
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException
+    {
+        final String pathInfo = request.getPathInfo();
+        if (pathInfo != null && pathInfo.endsWith(FOLDED))
+        {
+            final Profile profile = profiler.getProfile();
+            if (profile == null)
+            {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            response.setContentType("text/plain; charset=UTF-8");
+            WebConsoleUtil.setNoCache(response);
+            final PrintWriter pw = response.getWriter();
+            profile.printFolded(pw);
+            pw.flush();
+            return;
+        }
+
+        super.doGet(request, response);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+    {
+        final String command = WebConsoleUtil.getParameter(req, "command");
+        if ("start".equals(command))
+        {
+            try
+            {
+                profiler.start(getInt(req, "duration"), getInt(req, "interval"));
+            }
+            catch (IllegalStateException ise)
+            {
+                // already sampling
+            }
+            resp.sendRedirect(req.getRequestURI());
+        }
+        else if ("stop".equals(command))
+        {
+            profiler.stop();
+            resp.sendRedirect(req.getRequestURI());
+        }
+        else
+        {
+            super.doPost(req, resp);
+        }
+    }
+
+    // ---------- internal
+
+    private String getStatus(final Profile profile, final boolean running)
+    {
+        if (profile == null)
+        {
+            return "${profiler.status.none}";
+        }
+
+        final DateFormat format = DateFormat.getDateTimeInstance();
+        final StringBuilder buf = new StringBuilder();
+        buf.append(format.format(new Date(profile.getStartTime())));
+        if (running)
+        {
+            buf.append(" - ...");
+        }
+        else
+        {
+            buf.append(" - ").append(format.format(new Date(profile.getEndTime())));
+        }
+        buf.append(": ").append(profile.getSamples()).append(" samples in ");
+        buf.append(profile.getRounds()).append(" rounds every ").append(profile.getInterval()).append("ms, ");
+        buf.append(profile.getMeanRoundMicros()).append("us per round");
+        return buf.toString();
+    }
+
+    private void renderEntries(final PrintWriter pw, final String title, final String header,
+        final List<Profile.Entry> entries, final long samples, final boolean withBundle)
+    {
+        pw.println("<p class='statline ui-state-highlight'>" + title + "</p>");
+        pw.println("<table class='nicetable'>");
+        pw.println("<thead><tr><th>${profiler.self}</th><th>${profiler.total}</th><th>" + header
+            + "</th></tr></thead>");
+        pw.println("<tbody>");
+        int count = 0;
+        for (Iterator<Profile.Entry> ei = entries.iterator(); ei.hasNext() && count < MAX_ENTRIES; count++)
+        {
+            final Profile.Entry entry = ei.next();
+            pw.print("<tr><td>" + Profiler.percent(entry.self, samples) + "</td>");
+            pw.print("<td>" + Profiler.percent(entry.total, samples) + "</td><td>");
+            pw.print(WebConsoleUtil.escapeHtml(entry.name));
+            if (withBundle && entry.bundle != null)
+            {
+                pw.print(" <a href='${appRoot}/bundles/" + entry.bundle.getBundleId() + "'>["
+                    + entry.bundle.getBundleId() + "]</a>");
+            }
+            pw.println("</td></tr>");
+        }
+        pw.println("</tbody></table>");
+    }
+
+    private static int getInt(final HttpServletRequest req, final String name)
+    {
+        try
+        {
+            return Integer.parseInt(req.getParameter(name));
+        }
+        catch (Exception e)
+        {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Hashtable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class BundleResolverTest
+{
+
+    private BundleContext bundleContext;
+
+    private Bundle system;
+
+    private Bundle acme;
+
+    private Bundle embedding;
+
+    private BundleResolver resolver;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        system = bundle(0, null);
+        doThrow(new ClassNotFoundException()).when(system).loadClass(anyString());
+        doReturn(String.class).when(system).loadClass("java.lang.String");
+
+        acme = bundle(1, ".");
+        when(acme.getEntry("com/acme/Foo.class")).thenReturn(new URL("file:/com/acme/Foo.class"));
+
+        embedding = bundle(2, ".,lib/library.jar");
+        final BundleWiring wiring = mock(BundleWiring.class);
+        when(wiring.listResources("com/library", "Bar.class", BundleWiring.LISTRESOURCES_LOCAL)).thenReturn(
+            Collections.singletonList("com/library/Bar.class"));
+        when(embedding.adapt(BundleWiring.class)).thenReturn(wiring);
+
+        bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] { system, acme, embedding });
+        when(bundleContext.getBundle(0)).thenReturn(system);
+        resolver = new BundleResolver(bundleContext);
+    }
+
+    @Test
+    public void testBundleEntry()
+    {
+        assertEquals(acme, resolver.getBundle("com.acme.Foo"));
+    }
+
+    @Test
+    public void testFrameworkClass()
+    {
+        assertEquals(system, resolver.getBundle("java.lang.String"));
+    }
+
+    @Test
+    public void testEmbeddedLibrary()
+    {
+        assertEquals(embedding, resolver.getBundle("com.library.Bar"));
+    }
+
+    @Test
+    public void testUnknownClass()
+    {
+        assertNull(resolver.getBundle("com.unknown.Baz"));
+        assertNull(resolver.getBundle("com.unknown.Baz"));
+        verify(bundleContext, times(1)).getBundles();
+    }
+
+    @Test
+    public void testCachedUntilBundlesChange() throws Exception
+    {
+        assertEquals(acme, resolver.getBundle("com.acme.Foo"));
+        assertEquals(acme, resolver.getBundle("com.acme.Foo"));
+        verify(acme, times(1)).getEntry("com/acme/Foo.class");
+
+        // the class moves to another bundle
+        final Bundle other = bundle(3, ".");
+        when(other.getEntry("com/acme/Foo.class")).thenReturn(new URL("file:/com/acme/Foo.class"));
+        when(acme.getState()).thenReturn(Bundle.UNINSTALLED);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] { system, acme, other });
+        resolver.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, acme));
+
+        assertEquals(other, resolver.getBundle("com.acme.Foo"));
+    }
+
+    private static Bundle bundle(final long id, final String classPath)
+    {
+        final Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(id);
+        when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+        final Hashtable<String, String> headers = new Hashtable<String, String>();
+        if (classPath != null)
+        {
+            headers.put(Constants.BUNDLE_CLASSPATH, classPath);
+        }
+        when(bundle.getHeaders("")).thenReturn(headers);
+        return bundle;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+public class ProfileTest
+{
+
+    private BundleResolver resolver;
+
+    @Before
+    public void setUp()
+    {
+        final Bundle system = bundle(0, "org.apache.felix.framework");
+        final Bundle acme = bundle(1, "com.acme");
+
+        resolver = mock(BundleResolver.class);
+        when(resolver.getBundle("java.lang.String")).thenReturn(system);
+        when(resolver.getBundle("com.acme.Foo")).thenReturn(acme);
+    }
+
+    @Test
+    public void testFoldedStacks()
+    {
+        final Profile profile = newProfile();
+
+        final StringWriter out = new StringWriter();
+        profile.printFolded(new PrintWriter(out, true));
+        final String folded = out.toString();
+        assertEquals(2, folded.split("\n").length);
+        assertEquals(true, folded.contains("Main.run;com.acme.Foo.work;java.lang.String.indexOf 3\n"));
+        assertEquals(true, folded.contains("Main.run;com.acme.Foo.work 1\n"));
+        assertEquals(4, profile.getSamples());
+    }
+
+    @Test
+    public void testHotMethods()
+    {
+        final List<Profile.Entry> methods = newProfile().getHotMethods(resolver);
+
+        assertEquals(3, methods.size());
+        assertEntry("java.lang.String.indexOf", 3, 3, methods.get(0));
+        assertEntry("com.acme.Foo.work", 1, 4, methods.get(1));
+        assertEntry("Main.run", 0, 4, methods.get(2));
+        assertEquals(1, methods.get(1).bundle.getBundleId());
+        assertEquals(null, methods.get(2).bundle);
+    }
+
+    @Test
+    public void testRecursionCountedOnce()
+    {
+        final Profile profile = new Profile(10);
+        profile.add(trace("Main.run", "com.acme.Foo.work", "com.acme.Foo.work"));
+
+        final List<Profile.Entry> methods = profile.getHotMethods(resolver);
+        assertEntry("com.acme.Foo.work", 1, 1, methods.get(0));
+        assertEquals(1, profile.getHotBundles(resolver).get(0).total);
+    }
+
+    @Test
+    public void testHotBundles()
+    {
+        final List<Profile.Entry> bundles = newProfile().getHotBundles(resolver);
+
+        // time in the JRE is charged to the calling bundle
+        assertEquals(2, bundles.size());
+        assertEntry("com.acme (1)", 4, 4, bundles.get(0));
+        assertEntry("org.apache.felix.framework (0)", 0, 3, bundles.get(1));
+    }
+
+    @Test
+    public void testSystemBundleOnly()
+    {
+        final Profile profile = new Profile(10);
+        profile.add(trace("Main.run", "java.lang.String.indexOf"));
+
+        final List<Profile.Entry> bundles = profile.getHotBundles(resolver);
+        assertEquals(1, bundles.size());
+        assertEntry("org.apache.felix.framework (0)", 1, 1, bundles.get(0));
+    }
+
+    @Test
+    public void testTruncated()
+    {
+        final Profile profile = new Profile(10);
+        for (int i = 0; i <= ProfilerConstants.MAX_STACKS; i++)
+        {
+            profile.add(trace("Main.run", "Main.m" + i));
+        }
+        profile.add(trace("Main.run", "Main.m0"));
+
+        assertEquals(ProfilerConstants.MAX_STACKS + 2, profile.getSamples());
+        assertEquals(1, profile.getTruncated());
+        assertEquals(2, profile.getHotMethods(resolver).get(0).self);
+    }
+
+    @Test
+    public void testRounds()
+    {
+        final Profile profile = new Profile(10);
+        assertEquals(0, profile.getMeanRoundMicros());
+        profile.round(3000);
+        profile.round(5000);
+        assertEquals(2, profile.getRounds());
+        assertEquals(4, profile.getMeanRoundMicros());
+    }
+
+    @Test
+    public void testPercent()
+    {
+        assertEquals("0.0%", Profiler.percent(0, 0));
+        assertEquals("0.0%", Profiler.percent(0, 4));
+        assertEquals("33.3%", Profiler.percent(1, 3));
+        assertEquals("66.6%", Profiler.percent(2, 3));
+        assertEquals("100.0%", Profiler.percent(4, 4));
+    }
+
+    private Profile newProfile()
+    {
+        final Profile profile = new Profile(10);
+        for (int i = 0; i < 3; i++)
+        {
+            profile.add(trace("Main.run", "com.acme.Foo.work", "java.lang.String.indexOf"));
+        }
+        profile.add(trace("Main.run", "com.acme.Foo.work"));
+        return profile;
+    }
+
+    /**
+     * Returns a stack trace as reported by the VM, innermost frame first,
+     * for frames given from the outermost to the innermost call.
+     */
+    static StackTraceElement[] trace(final String... frames)
+    {
+        final StackTraceElement[] trace = new StackTraceElement[frames.length];
+        for (int i = 0; i < frames.length; i++)
+        {
+            final int dot = frames[i].lastIndexOf('.');
+            trace[frames.length - 1 - i] = new StackTraceElement(frames[i].substring(0, dot),
+                frames[i].substring(dot + 1), null, -1);
+        }
+        return trace;
+    }
+
+    private static Bundle bundle(final long id, final String symbolicName)
+    {
+        final Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(id);
+        when(bundle.getSymbolicName()).thenReturn(symbolicName);
+        return bundle;
+    }
+
+    private static void assertEntry(final String name, final long self, final long total, final Profile.Entry entry)
+    {
+        assertEquals(name, entry.name);
+        assertEquals(self, entry.self);
+        assertEquals(total, entry.total);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.plugins.profiler.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+
+public class ProfilerTest
+{
+
+    private BundleContext bundleContext;
+
+    private Profiler profiler;
+
+    @Before
+    public void setUp()
+    {
+        bundleContext = mock(BundleContext.class);
+        when(bundleContext.getProperty(ProfilerConstants.PROP_DURATION)).thenReturn("7");
+        when(bundleContext.getProperty(ProfilerConstants.PROP_INTERVAL)).thenReturn("no number");
+        profiler = new Profiler(bundleContext);
+    }
+
+    @After
+    public void tearDown()
+    {
+        profiler.dispose();
+    }
+
+    @Test
+    public void testConfiguration()
+    {
+        verify(bundleContext).addBundleListener(profiler.getResolver());
+        assertEquals(7, profiler.getDefaultDuration());
+        assertEquals(ProfilerConstants.DEFAULT_INTERVAL, profiler.getDefaultInterval());
+
+        profiler.dispose();
+        verify(bundleContext).removeBundleListener(profiler.getResolver());
+    }
+
+    @Test
+    public void testStartStop() throws InterruptedException
+    {
+        assertNull(profiler.getProfile());
+        assertFalse(profiler.isRunning());
+
+        final Profile profile = profiler.start(0, 1);
+        assertTrue(profiler.isRunning());
+        assertEquals(ProfilerConstants.MIN_INTERVAL, profile.getInterval());
+        try
+        {
+            profiler.start(0, 0);
+            fail("Only one sampling window may run");
+        }
+        catch (IllegalStateException ise)
+        {
+            // expected
+        }
+
+        waitForRounds(profile, 2);
+        profiler.stop();
+        assertFalse(profiler.isRunning());
+        assertEquals(profile, profiler.getProfile());
+        assertTrue(profile.getEndTime() >= profile.getStartTime());
+
+        // the profile of the last window is kept until the next one starts
+        final int rounds = profile.getRounds();
+        Thread.sleep(3 * ProfilerConstants.MIN_INTERVAL);
+        assertEquals(rounds, profile.getRounds());
+
+        final Profile next = profiler.start(0, 0);
+        assertEquals(ProfilerConstants.DEFAULT_INTERVAL, next.getInterval());
+        assertEquals(next, profiler.getProfile());
+        profiler.stop();
+    }
+
+    @Test
+    public void testWindowEnds() throws InterruptedException
+    {
+        final Profile profile = profiler.start(1, ProfilerConstants.MIN_INTERVAL);
+        final long timeout = System.currentTimeMillis() + 10000;
+        while (profiler.isRunning() && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(50);
+        }
+        assertFalse(profiler.isRunning());
+        assertTrue(profile.getEndTime() - profile.getStartTime() >= 1000);
+        assertTrue(profile.getRounds() > 0);
+    }
+
+    private static void waitForRounds(final Profile profile, final int rounds) throws InterruptedException
+    {
+        final long timeout = System.currentTimeMillis() + 10000;
+        while (profile.getRounds() < rounds && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(profile.getRounds() >= rounds);
+    }
+}
@@ -21,7 +21,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
@@ -184,6 +186,11 @@ public class Util
     {
         private final Locale locale;
 
+        // names and versions by bundle, the localized headers are
+        // expensive to get and each bundle takes part in many comparisons
+        private final Map names = new HashMap();
+        private final Map versions = new HashMap();
+
 
         BundleNameComparator( final Locale locale )
         {
@@ -217,16 +224,14 @@ public class Util
             }
 
             // compare the symbolic names
-            int snComp = Util.getName( b1, locale ).compareToIgnoreCase( Util.getName( b2, locale ) );
+            int snComp = getName( b1 ).compareToIgnoreCase( getName( b2 ) );
             if ( snComp != 0 )
             {
                 return snComp;
             }
 
             // same names, compare versions
-            Version v1 = Version.parseVersion( ( String ) b1.getHeaders().get( Constants.BUNDLE_VERSION ) );
-            Version v2 = Version.parseVersion( ( String ) b2.getHeaders().get( Constants.BUNDLE_VERSION ) );
-            int vComp = v1.compareTo( v2 );
+            int vComp = getVersion( b1 ).compareTo( getVersion( b2 ) );
             if ( vComp != 0 )
             {
                 return vComp;
@@ -241,5 +246,31 @@ public class Util
             // b1 id must be > b2 id because equality is already checked
             return 1;
         }
+
+
+        private String getName( final Bundle bundle )
+        {
+            final Long id = new Long( bundle.getBundleId() );
+            String name = ( String ) names.get( id );
+            if ( name == null )
+            {
+                name = Util.getName( bundle, locale );
+                names.put( id, name );
+            }
+            return name;
+        }
+
+
+        private Version getVersion( final Bundle bundle )
+        {
+            final Long id = new Long( bundle.getBundleId() );
+            Version version = ( Version ) versions.get( id );
+            if ( version == null )
+            {
+                version = Version.parseVersion( ( String ) bundle.getHeaders().get( Constants.BUNDLE_VERSION ) );
+                versions.put( id, version );
+            }
+            return version;
+        }
     }
 }
\ No newline at end of file
@@ -116,6 +116,7 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
 
     private ServiceRegistration configurationPrinter;
     private ServiceTracker bundleInfoTracker;
+    private ChangeCounter changeCounter;
 
     // templates
     private final String TEMPLATE_MAIN;
@@ -140,6 +141,9 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         bundleInfoTracker = new ServiceTracker( bundleContext, BundleInfoProvider.class.getName(), null);
         bundleInfoTracker.open();
 
+        changeCounter = new ChangeCounter();
+        changeCounter.register( BundleContextUtil.getWorkingBundleContext( bundleContext ) );
+
         // bootdelegation property parsing from Apache Felix R4SearchPolicyCore
         String bootDelegation = bundleContext.getProperty( Constants.FRAMEWORK_BOOTDELEGATION );
         bootDelegation = ( bootDelegation == null ) ? "java.*" : bootDelegation + ",java.*";
@@ -182,6 +186,12 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
             bundleInfoTracker = null;
         }
 
+        if ( changeCounter != null )
+        {
+            changeCounter.unregister();
+            changeCounter = null;
+        }
+
         super.deactivate();
     }
 
@@ -294,9 +304,20 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         {
             final String pluginRoot = ( String ) request.getAttribute( WebConsoleConstants.ATTR_PLUGIN_ROOT );
             final String servicesRoot = getServicesRoot( request );
+            final String filter = request.getParameter(FILTER_PARAM);
+            final Paging paging = Paging.fromRequest(request);
+
+            // the bundle list only changes with bundle events, the details of a
+            // single bundle also depend on start levels and using bundles
+            final ChangeCounter counter = this.changeCounter;
+            if ( reqInfo.bundle == null && counter != null
+                && counter.checkNotModified( request, response, request.getLocale() + "|" + filter + "|" + paging ) )
+            {
+                return;
+            }
             try
             {
-                this.renderJSON(response, reqInfo.bundle, pluginRoot, servicesRoot, request.getLocale(), request.getParameter(FILTER_PARAM), null );
+                this.renderJSON(response, reqInfo.bundle, pluginRoot, servicesRoot, request.getLocale(), filter, null, paging );
             }
             catch (InvalidSyntaxException e)
             {
@@ -424,7 +445,7 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
             final String servicesRoot = getServicesRoot( req );
             try
             {
-                this.renderJSON( resp, null, pluginRoot, servicesRoot, req.getLocale(), req.getParameter(FILTER_PARAM), bundleException );
+                this.renderJSON( resp, null, pluginRoot, servicesRoot, req.getLocale(), req.getParameter(FILTER_PARAM), bundleException, Paging.ALL );
             }
             catch (InvalidSyntaxException e)
             {
@@ -519,41 +540,89 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         vars.put( "drawDetails", reqInfo.bundleRequested ? Boolean.TRUE : Boolean.FALSE );
         vars.put( "currentBundle", (reqInfo.bundleRequested && reqInfo.bundle != null ? String.valueOf(reqInfo.bundle.getBundleId()) : "null"));
 
-        final String pluginRoot = ( String ) request.getAttribute( WebConsoleConstants.ATTR_PLUGIN_ROOT );
-        final String servicesRoot = getServicesRoot ( request );
-        StringWriter w = new StringWriter();
-        try
+        // the bundle list is loaded by the page in chunks, only the details
+        // of a single requested bundle are rendered into the page
+        if ( reqInfo.bundleRequested )
         {
-            writeJSON(w, reqInfo.bundle, pluginRoot, servicesRoot, request.getLocale(), request.getParameter(FILTER_PARAM), null );
+            final String pluginRoot = ( String ) request.getAttribute( WebConsoleConstants.ATTR_PLUGIN_ROOT );
+            final String servicesRoot = getServicesRoot ( request );
+            StringWriter w = new StringWriter();
+            try
+            {
+                writeJSON(w, reqInfo.bundle, pluginRoot, servicesRoot, request.getLocale(), request.getParameter(FILTER_PARAM), null, Paging.ALL );
+            }
+            catch (InvalidSyntaxException e)
+            {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Invalid LDAP filter specified");
+                return;
+            }
+            vars.put( "__bundles__", w.toString());
         }
-        catch (InvalidSyntaxException e)
+        else
         {
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Invalid LDAP filter specified");
-            return;
+            vars.put( "__bundles__", "null");
         }
-        vars.put( "__bundles__", w.toString());
 
         response.getWriter().print(TEMPLATE_MAIN);
     }
 
-    private void renderJSON( final HttpServletResponse response, final Bundle bundle, final String pluginRoot, final String servicesRoot, final Locale locale, final String filter, final BundleException be )
+    private void renderJSON( final HttpServletResponse response, final Bundle bundle, final String pluginRoot, final String servicesRoot, final Locale locale, final String filter, final BundleException be, final Paging paging )
             throws IOException, InvalidSyntaxException
     {
         response.setContentType( "application/json" );
         response.setCharacterEncoding( "UTF-8" );
 
         final PrintWriter pw = response.getWriter();
-        writeJSON(pw, bundle, pluginRoot, servicesRoot, locale, filter, be);
+        writeJSON(pw, bundle, pluginRoot, servicesRoot, locale, filter, be, paging);
     }
 
 
-    private void writeJSON( final Writer pw, final Bundle bundle, final String pluginRoot, final String servicesRoot, final Locale locale, final String filter, final BundleException be )
+    /**
+     * Writes the bundle list. The entries are written one by one, so only the
+     * information of a single bundle is held in memory at any time.
+     */
+    private void writeJSON( final Writer pw, final Bundle bundle, final String pluginRoot, final String servicesRoot, final Locale locale, final String filter, final BundleException be, final Paging paging )
             throws IOException, InvalidSyntaxException
     {
-        final Map<String, Object> map = createObjectStructure( bundle, pluginRoot, servicesRoot, false, locale, filter, be );
+        final Bundle[] allBundles = this.getBundles();
+        final List<Object> status = getStatusLine(allBundles);
+        final String statusLine = (String) status.remove(5);
+        final Bundle[] bundles = selectBundles( allBundles, bundle, locale, filter );
+
         final JSONWriter writer = new JSONWriter(pw);
+        writer.object();
+
+        if (null != be)
+        {
+            writer.key("error");
+            writer.value(getStackTrace(be));
+        }
+
+        writer.key("status");
+        writer.value(statusLine);
+
+        // add raw status
+        writer.key("s");
+        writer.value(status.toArray());
+
+        writer.key("total");
+        writer.value(bundles.length);
 
-        writer.value(map);
+        final int first = paging.getFirst(bundles.length);
+        final int end = paging.getEnd(bundles.length);
+        writer.key("offset");
+        writer.value(first);
+
+        writer.key("data");
+        writer.array();
+        for ( int i = first; i < end; i++ )
+        {
+            writer.value( bundleInfo( bundles[i], bundle != null, pluginRoot, servicesRoot, locale ) );
+        }
+        writer.endArray();
+
+        writer.endObject();
+        writer.flush();
     }
 
     private Map<String, Object> createObjectStructure( final Bundle bundle, final String pluginRoot,
@@ -562,6 +631,45 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         final Bundle[] allBundles = this.getBundles();
         final List<Object> status = getStatusLine(allBundles);
         final String statusLine = (String) status.remove(5);
+        final Bundle[] bundles = selectBundles( allBundles, bundle, locale, filter );
+
+        final Map<String, Object> map = new LinkedHashMap<String, Object>();
+
+        if (null != be)
+        {
+            map.put("error", getStackTrace(be));
+        }
+
+        map.put("status", statusLine);
+
+        // add raw status
+        map.put( "s", status.toArray() );
+
+        final Object[] bundlesArray = new Object[bundles.length];
+        for ( int i = 0; i < bundles.length; i++ )
+        {
+            bundlesArray[i] =
+                    bundleInfo( bundles[i], fullDetails || bundle != null, pluginRoot, servicesRoot, locale );
+        }
+
+        map.put("data", bundlesArray);
+        return map;
+    }
+
+    private static String getStackTrace( final BundleException be )
+    {
+        final StringWriter s = new StringWriter();
+        final Throwable t = be.getNestedException() != null ? be.getNestedException() : be;
+        t.printStackTrace( new PrintWriter(s) );
+        return s.toString();
+    }
+
+    /**
+     * Returns the requested bundle, or all bundles matching the filter sorted by name.
+     */
+    private Bundle[] selectBundles( final Bundle[] allBundles, final Bundle bundle, final Locale locale, final String filter )
+            throws InvalidSyntaxException
+    {
         // filter bundles by headers
         final Bundle[] bundles;
         if (bundle != null)
@@ -588,31 +696,7 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         }
 
         Util.sort( bundles, locale );
-
-        final Map<String, Object> map = new LinkedHashMap<String, Object>();
-
-        if (null != be)
-        {
-            final StringWriter s = new StringWriter();
-            final Throwable t = be.getNestedException() != null ? be.getNestedException() : be;
-            t.printStackTrace( new PrintWriter(s) );
-            map.put("error", s.toString());
-        }
-
-        map.put("status", statusLine);
-
-        // add raw status
-        map.put( "s", status.toArray() );
-
-        final Object[] bundlesArray = new Object[bundles.length];
-        for ( int i = 0; i < bundles.length; i++ )
-        {
-            bundlesArray[i] =
-                    bundleInfo( bundles[i], fullDetails || bundle != null, pluginRoot, servicesRoot, locale );
-        }
-
-        map.put("data", bundlesArray);
-        return map;
+        return bundles;
     }
 
     private List<Object> getStatusLine(final Bundle[] bundles)
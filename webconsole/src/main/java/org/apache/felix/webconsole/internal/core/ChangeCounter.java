@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.internal.core;
+
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.osgi.framework.AllServiceListener;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.SynchronousBundleListener;
+
+
+/**
+ * The <code>ChangeCounter</code> counts the bundle and service events of the
+ * framework. The bundle and service lists only change if the counter changes,
+ * so the counter is used to create entity tags for these lists, which allows
+ * clients to avoid downloading and rendering an unchanged list again.
+ */
+final class ChangeCounter implements SynchronousBundleListener, AllServiceListener
+{
+
+    // distinguishes tags of different plugin activations
+    private final String epoch = Long.toString( System.currentTimeMillis(), 36 );
+
+    private final AtomicLong count = new AtomicLong();
+
+    private BundleContext bundleContext;
+
+
+    void register( final BundleContext bundleContext )
+    {
+        this.bundleContext = bundleContext;
+        bundleContext.addBundleListener( this );
+        bundleContext.addServiceListener( this );
+    }
+
+
+    void unregister()
+    {
+        if ( bundleContext != null )
+        {
+            try
+            {
+                bundleContext.removeServiceListener( this );
+                bundleContext.removeBundleListener( this );
+            }
+            catch ( IllegalStateException ise )
+            {
+                // bundle context already invalid
+            }
+            bundleContext = null;
+        }
+    }
+
+
+    public void bundleChanged( final BundleEvent event )
+    {
+        count.incrementAndGet();
+    }
+
+
+    public void serviceChanged( final ServiceEvent event )
+    {
+        count.incrementAndGet();
+    }
+
+
+    /**
+     * Creates the entity tag for the current state of the framework. The tag
+     * starts with the state, <code>&lt;epoch&gt;-&lt;count&gt;-</code>, which
+     * clients loading a list in pages compare to detect changes. The variant
+     * is URL encoded, so the tag only contains characters allowed in entity
+     * tags and different variants never share a tag.
+     *
+     * @param variant the request parameters influencing the response, like
+     *      the filter, the page or the locale
+     * @return the entity tag
+     */
+    String getETag( final String variant )
+    {
+        String encoded;
+        try
+        {
+            encoded = URLEncoder.encode( variant, "UTF-8" );
+        }
+        catch ( UnsupportedEncodingException uee )
+        {
+            // UTF-8 is always supported
+            throw new IllegalStateException( uee );
+        }
+        return "\"" + epoch + '-' + count.get() + '-' + encoded + "\"";
+    }
+
+
+    /**
+     * Sets the entity tag on the response and checks whether the client has
+     * an up to date copy of the response.
+     *
+     * @return <code>true</code> if the response has been completed with a
+     *      <i>304 Not Modified</i> status
+     */
+    boolean checkNotModified( final HttpServletRequest request, final HttpServletResponse response,
+        final String variant )
+    {
+        final String etag = getETag( variant );
+        response.setHeader( "ETag", etag );
+        // clients must always revalidate the list
+        response.setHeader( "Cache-Control", "private, no-cache" );
+
+        final String ifNoneMatch = request.getHeader( "If-None-Match" );
+        if ( ifNoneMatch != null && ( ifNoneMatch.indexOf( etag ) != -1 || ifNoneMatch.trim().equals( "*" ) ) )
+        {
+            response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.internal.core;
+
+
+import javax.servlet.http.HttpServletRequest;
+
+
+/**
+ * The <code>Paging</code> class holds the optional <code>offset</code> and
+ * <code>limit</code> request parameters used to request a part of the bundle
+ * or service list.
+ */
+final class Paging
+{
+
+    static final String OFFSET_PARAM = "offset";
+
+    static final String LIMIT_PARAM = "limit";
+
+    /** Paging returning the complete list */
+    static final Paging ALL = new Paging( 0, -1 );
+
+    private final int offset;
+
+    // negative for no limit
+    private final int limit;
+
+
+    Paging( final int offset, final int limit )
+    {
+        this.offset = offset < 0 ? 0 : offset;
+        this.limit = limit;
+    }
+
+
+    static Paging fromRequest( final HttpServletRequest request )
+    {
+        return new Paging( getInt( request, OFFSET_PARAM, 0 ), getInt( request, LIMIT_PARAM, -1 ) );
+    }
+
+
+    private static int getInt( final HttpServletRequest request, final String name, final int defaultValue )
+    {
+        final String value = request.getParameter( name );
+        if ( value != null )
+        {
+            try
+            {
+                return Integer.parseInt( value.trim() );
+            }
+            catch ( NumberFormatException nfe )
+            {
+                // use default
+            }
+        }
+        return defaultValue;
+    }
+
+
+    /**
+     * @return the index of the first entry of the page in a list of the given size
+     */
+    int getFirst( final int size )
+    {
+        return Math.min( offset, size );
+    }
+
+
+    /**
+     * @return the index after the last entry of the page in a list of the given size
+     */
+    int getEnd( final int size )
+    {
+        if ( limit < 0 )
+        {
+            return size;
+        }
+        return ( int ) Math.min( size, ( long ) getFirst( size ) + limit );
+    }
+
+
+    /**
+     * @return a string identifying the page, used for entity tags
+     */
+    public String toString()
+    {
+        return offset + ":" + limit;
+    }
+}
@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Locale;
 
 import javax.servlet.ServletException;
@@ -124,10 +126,15 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
 
     private ServiceRegistration bipReg;
 
+    private ChangeCounter changeCounter;
+
     public void activate(BundleContext bundleContext)
     {
         super.activate(bundleContext);
         bipReg = new ServicesUsedInfoProvider( bundleContext.getBundle() ).register( bundleContext );
+
+        changeCounter = new ChangeCounter();
+        changeCounter.register( BundleContextUtil.getWorkingBundleContext( bundleContext ) );
     }
 
     public void deactivate() {
@@ -136,6 +143,11 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
             bipReg.unregister();
             bipReg = null;
         }
+        if ( null != changeCounter )
+        {
+            changeCounter.unregister();
+            changeCounter = null;
+        }
         super.deactivate();
     }
 
@@ -178,6 +190,8 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
             final ServiceReference[] refs = BundleContextUtil.getWorkingBundleContext(this.getBundleContext()).getAllServiceReferences( null, filter );
             if ( refs != null )
             {
+                // sort by service id to get stable pages
+                Arrays.sort( refs, SERVICE_ID_COMPARATOR );
                 return refs;
             }
         }
@@ -191,6 +205,17 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
     }
 
 
+    private static final Comparator SERVICE_ID_COMPARATOR = new Comparator()
+    {
+        public int compare( Object o1, Object o2 )
+        {
+            final long id1 = ( ( Long ) ( ( ServiceReference ) o1 ).getProperty( Constants.SERVICE_ID ) ).longValue();
+            final long id2 = ( ( Long ) ( ( ServiceReference ) o2 ).getProperty( Constants.SERVICE_ID ) ).longValue();
+            return id1 < id2 ? -1 : ( id1 == id2 ? 0 : 1 );
+        }
+    };
+
+
     static final String getStatusLine( final ServiceReference[] services )
     {
         final int count = services.length;
@@ -211,14 +236,15 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
     }
 
 
-    private void renderJSON( final HttpServletResponse response, final ServiceReference service, final Locale locale )
-            throws IOException
+    private void renderJSON( final HttpServletResponse response, final ServiceReference service, final Locale locale,
+        final String filter, final Paging paging ) throws IOException
     {
         response.setContentType( "application/json" );
         response.setCharacterEncoding( "UTF-8" );
 
         final PrintWriter pw = response.getWriter();
-        writeJSON( pw, service, locale, null);
+        writeJSON( pw, service, false, locale, filter, paging );
+        pw.flush();
     }
 
     private void keyVal( JSONWriter jw, String key, Object val) throws IOException
@@ -335,11 +361,11 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
 
     private void writeJSON(final Writer pw, final ServiceReference service, final Locale locale, final String filter) throws IOException
     {
-        writeJSON( pw, service, false, locale, filter );
+        writeJSON( pw, service, false, locale, filter, Paging.ALL );
     }
 
 
-    private void writeJSON( final Writer pw, final ServiceReference service, final boolean fullDetails, final Locale locale, final String filter )
+    private void writeJSON( final Writer pw, final ServiceReference service, final boolean fullDetails, final Locale locale, final String filter, final Paging paging )
             throws IOException
     {
         final ServiceReference[] allServices = this.getServices(filter);
@@ -358,11 +384,18 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
                 jw.key( "serviceCount" );
                 jw.value( allServices.length );
 
+                final int first = paging.getFirst( services.length );
+                final int end = paging.getEnd( services.length );
+                jw.key( "total" );
+                jw.value( services.length );
+                jw.key( "offset" );
+                jw.value( first );
+
                 jw.key( "data" );
 
                 jw.array();
 
-                for ( int i = 0; i < services.length; i++ )
+                for ( int i = first; i < end; i++ )
                 {
                     serviceInfo( jw, services[i], fullDetails || service != null, locale );
                 }
@@ -371,6 +404,7 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
 
                 jw.endObject();
 
+                jw.flush();
     }
 
 
@@ -390,7 +424,18 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
             }
             if ( reqInfo.extension.equals( "json" ) )
             {
-                this.renderJSON( response, reqInfo.service, request.getLocale() );
+                final String filter = request.getParameter( FILTER_PARAM );
+                final Paging paging = Paging.fromRequest( request );
+
+                // the details of a single service also contain the using bundles,
+                // which change without a service event
+                final ChangeCounter counter = this.changeCounter;
+                if ( reqInfo.service == null && counter != null
+                    && counter.checkNotModified( request, response, request.getLocale() + "|" + filter + "|" + paging ) )
+                {
+                    return;
+                }
+                this.renderJSON( response, reqInfo.service, request.getLocale(), filter, paging );
 
                 // nothing more to do
                 return;
@@ -410,15 +455,23 @@ public class ServicesServlet extends SimpleWebConsolePlugin implements OsgiManag
         final RequestInfo reqInfo = getRequestInfo( request );
 
         final String appRoot = ( String ) request.getAttribute( WebConsoleConstants.ATTR_APP_ROOT );
-        StringWriter w = new StringWriter();
         final String filter = request.getParameter(FILTER_PARAM);
-        writeJSON(w, reqInfo.service, request.getLocale(), filter);
+
+        // the service list is loaded by the page in chunks, only the details
+        // of a single requested service are rendered into the page
+        String data = "null";
+        if ( reqInfo.serviceRequested )
+        {
+            StringWriter w = new StringWriter();
+            writeJSON(w, reqInfo.service, request.getLocale(), filter);
+            data = w.toString();
+        }
 
         // prepare variables
         DefaultVariableResolver vars = ( ( DefaultVariableResolver ) WebConsoleUtil.getVariableResolver( request ) );
         vars.put( "bundlePath", appRoot +  "/" + BundlesServlet.NAME + "/" );
         vars.put( "drawDetails", String.valueOf(reqInfo.serviceRequested));
-        vars.put( "__data__", w.toString() );
+        vars.put( "__data__", data );
         vars.put( "filter", filter == null ? "" : WebConsoleUtil.escapeHtml(filter));
 
         response.getWriter().print( TEMPLATE );
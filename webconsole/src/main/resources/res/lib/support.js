@@ -310,6 +310,51 @@ function setCookie( /* String */name, /* String */value) {
     return $.cookies.get("felix-webconsole-" + name);
 }
 
+/**
+ * Loads a list from a JSON url supporting the offset and limit parameters
+ * in pages and calls the callback once with the complete list. Every page
+ * is a separate request which the browser can revalidate using the entity tag.
+ * The entity tag starts with the state of the list, so if the list changes
+ * while the pages are loaded, loading restarts from the first page.
+ * @param url The url of the list
+ * @param params The additional request parameters or null
+ * @param callback The callback receiving the first response with the
+ *        data of all pages
+ */
+function loadPaged(/* String */url, /* Object */params, /* Function */callback) {
+	var pageSize = 500;
+	var restarts = 5;
+	var result = false;
+	var state = false;
+	var loadPage = function(offset) {
+		var p = $.extend({}, params, { 'offset' : offset, 'limit' : pageSize });
+		$.get(url, p, function(page, textStatus, xhr) {
+			// entity tags are "<epoch>-<count>-<variant>"
+			var etag = xhr.getResponseHeader('ETag');
+			var pageState = etag ? etag.split('-', 2).join('-') : false;
+			if (result && pageState != state && restarts-- > 0) {
+				result = false;
+				state = false;
+				loadPage(0);
+				return;
+			}
+			if (result) {
+				result.data = result.data.concat(page.data);
+			} else {
+				result = page;
+				state = pageState;
+			}
+			var next = offset + page.data.length;
+			if (page.data.length > 0 && page.total && next < page.total) {
+				loadPage(next);
+			} else {
+				callback(result);
+			}
+		}, 'json');
+	}
+	loadPage(0);
+}
+
 // language selection element
 var langSelect = false;
 $(document).ready(function() {
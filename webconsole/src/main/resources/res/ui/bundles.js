@@ -127,7 +127,7 @@ function entrySetupState( /* Object */ bundle, tr, id) {
 }
 
 function loadData() {
-    $.get(pluginRoot + "/.json", null, renderData, "json"); 
+    loadPaged(pluginRoot + "/.json", null, renderData);
 }
 
 function changeDataEntryState(/* long */ id, /* String */ action) {
@@ -296,7 +296,7 @@ $(document).ready(function(){
 		if ($(this).hasClass('ui-state-disabled')) return;
 		var el = $(this).parent().find('input.filter');
 		var filter = el.val();
-		if (filter) $.get(pluginRoot + '/.json', { 'filter' : filter }, renderData, 'json');
+		if (filter) loadPaged(pluginRoot + '/.json', { 'filter' : filter }, renderData);
 		return false;
 	});
 
@@ -328,6 +328,11 @@ $(document).ready(function(){
 	bundlesBody     = bundlesTable.find('tbody');
 	bundlesTemplate = bundlesBody.find('tr').clone();
 
-	renderData(lastBundleData);
+	// the bundle list is not part of the page unless a single bundle is displayed
+	if (lastBundleData) {
+		renderData(lastBundleData);
+	} else {
+		loadData();
+	}
 });
 
@@ -153,14 +153,28 @@ $(document).ready(function() {
 	tableEntryTemplate = tableBody.find('tr').clone();
 	tableBody.empty();
 
-	renderData(data);
-
-	$('#plugin_table').tablesorter( {
-		headers : {
-			0 : { sorter : 'digit' },
-			3 : { sorter : 'digit' }
-		},
-		sortList : [ [ 1, 0 ] ],
-		textExtraction : mixedLinksExtraction
-	});
+	var table = $('#plugin_table');
+	var initTable = function() {
+		table.tablesorter( {
+			headers : {
+				0 : { sorter : 'digit' },
+				3 : { sorter : 'digit' }
+			},
+			sortList : [ [ 1, 0 ] ],
+			textExtraction : mixedLinksExtraction
+		});
+	}
+
+	// the service list is not part of the page unless a single service is displayed
+	if (data) {
+		renderData(data);
+		initTable();
+	} else {
+		var filter = $('.servicesFilter').val();
+		loadPaged(pluginRoot + '/.json', filter ? { 'filter' : filter } : null, function(list) {
+			data = list;
+			renderData(data);
+			initTable();
+		});
+	}
 });
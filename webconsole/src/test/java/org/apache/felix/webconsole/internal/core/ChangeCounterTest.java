@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.internal.core;
+
+
+
+import junit.framework.TestCase;
+
+
+public class ChangeCounterTest extends TestCase
+{
+
+    public void test_variants()
+    {
+        final ChangeCounter counter = new ChangeCounter();
+
+        // same hash code, different variants
+        assertEquals( "Aa".hashCode(), "BB".hashCode() );
+        assertFalse( counter.getETag( "Aa" ).equals( counter.getETag( "BB" ) ) );
+
+        assertEquals( counter.getETag( "en|(a=b)|0:500" ), counter.getETag( "en|(a=b)|0:500" ) );
+    }
+
+
+    public void test_etag_characters()
+    {
+        final String etag = new ChangeCounter().getETag( "de|(name=\"x y\u00e4\")|0:500" );
+        assertTrue( etag.startsWith( "\"" ) );
+        assertTrue( etag.endsWith( "\"" ) );
+        final String opaque = etag.substring( 1, etag.length() - 1 );
+        for ( int i = 0; i < opaque.length(); i++ )
+        {
+            final char c = opaque.charAt( i );
+            assertTrue( etag, c > 0x20 && c < 0x7f && c != '"' );
+        }
+    }
+
+
+    public void test_state()
+    {
+        final ChangeCounter counter = new ChangeCounter();
+        final String before = counter.getETag( "en|null|0:500" );
+        counter.bundleChanged( null );
+        final String after = counter.getETag( "en|null|0:500" );
+        assertFalse( before.equals( after ) );
+
+        // clients compare the tag up to the second dash
+        final String[] parts = before.substring( 1 ).split( "-" );
+        assertEquals( "0", parts[1] );
+        assertTrue( after.substring( 1 ).startsWith( parts[0] + "-1-" ) );
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.internal.core;
+
+
+import junit.framework.TestCase;
+
+
+public class PagingTest extends TestCase
+{
+
+    public void test_all()
+    {
+        assertEquals( 0, Paging.ALL.getFirst( 10 ) );
+        assertEquals( 10, Paging.ALL.getEnd( 10 ) );
+        assertEquals( 0, Paging.ALL.getFirst( 0 ) );
+        assertEquals( 0, Paging.ALL.getEnd( 0 ) );
+    }
+
+
+    public void test_page()
+    {
+        final Paging paging = new Paging( 20, 10 );
+        assertEquals( 20, paging.getFirst( 100 ) );
+        assertEquals( 30, paging.getEnd( 100 ) );
+
+        // last, incomplete page
+        assertEquals( 20, paging.getFirst( 25 ) );
+        assertEquals( 25, paging.getEnd( 25 ) );
+
+        // beyond the end of the list
+        assertEquals( 15, paging.getFirst( 15 ) );
+        assertEquals( 15, paging.getEnd( 15 ) );
+    }
+
+
+    public void test_invalid()
+    {
+        final Paging paging = new Paging( -5, Integer.MAX_VALUE );
+        assertEquals( 0, paging.getFirst( 100 ) );
+        assertEquals( 100, paging.getEnd( 100 ) );
+
+        assertEquals( 50, new Paging( 50, Integer.MAX_VALUE ).getEnd( 100 ) - 50 );
+    }
+
+
+    public void test_toString()
+    {
+        assertFalse( new Paging( 0, 10 ).toString().equals( new Paging( 10, 10 ).toString() ) );
+    }
+}